@@ -0,0 +1,56 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Run the identifier, money and unique ID benchmarks single-threaded and with one thread per
+ * processor, with the GC profiler reporting the allocation per operation, writing the results
+ * of each run as JSON, to be kept as a baseline and compared with the results of later builds:
+ * <pre>
+ *     java -cp target/benchmarks.jar org.seefin.nygaard.benchmarks.BaselineRunner target/baseline [JMH options]
+ * </pre>
+ * writes <code>baseline-threads-1.json</code> and <code>baseline-threads-N.json</code> to the
+ * directory named (by default, <code>baseline</code>); further arguments are passed to JMH,
+ * e.g., <code>-wi 10</code> for longer warm-up
+ *
+ * @author phillipsr
+ */
+public final class BaselineRunner {
+    private static final String BENCHMARKS = "org\\.seefin\\.nygaard\\.benchmarks\\.(Identifier|Money|UniqueId)Benchmark\\..*";
+
+    private BaselineRunner() {
+    }
+
+    public static void
+    main(String[] args)
+            throws Exception {
+        File directory = new File(args.length > 0 ? args[0] : "baseline");
+        if (directory.isDirectory() == false && directory.mkdirs() == false) {
+            throw new IllegalArgumentException("Cannot create baseline directory: " + directory);
+        }
+        CommandLineOptions jmhOptions = new CommandLineOptions(
+                args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[0]);
+        int processors = Math.max(2, Runtime.getRuntime().availableProcessors());
+        for (int threads : new int[]{1, processors}) {
+            Options options = new OptionsBuilder()
+                    .parent(jmhOptions)
+                    .include(BENCHMARKS)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(directory, "baseline-threads-" + threads + ".json").getPath())
+                    .shouldFailOnError(true)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seefin.nygaard.model.channels.SMSChannel;
+import org.seefin.nygaard.model.codec.BinaryCodec;
+import org.seefin.nygaard.model.financial.Account;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.identifiers.PersonalName;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.parties.Individual;
+import org.seefin.nygaard.model.parties.Organization;
+import org.seefin.nygaard.model.parties.Subscriber;
+import org.seefin.nygaard.model.requests.TopupRequest;
+import org.seefin.nygaard.model.requests.TransferRequest;
+import org.seefin.nygaard.model.requests.TransferResponse;
+
+
+/**
+ * Encoding and decoding time of {@link BinaryCodec}, compared with Java serialization
+ * (<code>ObjectOutputStream</code>), for representative messages; the relative encoded
+ * sizes are asserted by <code>TestBinaryCodec</code>
+ *
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    @Param({"TopupRequest", "TransferRequest", "TransferResponse", "MonetaryAmount", "GUID"})
+    String message;
+
+    private Object value;
+    private byte[] encoded;
+    private byte[] serialized;
+
+    @Setup
+    public void
+    setup()
+            throws IOException {
+        MSISDN msisdn = MSISDN.parse("+353863567279");
+        Individual customer = new Individual(new PersonalName(new String[]{"Joe", "Blochs"}), msisdn);
+        Individual payee = new Individual(new PersonalName(new String[]{"Ann", "Other"}), MSISDN.parse("+353863567201"));
+        Organization vendor = new Organization(new DUNS(39189524), "Cyprus MFS");
+        SMSChannel channel = new SMSChannel(new Subscriber(customer), SMSChannel.createId(msisdn));
+        MonetaryAmount amount = new MonetaryAmount(EUR, 1000L);
+        switch (message) {
+            case "TopupRequest":
+                value = new TopupRequest(channel, new Subscriber(customer), amount);
+                break;
+            case "TransferRequest":
+                Account payer = new ElectronicWallet(customer, vendor, EUR);
+                payer.setBalance(new MonetaryAmount(EUR, 5000L));
+                value = new TransferRequest(channel, new FinancialTransaction(
+                        payer, amount, new ElectronicWallet(payee, vendor, EUR)), "rent");
+                break;
+            case "TransferResponse":
+                value = new TransferResponse(true, GUID.createUniqueId().externalForm(), "rent", amount);
+                break;
+            case "MonetaryAmount":
+                value = amount;
+                break;
+            default:
+                value = GUID.createUniqueId();
+        }
+        encoded = BinaryCodec.encode(value);
+        serialized = serialize(value);
+    }
+
+    private static byte[]
+    serialize(Object value)
+            throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        ObjectOutputStream output = new ObjectOutputStream(buffer);
+        output.writeObject(value);
+        output.close();
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public byte[]
+    encodeBinary() {
+        return BinaryCodec.encode(value);
+    }
+
+    @Benchmark
+    public Object
+    decodeBinary() {
+        return BinaryCodec.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[]
+    encodeSerializable()
+            throws IOException {
+        return serialize(value);
+    }
+
+    @Benchmark
+    public Object
+    decodeSerializable()
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized));
+        return input.readObject();
+    }
+}
@@ -0,0 +1,162 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.util.Random;
+
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.IBANScheme;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.LuhnChecksum;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.locations.ISO3166;
+
+
+/**
+ * Generator of realistic input for the parsing benchmarks: valid identifiers and amounts
+ * drawn from several schemes, countries and currencies, in the forms in which they
+ * arrive from channels (e.g., IBANs printed in groups of four characters)
+ * <p/>
+ * Values are generated from a seeded random source, so that every run of a benchmark
+ * parses the same input; each value is checked by the model before being returned,
+ * so that the benchmarks measure the successful path
+ *
+ * @author phillipsr
+ */
+final class DataGenerator {
+    private static final String DIGITS = "0123456789";
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String ALPHANUMERICS = DIGITS + LETTERS;
+
+    // country, then bank, branch and account part formats (as in IBANScheme.properties)
+    private static final String[][] IBAN_FORMATS = {
+            {"IE", "c4", "n6", "n8"},
+            {"FR", "n5", "n5", "c13"},
+            {"DE", "n8", "", "c10"},
+            {"AZ", "c4", "", "n20"},
+            {"MC", "n5", "n5", "c13"},
+            {"GR", "n3", "n4", "c16"},
+    };
+    // country code and national destination code prefix, then subscriber number length
+    private static final String[][] MSISDN_FORMATS = {
+            {"+35386", "7"},
+            {"+35387", "7"},
+            {"+35383", "7"},
+            {"+49170", "7"},
+            {"+49176", "8"},
+            {"+1212", "7"},
+            {"+1415", "7"},
+    };
+    // issuer prefix, then card number length
+    private static final String[][] CARD_FORMATS = {
+            {"4", "16"},
+            {"51", "16"},
+            {"55", "16"},
+            {"34", "15"},
+            {"37", "15"},
+            {"6011", "16"},
+    };
+    private static final String[] CURRENCIES = {"EUR", "USD", "GBP", "JPY"};
+
+    private final Random random;
+
+    /**
+     * @param seed of the random source, so that the same seed generates the same data
+     */
+    DataGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return IBANs of several countries, half of them formatted in groups of four characters
+     */
+    String[]
+    ibans(int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            String[] format = IBAN_FORMATS[random.nextInt(IBAN_FORMATS.length)];
+            IBAN iban = IBANScheme.create(ISO3166.valueOf(format[0]),
+                    chars(format[1]), chars(format[2]), chars(format[3]));
+            result[i] = random.nextBoolean() ? grouped(iban.externalForm()) : iban.externalForm();
+        }
+        return result;
+    }
+
+    /**
+     * @return MSISDNs in international form, of several countries and operators
+     */
+    String[]
+    msisdns(int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            String[] format = MSISDN_FORMATS[random.nextInt(MSISDN_FORMATS.length)];
+            result[i] = format[0] + chars("n" + format[1]);
+            MSISDN.parse(result[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return card numbers of several issuers, with valid Luhn check digits
+     */
+    String[]
+    cardNumbers(int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            String[] format = CARD_FORMATS[random.nextInt(CARD_FORMATS.length)];
+            int length = Integer.parseInt(format[1]);
+            String number = format[0] + chars("n" + (length - format[0].length() - 1));
+            result[i] = number + LuhnChecksum.getCheckDigit(number);
+            ISO7812.parse(result[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return amounts in several currencies, from cents to millions, some with a space
+     * between the currency code and the value
+     */
+    String[]
+    amounts(int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            String currency = CURRENCIES[random.nextInt(CURRENCIES.length)];
+            long units = (long) Math.pow(10, random.nextInt(7)) + random.nextInt(1000);
+            String value = currency.equals("JPY")
+                    ? Long.toString(units)
+                    : units + "." + chars("n2");
+            result[i] = currency + (random.nextInt(4) == 0 ? " " : "") + (random.nextInt(8) == 0 ? "-" : "") + value;
+            MonetaryAmount.parse(result[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param format type (n: numeric, a: alphabetic, c: alphanumeric) and length, e.g., <code>n8</code>;
+     *               the empty format generates the empty string
+     */
+    private String
+    chars(String format) {
+        if (format.isEmpty()) {
+            return "";
+        }
+        String alphabet = format.charAt(0) == 'n' ? DIGITS : format.charAt(0) == 'a' ? LETTERS : ALPHANUMERICS;
+        int length = Integer.parseInt(format.substring(1));
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return result.toString();
+    }
+
+    private static String
+    grouped(String code) {
+        StringBuilder result = new StringBuilder(code.length() + code.length() / 4);
+        for (int i = 0; i < code.length(); i++) {
+            if (i > 0 && i % 4 == 0) {
+                result.append(' ');
+            }
+            result.append(code.charAt(i));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.LuhnChecksum;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+
+
+/**
+ * Parsing time of the identifiers received on every request: IBANs, MSISDNs and card
+ * numbers, and the Luhn check applied to card numbers
+ * <p/>
+ * Each thread parses its own set of generated values in turn, so that the branch
+ * predictor and caches see a realistic mix of countries, operators and issuers, rather
+ * than one value repeatedly; run with <code>-t</code> (or through {@link BaselineRunner})
+ * for the multi-threaded figures, and <code>-prof gc</code> for the allocation per operation
+ *
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentifierBenchmark {
+    private static final int VALUES = 1024;
+
+    private String[] ibans;
+    private String[] msisdns;
+    private String[] cards;
+    private int next;
+
+    @Setup
+    public void
+    setup() {
+        DataGenerator generator = new DataGenerator(Thread.currentThread().getId());
+        ibans = generator.ibans(VALUES);
+        msisdns = generator.msisdns(VALUES);
+        cards = generator.cardNumbers(VALUES);
+    }
+
+    private int
+    next() {
+        next = (next + 1) & (VALUES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public IBAN
+    parseIBAN() {
+        return IBAN.parse(ibans[next()]);
+    }
+
+    @Benchmark
+    public MSISDN
+    parseMSISDN() {
+        return MSISDN.parse(msisdns[next()]);
+    }
+
+    @Benchmark
+    public ISO7812
+    parseISO7812() {
+        return ISO7812.parse(cards[next()]);
+    }
+
+    @Benchmark
+    public boolean
+    luhnIsValid() {
+        return LuhnChecksum.isValid(cards[next()]);
+    }
+}
@@ -0,0 +1,160 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seefin.nygaard.model.financial.Account;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.identifiers.PersonalName;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.ledger.BatchResult;
+import org.seefin.nygaard.model.ledger.JournalEntry;
+import org.seefin.nygaard.model.ledger.Ledger;
+import org.seefin.nygaard.model.parties.Individual;
+import org.seefin.nygaard.model.parties.Organization;
+
+
+/**
+ * Throughput of {@link Ledger#post}, transferring between randomly chosen wallets;
+ * with few accounts most postings contend for the same lock stripes, with many
+ * they mostly proceed in parallel
+ * <p/>
+ * The <code>postAll</code> variants post the same transfers in batches, as the
+ * {@link org.seefin.nygaard.model.ledger.TransferBatcher} does; scores are per transfer
+ * <p/>
+ * The ledger retains every journal entry posted, so a fresh ledger is created for
+ * each iteration to keep the heap (and GC cost) bounded
+ *
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LedgerBenchmark {
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Organization VENDOR = new Organization(new DUNS(39189524), "Cyprus MFS");
+    private static final PersonalName CUSTOMER_NAME = new PersonalName(new String[]{"Joe", "Blochs"});
+    private static final int TRANSACTIONS_PER_THREAD = 4096;
+    private static final int BATCH_SIZE = 64;
+
+    @State(Scope.Benchmark)
+    public static class LedgerState {
+        @Param({"16", "4096"})
+        int accountCount;
+
+        Account[] accounts;
+        Ledger ledger;
+
+        @Setup(Level.Trial)
+        public void
+        createAccounts() {
+            accounts = new Account[accountCount];
+            for (int i = 0; i < accountCount; i++) {
+                // wallet numbers are keyed on the trailing digits of the holder's MSISDN
+                Individual holder = new Individual(CUSTOMER_NAME, MSISDN.parse(String.format("+35386300%04d", i)));
+                accounts[i] = new ElectronicWallet(holder, VENDOR, EUR);
+                accounts[i].setBalance(new MonetaryAmount(EUR, Long.MAX_VALUE / 4));
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void
+        createLedger() {
+            ledger = new Ledger();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TransactionState {
+        FinancialTransaction[] transactions;
+        List<List<FinancialTransaction>> batches;
+        int next;
+        int nextBatch;
+
+        @Setup(Level.Trial)
+        public void
+        createTransactions(LedgerState state) {
+            Random random = new Random(Thread.currentThread().getId());
+            transactions = new FinancialTransaction[TRANSACTIONS_PER_THREAD];
+            for (int i = 0; i < transactions.length; i++) {
+                int from = random.nextInt(state.accountCount);
+                int to = random.nextInt(state.accountCount - 1);
+                if (to >= from) {
+                    to++;
+                }
+                transactions[i] = new FinancialTransaction(state.accounts[from],
+                        new MonetaryAmount(EUR, (long) (random.nextInt(10000) + 1)), state.accounts[to]);
+            }
+            List<FinancialTransaction> all = Arrays.asList(transactions);
+            batches = new ArrayList<>(TRANSACTIONS_PER_THREAD / BATCH_SIZE);
+            for (int i = 0; i < TRANSACTIONS_PER_THREAD / BATCH_SIZE; i++) {
+                batches.add(all.subList(i * BATCH_SIZE, (i + 1) * BATCH_SIZE));
+            }
+        }
+
+        FinancialTransaction
+        next() {
+            FinancialTransaction result = transactions[next];
+            next = (next + 1) & (TRANSACTIONS_PER_THREAD - 1);
+            return result;
+        }
+
+        List<FinancialTransaction>
+        nextBatch() {
+            List<FinancialTransaction> result = batches.get(nextBatch);
+            nextBatch = (nextBatch + 1) % batches.size();
+            return result;
+        }
+    }
+
+    @Benchmark
+    public JournalEntry
+    post(LedgerState ledger, TransactionState transactions) {
+        return ledger.ledger.post(transactions.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JournalEntry
+    post4Threads(LedgerState ledger, TransactionState transactions) {
+        return ledger.ledger.post(transactions.next());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BatchResult
+    postAll(LedgerState ledger, TransactionState transactions) {
+        return ledger.ledger.postAll(transactions.nextBatch());
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BatchResult
+    postAll4Threads(LedgerState ledger, TransactionState transactions) {
+        return ledger.ledger.postAll(transactions.nextBatch());
+    }
+}
@@ -0,0 +1,72 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+
+
+/**
+ * Time to parse, add and format {@link MonetaryAmount}s, over generated amounts in
+ * several currencies and magnitudes
+ *
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final int VALUES = 1024;
+
+    private String[] texts;
+    private MonetaryAmount[] amounts;
+    private int next;
+
+    @Setup
+    public void
+    setup() {
+        texts = new DataGenerator(Thread.currentThread().getId()).amounts(VALUES);
+        amounts = new MonetaryAmount[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            amounts[i] = MonetaryAmount.parse(texts[i]);
+        }
+    }
+
+    private int
+    next() {
+        next = (next + 1) & (VALUES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public MonetaryAmount
+    parse() {
+        return MonetaryAmount.parse(texts[next()]);
+    }
+
+    @Benchmark
+    public MonetaryAmount
+    add() {
+        // an amount added to itself, as the generated amounts are in mixed currencies
+        MonetaryAmount amount = amounts[next()];
+        return amount.add(amount);
+    }
+
+    @Benchmark
+    public String
+    format() {
+        return amounts[next()].toString();
+    }
+}
@@ -0,0 +1,40 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.identifiers.UniqueID;
+
+
+/**
+ * Time to create the unique identifiers assigned to requests and transactions; both
+ * generators share state between threads, so the multi-threaded figures produced by
+ * {@link BaselineRunner} (or with <code>-t</code>) show the cost of contention
+ *
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniqueIdBenchmark {
+    @Benchmark
+    public UniqueID
+    createUniqueID() {
+        return UniqueID.createUnqiueId();
+    }
+
+    @Benchmark
+    public GUID
+    createGUID() {
+        return GUID.createUniqueId();
+    }
+}
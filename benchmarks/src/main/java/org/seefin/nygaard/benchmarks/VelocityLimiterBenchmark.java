@@ -0,0 +1,83 @@
+package org.seefin.nygaard.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seefin.nygaard.model.services.ServiceLimit;
+import org.seefin.nygaard.model.services.VelocityLimiter;
+
+
+/**
+ * Throughput of {@link VelocityLimiter#tryAcquire}, for limits private to a party
+ * (spread over many keys) and shared by all parties on a channel (a single hot key)
+ *
+ * @author phillipsr
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VelocityLimiterBenchmark {
+    private static final int PARTIES = 1 << 14;
+
+    @State(Scope.Benchmark)
+    public static class LimiterState {
+        VelocityLimiter limiter;
+        String[] parties;
+
+        @Setup
+        public void
+        setup() {
+            limiter = new VelocityLimiter();
+            parties = new String[PARTIES];
+            for (int i = 0; i < PARTIES; i++) {
+                parties[i] = String.format("3538630%05d", i);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PartyState {
+        int next;
+
+        String
+        next(LimiterState state) {
+            next = (next + 1) & (PARTIES - 1);
+            return state.parties[next];
+        }
+    }
+
+    @Benchmark
+    public boolean
+    perCustomer(LimiterState state, PartyState party) {
+        return state.limiter.tryAcquire(
+                ServiceLimit.DAILY, party.next(state), null, 1, Long.MAX_VALUE, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean
+    perCustomer4Threads(LimiterState state, PartyState party) {
+        return state.limiter.tryAcquire(
+                ServiceLimit.DAILY, party.next(state), null, 1, Long.MAX_VALUE, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean
+    sharedChannel4Threads(LimiterState state) {
+        return state.limiter.tryAcquire(
+                ServiceLimit.CHANNEL, null, "SMSChannel", 1, Long.MAX_VALUE, System.currentTimeMillis());
+    }
+}
@@ -5,26 +5,76 @@ import org.seefin.nygaard.model.identifiers.AccountNumber;
 
 
 /**
+ * Summary of an account, as listed for its holder
+ *
  * @author phillipsr
  */
 public class AccountDetails {
-    private AccountNumber number;
+    private final AccountNumber number;
 
-    private AccountType type;
-    private AccountStatus status;
+    private final AccountType type;
+    private final AccountStatus status;
 
     /**
      * The ledger balance is found by subtracting the total number of debits from
      * the total number of credits for a given accounting period. The ledger balance
      * is used solely in the reconciliation of book balances.
      */
-    private MonetaryAmount ledgerBalance;
+    private final MonetaryAmount ledgerBalance;
     /**
      * the amount of funds available for withdrawal
      */
-    private MonetaryAmount availableBalance;
+    private final MonetaryAmount availableBalance;
 
-    private MonetaryAmount overdraft;
+    private final MonetaryAmount overdraft;
+
+    /**
+     * Create the details of an account
+     *
+     * @param number           identifying the account
+     * @param type             of the account
+     * @param status           of the account
+     * @param ledgerBalance    of the account, may be null if not known
+     * @param availableBalance of the account, may be null if not known
+     * @param overdraft        facility of the account, null if none
+     * @throws IllegalArgumentException if number, type or status is null
+     */
+    public AccountDetails(AccountNumber number, AccountType type, AccountStatus status,
+                          MonetaryAmount ledgerBalance, MonetaryAmount availableBalance, MonetaryAmount overdraft) {
+        if (number == null || type == null || status == null) {
+            throw new IllegalArgumentException("Account number, type and status must be provided");
+        }
+        this.number = number;
+        this.type = type;
+        this.status = status;
+        this.ledgerBalance = ledgerBalance;
+        this.availableBalance = availableBalance;
+        this.overdraft = overdraft;
+    }
+
+    public AccountNumber getNumber() {
+        return number;
+    }
+
+    public AccountType getType() {
+        return type;
+    }
+
+    public AccountStatus getStatus() {
+        return status;
+    }
+
+    public MonetaryAmount getLedgerBalance() {
+        return ledgerBalance;
+    }
+
+    public MonetaryAmount getAvailableBalance() {
+        return availableBalance;
+    }
+
+    public MonetaryAmount getOverdraft() {
+        return overdraft;
+    }
 
     @Override
     public String
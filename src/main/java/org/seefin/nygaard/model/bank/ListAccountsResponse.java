@@ -6,6 +6,10 @@ import org.seefin.nygaard.model.collections.WormList;
 
 
 /**
+ * Response listing all of the accounts of a customer, held in memory; see
+ * {@link org.seefin.nygaard.model.requests.AccountPublisher} for the accounts delivered
+ * incrementally, as they are read
+ *
  * @author phillipsr
  */
 public class ListAccountsResponse {
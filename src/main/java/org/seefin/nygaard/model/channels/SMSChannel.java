@@ -1,6 +1,7 @@
 package org.seefin.nygaard.model.channels;
 
-import org.joda.time.DateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.seefin.nygaard.model.identifiers.Identity;
 import org.seefin.nygaard.model.identifiers.MSISDN;
 import org.seefin.nygaard.model.identifiers.ReferenceCode;
@@ -12,19 +13,34 @@ import org.seefin.nygaard.model.parties.Subscriber;
  */
 public class SMSChannel
         extends Channel {
+    private static final AtomicLong lastStamp = new AtomicLong();
+
     public SMSChannel(Subscriber sender, Identity id) {
         super(sender, id);
     }
 
     /**
      * @param msisdn
-     * @return a unique Id for the SMS request by concatenating
-     * the current time-stamp with the sender's MSISDN
+     * @return a unique Id for the SMS request by concatenating the sender's MSISDN with
+     * a time-stamp, in milliseconds, that is unique within this JVM: the system time, advanced
+     * past the last time-stamp issued if need be, so that requests from the same MSISDN within
+     * one millisecond (or one tick of a coarse {@link org.seefin.nygaard.model.time.Clock}, which
+     * is not used, for this reason) are not given the same Id
      */
     public static Identity
     createId(MSISDN msisdn) {
-        DateTime timestamp = new DateTime();
-        return new ReferenceCode(msisdn.longValue() + "" + timestamp.getMillis());
+        return new ReferenceCode(msisdn.longValue() + "" + nextStamp());
     }
 
+    private static long
+    nextStamp() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            long last = lastStamp.get();
+            long next = now > last ? now : last + 1;
+            if (lastStamp.compareAndSet(last, next) == true) {
+                return next;
+            }
+        }
+    }
 }
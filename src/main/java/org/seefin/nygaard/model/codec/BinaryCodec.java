@@ -0,0 +1,708 @@
+package org.seefin.nygaard.model.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.channels.MPChannel;
+import org.seefin.nygaard.model.channels.SMSChannel;
+import org.seefin.nygaard.model.channels.WebChannel;
+import org.seefin.nygaard.model.financial.Account;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.ISO4712Codes;
+import org.seefin.nygaard.model.financial.Instrument;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.AccountNumber;
+import org.seefin.nygaard.model.identifiers.BBAN;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.EWalletAccountNumber;
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.Identity;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.identifiers.PersonalName;
+import org.seefin.nygaard.model.identifiers.ReferenceCode;
+import org.seefin.nygaard.model.instruments.AccountInstrument;
+import org.seefin.nygaard.model.instruments.BankAccount;
+import org.seefin.nygaard.model.instruments.CreditCard;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.parties.Agent;
+import org.seefin.nygaard.model.parties.FinancialInstitution;
+import org.seefin.nygaard.model.parties.Individual;
+import org.seefin.nygaard.model.parties.Organization;
+import org.seefin.nygaard.model.parties.Party;
+import org.seefin.nygaard.model.parties.PartyRole;
+import org.seefin.nygaard.model.parties.Subscriber;
+import org.seefin.nygaard.model.requests.BalanceRequest;
+import org.seefin.nygaard.model.requests.BalanceResponse;
+import org.seefin.nygaard.model.requests.TopupRequest;
+import org.seefin.nygaard.model.requests.TopupResponse;
+import org.seefin.nygaard.model.requests.TransferRequest;
+import org.seefin.nygaard.model.requests.TransferResponse;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+
+/**
+ * Compact binary encoding of the request, response and identifier types exchanged
+ * between adapters, as an alternative to Java serialization
+ * <p/>
+ * Values are written with the protobuf wire primitives (varints, zig-zag encoded signed
+ * values, fixed-width and length-prefixed fields), but positionally, without field tags:
+ * each value is preceded only by a varint type tag, identifying its class, and an encoded
+ * message starts with the format version. The essential state of the value types is
+ * written in its most compact form:
+ * <ul>
+ * <li>MonetaryAmount: ISO4217 numeric currency code and (zig-zag) minor-unit value</li>
+ * <li>MSISDN, ISO7812: the number, as a varint</li>
+ * <li>GUID: two fixed 64-bit longs</li>
+ * <li>DUNS: the number, as a varint</li>
+ * <li>IBAN, BBAN, ReferenceCode: the string value</li>
+ * </ul>
+ * Decoding re-creates values through their public constructors and factory methods, so
+ * the class invariants (and registered schemes) of each type are enforced on receipt
+ *
+ * @author phillipsr
+ */
+public final class BinaryCodec {
+    /**
+     * Version of the encoding, written at the start of each message
+     */
+    public static final int VERSION = 1;
+
+    // type tags; zero is reserved for null
+    private static final int NULL = 0;
+    private static final int MONETARY_AMOUNT = 1;
+    private static final int MSISDN_TAG = 2;
+    private static final int GUID_TAG = 3;
+    private static final int IBAN_TAG = 4;
+    private static final int ISO7812_TAG = 5;
+    private static final int DUNS_TAG = 6;
+    private static final int REFERENCE_CODE = 7;
+    private static final int EWALLET_NUMBER = 8;
+    private static final int PERSONAL_NAME = 9;
+    private static final int BBAN_TAG = 10;
+    private static final int TOPUP_REQUEST = 20;
+    private static final int TRANSFER_REQUEST = 21;
+    private static final int BALANCE_REQUEST = 22;
+    private static final int TOPUP_RESPONSE = 30;
+    private static final int TRANSFER_RESPONSE = 31;
+    private static final int BALANCE_RESPONSE = 32;
+    private static final int INDIVIDUAL = 40;
+    private static final int ORGANIZATION = 41;
+    private static final int FINANCIAL_INSTITUTION = 42;
+    private static final int SUBSCRIBER = 50;
+    private static final int AGENT = 51;
+    private static final int CHANNEL = 60;
+    private static final int SMS_CHANNEL = 61;
+    private static final int MP_CHANNEL = 62;
+    private static final int WEB_CHANNEL = 63;
+    private static final int ELECTRONIC_WALLET = 70;
+    private static final int CREDIT_CARD = 71;
+    private static final int BANK_ACCOUNT = 72;
+    private static final int ACCOUNT_INSTRUMENT = 80;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    // most messages fit; the default CodedOutputStream buffer (4KB) would dominate encoding time
+    private static final int ENCODE_BUFFER_SIZE = 256;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Encode the supplied value
+     *
+     * @param value to be encoded; one of the request, response, identifier or value types
+     *              supported by this codec
+     * @return the encoded message
+     * @throws IllegalArgumentException if the value is null or of an unsupported type
+     */
+    public static byte[]
+    encode(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value to be encoded cannot be null");
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(ENCODE_BUFFER_SIZE);
+        CodedOutputStream output = CodedOutputStream.newInstance(buffer, ENCODE_BUFFER_SIZE);
+        try {
+            output.writeUInt32NoTag(VERSION);
+            write(output, value);
+            output.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode " + value.getClass().getSimpleName(), e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decode a message produced by {@link #encode}
+     *
+     * @param message to be decoded
+     * @return the decoded value
+     * @throws IllegalArgumentException if the message is malformed, of an unsupported
+     *                                  version, or the value it contains is invalid
+     */
+    public static Object
+    decode(byte[] message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message to be decoded cannot be null");
+        }
+        CodedInputStream input = CodedInputStream.newInstance(message);
+        try {
+            input.pushLimit(message.length);
+            int version = input.readUInt32();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported encoding version: " + version);
+            }
+            Object result = read(input);
+            if (input.isAtEnd() == false) {
+                throw new IllegalArgumentException("Unexpected data after encoded value");
+            }
+            return result;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed message: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decode a message produced by {@link #encode}, expected to contain a value of the type supplied
+     *
+     * @param message to be decoded
+     * @param type    of the value expected
+     * @return the decoded value
+     * @throws IllegalArgumentException if the message is malformed, or does not contain a value of <code>type</code>
+     */
+    public static <T> T
+    decode(byte[] message, Class<T> type) {
+        Object result = decode(message);
+        if (type.isInstance(result) == false) {
+            throw new IllegalArgumentException("Expected " + type.getSimpleName()
+                    + ", but message contains " + (result == null ? "null" : result.getClass().getSimpleName()));
+        }
+        return type.cast(result);
+    }
+
+    /**
+     * Write the type tag and encoded form of the supplied value (which may be null)
+     *
+     * @param output to which the value is written
+     * @param value  to be written
+     * @throws IOException              if the output cannot be written
+     * @throws IllegalArgumentException if the value is of an unsupported type
+     */
+    public static void
+    write(CodedOutputStream output, Object value)
+            throws IOException {
+        if (value == null) {
+            output.writeUInt32NoTag(NULL);
+        } else if (value instanceof MonetaryAmount) {
+            output.writeUInt32NoTag(MONETARY_AMOUNT);
+            writeAmount(output, (MonetaryAmount) value);
+        } else if (value instanceof Identity) {
+            writeIdentity(output, (Identity) value);
+        } else if (value instanceof TopupRequest) {
+            TopupRequest request = (TopupRequest) value;
+            output.writeUInt32NoTag(TOPUP_REQUEST);
+            writeTimestamp(output, request.getTimestampMillis());
+            writeChannel(output, request.getChannel());
+            writeRole(output, request.getSubscriber());
+            writeAmount(output, request.getAmount());
+        } else if (value instanceof TransferRequest) {
+            TransferRequest request = (TransferRequest) value;
+            output.writeUInt32NoTag(TRANSFER_REQUEST);
+            writeTimestamp(output, request.getTimestampMillis());
+            writeChannel(output, request.getChannel());
+            writeTransaction(output, request.getTransaction());
+            output.writeStringNoTag(request.getComment());
+        } else if (value instanceof BalanceRequest) {
+            BalanceRequest request = (BalanceRequest) value;
+            output.writeUInt32NoTag(BALANCE_REQUEST);
+            writeTimestamp(output, request.getTimestampMillis());
+            writeChannel(output, request.getChannel());
+            writeInstrument(output, request.getInstrument());
+        } else if (value instanceof TopupResponse) {
+            TopupResponse response = (TopupResponse) value;
+            output.writeUInt32NoTag(TOPUP_RESPONSE);
+            output.writeBoolNoTag(response.getSuccess());
+            write(output, response.getBalance());
+            writeString(output, response.getText());
+        } else if (value instanceof TransferResponse) {
+            TransferResponse response = (TransferResponse) value;
+            output.writeUInt32NoTag(TRANSFER_RESPONSE);
+            output.writeBoolNoTag(response.getSuccess());
+            writeString(output, response.getAuthorizationCode());
+            writeString(output, response.getText());
+            write(output, response.getBalance());
+        } else if (value instanceof BalanceResponse) {
+            output.writeUInt32NoTag(BALANCE_RESPONSE);
+            write(output, ((BalanceResponse) value).getBalance());
+        } else {
+            throw unsupported(value);
+        }
+    }
+
+    /**
+     * Read a value written by {@link #write}
+     *
+     * @param input from which the value is read
+     * @return the value read (which may be null)
+     * @throws IOException              if the input is malformed or truncated
+     * @throws IllegalArgumentException if the type tag is unknown, or the value is invalid
+     */
+    public static Object
+    read(CodedInputStream input)
+            throws IOException {
+        int tag = input.readUInt32();
+        switch (tag) {
+            case NULL:
+                return null;
+            case MONETARY_AMOUNT:
+                return readAmount(input);
+            case TOPUP_REQUEST: {
+                long timestamp = input.readSInt64();
+                Channel channel = readChannel(input);
+                Subscriber subscriber = as(Subscriber.class, readRole(input));
+                return new TopupRequest(channel, subscriber, readAmount(input), timestamp);
+            }
+            case TRANSFER_REQUEST: {
+                long timestamp = input.readSInt64();
+                Channel channel = readChannel(input);
+                FinancialTransaction transaction = readTransaction(input);
+                return new TransferRequest(channel, transaction, input.readString(), timestamp);
+            }
+            case BALANCE_REQUEST: {
+                long timestamp = input.readSInt64();
+                Channel channel = readChannel(input);
+                return new BalanceRequest(channel, readInstrument(input), timestamp);
+            }
+            case TOPUP_RESPONSE: {
+                boolean success = input.readBool();
+                MonetaryAmount balance = as(MonetaryAmount.class, read(input));
+                return new TopupResponse(success, balance, readString(input));
+            }
+            case TRANSFER_RESPONSE: {
+                boolean success = input.readBool();
+                String authorizationCode = readString(input);
+                String text = readString(input);
+                return new TransferResponse(success, authorizationCode, text, as(MonetaryAmount.class, read(input)));
+            }
+            case BALANCE_RESPONSE:
+                return new BalanceResponse(as(MonetaryAmount.class, read(input)));
+            default:
+                return readIdentity(tag, input);
+        }
+    }
+
+    private static void
+    writeAmount(CodedOutputStream output, MonetaryAmount amount)
+            throws IOException {
+        int numericCode = ISO4712Codes.getNumericCode(amount.getCurrency());
+        if (numericCode < 0) {
+            throw new IllegalArgumentException("No ISO4217 numeric code for " + amount.getCurrency());
+        }
+        output.writeUInt32NoTag(numericCode);
+        output.writeSInt64NoTag(amount.longValue());
+    }
+
+    private static MonetaryAmount
+    readAmount(CodedInputStream input)
+            throws IOException {
+        int numericCode = input.readUInt32();
+        Currency currency = ISO4712Codes.getCurrency(numericCode);
+        if (currency == null) {
+            throw new IllegalArgumentException("Unknown ISO4217 numeric currency code: " + numericCode);
+        }
+        return new MonetaryAmount(currency, input.readSInt64());
+    }
+
+    private static void
+    writeIdentity(CodedOutputStream output, Identity identity)
+            throws IOException {
+        if (identity == null) {
+            output.writeUInt32NoTag(NULL);
+        } else if (identity instanceof MSISDN) {
+            output.writeUInt32NoTag(MSISDN_TAG);
+            output.writeUInt64NoTag(((MSISDN) identity).longValue());
+        } else if (identity instanceof GUID) {
+            output.writeUInt32NoTag(GUID_TAG);
+            String hex = identity.externalForm();
+            if (hex.length() != 32) {
+                throw new IllegalArgumentException("GUID is not 32 hex digits: " + hex);
+            }
+            output.writeFixed64NoTag(parseHex(hex, 0));
+            output.writeFixed64NoTag(parseHex(hex, 16));
+        } else if (identity instanceof IBAN) {
+            output.writeUInt32NoTag(IBAN_TAG);
+            output.writeStringNoTag(identity.externalForm());
+        } else if (identity instanceof ISO7812) {
+            output.writeUInt32NoTag(ISO7812_TAG);
+            output.writeUInt64NoTag(((ISO7812) identity).longValue());
+        } else if (identity instanceof DUNS) {
+            output.writeUInt32NoTag(DUNS_TAG);
+            output.writeUInt32NoTag((int) ((DUNS) identity).intValue());
+        } else if (identity instanceof EWalletAccountNumber) {
+            output.writeUInt32NoTag(EWALLET_NUMBER);
+            output.writeUInt64NoTag(Long.parseLong(identity.externalForm()));
+        } else if (identity instanceof PersonalName) {
+            String[] elements = ((PersonalName) identity).getNameElements();
+            output.writeUInt32NoTag(PERSONAL_NAME);
+            output.writeUInt32NoTag(elements.length);
+            for (String element : elements) {
+                output.writeStringNoTag(element);
+            }
+        } else if (identity instanceof BBAN && identity.getClass() == BBAN.class) {
+            output.writeUInt32NoTag(BBAN_TAG);
+            output.writeStringNoTag(identity.externalForm());
+        } else if (identity.getClass() == ReferenceCode.class) {
+            output.writeUInt32NoTag(REFERENCE_CODE);
+            output.writeStringNoTag(identity.externalForm());
+        } else {
+            throw unsupported(identity);
+        }
+    }
+
+    private static Identity
+    readIdentity(CodedInputStream input)
+            throws IOException {
+        return readIdentity(input.readUInt32(), input);
+    }
+
+    private static Identity
+    readIdentity(int tag, CodedInputStream input)
+            throws IOException {
+        switch (tag) {
+            case NULL:
+                return null;
+            case MSISDN_TAG:
+                return MSISDN.valueOf(input.readUInt64());
+            case GUID_TAG: {
+                char[] hex = new char[32];
+                formatHex(input.readFixed64(), hex, 0);
+                formatHex(input.readFixed64(), hex, 16);
+                return GUID.parse(new String(hex));
+            }
+            case IBAN_TAG:
+                return IBAN.parse(input.readString());
+            case ISO7812_TAG:
+                return new ISO7812(input.readUInt64());
+            case DUNS_TAG:
+                return DUNS.valueOf(input.readUInt32());
+            case REFERENCE_CODE:
+                return new ReferenceCode(input.readString());
+            case EWALLET_NUMBER:
+                return new EWalletAccountNumber(MSISDN.valueOf(input.readUInt64()));
+            case PERSONAL_NAME: {
+                int count = readCount(input);
+                List<String> elements = new ArrayList<>(Math.min(count, 16));
+                for (int i = 0; i < count; i++) {
+                    elements.add(input.readString());
+                }
+                return new PersonalName(elements.toArray(new String[count]));
+            }
+            case BBAN_TAG:
+                return new BBAN(input.readString());
+            default:
+                throw new IllegalArgumentException("Unknown type tag: " + tag);
+        }
+    }
+
+    private static void
+    writeParty(CodedOutputStream output, Party party)
+            throws IOException {
+        if (party instanceof Individual) {
+            Individual individual = (Individual) party;
+            output.writeUInt32NoTag(INDIVIDUAL);
+            writeIdentity(output, individual.getName());
+            writeIdentity(output, individual.getId());
+        } else if (party != null && (party.getClass() == Organization.class
+                || party.getClass() == FinancialInstitution.class)) {
+            output.writeUInt32NoTag(party instanceof FinancialInstitution ? FINANCIAL_INSTITUTION : ORGANIZATION);
+            writeIdentity(output, party.getId());
+            writeString(output, party.getCommonName());
+        } else {
+            throw unsupported(party);
+        }
+    }
+
+    private static Party
+    readParty(CodedInputStream input)
+            throws IOException {
+        int tag = input.readUInt32();
+        switch (tag) {
+            case INDIVIDUAL: {
+                PersonalName name = as(PersonalName.class, readIdentity(input));
+                return new Individual(name, readIdentity(input));
+            }
+            case ORGANIZATION: {
+                Identity identity = readIdentity(input);
+                return new Organization(identity, readString(input));
+            }
+            case FINANCIAL_INSTITUTION: {
+                Identity identity = readIdentity(input);
+                return new FinancialInstitution(identity, readString(input));
+            }
+            default:
+                throw new IllegalArgumentException("Unknown party type tag: " + tag);
+        }
+    }
+
+    private static void
+    writeRole(CodedOutputStream output, PartyRole role)
+            throws IOException {
+        if (role instanceof Subscriber) {
+            output.writeUInt32NoTag(SUBSCRIBER);
+            writeParty(output, role.getActor());
+        } else if (role instanceof Agent) {
+            output.writeUInt32NoTag(AGENT);
+            writeParty(output, role.getActor());
+            writeParty(output, ((Agent) role).getPrincipal());
+        } else {
+            throw unsupported(role);
+        }
+    }
+
+    private static PartyRole
+    readRole(CodedInputStream input)
+            throws IOException {
+        int tag = input.readUInt32();
+        switch (tag) {
+            case SUBSCRIBER:
+                return new Subscriber(as(Individual.class, readParty(input)));
+            case AGENT: {
+                Party actor = readParty(input);
+                return new Agent(actor, as(Organization.class, readParty(input)));
+            }
+            default:
+                throw new IllegalArgumentException("Unknown party role type tag: " + tag);
+        }
+    }
+
+    private static void
+    writeChannel(CodedOutputStream output, Channel channel)
+            throws IOException {
+        if (channel.getClass() == SMSChannel.class) {
+            output.writeUInt32NoTag(SMS_CHANNEL);
+            writeRole(output, channel.getAgent());
+            writeIdentity(output, channel.getIdentity());
+        } else if (channel.getClass() == MPChannel.class) {
+            output.writeUInt32NoTag(MP_CHANNEL);
+            writeIdentity(output, channel.getIdentity());
+        } else if (channel.getClass() == WebChannel.class) {
+            output.writeUInt32NoTag(WEB_CHANNEL);
+            writeRole(output, channel.getAgent());
+            InetAddress address = ((WebChannel) channel).getAddress();
+            output.writeBytesNoTag(address == null ? ByteString.EMPTY : ByteString.copyFrom(address.getAddress()));
+        } else if (channel.getClass() == Channel.class) {
+            output.writeUInt32NoTag(CHANNEL);
+            writeRole(output, channel.getAgent());
+            writeIdentity(output, channel.getIdentity());
+        } else {
+            throw unsupported(channel);
+        }
+    }
+
+    private static Channel
+    readChannel(CodedInputStream input)
+            throws IOException {
+        int tag = input.readUInt32();
+        switch (tag) {
+            case SMS_CHANNEL: {
+                Subscriber sender = as(Subscriber.class, readRole(input));
+                return new SMSChannel(sender, readIdentity(input));
+            }
+            case MP_CHANNEL:
+                return new MPChannel(readIdentity(input));
+            case WEB_CHANNEL: {
+                PartyRole agent = readRole(input);
+                byte[] address = input.readBytes().toByteArray();
+                try {
+                    return new WebChannel(agent, address.length == 0 ? null : InetAddress.getByAddress(address));
+                } catch (UnknownHostException e) {
+                    throw new IllegalArgumentException("Invalid web channel address", e);
+                }
+            }
+            case CHANNEL: {
+                PartyRole agent = readRole(input);
+                return new Channel(agent, readIdentity(input));
+            }
+            default:
+                throw new IllegalArgumentException("Unknown channel type tag: " + tag);
+        }
+    }
+
+    private static void
+    writeTransaction(CodedOutputStream output, FinancialTransaction transaction)
+            throws IOException {
+        writeIdentity(output, transaction.getIdentity());
+        writeAccount(output, transaction.getDebitInstrument());
+        writeAmount(output, transaction.getAmount());
+        writeAccount(output, transaction.getCreditInstrument());
+    }
+
+    private static FinancialTransaction
+    readTransaction(CodedInputStream input)
+            throws IOException {
+        Identity identity = readIdentity(input);
+        Account debitAccount = readAccount(input);
+        MonetaryAmount amount = readAmount(input);
+        return new FinancialTransaction(identity, debitAccount, amount, readAccount(input));
+    }
+
+    private static void
+    writeAccount(CodedOutputStream output, Account account)
+            throws IOException {
+        if (account.getClass() == ElectronicWallet.class) {
+            output.writeUInt32NoTag(ELECTRONIC_WALLET);
+            writeAmount(output, account.getBalance());
+            writeParty(output, account.getHolder());
+            writeParty(output, account.getProvider());
+        } else if (account instanceof CreditCard) {
+            output.writeUInt32NoTag(CREDIT_CARD);
+            writeAmount(output, account.getBalance());
+            writeParty(output, account.getHolder());
+            writeIdentity(output, account.getIdentifier());
+        } else if (account.getClass() == BankAccount.class) {
+            output.writeUInt32NoTag(BANK_ACCOUNT);
+            writeAmount(output, account.getBalance());
+            writeParty(output, account.getHolder());
+            writeParty(output, account.getProvider());
+            writeIdentity(output, account.getIdentifier());
+        } else {
+            throw unsupported(account);
+        }
+    }
+
+    private static Account
+    readAccount(CodedInputStream input)
+            throws IOException {
+        int tag = input.readUInt32();
+        MonetaryAmount balance = readAmount(input);
+        Currency currency = balance.getCurrency();
+        Account result;
+        switch (tag) {
+            case ELECTRONIC_WALLET: {
+                Party holder = readParty(input);
+                result = new ElectronicWallet(holder, as(Organization.class, readParty(input)), currency);
+                break;
+            }
+            case CREDIT_CARD: {
+                Party holder = readParty(input);
+                result = new CreditCard(holder, currency, as(ISO7812.class, readIdentity(input)));
+                break;
+            }
+            case BANK_ACCOUNT: {
+                Party holder = readParty(input);
+                FinancialInstitution provider = as(FinancialInstitution.class, readParty(input));
+                result = new BankAccount(holder, provider, as(AccountNumber.class, readIdentity(input)), currency);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown account type tag: " + tag);
+        }
+        result.setBalance(balance);
+        return result;
+    }
+
+    private static void
+    writeInstrument(CodedOutputStream output, Instrument instrument)
+            throws IOException {
+        if (instrument.getClass() != AccountInstrument.class) {
+            throw unsupported(instrument);
+        }
+        output.writeUInt32NoTag(ACCOUNT_INSTRUMENT);
+        writeParty(output, instrument.getHolder());
+        writeIdentity(output, instrument.getIdentifier());
+    }
+
+    private static Instrument
+    readInstrument(CodedInputStream input)
+            throws IOException {
+        int tag = input.readUInt32();
+        if (tag != ACCOUNT_INSTRUMENT) {
+            throw new IllegalArgumentException("Unknown instrument type tag: " + tag);
+        }
+        Party holder = readParty(input);
+        return new AccountInstrument(holder, as(AccountNumber.class, readIdentity(input)));
+    }
+
+    private static void
+    writeTimestamp(CodedOutputStream output, long timestamp)
+            throws IOException {
+        output.writeSInt64NoTag(timestamp);
+    }
+
+    private static void
+    writeString(CodedOutputStream output, String value)
+            throws IOException {
+        output.writeBoolNoTag(value != null);
+        if (value != null) {
+            output.writeStringNoTag(value);
+        }
+    }
+
+    private static String
+    readString(CodedInputStream input)
+            throws IOException {
+        return input.readBool() == true ? input.readString() : null;
+    }
+
+    /*
+     * Read a count of the elements that follow, each of which takes at least one byte, so
+     * a count larger than the bytes remaining in the message must be malformed
+     */
+    private static int
+    readCount(CodedInputStream input)
+            throws IOException {
+        int count = input.readUInt32();
+        int remaining = input.getBytesUntilLimit();
+        if (count < 0 || (remaining >= 0 && count > remaining)) {
+            throw new IllegalArgumentException("Invalid element count: " + (count & 0xFFFFFFFFL));
+        }
+        return count;
+    }
+
+    // the value read (which may be null), if it is of the type expected in its position
+    private static <T> T
+    as(Class<T> type, Object value) {
+        if (value != null && type.isInstance(value) == false) {
+            throw new IllegalArgumentException("Expected " + type.getSimpleName()
+                    + ", but message contains " + value.getClass().getSimpleName());
+        }
+        return type.cast(value);
+    }
+
+    private static long
+    parseHex(String hex, int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("GUID is not 32 hex digits: " + hex);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    private static void
+    formatHex(long value, char[] target, int offset) {
+        for (int i = offset + 15; i >= offset; i--) {
+            target[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static IllegalArgumentException
+    unsupported(Object value) {
+        return new IllegalArgumentException("Cannot encode values of type "
+                + (value == null ? "null" : value.getClass().getName()));
+    }
+}
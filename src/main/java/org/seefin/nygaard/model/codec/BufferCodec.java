@@ -0,0 +1,79 @@
+package org.seefin.nygaard.model.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Service provider interface for encoding values of one type directly into, and decoding
+ * them directly from, a {@link ByteBuffer}, without creating intermediate Strings
+ * <p/>
+ * Each value type has two encoded forms:
+ * <ul>
+ * <li>ASCII: the characters of the value's external form (e.g., <code>+353863001234</code>,
+ * <code>EUR10.50</code>), one byte per character; this form is not self-delimiting, so
+ * the caller supplies the length when decoding (e.g., from a field delimiter or length prefix)</li>
+ * <li>packed: the essential state of the value, in a fixed or length-prefixed binary form
+ * that is self-delimiting</li>
+ * </ul>
+ * Writes and reads are relative, starting at the buffer's position and advancing it past
+ * the encoded value; the standard <code>BufferOverflowException</code> and
+ * <code>BufferUnderflowException</code> signal a buffer too small for the value.
+ * Implementations are stateless, and so may be shared between threads
+ * <p/>
+ * The codecs for the model's identifier and amount types are available from
+ * {@link BufferCodecs}; codecs for other types may be provided by listing their
+ * implementation classes in <code>META-INF/services/org.seefin.nygaard.model.codec.BufferCodec</code>
+ *
+ * @param <T> type of value encoded
+ * @author phillipsr
+ */
+public interface BufferCodec<T> {
+    /**
+     * @return the class of the values encoded by this codec
+     */
+    Class<T> getType();
+
+    /**
+     * @param value to be measured
+     * @return the number of bytes in the ASCII form of <code>value</code>
+     */
+    int asciiLength(T value);
+
+    /**
+     * Write the ASCII form of the value supplied into <code>target</code>
+     *
+     * @param value  to be encoded
+     * @param target buffer receiving the encoded value
+     * @throws java.nio.BufferOverflowException if there is insufficient space remaining in the buffer
+     */
+    void writeAscii(T value, ByteBuffer target);
+
+    /**
+     * Read a value from its ASCII form, occupying the next <code>length</code> bytes of <code>source</code>
+     *
+     * @param source buffer containing the encoded value
+     * @param length number of bytes in the encoded value
+     * @return the decoded value
+     * @throws IllegalArgumentException          if the bytes do not represent a valid value
+     * @throws java.nio.BufferUnderflowException if fewer than <code>length</code> bytes remain in the buffer
+     */
+    T readAscii(ByteBuffer source, int length);
+
+    /**
+     * Write the packed binary form of the value supplied into <code>target</code>
+     *
+     * @param value  to be encoded
+     * @param target buffer receiving the encoded value
+     * @throws java.nio.BufferOverflowException if there is insufficient space remaining in the buffer
+     */
+    void writePacked(T value, ByteBuffer target);
+
+    /**
+     * Read a value from its packed binary form, at the position of <code>source</code>
+     *
+     * @param source buffer containing the encoded value
+     * @return the decoded value
+     * @throws IllegalArgumentException          if the bytes do not represent a valid value
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a whole encoded value
+     */
+    T readPacked(ByteBuffer source);
+}
@@ -0,0 +1,650 @@
+package org.seefin.nygaard.model.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.seefin.nygaard.model.financial.ISO4712Codes;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.locations.ZipCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * {@link BufferCodec} implementations for the model's identifier and amount types, and the
+ * registry through which the codec for a type is found
+ * <p/>
+ * The encoded forms are:
+ * <table>
+ * <tr><th>type</th><th>ASCII</th><th>packed</th></tr>
+ * <tr><td>MSISDN</td><td><code>+353863001234</code></td><td>8-byte number</td></tr>
+ * <tr><td>ISO7812</td><td><code>4111111111111111</code></td><td>8-byte number</td></tr>
+ * <tr><td>DUNS</td><td><code>039189524</code></td><td>4-byte number</td></tr>
+ * <tr><td>ZipCode</td><td><code>02134</code></td><td>4-byte number</td></tr>
+ * <tr><td>GUID</td><td>32 hex digits</td><td>two 8-byte numbers</td></tr>
+ * <tr><td>IBAN</td><td><code>IE29AIBK93115212345678</code></td><td>1-byte length plus ASCII form</td></tr>
+ * <tr><td>MonetaryAmount</td><td><code>EUR-10.50</code></td><td>2-byte ISO4217 numeric code
+ * plus 8-byte minor-unit value</td></tr>
+ * </table>
+ * Multi-byte numbers are written in the byte order of the buffer. Decoding re-creates values
+ * through their public constructors and factory methods, so the class invariants (and registered
+ * schemes) of each type are enforced on receipt
+ *
+ * @author phillipsr
+ */
+public final class BufferCodecs {
+    private static final Logger log = LoggerFactory.getLogger(BufferCodecs.class);
+
+    public static final BufferCodec<MSISDN> MSISDN_CODEC = new MSISDNCodec();
+    public static final BufferCodec<ISO7812> ISO7812_CODEC = new ISO7812Codec();
+    public static final BufferCodec<DUNS> DUNS_CODEC = new DUNSCodec();
+    public static final BufferCodec<ZipCode> ZIP_CODE_CODEC = new ZipCodeCodec();
+    public static final BufferCodec<GUID> GUID_CODEC = new GUIDCodec();
+    public static final BufferCodec<IBAN> IBAN_CODEC = new IBANCodec();
+    public static final BufferCodec<MonetaryAmount> MONETARY_AMOUNT_CODEC = new MonetaryAmountCodec();
+
+    private static final int GUID_DIGITS = 32;
+    private static final int MAX_IBAN_LENGTH = 34;
+    // digits in Long.MAX_VALUE
+    private static final int MAX_DIGITS = 19;
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private static final Map<Class<?>, BufferCodec<?>> codecs;
+
+    static {
+        Map<Class<?>, BufferCodec<?>> registry = new HashMap<>();
+        for (BufferCodec<?> codec : new BufferCodec<?>[]{MSISDN_CODEC, ISO7812_CODEC, DUNS_CODEC,
+                ZIP_CODE_CODEC, GUID_CODEC, IBAN_CODEC, MONETARY_AMOUNT_CODEC}) {
+            registry.put(codec.getType(), codec);
+        }
+        for (BufferCodec<?> codec : ServiceLoader.load(BufferCodec.class)) {
+            log.info("Registering buffer codec {} for {}", codec.getClass().getName(), codec.getType().getName());
+            registry.put(codec.getType(), codec);
+        }
+        codecs = Collections.unmodifiableMap(registry);
+    }
+
+    private BufferCodecs() {
+    }
+
+    /**
+     * @param type of value to be encoded
+     * @return the codec registered for the type supplied
+     * @throws IllegalArgumentException if no codec is registered for the type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BufferCodec<T>
+    forType(Class<T> type) {
+        BufferCodec<T> result = (BufferCodec<T>) codecs.get(type);
+        if (result == null) {
+            throw new IllegalArgumentException("No buffer codec registered for "
+                    + (type == null ? "null" : type.getName()));
+        }
+        return result;
+    }
+
+    /**
+     * @param type of value to be encoded
+     * @return true if a codec is registered for the type supplied
+     */
+    public static boolean
+    isSupported(Class<?> type) {
+        return codecs.containsKey(type);
+    }
+
+    private static final class MSISDNCodec
+            implements BufferCodec<MSISDN> {
+        @Override
+        public Class<MSISDN> getType() {
+            return MSISDN.class;
+        }
+
+        @Override
+        public int asciiLength(MSISDN value) {
+            return 1 + digitCount(value.longValue());
+        }
+
+        @Override
+        public void writeAscii(MSISDN value, ByteBuffer target) {
+            long number = value.longValue();
+            ensureRemaining(target, 1 + digitCount(number));
+            target.put((byte) '+');
+            putDigits(number, digitCount(number), target);
+        }
+
+        @Override
+        public MSISDN readAscii(ByteBuffer source, int length) {
+            ensureAvailable(source, length);
+            if (length > 0 && source.get(source.position()) == '+') {
+                source.get();
+                length--;
+            }
+            return MSISDN.valueOf(getDigits(source, length));
+        }
+
+        @Override
+        public void writePacked(MSISDN value, ByteBuffer target) {
+            target.putLong(value.longValue());
+        }
+
+        @Override
+        public MSISDN readPacked(ByteBuffer source) {
+            return MSISDN.valueOf(source.getLong());
+        }
+    }
+
+    private static final class ISO7812Codec
+            implements BufferCodec<ISO7812> {
+        @Override
+        public Class<ISO7812> getType() {
+            return ISO7812.class;
+        }
+
+        @Override
+        public int asciiLength(ISO7812 value) {
+            return digitCount(value.longValue());
+        }
+
+        @Override
+        public void writeAscii(ISO7812 value, ByteBuffer target) {
+            long number = value.longValue();
+            putDigits(number, digitCount(number), target);
+        }
+
+        @Override
+        public ISO7812 readAscii(ByteBuffer source, int length) {
+            return new ISO7812(getDigits(source, length));
+        }
+
+        @Override
+        public void writePacked(ISO7812 value, ByteBuffer target) {
+            target.putLong(value.longValue());
+        }
+
+        @Override
+        public ISO7812 readPacked(ByteBuffer source) {
+            return new ISO7812(source.getLong());
+        }
+    }
+
+    private static final class DUNSCodec
+            implements BufferCodec<DUNS> {
+        @Override
+        public Class<DUNS> getType() {
+            return DUNS.class;
+        }
+
+        @Override
+        public int asciiLength(DUNS value) {
+            return DUNS.DIGITS;
+        }
+
+        @Override
+        public void writeAscii(DUNS value, ByteBuffer target) {
+            long number = value.intValue();
+            if (number < 0 || digitCount(number) > DUNS.DIGITS) {
+                throw new IllegalArgumentException("DUNS number is not " + DUNS.DIGITS + " digits: " + number);
+            }
+            putDigits(number, DUNS.DIGITS, target);
+        }
+
+        @Override
+        public DUNS readAscii(ByteBuffer source, int length) {
+            if (length != DUNS.DIGITS) {
+                throw new IllegalArgumentException("DUNS number must be " + DUNS.DIGITS + " digits, length=" + length);
+            }
+            return DUNS.valueOf((int) getDigits(source, length));
+        }
+
+        @Override
+        public void writePacked(DUNS value, ByteBuffer target) {
+            target.putInt((int) value.intValue());
+        }
+
+        @Override
+        public DUNS readPacked(ByteBuffer source) {
+            return DUNS.valueOf(source.getInt());
+        }
+    }
+
+    private static final class ZipCodeCodec
+            implements BufferCodec<ZipCode> {
+        @Override
+        public Class<ZipCode> getType() {
+            return ZipCode.class;
+        }
+
+        @Override
+        public int asciiLength(ZipCode value) {
+            return ZipCode.DIGITS;
+        }
+
+        @Override
+        public void writeAscii(ZipCode value, ByteBuffer target) {
+            putDigits(value.intValue(), ZipCode.DIGITS, target);
+        }
+
+        @Override
+        public ZipCode readAscii(ByteBuffer source, int length) {
+            if (length != ZipCode.DIGITS) {
+                throw new IllegalArgumentException("ZipCode must be " + ZipCode.DIGITS + " digits, length=" + length);
+            }
+            return new ZipCode((int) getDigits(source, length));
+        }
+
+        @Override
+        public void writePacked(ZipCode value, ByteBuffer target) {
+            target.putInt(value.intValue());
+        }
+
+        @Override
+        public ZipCode readPacked(ByteBuffer source) {
+            return new ZipCode(source.getInt());
+        }
+    }
+
+    private static final class GUIDCodec
+            implements BufferCodec<GUID> {
+        @Override
+        public Class<GUID> getType() {
+            return GUID.class;
+        }
+
+        @Override
+        public int asciiLength(GUID value) {
+            return GUID_DIGITS;
+        }
+
+        @Override
+        public void writeAscii(GUID value, ByteBuffer target) {
+            String hex = checkGUID(value);
+            ensureRemaining(target, GUID_DIGITS);
+            for (int i = 0; i < GUID_DIGITS; i++) {
+                target.put((byte) hex.charAt(i));
+            }
+        }
+
+        @Override
+        public GUID readAscii(ByteBuffer source, int length) {
+            if (length != GUID_DIGITS) {
+                throw new IllegalArgumentException("GUID must be " + GUID_DIGITS + " hex digits, length=" + length);
+            }
+            ensureAvailable(source, length);
+            char[] hex = new char[GUID_DIGITS];
+            for (int i = 0; i < GUID_DIGITS; i++) {
+                byte digit = source.get();
+                if (Character.digit(digit, 16) < 0) {
+                    skip(source, GUID_DIGITS - i - 1);
+                    throw new IllegalArgumentException("GUID contains a non-hex digit: " + (char) digit);
+                }
+                hex[i] = (char) digit;
+            }
+            return GUID.parse(new String(hex));
+        }
+
+        @Override
+        public void writePacked(GUID value, ByteBuffer target) {
+            String hex = checkGUID(value);
+            ensureRemaining(target, 16);
+            target.putLong(parseHex(hex, 0));
+            target.putLong(parseHex(hex, 16));
+        }
+
+        @Override
+        public GUID readPacked(ByteBuffer source) {
+            long high = source.getLong();
+            long low = source.getLong();
+            char[] hex = new char[GUID_DIGITS];
+            formatHex(high, hex, 0);
+            formatHex(low, hex, 16);
+            return GUID.parse(new String(hex));
+        }
+
+        private static String
+        checkGUID(GUID value) {
+            String hex = value.externalForm();
+            if (hex.length() != GUID_DIGITS) {
+                throw new IllegalArgumentException("GUID is not " + GUID_DIGITS + " hex digits: " + hex);
+            }
+            return hex;
+        }
+
+        private static long
+        parseHex(String hex, int offset) {
+            long result = 0;
+            for (int i = offset; i < offset + 16; i++) {
+                int digit = Character.digit(hex.charAt(i), 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("GUID is not " + GUID_DIGITS + " hex digits: " + hex);
+                }
+                result = (result << 4) | digit;
+            }
+            return result;
+        }
+
+        private static void
+        formatHex(long value, char[] target, int offset) {
+            for (int i = offset + 15; i >= offset; i--) {
+                target[i] = (char) HEX[(int) (value & 0xF)];
+                value >>>= 4;
+            }
+        }
+    }
+
+    private static final class IBANCodec
+            implements BufferCodec<IBAN> {
+        @Override
+        public Class<IBAN> getType() {
+            return IBAN.class;
+        }
+
+        @Override
+        public int asciiLength(IBAN value) {
+            return value.length();
+        }
+
+        @Override
+        public void writeAscii(IBAN value, ByteBuffer target) {
+            ensureRemaining(target, value.length());
+            putBytes(value, target);
+        }
+
+        @Override
+        public IBAN readAscii(ByteBuffer source, int length) {
+            if (length < 1 || length > MAX_IBAN_LENGTH) {
+                throw new IllegalArgumentException("IBAN length must be 1.." + MAX_IBAN_LENGTH + ", length=" + length);
+            }
+            ensureAvailable(source, length);
+            char[] code = new char[length];
+            for (int i = 0; i < length; i++) {
+                code[i] = (char) (source.get() & 0xFF);
+            }
+            return IBAN.parse(new String(code));
+        }
+
+        @Override
+        public void writePacked(IBAN value, ByteBuffer target) {
+            ensureRemaining(target, 1 + value.length());
+            target.put((byte) value.length());
+            putBytes(value, target);
+        }
+
+        private static void
+        putBytes(IBAN value, ByteBuffer target) {
+            for (int i = 0; i < value.length(); i++) {
+                target.put(value.byteAt(i));
+            }
+        }
+
+        @Override
+        public IBAN readPacked(ByteBuffer source) {
+            return readAscii(source, source.get() & 0xFF);
+        }
+    }
+
+    private static final class MonetaryAmountCodec
+            implements BufferCodec<MonetaryAmount> {
+        private static final int CODE_LENGTH = 3;
+
+        @Override
+        public Class<MonetaryAmount> getType() {
+            return MonetaryAmount.class;
+        }
+
+        @Override
+        public int asciiLength(MonetaryAmount value) {
+            return CODE_LENGTH + decimalLength(value.longValue(), fractionDigits(value.getCurrency()));
+        }
+
+        @Override
+        public void writeAscii(MonetaryAmount value, ByteBuffer target) {
+            long minorUnits = value.longValue();
+            int fractionDigits = fractionDigits(value.getCurrency());
+            int length = decimalLength(minorUnits, fractionDigits);
+            ensureRemaining(target, CODE_LENGTH + length);
+            putChars(value.getCurrency().getCurrencyCode(), target);
+
+            // write the digits from the right, accumulating the value as a negative
+            // number, as the magnitude of Long.MIN_VALUE is not representable
+            int start = target.position();
+            int index = start + length - 1;
+            long remaining = minorUnits < 0 ? minorUnits : -minorUnits;
+            int written = 0;
+            do {
+                if (fractionDigits > 0 && written == fractionDigits) {
+                    target.put(index--, (byte) '.');
+                }
+                target.put(index--, (byte) ('0' - remaining % 10));
+                remaining /= 10;
+                written++;
+            } while (remaining != 0 || written <= fractionDigits);
+            if (minorUnits < 0) {
+                target.put(index, (byte) '-');
+            }
+            target.position(start + length);
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p/>
+         * As for {@link MonetaryAmount#parse(String)}, spaces are ignored and a value having more
+         * fraction digits than the currency uses is rounded using banker's rounding (HALF_EVEN)
+         */
+        @Override
+        public MonetaryAmount readAscii(ByteBuffer source, int length) {
+            if (length <= CODE_LENGTH) {
+                throw new IllegalArgumentException(
+                        "Invalid currencyAndValue: should be CCC9... (ISO4217 code plus number), length=" + length);
+            }
+            ensureAvailable(source, length);
+            char first = (char) source.get();
+            char second = (char) source.get();
+            char third = (char) source.get();
+            Currency currency = ISO4712Codes.getCurrency(ISO4712Codes.getNumericCode(first, second, third));
+            if (currency == null) {
+                skip(source, length - CODE_LENGTH);
+                throw new IllegalArgumentException("Unknown ISO4217 currency code: " + first + second + third);
+            }
+            int fractionDigits = fractionDigits(currency);
+
+            long result = 0;
+            int digits = 0;
+            int fraction = -1;         // number of fraction digits kept, or -1 before the point
+            int dropped = -1;          // first fraction digit beyond the currency's precision
+            boolean sticky = false;    // any non-zero digit after the dropped digit
+            boolean negative = false;
+            boolean signed = false;
+            for (int i = CODE_LENGTH; i < length; i++) {
+                byte b = source.get();
+                if (b == ' ') {
+                    continue;
+                }
+                if ((b == '-' || b == '+') && signed == false && digits == 0 && fraction < 0) {
+                    signed = true;
+                    negative = b == '-';
+                } else if (b == '.' && fraction < 0) {
+                    fraction = 0;
+                } else if (b >= '0' && b <= '9') {
+                    int digit = b - '0';
+                    if (fraction >= fractionDigits) {
+                        if (dropped < 0) {
+                            dropped = digit;
+                        } else if (digit != 0) {
+                            sticky = true;
+                        }
+                    } else {
+                        result = appendDigit(result, digit);
+                        if (fraction >= 0) {
+                            fraction++;
+                        }
+                    }
+                    digits++;
+                } else {
+                    skip(source, length - i - 1);
+                    throw new IllegalArgumentException("Invalid character in monetary amount: " + (char) b);
+                }
+            }
+            if (digits == 0) {
+                throw new IllegalArgumentException("Monetary amount has no digits");
+            }
+            for (fraction = Math.max(fraction, 0); fraction < fractionDigits; fraction++) {
+                result = appendDigit(result, 0);
+            }
+            if (dropped > 5 || (dropped == 5 && (sticky == true || (result & 1) == 1))) {
+                result++;
+            }
+            return new MonetaryAmount(currency, negative == true ? -result : result);
+        }
+
+        @Override
+        public void writePacked(MonetaryAmount value, ByteBuffer target) {
+            int numericCode = ISO4712Codes.getNumericCode(value.getCurrency());
+            if (numericCode < 0) {
+                throw new IllegalArgumentException("No ISO4217 numeric code for " + value.getCurrency());
+            }
+            ensureRemaining(target, 10);
+            target.putShort((short) numericCode);
+            target.putLong(value.longValue());
+        }
+
+        @Override
+        public MonetaryAmount readPacked(ByteBuffer source) {
+            int numericCode = source.getShort();
+            long minorUnits = source.getLong();
+            Currency currency = ISO4712Codes.getCurrency(numericCode);
+            if (currency == null) {
+                throw new IllegalArgumentException("Unknown ISO4217 numeric currency code: " + numericCode);
+            }
+            return new MonetaryAmount(currency, minorUnits);
+        }
+
+        private static int
+        fractionDigits(Currency currency) {
+            // pseudo-currencies (e.g., XAU) have no default fraction digits
+            return Math.max(currency.getDefaultFractionDigits(), 0);
+        }
+
+        /**
+         * @return the number of characters in the decimal form of the minor-unit value supplied
+         */
+        private static int
+        decimalLength(long minorUnits, int fractionDigits) {
+            int digits = Math.max(digitCount(minorUnits), fractionDigits + 1);
+            return digits + (fractionDigits > 0 ? 1 : 0) + (minorUnits < 0 ? 1 : 0);
+        }
+
+        private static long
+        appendDigit(long value, int digit) {
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw new IllegalArgumentException("Monetary amount too large");
+            }
+            return value * 10 + digit;
+        }
+    }
+
+    /**
+     * @return the number of decimal digits in the magnitude of the number supplied
+     */
+    static int
+    digitCount(long number) {
+        long remaining = number < 0 ? number : -number;
+        int result = 1;
+        while (remaining <= -10) {
+            remaining /= 10;
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Write the non-negative number supplied as exactly <code>digits</code> ASCII decimal digits,
+     * padded with leading zeros
+     */
+    private static void
+    putDigits(long number, int digits, ByteBuffer target) {
+        ensureRemaining(target, digits);
+        int start = target.position();
+        for (int index = start + digits - 1; index >= start; index--) {
+            target.put(index, (byte) ('0' + number % 10));
+            number /= 10;
+        }
+        target.position(start + digits);
+    }
+
+    /**
+     * Read a non-negative number from the next <code>length</code> bytes of the buffer,
+     * which must all be ASCII decimal digits
+     */
+    private static long
+    getDigits(ByteBuffer source, int length) {
+        if (length < 1 || length > MAX_DIGITS) {
+            throw new IllegalArgumentException("Number must have 1.." + MAX_DIGITS + " digits, length=" + length);
+        }
+        ensureAvailable(source, length);
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            byte digit = source.get();
+            if (digit < '0' || digit > '9') {
+                skip(source, length - i - 1);
+                throw new IllegalArgumentException("Invalid digit in number: " + (char) digit);
+            }
+            if (result > (Long.MAX_VALUE - (digit - '0')) / 10) {
+                skip(source, length - i - 1);
+                throw new IllegalArgumentException("Number too large");
+            }
+            result = result * 10 + (digit - '0');
+        }
+        return result;
+    }
+
+    private static void
+    putChars(String chars, ByteBuffer target) {
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c > 0x7F) {
+                throw new IllegalArgumentException("Value contains a non-ASCII character: " + chars);
+            }
+            target.put((byte) c);
+        }
+    }
+
+    /*
+     * Space is checked before writing anything, so a value is never partially written,
+     * and a rejected value is skipped on read, so the buffer remains positioned at
+     * the next value
+     */
+
+    private static void
+    ensureRemaining(ByteBuffer target, int length) {
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    private static void
+    ensureAvailable(ByteBuffer source, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative: " + length);
+        }
+        if (source.remaining() < length) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private static void
+    skip(ByteBuffer source, int length) {
+        source.position(source.position() + length);
+    }
+}
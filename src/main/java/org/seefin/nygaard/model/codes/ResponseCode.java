@@ -1,11 +1,14 @@
 package org.seefin.nygaard.model.codes;
 
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Set of the standard response codes mapped for back-end services
+ * <p/>
+ * Codes are looked-up by number from an array covering the whole code space
+ * (<code>0..999</code>), and parsed directly from characters or bytes, so that decoding
+ * the response code of a back-end reply neither boxes nor allocates
  *
  * @author phillipsr
  */
@@ -73,18 +76,88 @@ public enum ResponseCode {
      */
     public static ResponseCode
     parse(String text) {
-        ResponseCode result = lookup.get(Integer.parseInt(text.trim()));
-        if (result == null) {
-            return null;
-        }
+        return parse((CharSequence) text);
+    }
 
-        return result;
+    /**
+     * @param text decimal representation of the code, optionally surrounded by whitespace
+     * @return the response code represented by <code>text</code>, or null if there is no
+     * response code with that value
+     * @throws NumberFormatException if the text is not a decimal number
+     */
+    public static ResponseCode
+    parse(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+            negative = text.charAt(start) == '-';
+            start++;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Response code must be numeric, was: [" + text + "]");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Response code must be numeric, was: [" + text + "]");
+            }
+            value = accumulate(value, c - '0');
+        }
+        return lookup(negative ? -value : value);
     }
 
+    /**
+     * @param bytes  containing the ASCII decimal representation of the code, optionally
+     *               surrounded by whitespace
+     * @param offset of the first byte of the code
+     * @param length number of bytes in the code
+     * @return the response code represented by the bytes, or null if there is no
+     * response code with that value
+     * @throws NumberFormatException if the bytes do not represent a decimal number
+     */
+    public static ResponseCode
+    parse(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", size=" + bytes.length);
+        }
+        int start = offset;
+        int end = offset + length;
+        while (start < end && bytes[start] >= 0 && bytes[start] <= ' ') {
+            start++;
+        }
+        while (end > start && bytes[end - 1] >= 0 && bytes[end - 1] <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (bytes[start] == '-' || bytes[start] == '+')) {
+            negative = bytes[start] == '-';
+            start++;
+        }
+        if (start == end) {
+            throw notNumeric(bytes, offset, length);
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b < '0' || b > '9') {
+                throw notNumeric(bytes, offset, length);
+            }
+            value = accumulate(value, b - '0');
+        }
+        return lookup(negative ? -value : value);
+    }
 
     public static ResponseCode
     valueOf(int code) {
-        ResponseCode result = lookup.get(code);
+        ResponseCode result = lookup(code);
         if (result == null) {
             throw new IllegalArgumentException(
                     "No enum " + ResponseCode.class.getCanonicalName() + "." + code);
@@ -93,11 +166,29 @@ public enum ResponseCode {
         return result;
     }
 
-    private static final Map<Integer, ResponseCode> lookup = new HashMap<>();
+    private static final int MAX_CODE = 999;
+    private static final ResponseCode[] byCode = new ResponseCode[MAX_CODE + 1];
 
     static {
         for (ResponseCode s : EnumSet.allOf(ResponseCode.class)) {
-            lookup.put(s.getCode(), s);
+            byCode[s.getCode()] = s;
         }
     }
+
+    private static ResponseCode
+    lookup(int code) {
+        return code >= 0 && code <= MAX_CODE ? byCode[code] : null;
+    }
+
+    // values beyond the code space stay beyond it, rather than overflowing
+    private static int
+    accumulate(int value, int digit) {
+        return value > MAX_CODE ? value : value * 10 + digit;
+    }
+
+    private static NumberFormatException
+    notNumeric(byte[] bytes, int offset, int length) {
+        return new NumberFormatException("Response code must be numeric, was: ["
+                + new String(bytes, offset, length, StandardCharsets.US_ASCII) + "]");
+    }
 }
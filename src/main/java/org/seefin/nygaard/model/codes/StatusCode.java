@@ -1,6 +1,9 @@
 package org.seefin.nygaard.model.codes;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Normalized response and error codes used in communication between MP and ARC
@@ -22,6 +25,10 @@ import java.io.Serializable;
  * RMMCCRRR
  * 21024126 or, formatted, 210-24-126
  * </pre>
+ * Status codes are immutable, and instances are shared: the factory methods answer the
+ * instance already created for a code where there is one, from a fixed-size, lock-free table,
+ * so that building a response does not create a new status code. The decoded parts of the
+ * code, and its formatted form, are computed once, when the instance is created
  *
  * @author phillipsr
  */
@@ -36,26 +43,61 @@ public final class StatusCode
     private static final int COMPONENT_FACTOR = 1000;
     private static final int MODULE_FACTOR = 100000;
     private static final int ZONE_FACTOR = 10000000;
+    private static final int FORMATTED_LENGTH = 10;
+
+    // shared instances: slots are claimed once, and never replaced or cleared
+    private static final int TABLE_SIZE = 4096;
+    private static final int MAX_PROBES = 8;
+    private static final AtomicReferenceArray<StatusCode> instances = new AtomicReferenceArray<>(TABLE_SIZE);
+
+    private static final long serialVersionUID = -7313790592283092778L;
+
     private final int code;
+    private final transient int zone;
+    private final transient int module;
+    private final transient int component;
+    private final transient int response;
+    private final transient String formatted;
 
     private StatusCode(int code) {
         this.code = code;
-        int zone = getZone();
+        this.zone = code / ZONE_FACTOR;
         if (zone <= 0 || zone > 9) {
             throw new IllegalArgumentException("zone# must be 1 .. 9 not " + zone);
         }
-        int module = getModule();
+        this.module = code / MODULE_FACTOR % 100;
         if (module <= 0 || module > 99) {
             throw new IllegalArgumentException("module# must be 1 .. 99 not " + module);
         }
-        int component = getComponent();
+        this.component = code / COMPONENT_FACTOR % 100;
         if (component <= 0 || component > 99) {
             throw new IllegalArgumentException("component# must be 1 .. 99 not " + component);
         }
-        int response = getResponse();
-        if (response < 0 || response > 999) {
-            throw new IllegalArgumentException("response code must be 0 .. 999 not " + response);
+        this.response = code % COMPONENT_FACTOR;
+        this.formatted = format();
+    }
+
+    /**
+     * @return the shared instance for the code supplied, created if necessary; if the
+     * table has no room for the code, a new, unshared instance is answered
+     */
+    private static StatusCode
+    intern(int code) {
+        int index = (code * 0x9E3779B9) >>> 20;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & (TABLE_SIZE - 1)) {
+            StatusCode existing = instances.get(index);
+            if (existing == null) {
+                StatusCode created = new StatusCode(code);
+                if (instances.compareAndSet(index, null, created) == true) {
+                    return created;
+                }
+                existing = instances.get(index);
+            }
+            if (existing.code == code) {
+                return existing;
+            }
         }
+        return new StatusCode(code);
     }
 
     public static int
@@ -88,7 +130,7 @@ public final class StatusCode
      */
     public static StatusCode
     createCode(int location, ResponseCode response) {
-        return new StatusCode(location * COMPONENT_FACTOR + response.getCode());
+        return intern(location * COMPONENT_FACTOR + response.getCode());
     }
 
     /**
@@ -114,9 +156,8 @@ public final class StatusCode
         if (response < 0 || response > 999) {
             throw new IllegalArgumentException("response code must be 0 .. 999 not " + response);
         }
-        return new StatusCode(
-                (zone * ZONE_FACTOR) + (module * MODULE_FACTOR)
-                        + (component * COMPONENT_FACTOR) + response);
+        return intern((zone * ZONE_FACTOR) + (module * MODULE_FACTOR)
+                + (component * COMPONENT_FACTOR) + response);
     }
 
     /**
@@ -127,7 +168,34 @@ public final class StatusCode
      */
     public static StatusCode
     createCode(int code) {
-        return new StatusCode(code);
+        return intern(code);
+    }
+
+    /**
+     * Parse a status code from its formatted representation
+     *
+     * @param text in the form <code>ZMM-CC-RRR</code>, e.g., <code>210-24-126</code>
+     * @return the StatusCode represented by <code>text</code>
+     * @throws IllegalArgumentException if the text is not a formatted status code
+     */
+    public static StatusCode
+    parse(CharSequence text) {
+        if (text == null || text.length() != FORMATTED_LENGTH
+                || text.charAt(3) != '-' || text.charAt(6) != '-') {
+            throw new IllegalArgumentException("Status code must be formatted as ZMM-CC-RRR, was: " + text);
+        }
+        int code = 0;
+        for (int i = 0; i < FORMATTED_LENGTH; i++) {
+            if (i == 3 || i == 6) {
+                continue;
+            }
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Status code must be formatted as ZMM-CC-RRR, was: " + text);
+            }
+            code = code * 10 + (c - '0');
+        }
+        return intern(code);
     }
 
     /**
@@ -141,37 +209,49 @@ public final class StatusCode
      * Answer with the Rail part of the response code
      */
     public int getZone() {
-        return code / ZONE_FACTOR;
+        return zone;
     }
 
     /**
      * Answer with the Module part of the response code
      */
     public int getModule() {
-        return code / MODULE_FACTOR - 100 * getZone();
+        return module;
     }
 
     /**
      * Answer with the Component part of the response code
      */
     public int getComponent() {
-        return code / COMPONENT_FACTOR - 100 * (getModule() + 100 * getZone());
+        return component;
     }
 
     /**
      * Answer with the Response part of the response code
      */
     public int getResponse() {
-        return code - (code / 1000) * 1000;
+        return response;
     }
 
+    /**
+     * @return this code, formatted as <code>ZMM-CC-RRR</code>
+     */
     @Override
     public String
     toString() {
-        return String.format("%01d%02d-%02d-%03d",
-                getZone(), getModule(), getComponent(), getResponse());
+        return formatted;
     }
 
+    /**
+     * Append this code, formatted as <code>ZMM-CC-RRR</code>, to the buffer supplied
+     *
+     * @param target buffer receiving the formatted code
+     * @return <code>target</code>
+     */
+    public StringBuilder
+    appendTo(StringBuilder target) {
+        return target.append(formatted);
+    }
 
     @Override
     public boolean
@@ -197,4 +277,33 @@ public final class StatusCode
         return code - other.code;
     }
 
+    private String
+    format() {
+        char[] chars = new char[FORMATTED_LENGTH];
+        chars[0] = (char) ('0' + zone);
+        chars[1] = (char) ('0' + module / 10);
+        chars[2] = (char) ('0' + module % 10);
+        chars[3] = '-';
+        chars[4] = (char) ('0' + component / 10);
+        chars[5] = (char) ('0' + component % 10);
+        chars[6] = '-';
+        chars[7] = (char) ('0' + response / 100);
+        chars[8] = (char) ('0' + response / 10 % 10);
+        chars[9] = (char) ('0' + response % 10);
+        return new String(chars);
+    }
+
+    /**
+     * Status codes read from a stream are replaced by the shared instance for their code
+     */
+    private Object
+    readResolve()
+            throws ObjectStreamException {
+        try {
+            return intern(code);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
+
 }
@@ -0,0 +1,89 @@
+package org.seefin.nygaard.model.collections;
+
+/**
+ * Open-addressing hash index over a flat array of keys, shared by {@link WormSet} and
+ * {@link WormMap}: the table holds, for each key, its position in the key array plus one
+ * (zero marking a free slot), at the key's hash, or the next free slot after it (linear
+ * probing); the table is at least twice the number of keys, so probe sequences are short,
+ * and always end at a free slot. Keys may be null
+ *
+ * @author phillipsr
+ */
+final class HashIndex {
+    private static final int MAXIMUM_TABLE = 1 << 30;
+
+    private HashIndex() {
+    }
+
+    /**
+     * @param keys number of keys to be indexed
+     * @return an empty table, large enough to index the number of keys supplied
+     */
+    static int[]
+    table(int keys) {
+        if (keys > MAXIMUM_TABLE / 2) {
+            throw new IllegalArgumentException("Too many keys to index (" + keys + ")");
+        }
+        int size = 2;
+        while (size < keys * 2) {
+            size <<= 1;
+        }
+        return new int[size];
+    }
+
+    /**
+     * @return the position of <code>key</code> in <code>keys</code>, or -1 if not indexed in <code>table</code>
+     */
+    static int
+    find(int[] table, Object[] keys, Object key) {
+        int mask = table.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if (equal(keys[slot - 1], key) == true) {
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * Index the key at position <code>index</code> of <code>keys</code>, unless an equal key
+     * is already indexed
+     *
+     * @return -1 if the key was indexed, otherwise the position of the equal key
+     */
+    static int
+    insert(int[] table, Object[] keys, int index) {
+        Object key = keys[index];
+        int mask = table.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == 0) {
+                table[i] = index + 1;
+                return -1;
+            }
+            if (equal(keys[slot - 1], key) == true) {
+                return slot - 1;
+            }
+        }
+    }
+
+    static boolean
+    equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    static int
+    hashCodeOf(Object value) {
+        return value == null ? 0 : value.hashCode();
+    }
+
+    // spread the high bits of the hash code into the low bits used to index the table
+    private static int
+    hash(Object key) {
+        int h = hashCodeOf(key);
+        return h ^ (h >>> 16);
+    }
+}
@@ -2,17 +2,23 @@ package org.seefin.nygaard.model.collections;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 /**
  * Write-once, read-many List<br/>
  * List implementation that only allows query methods, and ensures that methods
  * such as subList() returns a collection that does not allow modification
  * <p/>
+ * The elements are held in a flat array, copied once when the list is created; sub-lists,
+ * and the values of a {@link WormMap}, are views sharing the array of the collection from
+ * which they are taken, so cost no copying. As the list cannot change, its hash code is
+ * computed once, when first asked for (so elements should not change either)
+ * <p/>
  * Note: this collection cannot implement the java.util.List interface, as this would
  * not be type-safe (mutating operations would be visible, yet have to throw an
  * exception)
@@ -22,25 +28,40 @@ import java.util.ListIterator;
  */
 public final class WormList<T>
         implements Iterable<T>, Serializable {
-    private final List<T> list;
+    private final Object[] elements;
+    private final int offset;
+    private final int size;
+    private transient int hash;
 
     public WormList(Collection<T> data) {
         if (data == null || data.isEmpty() == true) {
             throw new IllegalArgumentException("ReadOnlyList requires initial data");
         }
-        list = Collections.unmodifiableList(new ArrayList<>(data));
+        elements = data.toArray();
+        offset = 0;
+        size = elements.length;
+    }
+
+    /*
+     * View of the elements <code>offset</code> to <code>offset + size</code> of the array
+     * supplied, which is shared, and must not be changed
+     */
+    WormList(Object[] elements, int offset, int size) {
+        this.elements = elements;
+        this.offset = offset;
+        this.size = size;
     }
 
     public int size() {
-        return list.size();
+        return size;
     }
 
     public boolean isEmpty() {
-        return list.isEmpty();
+        return size == 0;
     }
 
     public boolean contains(T o) {
-        return list.contains(o);
+        return indexOf(o) >= 0;
     }
 
     /**
@@ -51,15 +72,22 @@ public final class WormList<T>
      */
     @Override
     public Iterator<T> iterator() {
-        return list.iterator();
+        return new Cursor(0);
     }
 
     public Object[] toArray() {
-        return list.toArray();
+        return Arrays.copyOfRange(elements, offset, offset + size);
     }
 
+    @SuppressWarnings("unchecked")
     public <E> E[] toArray(E[] prototype) {
-        return list.toArray(prototype);
+        E[] result = prototype.length >= size ? prototype
+                : (E[]) java.lang.reflect.Array.newInstance(prototype.getClass().getComponentType(), size);
+        System.arraycopy(elements, offset, result, 0, size);
+        if (result.length > size) {
+            result[size] = null;
+        }
+        return result;
     }
 
     /**
@@ -75,51 +103,184 @@ public final class WormList<T>
      *                              or if the specified collection is null
      */
     public boolean containsAll(Collection<T> c) {
-        return list.containsAll(c);
+        for (T element : c) {
+            if (contains(element) == false) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    @SuppressWarnings("unchecked")
     public T get(int index) {
-        return list.get(index);
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) elements[offset + index];
     }
 
     public int indexOf(T o) {
-        return list.indexOf(o);
+        for (int i = 0; i < size; i++) {
+            if (HashIndex.equal(o, elements[offset + i]) == true) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public int lastIndexOf(T o) {
-        return list.lastIndexOf(o);
+        for (int i = size - 1; i >= 0; i--) {
+            if (HashIndex.equal(o, elements[offset + i]) == true) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public ListIterator<T> listIterator() {
-        return list.listIterator();
+        return new Cursor(0);
     }
 
     public ListIterator<T> listIterator(int index) {
-        return list.listIterator(index);
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Cursor(index);
     }
 
+    /**
+     * @return a view of the portion of this list between <code>fromIndex</code>, inclusive,
+     * and <code>toIndex</code>, exclusive, sharing this list's elements
+     * @throws IndexOutOfBoundsException if either index is out of range, or fromIndex &gt; toIndex
+     */
     public WormList<T> subList(int fromIndex, int toIndex) {
-        return new WormList<>(list.subList(fromIndex, toIndex));
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+        }
+        return new WormList<>(elements, offset + fromIndex, toIndex - fromIndex);
     }
 
     /**
      * @return a regular (e.g., read/write) copy of this list
      */
+    @SuppressWarnings("unchecked")
     public List<T>
     toList() {
-        return new ArrayList<>(list);
+        return new ArrayList<>((List<T>) Arrays.asList(toArray()));
     }
 
     @Override
     public String
     toString() {
-        return list.toString();
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            Object element = elements[offset + i];
+            result.append(i == 0 ? "" : ", ").append(element == this ? "(this Collection)" : element);
+        }
+        return result.append(']').toString();
     }
 
+    /**
+     * @return the hash code of this list, as defined by java.util.List
+     */
     @Override
     public int
     hashCode() {
-        return list.hashCode();
+        int result = hash;
+        if (result == 0) {
+            result = 1;
+            for (int i = 0; i < size; i++) {
+                result = 31 * result + HashIndex.hashCodeOf(elements[offset + i]);
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if <code>other</code> is a WormList with equal elements, in the same order
+     */
+    @Override
+    public boolean
+    equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (other instanceof WormList == false) {
+            return false;
+        }
+        WormList<?> list = (WormList<?>) other;
+        if (list.size != size || list.hashCode() != hashCode()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (HashIndex.equal(elements[offset + i], list.elements[list.offset + i]) == false) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /*
+     * Read-only iterator over the elements of this list
+     */
+    private final class Cursor
+            implements ListIterator<T> {
+        private int next;
+
+        private Cursor(int next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            return get(next++);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return next > 0;
+        }
+
+        @Override
+        public T previous() {
+            if (next <= 0) {
+                throw new NoSuchElementException();
+            }
+            return get(--next);
+        }
+
+        @Override
+        public int nextIndex() {
+            return next;
+        }
+
+        @Override
+        public int previousIndex() {
+            return next - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("WormList cannot be modified");
+        }
+
+        @Override
+        public void set(T element) {
+            throw new UnsupportedOperationException("WormList cannot be modified");
+        }
+
+        @Override
+        public void add(T element) {
+            throw new UnsupportedOperationException("WormList cannot be modified");
+        }
+    }
 }
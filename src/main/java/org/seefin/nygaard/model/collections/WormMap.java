@@ -1,7 +1,9 @@
 package org.seefin.nygaard.model.collections;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.Collections;
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,6 +13,13 @@ import java.util.Map;
  * such as keySet() and values() return collections that themselves do not allow
  * modification
  * <p/>
+ * The mappings are copied, once, into flat arrays of keys and values, in the order of
+ * the data supplied, and the keys indexed by an open-addressing hash table of <code>int</code>s
+ * (see {@link HashIndex}); keySet() and values() are views sharing these arrays, so cost
+ * no copying, and entrySet() is created once, when first asked for. As the map cannot
+ * change, its hash code is computed once, when first asked for (so keys and values should
+ * not change either)
+ * <p/>
  * Note: this collection cannot implement the java.util.Map interface, as this would
  * not be type-safe (mutating operations would be visible, yet have to throw an
  * exception)
@@ -21,59 +30,183 @@ import java.util.Map;
  */
 public final class WormMap<K, V>
         implements Serializable {
-    private final Map<K, V> map;
+    private final Object[] keys;
+    private final Object[] values;
+    private final int size;
+    private transient int[] table;
+    private transient int hash;
+    private transient volatile WormSet<K> keySet;
+    private transient volatile WormList<V> valueList;
+    private transient volatile WormSet<Map.Entry<K, V>> entrySet;
 
     public WormMap(Map<K, V> data) {
         if (data == null) {
             throw new IllegalArgumentException("ReadOnlyMap requires initial data");
         }
-        map = Collections.unmodifiableMap(data);
+        Object[] mapKeys = new Object[data.size()];
+        Object[] mapValues = new Object[mapKeys.length];
+        int[] index = HashIndex.table(mapKeys.length);
+        int count = 0;
+        for (Map.Entry<K, V> entry : data.entrySet()) {
+            if (count == mapKeys.length) {
+                throw new IllegalArgumentException("ReadOnlyMap data changed while being copied");
+            }
+            mapKeys[count] = entry.getKey();
+            mapValues[count] = entry.getValue();
+            HashIndex.insert(index, mapKeys, count++);
+        }
+        if (count != mapKeys.length) {
+            throw new IllegalArgumentException("ReadOnlyMap data changed while being copied");
+        }
+        keys = mapKeys;
+        values = mapValues;
+        size = count;
+        table = index;
     }
 
     public int size() {
-        return map.size();
+        return size;
     }
 
     public boolean isEmpty() {
-        return map.isEmpty();
+        return size == 0;
     }
 
     public boolean containsKey(Object key) {
-        return map.containsKey(key);
+        return HashIndex.find(table, keys, key) >= 0;
     }
 
     public boolean containsValue(Object value) {
-        return map.containsValue(value);
+        for (int i = 0; i < size; i++) {
+            if (HashIndex.equal(value, values[i]) == true) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    @SuppressWarnings("unchecked")
     public V get(Object key) {
-        return map.get(key);
+        int index = HashIndex.find(table, keys, key);
+        return index < 0 ? null : (V) values[index];
     }
 
+    /**
+     * @return view of the keys of this map
+     */
     public WormSet<K> keySet() {
-        return new WormSet<>(map.keySet());
+        WormSet<K> result = keySet;
+        if (result == null) {
+            result = new WormSet<>(keys, size, table);
+            keySet = result;
+        }
+        return result;
     }
 
+    /**
+     * @return view of the values of this map, in the order of their keys
+     */
     public WormList<V> values() {
-        return new WormList<>(map.values());
+        WormList<V> result = valueList;
+        if (result == null) {
+            result = new WormList<>(values, 0, size);
+            valueList = result;
+        }
+        return result;
     }
 
+    /**
+     * @return the mappings of this map, as immutable entries
+     */
     public WormSet<java.util.Map.Entry<K, V>> entrySet() {
-        return new WormSet<>(map.entrySet());
+        WormSet<Map.Entry<K, V>> result = entrySet;
+        if (result == null) {
+            Object[] entries = new Object[size];
+            int[] index = HashIndex.table(size);
+            for (int i = 0; i < size; i++) {
+                entries[i] = new AbstractMap.SimpleImmutableEntry<>(keys[i], values[i]);
+                HashIndex.insert(index, entries, i);
+            }
+            result = new WormSet<>(entries, size, index);
+            entrySet = result;
+        }
+        return result;
     }
 
     /**
      * @return a regular (e.g., read/write) copy of this map
      */
+    @SuppressWarnings("unchecked")
     public Map<K, V>
     toMap() {
-        return new HashMap<>(map);
+        Map<K, V> result = new HashMap<>(Math.max(size * 4 / 3 + 1, 16));
+        for (int i = 0; i < size; i++) {
+            result.put((K) keys[i], (V) values[i]);
+        }
+        return result;
     }
 
     @Override
     public String
     toString() {
-        return map.toString();
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            result.append(i == 0 ? "" : ", ")
+                    .append(keys[i] == this ? "(this Map)" : keys[i]).append('=')
+                    .append(values[i] == this ? "(this Map)" : values[i]);
+        }
+        return result.append('}').toString();
+    }
+
+    /**
+     * @return the hash code of this map, as defined by java.util.Map
+     */
+    @Override
+    public int
+    hashCode() {
+        int result = hash;
+        if (result == 0) {
+            for (int i = 0; i < size; i++) {
+                result += HashIndex.hashCodeOf(keys[i]) ^ HashIndex.hashCodeOf(values[i]);
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if <code>other</code> is a WormMap with the same mappings
+     */
+    @Override
+    public boolean
+    equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (other instanceof WormMap == false) {
+            return false;
+        }
+        WormMap<?, ?> map = (WormMap<?, ?>) other;
+        if (map.size != size || map.hashCode() != hashCode()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            int index = HashIndex.find(map.table, map.keys, keys[i]);
+            if (index < 0 || HashIndex.equal(values[i], map.values[index]) == false) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    // the index is rebuilt, as hash codes of the keys may differ between JVMs (e.g., of enums)
+    private void
+    readObject(ObjectInputStream input)
+            throws IOException, ClassNotFoundException {
+        input.defaultReadObject();
+        table = HashIndex.table(size);
+        for (int i = 0; i < size; i++) {
+            HashIndex.insert(table, keys, i);
+        }
+    }
 }
@@ -1,16 +1,25 @@
 package org.seefin.nygaard.model.collections;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
  * Write-once, read-many Set<br/>
  * Set implementation that only allows query methods
  * <p/>
+ * The elements are held in a flat array, in the order first encountered in the data
+ * supplied, indexed by an open-addressing hash table of <code>int</code>s (see {@link HashIndex}),
+ * so that a set costs two arrays, rather than an entry object per element; the key set of
+ * a {@link WormMap} is a view sharing the map's keys and index. As the set cannot change,
+ * its hash code is computed once, when first asked for (so elements should not change either)
+ * <p/>
  * Note: this collection cannot implement the java.util.Map interface, as this would
  * not be type-safe (mutating operations would be visible, yet have to throw an
  * exception)
@@ -20,25 +29,49 @@ import java.util.Set;
  */
 public final class WormSet<T>
         implements Iterable<T>, Serializable {
-    private final Set<T> set;
+    private final Object[] elements;
+    private final int size;
+    private transient int[] table;
+    private transient int hash;
 
     public WormSet(Collection<T> data) {
         if (data == null || data.isEmpty() == true) {
             throw new IllegalArgumentException("ReadOnlySet requires initial data");
         }
-        set = Collections.unmodifiableSet(new HashSet<>(data));
+        Object[] values = data.toArray();
+        int[] index = HashIndex.table(values.length);
+        int count = 0;
+        for (Object value : values) {
+            values[count] = value;
+            if (HashIndex.insert(index, values, count) < 0) {
+                count++;
+            }
+        }
+        elements = count == values.length ? values : Arrays.copyOf(values, count);
+        size = count;
+        table = index;
+    }
+
+    /*
+     * View of the first <code>size</code> elements of the array supplied, indexed by
+     * <code>table</code>; both are shared, and must not be changed
+     */
+    WormSet(Object[] elements, int size, int[] table) {
+        this.elements = elements;
+        this.size = size;
+        this.table = table;
     }
 
     public int size() {
-        return set.size();
+        return size;
     }
 
     public boolean isEmpty() {
-        return set.isEmpty();
+        return size == 0;
     }
 
     public boolean contains(Object o) {
-        return set.contains(o);
+        return HashIndex.find(table, elements, o) >= 0;
     }
 
     /**
@@ -46,33 +79,114 @@ public final class WormSet<T>
      */
     @Override
     public Iterator<T> iterator() {
-        return set.iterator();
+        return new Iterator<T>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return (T) elements[next++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("WormSet cannot be modified");
+            }
+        };
     }
 
     public Object[] toArray() {
-        return set.toArray();
+        return Arrays.copyOf(elements, size);
     }
 
     public <E> E[] toArray(E[] a) {
-        return set.toArray(a);
+        return new WormList<E>(elements, 0, size).toArray(a);
     }
 
     public boolean containsAll(Collection<?> c) {
-        return set.containsAll(c);
+        for (Object element : c) {
+            if (contains(element) == false) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * @return a regular (e.g., read/write) copy of this set
      */
+    @SuppressWarnings("unchecked")
     public Set<T>
     toSet() {
-        return new HashSet<>(set);
+        Set<T> result = new HashSet<>(Math.max(size * 4 / 3 + 1, 16));
+        for (int i = 0; i < size; i++) {
+            result.add((T) elements[i]);
+        }
+        return result;
     }
 
     @Override
     public String
     toString() {
-        return set.toString();
+        return new WormList<>(elements, 0, size).toString();
     }
 
+    /**
+     * @return the hash code of this set, as defined by java.util.Set
+     */
+    @Override
+    public int
+    hashCode() {
+        int result = hash;
+        if (result == 0) {
+            for (int i = 0; i < size; i++) {
+                result += HashIndex.hashCodeOf(elements[i]);
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if <code>other</code> is a WormSet with the same elements
+     */
+    @Override
+    public boolean
+    equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (other instanceof WormSet == false) {
+            return false;
+        }
+        WormSet<?> set = (WormSet<?>) other;
+        if (set.size != size || set.hashCode() != hashCode()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (set.contains(elements[i]) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the index is rebuilt, as hash codes of the elements may differ between JVMs (e.g., of enums)
+    private void
+    readObject(ObjectInputStream input)
+            throws IOException, ClassNotFoundException {
+        input.defaultReadObject();
+        table = HashIndex.table(size);
+        for (int i = 0; i < size; i++) {
+            HashIndex.insert(table, elements, i);
+        }
+    }
 }
@@ -0,0 +1,284 @@
+package org.seefin.nygaard.model.directory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import org.seefin.nygaard.model.identifiers.AccountNumber;
+import org.seefin.nygaard.model.identifiers.EWalletAccountNumber;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+
+
+/**
+ * Index of account numbers to (non-negative) long values, such as the position of the
+ * account's record in a store, held outside the Java heap so that an account directory
+ * of 100M accounts does not burden the garbage collector
+ * <p/>
+ * Each kind of account number is held in its own open-addressing hash table, keyed by the
+ * packed essence of the number, rather than by the account number object:
+ * <ul>
+ * <li>ISO7812 (card) numbers: the number, as a long</li>
+ * <li>Electronic wallets: the owner's MSISDN, as a long</li>
+ * <li>IBANs: the characters of the code, packed six bits per character into four longs</li>
+ * </ul>
+ * An index is either allocated in direct memory, or opened from a directory of
+ * memory-mapped files; a persisted index is used without being re-built, so opens as fast as
+ * the files can be mapped. Tables do not grow, so the index must be sized for the expected
+ * number of accounts of each kind when created
+ * <p/>
+ * Look-ups are lock-free, and may be made from any number of threads concurrently with
+ * updates; updates are serialized
+ *
+ * @author phillipsr
+ */
+public final class AccountIndex
+        implements Closeable {
+    /**
+     * Value answered by look-ups of account numbers not present in the index
+     */
+    public static final long NOT_FOUND = OffHeapTable.NOT_FOUND;
+
+    static final String CARDS_FILE = "cards.idx";
+    static final String WALLETS_FILE = "wallets.idx";
+    static final String IBANS_FILE = "ibans.idx";
+
+    private static final int IBAN_KEY_WORDS = 4;
+    private static final int CHARS_PER_WORD = 10;
+    private static final int BITS_PER_CHAR = 6;
+    private static final int MAX_IBAN_LENGTH = IBAN_KEY_WORDS * CHARS_PER_WORD;
+
+    private final OffHeapTable cards;
+    private final OffHeapTable wallets;
+    private final OffHeapTable ibans;
+
+    private AccountIndex(OffHeapTable cards, OffHeapTable wallets, OffHeapTable ibans) {
+        this.cards = cards;
+        this.wallets = wallets;
+        this.ibans = ibans;
+    }
+
+    /**
+     * Create an index in direct (off-heap) memory, sized for the number of account
+     * numbers of each kind supplied
+     *
+     * @param cards   expected number of ISO7812 card numbers
+     * @param wallets expected number of electronic wallet account numbers
+     * @param ibans   expected number of IBANs
+     * @return an empty index
+     */
+    public static AccountIndex
+    allocate(long cards, long wallets, long ibans) {
+        return new AccountIndex(OffHeapTable.allocate(1, cards),
+                OffHeapTable.allocate(1, wallets),
+                OffHeapTable.allocate(IBAN_KEY_WORDS, ibans));
+    }
+
+    /**
+     * Open the index persisted in the directory supplied, or create a new index there, sized
+     * for the number of account numbers of each kind supplied, if the directory does not
+     * contain one
+     *
+     * @param directory holding the index files
+     * @param cards     expected number of ISO7812 card numbers
+     * @param wallets   expected number of electronic wallet account numbers
+     * @param ibans     expected number of IBANs
+     * @return the index held in <code>directory</code>
+     * @throws IOException              if the index files cannot be created or mapped
+     * @throws IllegalArgumentException if the directory contains files that are not index files
+     */
+    public static AccountIndex
+    open(File directory, long cards, long wallets, long ibans)
+            throws IOException {
+        if (directory.isDirectory() == false && directory.mkdirs() == false) {
+            throw new IOException("Cannot create index directory: " + directory);
+        }
+        OffHeapTable cardTable = null;
+        OffHeapTable walletTable = null;
+        try {
+            cardTable = OffHeapTable.open(new File(directory, CARDS_FILE), 1, cards);
+            walletTable = OffHeapTable.open(new File(directory, WALLETS_FILE), 1, wallets);
+            OffHeapTable ibanTable = OffHeapTable.open(new File(directory, IBANS_FILE), IBAN_KEY_WORDS, ibans);
+            return new AccountIndex(cardTable, walletTable, ibanTable);
+        } catch (IOException | RuntimeException e) {
+            close(cardTable);
+            close(walletTable);
+            throw e;
+        }
+    }
+
+    /**
+     * @param account number to be looked-up
+     * @return the value stored against the account number, or NOT_FOUND
+     * @throws IllegalArgumentException if the account number is not of a kind held in the index
+     */
+    public long
+    get(AccountNumber account) {
+        if (account instanceof ISO7812) {
+            return cards.get(((ISO7812) account).longValue(), 0, 0, 0);
+        }
+        if (account instanceof EWalletAccountNumber) {
+            return wallets.get(walletKey((EWalletAccountNumber) account), 0, 0, 0);
+        }
+        if (account instanceof IBAN) {
+            IBAN iban = (IBAN) account;
+            return ibans.get(ibanWord(iban, 0), ibanWord(iban, 1), ibanWord(iban, 2), ibanWord(iban, 3));
+        }
+        throw unsupported(account);
+    }
+
+    /**
+     * @param account number to be looked-up
+     * @return true if the index holds a value for the account number
+     */
+    public boolean
+    contains(AccountNumber account) {
+        return get(account) != NOT_FOUND;
+    }
+
+    /**
+     * Store the value supplied against the account number, replacing any existing value
+     *
+     * @param account number to be added
+     * @param value   to be stored, in the range <code>0..Long.MAX_VALUE-1</code>
+     * @return the value previously stored against the account number, or NOT_FOUND
+     * @throws IllegalArgumentException if the account number is not of a kind held in the index,
+     *                                  or the value is out of range
+     * @throws IllegalStateException    if the index is full
+     */
+    public long
+    put(AccountNumber account, long value) {
+        if (account instanceof ISO7812) {
+            return cards.put(((ISO7812) account).longValue(), 0, 0, 0, value);
+        }
+        if (account instanceof EWalletAccountNumber) {
+            return wallets.put(walletKey((EWalletAccountNumber) account), 0, 0, 0, value);
+        }
+        if (account instanceof IBAN) {
+            IBAN iban = (IBAN) account;
+            return ibans.put(ibanWord(iban, 0), ibanWord(iban, 1), ibanWord(iban, 2), ibanWord(iban, 3), value);
+        }
+        throw unsupported(account);
+    }
+
+    /**
+     * Remove the account number from the index
+     *
+     * @param account number to be removed
+     * @return the value that was stored against the account number, or NOT_FOUND
+     * @throws IllegalArgumentException if the account number is not of a kind held in the index
+     */
+    public long
+    remove(AccountNumber account) {
+        if (account instanceof ISO7812) {
+            return cards.remove(((ISO7812) account).longValue(), 0, 0, 0);
+        }
+        if (account instanceof EWalletAccountNumber) {
+            return wallets.remove(walletKey((EWalletAccountNumber) account), 0, 0, 0);
+        }
+        if (account instanceof IBAN) {
+            IBAN iban = (IBAN) account;
+            return ibans.remove(ibanWord(iban, 0), ibanWord(iban, 1), ibanWord(iban, 2), ibanWord(iban, 3));
+        }
+        throw unsupported(account);
+    }
+
+    /**
+     * @return the number of account numbers in the index
+     */
+    public long
+    size() {
+        return cards.size() + wallets.size() + ibans.size();
+    }
+
+    /**
+     * Write any changes to a persisted index to its files
+     */
+    public void
+    force() {
+        cards.force();
+        wallets.force();
+        ibans.force();
+    }
+
+    /**
+     * Write any changes to a persisted index to its files, and release them
+     */
+    @Override
+    public void
+    close()
+            throws IOException {
+        try {
+            cards.close();
+        } finally {
+            try {
+                wallets.close();
+            } finally {
+                ibans.close();
+            }
+        }
+    }
+
+    @Override
+    public String
+    toString() {
+        return "AccountIndex{cards=" + cards.size() + "/" + cards.capacity()
+                + ", wallets=" + wallets.size() + "/" + wallets.capacity()
+                + ", ibans=" + ibans.size() + "/" + ibans.capacity() + "}";
+    }
+
+    private static long
+    walletKey(EWalletAccountNumber account) {
+        return account.getMSISDN().longValue();
+    }
+
+    /**
+     * @return the <code>word</code>th key word of the IBAN supplied: ten characters, each
+     * packed into six bits (zero for padding beyond the end of the code, 1-10 for digits,
+     * 11-36 for letters, regardless of case)
+     */
+    private static long
+    ibanWord(IBAN iban, int word) {
+        int length = iban.length();
+        if (length > MAX_IBAN_LENGTH) {
+            throw new IllegalArgumentException("IBAN too long to index: " + iban);
+        }
+        long result = 0;
+        int end = Math.min(length, (word + 1) * CHARS_PER_WORD);
+        for (int i = word * CHARS_PER_WORD; i < end; i++) {
+            result |= (long) charCode(iban.byteAt(i)) << (BITS_PER_CHAR * (i % CHARS_PER_WORD));
+        }
+        return result;
+    }
+
+    private static int
+    charCode(byte c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 11;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 11;
+        }
+        throw new IllegalArgumentException("IBAN contains a character that cannot be indexed: " + (char) c);
+    }
+
+    private static IllegalArgumentException
+    unsupported(AccountNumber account) {
+        return new IllegalArgumentException("Cannot index account numbers of type "
+                + (account == null ? "null" : account.getClass().getName()));
+    }
+
+    private static void
+    close(OffHeapTable table) {
+        if (table != null) {
+            try {
+                table.close();
+            } catch (IOException e) {
+                // already failing: report the original exception
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package org.seefin.nygaard.model.directory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Open-addressing (linear probing) hash table of fixed-width keys to long values, held
+ * outside the Java heap, in direct buffers or in a memory-mapped file
+ * <p/>
+ * Each slot holds a key of one or more 64-bit words followed by the value; an all-zero
+ * first key word marks an empty slot, so keys must have a non-zero first word. Values are
+ * stored offset by one, so that a zero value marks a removed entry (the key is left in
+ * place as a tombstone, and is re-used if the same key is added again). The table is
+ * split into segments of at most 1GB, as a single buffer cannot address more than 2GB
+ * <p/>
+ * The table does not grow: it is sized on creation for the expected number of keys,
+ * and rejects insertions beyond its maximum load
+ * <p/>
+ * Readers do not lock: a writer fills in the value and the trailing key words of a slot
+ * before its first key word, and then updates the volatile publication counter, which
+ * readers read before probing, so a reader sees every entry published before its look-up
+ * began; writes are serialized by locking the table
+ *
+ * @author phillipsr
+ */
+final class OffHeapTable
+        implements Closeable {
+    static final long NOT_FOUND = -1L;
+
+    // file header layout
+    private static final int MAGIC = 0x4e594458; // "NYDX"
+    private static final int VERSION = 1;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int KEY_WORDS_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int USED_OFFSET = 32;
+    // segments start on a page boundary
+    private static final int HEADER_SIZE = 4096;
+
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+    private static final long MAX_CAPACITY = 1L << 40;
+    // maximum proportion of slots used, including removed entries
+    private static final double MAX_LOAD = 0.75;
+
+    private final int keyWords;
+    private final int slotSize;
+    private final long capacity;
+    private final long mask;
+    private final long maxUsed;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final ByteBuffer header;
+    private final ByteBuffer[] segments;
+    private final RandomAccessFile file;
+
+    private volatile long published;
+    // guarded by this
+    private long size;
+    private long used;
+
+    private OffHeapTable(int keyWords, long capacity, ByteBuffer header, RandomAccessFile file)
+            throws IOException {
+        this.keyWords = keyWords;
+        this.slotSize = (keyWords + 1) * 8;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.maxUsed = (long) (capacity * MAX_LOAD);
+        this.header = header.order(ByteOrder.LITTLE_ENDIAN);
+        this.file = file;
+
+        long slotsPerSegment = Long.highestOneBit(MAX_SEGMENT_BYTES / slotSize);
+        slotsPerSegment = Math.min(slotsPerSegment, capacity);
+        this.segmentShift = Long.numberOfTrailingZeros(slotsPerSegment);
+        this.segmentMask = slotsPerSegment - 1;
+        int segmentBytes = (int) (slotsPerSegment * slotSize);
+        this.segments = new ByteBuffer[(int) (capacity / slotsPerSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            ByteBuffer segment = file == null
+                    ? ByteBuffer.allocateDirect(segmentBytes)
+                    : file.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + (long) i * segmentBytes, segmentBytes);
+            segments[i] = segment.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.size = header.getLong(SIZE_OFFSET);
+        this.used = header.getLong(USED_OFFSET);
+        this.published = size;
+    }
+
+    /**
+     * Create a table in direct (off-heap) memory
+     *
+     * @param keyWords number of 64-bit words in each key
+     * @param expected number of keys the table must accommodate
+     */
+    static OffHeapTable
+    allocate(int keyWords, long expected) {
+        long capacity = capacityFor(expected);
+        ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        initializeHeader(header, keyWords, capacity);
+        try {
+            return new OffHeapTable(keyWords, capacity, header, null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected I/O error allocating table", e);
+        }
+    }
+
+    /**
+     * Open the table persisted in the file supplied, mapping it into memory, or create
+     * a new table in that file if it does not exist; an existing table is used as-is,
+     * without being re-built, and its capacity is that with which it was created
+     *
+     * @param path     of the file holding the table
+     * @param keyWords number of 64-bit words in each key
+     * @param expected number of keys a new table must accommodate
+     * @throws IOException              if the file cannot be opened or mapped
+     * @throws IllegalArgumentException if the file does not contain a compatible table
+     */
+    static OffHeapTable
+    open(File path, int keyWords, long expected)
+            throws IOException {
+        boolean exists = path.exists() && path.length() > 0;
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            long capacity;
+            ByteBuffer header;
+            if (exists == true) {
+                header = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                capacity = checkHeader(path, header, keyWords);
+            } else {
+                capacity = capacityFor(expected);
+                file.setLength(HEADER_SIZE + capacity * (keyWords + 1) * 8);
+                header = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                initializeHeader(header, keyWords, capacity);
+            }
+            return new OffHeapTable(keyWords, capacity, header, file);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the value stored against the key, or NOT_FOUND
+     */
+    long
+    get(long k0, long k1, long k2, long k3) {
+        if (published < 0) {
+            throw new IllegalStateException("Index is closed");
+        }
+        long slot = find(k0, k1, k2, k3);
+        if (slot < 0) {
+            return NOT_FOUND;
+        }
+        long stored = segment(slot).getLong(valueOffset(slot));
+        return stored == 0 ? NOT_FOUND : stored - 1;
+    }
+
+    /**
+     * Store the value supplied against the key, replacing any existing value
+     *
+     * @return the previous value stored against the key, or NOT_FOUND
+     * @throws IllegalStateException if the table is full
+     */
+    synchronized long
+    put(long k0, long k1, long k2, long k3, long value) {
+        if (value < 0 || value == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Value must be in the range 0.." + (Long.MAX_VALUE - 1) + ": " + value);
+        }
+        checkOpen();
+        long slot = find(k0, k1, k2, k3);
+        if (slot >= 0) {
+            ByteBuffer segment = segment(slot);
+            long previous = segment.getLong(valueOffset(slot));
+            segment.putLong(valueOffset(slot), value + 1);
+            if (previous == 0) {
+                sizeChanged(1);
+            } else {
+                published = size;
+            }
+            return previous - 1;
+        }
+        if (used >= maxUsed) {
+            throw new IllegalStateException("Index is full: capacity=" + capacity + ", used=" + used);
+        }
+        slot = -slot - 1;
+        ByteBuffer segment = segment(slot);
+        int offset = offset(slot);
+        segment.putLong(valueOffset(slot), value + 1);
+        if (keyWords > 1) {
+            segment.putLong(offset + 8, k1);
+            segment.putLong(offset + 16, k2);
+            segment.putLong(offset + 24, k3);
+        }
+        segment.putLong(offset, k0);
+        used++;
+        header.putLong(USED_OFFSET, used);
+        sizeChanged(1);
+        return NOT_FOUND;
+    }
+
+    /**
+     * Remove the value stored against the key
+     *
+     * @return the value removed, or NOT_FOUND
+     */
+    synchronized long
+    remove(long k0, long k1, long k2, long k3) {
+        checkOpen();
+        long slot = find(k0, k1, k2, k3);
+        if (slot < 0) {
+            return NOT_FOUND;
+        }
+        ByteBuffer segment = segment(slot);
+        long previous = segment.getLong(valueOffset(slot));
+        if (previous == 0) {
+            return NOT_FOUND;
+        }
+        segment.putLong(valueOffset(slot), 0);
+        sizeChanged(-1);
+        return previous - 1;
+    }
+
+    /**
+     * @return the number of keys having a value
+     */
+    long
+    size() {
+        return Math.max(published, 0);
+    }
+
+    /**
+     * @return the number of slots in the table
+     */
+    long
+    capacity() {
+        return capacity;
+    }
+
+    /**
+     * Write any changes to a memory-mapped table to its file
+     */
+    synchronized void
+    force() {
+        if (file == null) {
+            return;
+        }
+        for (ByteBuffer segment : segments) {
+            ((MappedByteBuffer) segment).force();
+        }
+        ((MappedByteBuffer) header).force();
+    }
+
+    /**
+     * Write any changes to the file and release it; the mapped memory itself is
+     * released when the table is garbage collected
+     */
+    @Override
+    public synchronized void
+    close()
+            throws IOException {
+        if (published < 0) {
+            return;
+        }
+        force();
+        published = -1;
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * @return the slot holding the key, or (-(insertion slot) - 1) if the key is not present
+     */
+    private long
+    find(long k0, long k1, long k2, long k3) {
+        if (k0 == 0) {
+            throw new IllegalArgumentException("Key cannot have a zero first word");
+        }
+        long slot = hash(k0, k1, k2, k3) & mask;
+        for (long probes = 0; probes < capacity; probes++) {
+            ByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            long word = segment.getLong(offset);
+            if (word == 0) {
+                return -slot - 1;
+            }
+            if (word == k0 && (keyWords == 1 || (segment.getLong(offset + 8) == k1
+                    && segment.getLong(offset + 16) == k2 && segment.getLong(offset + 24) == k3))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        throw new IllegalStateException("Index is full: capacity=" + capacity);
+    }
+
+    private long
+    hash(long k0, long k1, long k2, long k3) {
+        long h = k0;
+        if (keyWords > 1) {
+            h = ((h * 31 + k1) * 31 + k2) * 31 + k3;
+        }
+        // MurmurHash3 finalizer
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private ByteBuffer
+    segment(long slot) {
+        return segments[(int) (slot >>> segmentShift)];
+    }
+
+    private int
+    offset(long slot) {
+        return (int) (slot & segmentMask) * slotSize;
+    }
+
+    private int
+    valueOffset(long slot) {
+        return offset(slot) + keyWords * 8;
+    }
+
+    private void
+    sizeChanged(int delta) {
+        size += delta;
+        header.putLong(SIZE_OFFSET, size);
+        // publish the change to readers
+        published = size;
+    }
+
+    private void
+    checkOpen() {
+        if (published < 0) {
+            throw new IllegalStateException("Index is closed");
+        }
+    }
+
+    private static long
+    capacityFor(long expected) {
+        if (expected < 0) {
+            throw new IllegalArgumentException("Expected number of keys cannot be negative: " + expected);
+        }
+        long capacity = Math.max(16, Long.highestOneBit((long) (expected / MAX_LOAD) + 1) << 1);
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Expected number of keys too large: " + expected);
+        }
+        return capacity;
+    }
+
+    private static void
+    initializeHeader(ByteBuffer header, int keyWords, long capacity) {
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(KEY_WORDS_OFFSET, keyWords);
+        header.putLong(CAPACITY_OFFSET, capacity);
+        header.putLong(SIZE_OFFSET, 0);
+        header.putLong(USED_OFFSET, 0);
+    }
+
+    private static long
+    checkHeader(File path, ByteBuffer header, int keyWords) {
+        if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IllegalArgumentException("Not an index file (or unsupported version): " + path);
+        }
+        if (header.getInt(KEY_WORDS_OFFSET) != keyWords) {
+            throw new IllegalArgumentException("Index file has keys of " + header.getInt(KEY_WORDS_OFFSET)
+                    + " words, expected " + keyWords + ": " + path);
+        }
+        long capacity = header.getLong(CAPACITY_OFFSET);
+        if (capacity < 16 || Long.bitCount(capacity) != 1 || capacity > MAX_CAPACITY
+                || path.length() < HEADER_SIZE + capacity * (keyWords + 1) * 8) {
+            throw new IllegalArgumentException("Index file is corrupt (capacity=" + capacity + "): " + path);
+        }
+        return capacity;
+    }
+}
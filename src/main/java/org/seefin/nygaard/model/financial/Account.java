@@ -1,8 +1,8 @@
 package org.seefin.nygaard.model.financial;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
 import java.util.Currency;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import org.seefin.nygaard.model.identifiers.AccountNumber;
 import org.seefin.nygaard.model.parties.Organization;
@@ -12,6 +12,12 @@ import org.seefin.nygaard.model.parties.Party;
 /**
  * Abstract notion of a financial account; a record of transactions
  * performed using one or more <code>Instrument<code>s
+ * <p/>
+ * The balance is held as a count of minor units of the account currency, and
+ * may be updated concurrently: {@link #credit}, {@link #tryDebit} and
+ * {@link #compareAndSetBalance} apply their changes atomically, without locking,
+ * so concurrent top-ups and transfers against the same account need no
+ * external synchronization
  *
  * @author phillipsr
  */
@@ -24,9 +30,13 @@ public abstract class Account
     private final Party owner;
     private final AccountNumber accountId;
     private final Organization provider;
-    private MonetaryAmount balance;
+    private final Currency currency;
+    private volatile long balance; // in minor units of currency
     private AccountState state;
 
+    private static final AtomicLongFieldUpdater<Account> BALANCE
+            = AtomicLongFieldUpdater.newUpdater(Account.class, "balance");
+
     /**
      * Create a new account instance
      *
@@ -52,7 +62,8 @@ public abstract class Account
         this.accountId = accountId;
         this.owner = owner;
         this.provider = provider;
-        this.balance = MonetaryAmount.fromBigDecimal(accountCurrency, BigDecimal.ZERO);
+        this.currency = accountCurrency;
+        this.balance = 0;
         state = AccountState.CREATED;
     }
 
@@ -82,14 +93,14 @@ public abstract class Account
      * @return the current balance for this wallet
      */
     public MonetaryAmount getBalance() {
-        return balance;
+        return new MonetaryAmount(currency, balance);
     }
 
     /**
      * @return the currency that this account transacts in
      */
     public Currency getAccountCurrency() {
-        return balance.getCurrency();
+        return currency;
     }
 
     /**
@@ -111,11 +122,101 @@ public abstract class Account
         if (newBalance == null) {
             throw new IllegalArgumentException("New balance cannot be null");
         }
-        if (balance.getCurrency().equals(newBalance.getCurrency()) == false) {
+        checkCurrency(newBalance);
+        balance = newBalance.longValue();
+    }
+
+    /**
+     * Atomically set the balance to <code>update</code>, if the current balance
+     * is equal to <code>expected</code>
+     *
+     * @param expected the balance the caller expects the account to have
+     * @param update   the new balance
+     * @return true if the balance was updated, false if the current balance was not as expected
+     * @throws IllegalArgumentException if either parameter is null, or not in the account currency
+     */
+    public boolean
+    compareAndSetBalance(MonetaryAmount expected, MonetaryAmount update) {
+        if (expected == null || update == null) {
+            throw new IllegalArgumentException("Expected and updated balances cannot be null");
+        }
+        checkCurrency(expected);
+        checkCurrency(update);
+        return BALANCE.compareAndSet(this, expected.longValue(), update.longValue());
+    }
+
+    /**
+     * Atomically add the supplied amount to the account balance
+     *
+     * @param amount to be credited to the account
+     * @return the balance after the credit has been applied
+     * @throws IllegalArgumentException if amount is null, negative, or not in the account currency
+     * @throws ArithmeticException      if the credit would take the balance beyond the range of a long;
+     *                                  the balance is left unchanged
+     */
+    public MonetaryAmount
+    credit(MonetaryAmount amount) {
+        checkAmount(amount);
+        long credit = amount.longValue();
+        for (; ; ) {
+            long current = balance;
+            if (current > Long.MAX_VALUE - credit) {
+                throw new ArithmeticException("Crediting " + amount + " would overflow the balance of " + this);
+            }
+            if (BALANCE.compareAndSet(this, current, current + credit) == true) {
+                return new MonetaryAmount(currency, current + credit);
+            }
+        }
+    }
+
+    /**
+     * Atomically subtract the supplied amount from the account balance, provided that
+     * the resulting balance would not be less than <code>floor</code>
+     *
+     * @param amount to be debited from the account
+     * @param floor  lowest balance permitted after the debit (e.g., zero, or a negative overdraft limit)
+     * @return true if the debit was applied, false if it would have taken the balance below the floor
+     * @throws IllegalArgumentException if either parameter is null, not in the account currency,
+     *                                  or the amount is negative
+     */
+    public boolean
+    tryDebit(MonetaryAmount amount, MonetaryAmount floor) {
+        checkAmount(amount);
+        if (floor == null) {
+            throw new IllegalArgumentException("Balance floor cannot be null");
+        }
+        checkCurrency(floor);
+        long debit = amount.longValue();
+        long limit = floor.longValue();
+        for (; ; ) {
+            long current = balance;
+            // a balance so far below the floor that the debit would wrap is refused too
+            if (current < Long.MIN_VALUE + debit || current - debit < limit) {
+                return false;
+            }
+            if (BALANCE.compareAndSet(this, current, current - debit) == true) {
+                return true;
+            }
+        }
+    }
+
+    private void
+    checkAmount(MonetaryAmount amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        checkCurrency(amount);
+        if (amount.longValue() < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative: " + amount);
+        }
+    }
+
+    private void
+    checkCurrency(MonetaryAmount amount) {
+        if (currency.equals(amount.getCurrency()) == false) {
             throw new IllegalArgumentException(
-                    "Currency mismatch, expected=" + balance.getCurrency() + ", got=" + newBalance.getCurrency());
+                    "Currency mismatch, expected=" + currency + ", got=" + amount.getCurrency());
         }
-        balance = newBalance;
     }
 
     @Override
@@ -0,0 +1,243 @@
+package org.seefin.nygaard.model.financial;
+
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Converts monetary amounts between currencies, using the current {@link ExchangeRates} snapshot
+ * <p/>
+ * Conversions are performed in fixed point on the minor-unit value of amounts, rounding the
+ * result to the minor unit of the target currency using the configured rounding mode; the
+ * batch methods convert a whole column of amounts per call, for roll-ups of multi-currency
+ * balances, without creating intermediate <code>MonetaryAmount</code> or <code>BigDecimal</code>
+ * objects
+ * <p/>
+ * The rate snapshot may be replaced at any time (e.g., when a new rate file is published);
+ * each call uses a single snapshot throughout, so a batch is never converted with a mix of
+ * old and new rates
+ *
+ * @author phillipsr
+ */
+public final class CurrencyConverter {
+    private final RoundingMode rounding;
+    private volatile ExchangeRates rates;
+
+    /**
+     * Create a converter using the supplied rates, and banker's rounding (HALF_EVEN)
+     *
+     * @param rates snapshot used to convert amounts
+     */
+    public CurrencyConverter(ExchangeRates rates) {
+        this(rates, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Create a converter using the supplied rates and rounding mode
+     *
+     * @param rates    snapshot used to convert amounts
+     * @param rounding applied to converted amounts
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public CurrencyConverter(ExchangeRates rates, RoundingMode rounding) {
+        if (rates == null) {
+            throw new IllegalArgumentException("Exchange rates cannot be null");
+        }
+        if (rounding == null) {
+            throw new IllegalArgumentException("Rounding mode cannot be null");
+        }
+        this.rates = rates;
+        this.rounding = rounding;
+    }
+
+    /**
+     * @return the rate snapshot currently in use
+     */
+    public ExchangeRates getRates() {
+        return rates;
+    }
+
+    /**
+     * Replace the rate snapshot used for subsequent conversions
+     *
+     * @param rates new snapshot
+     * @throws IllegalArgumentException if rates is null
+     */
+    public void setRates(ExchangeRates rates) {
+        if (rates == null) {
+            throw new IllegalArgumentException("Exchange rates cannot be null");
+        }
+        this.rates = rates;
+    }
+
+    /**
+     * @return the rounding mode applied to converted amounts
+     */
+    public RoundingMode getRounding() {
+        return rounding;
+    }
+
+    /**
+     * Convert the supplied amount into the target currency
+     *
+     * @param amount to be converted
+     * @param target currency of the result
+     * @return an amount in the target currency, equivalent to <code>amount</code>
+     * @throws IllegalArgumentException if either currency is not present in the rate snapshot
+     */
+    public MonetaryAmount
+    convert(MonetaryAmount amount, Currency target) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("Target currency cannot be null");
+        }
+        if (amount.getCurrency() == target) {
+            return amount;
+        }
+        long result = convert(amount.longValue(), numericCode(amount.getCurrency()), numericCode(target));
+        return new MonetaryAmount(target, result);
+    }
+
+    /**
+     * Convert an amount, expressed in minor units, from one currency to another
+     *
+     * @param minorUnits amount to be converted
+     * @param source     ISO4217 numeric code of the currency of <code>minorUnits</code>
+     * @param target     ISO4217 numeric code of the currency to convert to
+     * @return the converted amount, in minor units of the target currency
+     * @throws IllegalArgumentException if either currency is not present in the rate snapshot
+     */
+    public long
+    convert(long minorUnits, int source, int target) {
+        ExchangeRates snapshot = rates;
+        return snapshot.convert(snapshot.ordinalOf(source), snapshot.ordinalOf(target), minorUnits, rounding);
+    }
+
+    /**
+     * Convert a column of amounts, all in the same currency, into the target currency
+     *
+     * @param amounts in minor units of the source currency
+     * @param source  ISO4217 numeric code of the currency of <code>amounts</code>
+     * @param target  ISO4217 numeric code of the currency to convert to
+     * @param results receives the converted amounts (may be the same array as <code>amounts</code>)
+     * @throws IllegalArgumentException if either currency is not present in the rate snapshot,
+     *                                  or <code>results</code> is shorter than <code>amounts</code>
+     */
+    public void
+    convert(long[] amounts, int source, int target, long[] results) {
+        checkColumns(amounts.length, results.length);
+        ExchangeRates snapshot = rates;
+        int sourceOrdinal = snapshot.ordinalOf(source);
+        int targetOrdinal = snapshot.ordinalOf(target);
+        for (int i = 0; i < amounts.length; i++) {
+            results[i] = snapshot.convert(sourceOrdinal, targetOrdinal, amounts[i], rounding);
+        }
+    }
+
+    /**
+     * Convert a column of amounts, each in its own currency, into the target currency
+     *
+     * @param amounts in minor units of their respective currency
+     * @param sources ISO4217 numeric code of the currency of each entry in <code>amounts</code>
+     * @param target  ISO4217 numeric code of the currency to convert to
+     * @param results receives the converted amounts (may be the same array as <code>amounts</code>)
+     * @throws IllegalArgumentException if any currency is not present in the rate snapshot,
+     *                                  or the arrays are of different lengths
+     */
+    public void
+    convert(long[] amounts, int[] sources, int target, long[] results) {
+        checkColumns(amounts.length, sources.length);
+        checkColumns(amounts.length, results.length);
+        ExchangeRates snapshot = rates;
+        int targetOrdinal = snapshot.ordinalOf(target);
+        for (int i = 0; i < amounts.length; i++) {
+            results[i] = snapshot.convert(snapshot.ordinalOf(sources[i]), targetOrdinal, amounts[i], rounding);
+        }
+    }
+
+    /**
+     * Total a column of amounts, each in its own currency, in the target currency; each
+     * amount is converted (and rounded) individually before being added to the total
+     *
+     * @param amounts in minor units of their respective currency
+     * @param sources ISO4217 numeric code of the currency of each entry in <code>amounts</code>
+     * @param target  ISO4217 numeric code of the currency of the result
+     * @return the sum of the converted amounts, in minor units of the target currency
+     * @throws IllegalArgumentException if any currency is not present in the rate snapshot,
+     *                                  or the arrays are of different lengths
+     * @throws ArithmeticException      if the sum overflows a long
+     */
+    public long
+    sum(long[] amounts, int[] sources, int target) {
+        checkColumns(amounts.length, sources.length);
+        ExchangeRates snapshot = rates;
+        int targetOrdinal = snapshot.ordinalOf(target);
+        long total = 0;
+        for (int i = 0; i < amounts.length; i++) {
+            total = add(total, snapshot.convert(snapshot.ordinalOf(sources[i]), targetOrdinal, amounts[i], rounding));
+        }
+        return total;
+    }
+
+    /**
+     * Total the supplied amounts in the target currency
+     *
+     * @param amounts to be totalled, in any currencies present in the rate snapshot
+     * @param target  currency of the result
+     * @return the sum of the converted amounts
+     * @throws IllegalArgumentException if any currency is not present in the rate snapshot
+     * @throws ArithmeticException      if the sum overflows a long
+     */
+    public MonetaryAmount
+    sum(Iterable<MonetaryAmount> amounts, Currency target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target currency cannot be null");
+        }
+        ExchangeRates snapshot = rates;
+        int targetOrdinal = snapshot.ordinalOf(numericCode(target));
+        long total = 0;
+        for (MonetaryAmount amount : amounts) {
+            if (amount.getCurrency() == target) {
+                total = add(total, amount.longValue());
+            } else {
+                int sourceOrdinal = snapshot.ordinalOf(numericCode(amount.getCurrency()));
+                total = add(total, snapshot.convert(sourceOrdinal, targetOrdinal, amount.longValue(), rounding));
+            }
+        }
+        return new MonetaryAmount(target, total);
+    }
+
+    // as converting an amount too large for a long (see ExchangeRates#convert)
+    private static long
+    add(long total, long amount) {
+        long result = total + amount;
+        if (((total ^ result) & (amount ^ result)) < 0) {
+            throw new ArithmeticException("Sum of converted amounts overflows a long");
+        }
+        return result;
+    }
+
+    private static int
+    numericCode(Currency currency) {
+        int result = ISO4712Codes.getNumericCode(currency);
+        if (result < 0) {
+            throw new IllegalArgumentException("No ISO4217 numeric code for " + currency);
+        }
+        return result;
+    }
+
+    private static void
+    checkColumns(int expected, int actual) {
+        if (actual < expected) {
+            throw new IllegalArgumentException(
+                    "Column length mismatch, expected=" + expected + ", got=" + actual);
+        }
+    }
+
+    @Override
+    public String
+    toString() {
+        return "CurrencyConverter{rates=" + rates + ", rounding=" + rounding + "}";
+    }
+}
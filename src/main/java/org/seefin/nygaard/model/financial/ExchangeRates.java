@@ -0,0 +1,381 @@
+package org.seefin.nygaard.model.financial;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of foreign exchange rates between a set of currencies
+ * <p/>
+ * Currencies are keyed by their ISO4217 numeric code (see {@link ISO4712Codes}) and
+ * assigned an ordinal when the snapshot is built; the cross rates are then held in a
+ * primitive matrix indexed by <code>[source ordinal * size + target ordinal]</code>, as
+ * fixed point values with {@link #RATE_DIGITS} decimal places, pre-scaled by the
+ * difference in minor units between the two currencies, so that a conversion is a
+ * single multiply and divide on the minor-unit (long) value of an amount
+ * <p/>
+ * Snapshots are loaded from a properties file, quoting each currency against a base
+ * currency, e.g.:
+ * <pre>
+ *   base=EUR
+ *   USD=1.0842
+ *   GBP=0.8571
+ *   JPY=161.87
+ * </pre>
+ * where each value is the number of units of the keyed currency equal to one unit of
+ * the base currency; cross rates are derived from the base quotes
+ *
+ * @author phillipsr
+ */
+public final class ExchangeRates
+        implements Serializable {
+    /**
+     * decimal places of precision held for each rate
+     */
+    public static final int RATE_DIGITS = 9;
+    private static final long RATE_SCALE = 1000000000L;
+    private static final String BASE_KEY = "base";
+    private static final int NUMERIC_CODES = 1000;
+    private static final short NO_ORDINAL = -1;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+
+    private final Currency base;
+    private final int size;
+    // ordinal -> ISO4217 numeric code
+    private final int[] numericCodes;
+    // ISO4217 numeric code -> ordinal
+    private final short[] ordinals;
+    // ordinal -> number of minor unit digits
+    private final int[] fractionDigits;
+    // [source * size + target] -> rate multiplier (fixed point, including minor unit adjustment)
+    private final long[] multipliers;
+    // [source * size + target] -> divisor to apply after multiplication
+    private final long[] divisors;
+    // [source * size + target] -> largest absolute amount that can be multiplied without overflow
+    private final long[] limits;
+
+    private ExchangeRates(Currency base, Map<Currency, BigDecimal> quotes) {
+        this.base = base;
+        this.size = quotes.size();
+        this.numericCodes = new int[size];
+        this.fractionDigits = new int[size];
+        this.ordinals = new short[NUMERIC_CODES];
+        Arrays.fill(ordinals, NO_ORDINAL);
+        BigDecimal[] rates = new BigDecimal[size];
+        int ordinal = 0;
+        for (Map.Entry<Currency, BigDecimal> quote : quotes.entrySet()) {
+            int numeric = ISO4712Codes.getNumericCode(quote.getKey());
+            if (numeric < 0) {
+                throw new IllegalArgumentException("No ISO4217 numeric code for " + quote.getKey());
+            }
+            rates[ordinal] = quote.getValue();
+            numericCodes[ordinal] = numeric;
+            fractionDigits[ordinal] = fractionDigits(quote.getKey());
+            ordinals[numeric] = (short) ordinal;
+            ordinal++;
+        }
+        this.multipliers = new long[size * size];
+        this.divisors = new long[size * size];
+        this.limits = new long[size * size];
+        for (int source = 0; source < size; source++) {
+            for (int target = 0; target < size; target++) {
+                int cell = source * size + target;
+                BigDecimal rate = rates[target].divide(rates[source], MathContext.DECIMAL128)
+                        .setScale(RATE_DIGITS, RoundingMode.HALF_EVEN);
+                int digits = fractionDigits[target] - fractionDigits[source];
+                if (rate.unscaledValue().bitLength() > 63) {
+                    throw outOfRange(rate, source, target);
+                }
+                long multiplier = rate.unscaledValue().longValue();
+                long divisor = RATE_SCALE;
+                if (digits > 0) {
+                    if (multiplier > Long.MAX_VALUE / POWERS_OF_TEN[digits]) {
+                        throw outOfRange(rate, source, target);
+                    }
+                    multiplier *= POWERS_OF_TEN[digits];
+                } else {
+                    divisor *= POWERS_OF_TEN[-digits];
+                }
+                multipliers[cell] = multiplier;
+                divisors[cell] = divisor;
+                limits[cell] = multiplier == 0 ? Long.MAX_VALUE : Long.MAX_VALUE / multiplier;
+            }
+        }
+    }
+
+    private IllegalArgumentException
+    outOfRange(BigDecimal rate, int source, int target) {
+        return new IllegalArgumentException("Exchange rate from " + numericCodes[source] + " to "
+                + numericCodes[target] + " is out of range (" + rate + ")");
+    }
+
+    /**
+     * Build a snapshot from the quotes supplied
+     *
+     * @param base   currency against which all the quotes are made
+     * @param quotes map of currency to units of that currency per unit of <code>base</code>
+     * @return a new snapshot initialized from the parameters
+     * @throws IllegalArgumentException if any of the parameters are null, a quote is not positive,
+     *                                  or a cross rate is too large to be held as a fixed point long
+     */
+    public static ExchangeRates
+    create(Currency base, Map<Currency, BigDecimal> quotes) {
+        if (base == null) {
+            throw new IllegalArgumentException("Base currency cannot be null");
+        }
+        if (quotes == null) {
+            throw new IllegalArgumentException("Quotes cannot be null");
+        }
+        Map<Currency, BigDecimal> allQuotes = new TreeMap<>(CurrencyCodeOrder.INSTANCE);
+        allQuotes.put(base, BigDecimal.ONE);
+        for (Map.Entry<Currency, BigDecimal> quote : quotes.entrySet()) {
+            if (base.equals(quote.getKey()) == true) {
+                continue;
+            }
+            if (quote.getValue() == null || quote.getValue().signum() <= 0) {
+                throw new IllegalArgumentException(
+                        "Exchange rate for " + quote.getKey() + " must be positive, not " + quote.getValue());
+            }
+            allQuotes.put(quote.getKey(), quote.getValue());
+        }
+        return new ExchangeRates(base, allQuotes);
+    }
+
+    /**
+     * Build a snapshot from the property set supplied (see class comment for format)
+     *
+     * @param properties containing a <code>base</code> entry plus one quote per currency
+     * @return a new snapshot initialized from the properties
+     * @throws IllegalArgumentException if the base currency is missing, or a key or value is invalid
+     */
+    public static ExchangeRates
+    fromProperties(Properties properties) {
+        String baseCode = properties.getProperty(BASE_KEY);
+        if (baseCode == null || baseCode.trim().isEmpty() == true) {
+            throw new IllegalArgumentException("Exchange rates must specify a '" + BASE_KEY + "' currency");
+        }
+        Map<Currency, BigDecimal> quotes = new TreeMap<>(CurrencyCodeOrder.INSTANCE);
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String key = ((String) entry.getKey()).trim();
+            if (BASE_KEY.equals(key) == false) {
+                quotes.put(Currency.getInstance(key), new BigDecimal(((String) entry.getValue()).trim()));
+            }
+        }
+        return create(Currency.getInstance(baseCode.trim()), quotes);
+    }
+
+    /**
+     * Load a rate snapshot from the file supplied
+     *
+     * @param ratesFile properties file of rate quotes
+     * @return a new snapshot initialized from the file's contents
+     * @throws IOException if the file cannot be read
+     */
+    public static ExchangeRates
+    load(File ratesFile)
+            throws IOException {
+        if (ratesFile == null) {
+            throw new IllegalArgumentException("Rates file cannot be null");
+        }
+        try (InputStream input = new FileInputStream(ratesFile)) {
+            return load(input);
+        }
+    }
+
+    /**
+     * Load a rate snapshot from the classpath resource supplied
+     *
+     * @param resourcePath location of a properties resource of rate quotes
+     * @return a new snapshot initialized from the resource's contents
+     * @throws IOException if the resource cannot be found or read
+     */
+    public static ExchangeRates
+    loadResource(String resourcePath)
+            throws IOException {
+        if (resourcePath == null || resourcePath.isEmpty() == true) {
+            throw new IllegalArgumentException("Rates resource location cannot be null or empty");
+        }
+        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = tccl.getResourceAsStream(resourcePath)) {
+            if (input == null) {
+                throw new IOException("No exchange rates available (location='" + resourcePath + "')");
+            }
+            return load(input);
+        }
+    }
+
+    private static ExchangeRates
+    load(InputStream input)
+            throws IOException {
+        Properties properties = new Properties();
+        properties.load(input);
+        return fromProperties(properties);
+    }
+
+    /**
+     * @return the currency against which the snapshot was quoted
+     */
+    public Currency getBase() {
+        return base;
+    }
+
+    /**
+     * @return the number of currencies in this snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the ISO4217 numeric codes of the currencies in this snapshot, in ordinal order
+     */
+    public int[] getNumericCodes() {
+        return numericCodes.clone();
+    }
+
+    /**
+     * @param numericCode ISO4217 numeric currency code
+     * @return true if this snapshot holds rates for the currency supplied
+     */
+    public boolean
+    contains(int numericCode) {
+        return numericCode >= 0 && numericCode < NUMERIC_CODES && ordinals[numericCode] != NO_ORDINAL;
+    }
+
+    /**
+     * @param numericCode ISO4217 numeric currency code
+     * @return the ordinal assigned to the currency in this snapshot
+     * @throws IllegalArgumentException if the currency is not in this snapshot
+     */
+    int
+    ordinalOf(int numericCode) {
+        if (contains(numericCode) == false) {
+            throw new IllegalArgumentException("No exchange rate for currency " + numericCode);
+        }
+        return ordinals[numericCode];
+    }
+
+    /**
+     * @param source ISO4217 numeric code of the currency to convert from
+     * @param target ISO4217 numeric code of the currency to convert to
+     * @return the exchange rate quoted for the currencies supplied
+     * @throws IllegalArgumentException if either currency is not in this snapshot
+     */
+    public BigDecimal
+    getRate(int source, int target) {
+        int sourceOrdinal = ordinalOf(source);
+        int targetOrdinal = ordinalOf(target);
+        int cell = cell(sourceOrdinal, targetOrdinal);
+        // remove the minor unit adjustment, to answer with the rate between major units
+        return BigDecimal.valueOf(multipliers[cell])
+                .divide(BigDecimal.valueOf(divisors[cell]), MathContext.DECIMAL128)
+                .scaleByPowerOfTen(fractionDigits[sourceOrdinal] - fractionDigits[targetOrdinal])
+                .setScale(RATE_DIGITS, RoundingMode.HALF_EVEN)
+                .stripTrailingZeros();
+    }
+
+    /**
+     * Convert an amount expressed in minor units from one currency to another
+     *
+     * @param sourceOrdinal ordinal of the source currency
+     * @param targetOrdinal ordinal of the target currency
+     * @param minorUnits    amount to convert
+     * @param rounding      to apply to the converted amount
+     * @return the converted amount, in minor units of the target currency
+     */
+    long
+    convert(int sourceOrdinal, int targetOrdinal, long minorUnits, RoundingMode rounding) {
+        int cell = cell(sourceOrdinal, targetOrdinal);
+        if (minorUnits <= limits[cell] && minorUnits >= -limits[cell]) {
+            return divide(minorUnits * multipliers[cell], divisors[cell], rounding);
+        }
+        // product would overflow a long, fall back to arbitrary precision
+        return BigDecimal.valueOf(minorUnits)
+                .multiply(BigDecimal.valueOf(multipliers[cell]))
+                .divide(BigDecimal.valueOf(divisors[cell]), 0, rounding)
+                .longValueExact();
+    }
+
+    private int
+    cell(int sourceOrdinal, int targetOrdinal) {
+        return sourceOrdinal * size + targetOrdinal;
+    }
+
+    /**
+     * Integer division of <code>dividend</code> by the (positive) <code>divisor</code>,
+     * rounding the quotient as specified
+     *
+     * @throws ArithmeticException if rounding is UNNECESSARY, and the division is inexact
+     */
+    static long
+    divide(long dividend, long divisor, RoundingMode rounding) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = dividend < 0 ? -1 : 1;
+        long twiceRemainder = Math.abs(remainder) * 2;
+        boolean increment;
+        switch (rounding) {
+            case UP:
+                increment = true;
+                break;
+            case DOWN:
+                increment = false;
+                break;
+            case CEILING:
+                increment = sign > 0;
+                break;
+            case FLOOR:
+                increment = sign < 0;
+                break;
+            case HALF_UP:
+                increment = twiceRemainder >= divisor;
+                break;
+            case HALF_DOWN:
+                increment = twiceRemainder > divisor;
+                break;
+            case HALF_EVEN:
+                increment = twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) != 0);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return increment ? quotient + sign : quotient;
+    }
+
+    private static int
+    fractionDigits(Currency currency) {
+        int digits = currency.getDefaultFractionDigits();
+        return digits < 0 ? 0 : digits;
+    }
+
+    @Override
+    public String
+    toString() {
+        return "ExchangeRates{base=" + base + ", currencies=" + size + "}";
+    }
+
+    /* orders currencies by their ISO4217 alpha code, to give a stable ordinal assignment */
+    private static final class CurrencyCodeOrder
+            implements java.util.Comparator<Currency>, Serializable {
+        private static final CurrencyCodeOrder INSTANCE = new CurrencyCodeOrder();
+
+        @Override
+        public int compare(Currency left, Currency right) {
+            return left.getCurrencyCode().compareTo(right.getCurrencyCode());
+        }
+    }
+}
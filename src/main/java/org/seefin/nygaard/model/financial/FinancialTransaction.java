@@ -14,7 +14,7 @@ public class FinancialTransaction
     private final MonetaryAmount amount;
     private final Account debitAccount;
     private final Account creditAccount;
-    private Identity identity = GUID.createUniqueId();
+    private final Identity identity;
 
     /**
      * Create a new credit transfer request
@@ -27,6 +27,24 @@ public class FinancialTransaction
      */
     public FinancialTransaction(Account debitAccount,
                                 MonetaryAmount amount, Account creditAccount) {
+        this(GUID.createUniqueId(), debitAccount, amount, creditAccount);
+    }
+
+    /**
+     * Re-create a credit transfer request with a known identity (e.g., one received from another system)
+     *
+     * @param identity      of the transaction
+     * @param debitAccount  from which the funds will be drawn
+     * @param amount        to be transferred
+     * @param creditAccount to which the funds will be credited
+     * @throws IllegalArgumentException if any of the parameters are null,
+     *                                  or if the two accounts are the same
+     */
+    public FinancialTransaction(Identity identity, Account debitAccount,
+                                MonetaryAmount amount, Account creditAccount) {
+        if (identity == null) {
+            throw new IllegalArgumentException("Identity may not be null");
+        }
         if (amount == null) {
             throw new IllegalArgumentException("Amount may not be null");
         }
@@ -39,6 +57,7 @@ public class FinancialTransaction
         if (debitAccount.getIdentifier().equals(creditAccount.getIdentifier())) {
             throw new IllegalArgumentException("Cannot transfer to/from the same account (" + debitAccount + ")");
         }
+        this.identity = identity;
         this.amount = amount;
         this.debitAccount = debitAccount;
         this.creditAccount = creditAccount;
@@ -1,199 +1,206 @@
 package org.seefin.nygaard.model.financial;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * ISO4712 Currency code table
  * <p/>
  * work-around for pre-1.7 java code that needs the numeric ISO4172 value
  * (also provides reverse look-up from numeric code, needed for j7 too)
+ * <p/>
+ * Look-ups in either direction are a single read of an array indexed by the code,
+ * with no boxing, hashing or synchronization (e.g., for decoding the currency code
+ * of every ISO8583 message)
  *
  * @author phillipsr
  */
 public final class ISO4712Codes {
-    public static final Map<String, Integer> Iso4217map = new HashMap<>();
+    public static final Map<String, Integer> Iso4217map;
 
     static {
-        Iso4217map.put("AED", 784);
-        Iso4217map.put("AFN", 971);
-        Iso4217map.put("ALL", 8);
-        Iso4217map.put("AMD", 51);
-        Iso4217map.put("ANG", 532);
-        Iso4217map.put("AOA", 973);
-        Iso4217map.put("ARS", 32);
-        Iso4217map.put("AUD", 36);
-        Iso4217map.put("AWG", 533);
-        Iso4217map.put("AZN", 944);
-        Iso4217map.put("BAM", 977);
-        Iso4217map.put("BBD", 52);
-        Iso4217map.put("BDT", 50);
-        Iso4217map.put("BGN", 975);
-        Iso4217map.put("BHD", 48);
-        Iso4217map.put("BIF", 108);
-        Iso4217map.put("BMD", 60);
-        Iso4217map.put("BND", 96);
-        Iso4217map.put("BOB", 68);
-        Iso4217map.put("BOV", 984);
-        Iso4217map.put("BRL", 986);
-        Iso4217map.put("BSD", 44);
-        Iso4217map.put("BTN", 64);
-        Iso4217map.put("BWP", 72);
-        Iso4217map.put("BYR", 974);
-        Iso4217map.put("BZD", 84);
-        Iso4217map.put("CAD", 124);
-        Iso4217map.put("CDF", 976);
-        Iso4217map.put("CHE", 947);
-        Iso4217map.put("CHF", 756);
-        Iso4217map.put("CHW", 948);
-        Iso4217map.put("CLF", 990);
-        Iso4217map.put("CLP", 152);
-        Iso4217map.put("CNY", 156);
-        Iso4217map.put("COP", 170);
-        Iso4217map.put("COU", 970);
-        Iso4217map.put("CRC", 188);
-        Iso4217map.put("CUC", 931);
-        Iso4217map.put("CUP", 192);
-        Iso4217map.put("CVE", 132);
-        Iso4217map.put("CZK", 203);
-        Iso4217map.put("DJF", 262);
-        Iso4217map.put("DKK", 208);
-        Iso4217map.put("DOP", 214);
-        Iso4217map.put("DZD", 12);
-        Iso4217map.put("EGP", 818);
-        Iso4217map.put("ERN", 232);
-        Iso4217map.put("ETB", 230);
-        Iso4217map.put("EUR", 978);
-        Iso4217map.put("FJD", 242);
-        Iso4217map.put("FKP", 238);
-        Iso4217map.put("GBP", 826);
-        Iso4217map.put("GEL", 981);
-        Iso4217map.put("GHS", 936);
-        Iso4217map.put("GIP", 292);
-        Iso4217map.put("GMD", 270);
-        Iso4217map.put("GNF", 324);
-        Iso4217map.put("GTQ", 320);
-        Iso4217map.put("GYD", 328);
-        Iso4217map.put("HKD", 344);
-        Iso4217map.put("HNL", 340);
-        Iso4217map.put("HRK", 191);
-        Iso4217map.put("HTG", 332);
-        Iso4217map.put("HUF", 348);
-        Iso4217map.put("IDR", 360);
-        Iso4217map.put("ILS", 376);
-        Iso4217map.put("INR", 356);
-        Iso4217map.put("IQD", 368);
-        Iso4217map.put("IRR", 364);
-        Iso4217map.put("ISK", 352);
-        Iso4217map.put("JMD", 388);
-        Iso4217map.put("JOD", 400);
-        Iso4217map.put("JPY", 392);
-        Iso4217map.put("KES", 404);
-        Iso4217map.put("KGS", 417);
-        Iso4217map.put("KHR", 116);
-        Iso4217map.put("KMF", 174);
-        Iso4217map.put("KPW", 408);
-        Iso4217map.put("KRW", 410);
-        Iso4217map.put("KWD", 414);
-        Iso4217map.put("KYD", 136);
-        Iso4217map.put("KZT", 398);
-        Iso4217map.put("LAK", 418);
-        Iso4217map.put("LBP", 422);
-        Iso4217map.put("LKR", 144);
-        Iso4217map.put("LRD", 430);
-        Iso4217map.put("LSL", 426);
-        Iso4217map.put("LTL", 440);
-        Iso4217map.put("LVL", 428);
-        Iso4217map.put("LYD", 434);
-        Iso4217map.put("MAD", 504);
-        Iso4217map.put("MDL", 498);
-        Iso4217map.put("MGA", 969);
-        Iso4217map.put("MKD", 807);
-        Iso4217map.put("MMK", 104);
-        Iso4217map.put("MNT", 496);
-        Iso4217map.put("MOP", 446);
-        Iso4217map.put("MRO", 478);
-        Iso4217map.put("MUR", 480);
-        Iso4217map.put("MVR", 462);
-        Iso4217map.put("MWK", 454);
-        Iso4217map.put("MXN", 484);
-        Iso4217map.put("MXV", 979);
-        Iso4217map.put("MYR", 458);
-        Iso4217map.put("MZN", 943);
-        Iso4217map.put("NAD", 516);
-        Iso4217map.put("NGN", 566);
-        Iso4217map.put("NIO", 558);
-        Iso4217map.put("NOK", 578);
-        Iso4217map.put("NPR", 524);
-        Iso4217map.put("NZD", 554);
-        Iso4217map.put("OMR", 512);
-        Iso4217map.put("PAB", 590);
-        Iso4217map.put("PEN", 604);
-        Iso4217map.put("PGK", 598);
-        Iso4217map.put("PHP", 608);
-        Iso4217map.put("PKR", 586);
-        Iso4217map.put("PLN", 985);
-        Iso4217map.put("PYG", 600);
-        Iso4217map.put("QAR", 634);
-        Iso4217map.put("RON", 946);
-        Iso4217map.put("RSD", 941);
-        Iso4217map.put("RUB", 643);
-        Iso4217map.put("RWF", 646);
-        Iso4217map.put("SAR", 682);
-        Iso4217map.put("SBD", 90);
-        Iso4217map.put("SCR", 690);
-        Iso4217map.put("SDG", 938);
-        Iso4217map.put("SEK", 752);
-        Iso4217map.put("SGD", 702);
-        Iso4217map.put("SHP", 654);
-        Iso4217map.put("SLL", 694);
-        Iso4217map.put("SOS", 706);
-        Iso4217map.put("SRD", 968);
-        Iso4217map.put("SSP", 728);
-        Iso4217map.put("STD", 678);
-        Iso4217map.put("SYP", 760);
-        Iso4217map.put("SZL", 748);
-        Iso4217map.put("THB", 764);
-        Iso4217map.put("TJS", 972);
-        Iso4217map.put("TMT", 934);
-        Iso4217map.put("TND", 788);
-        Iso4217map.put("TOP", 776);
-        Iso4217map.put("TRY", 949);
-        Iso4217map.put("TTD", 780);
-        Iso4217map.put("TWD", 901);
-        Iso4217map.put("TZS", 834);
-        Iso4217map.put("UAH", 980);
-        Iso4217map.put("UGX", 800);
-        Iso4217map.put("USD", 840);
-        Iso4217map.put("USN", 997);
-        Iso4217map.put("USS", 998);
-        Iso4217map.put("UYI", 940);
-        Iso4217map.put("UYU", 858);
-        Iso4217map.put("UZS", 860);
-        Iso4217map.put("VEF", 937);
-        Iso4217map.put("VND", 704);
-        Iso4217map.put("VUV", 548);
-        Iso4217map.put("WST", 882);
-        Iso4217map.put("XAF", 950);
-        Iso4217map.put("XAG", 961);
-        Iso4217map.put("XAU", 959);
-        Iso4217map.put("XBA", 955);
-        Iso4217map.put("XBB", 956);
-        Iso4217map.put("XBC", 957);
-        Iso4217map.put("XBD", 958);
-        Iso4217map.put("XCD", 951);
-        Iso4217map.put("XDR", 960);
-        Iso4217map.put("XFU", 0);
-        Iso4217map.put("XPF", 953);
-        Iso4217map.put("XPT", 962);
-        Iso4217map.put("XTS", 963);
-        Iso4217map.put("XXX", 999);
-        Iso4217map.put("YER", 886);
+        Map<String, Integer> codes = new HashMap<>();
+        codes.put("AED", 784);
+        codes.put("AFN", 971);
+        codes.put("ALL", 8);
+        codes.put("AMD", 51);
+        codes.put("ANG", 532);
+        codes.put("AOA", 973);
+        codes.put("ARS", 32);
+        codes.put("AUD", 36);
+        codes.put("AWG", 533);
+        codes.put("AZN", 944);
+        codes.put("BAM", 977);
+        codes.put("BBD", 52);
+        codes.put("BDT", 50);
+        codes.put("BGN", 975);
+        codes.put("BHD", 48);
+        codes.put("BIF", 108);
+        codes.put("BMD", 60);
+        codes.put("BND", 96);
+        codes.put("BOB", 68);
+        codes.put("BOV", 984);
+        codes.put("BRL", 986);
+        codes.put("BSD", 44);
+        codes.put("BTN", 64);
+        codes.put("BWP", 72);
+        codes.put("BYR", 974);
+        codes.put("BZD", 84);
+        codes.put("CAD", 124);
+        codes.put("CDF", 976);
+        codes.put("CHE", 947);
+        codes.put("CHF", 756);
+        codes.put("CHW", 948);
+        codes.put("CLF", 990);
+        codes.put("CLP", 152);
+        codes.put("CNY", 156);
+        codes.put("COP", 170);
+        codes.put("COU", 970);
+        codes.put("CRC", 188);
+        codes.put("CUC", 931);
+        codes.put("CUP", 192);
+        codes.put("CVE", 132);
+        codes.put("CZK", 203);
+        codes.put("DJF", 262);
+        codes.put("DKK", 208);
+        codes.put("DOP", 214);
+        codes.put("DZD", 12);
+        codes.put("EGP", 818);
+        codes.put("ERN", 232);
+        codes.put("ETB", 230);
+        codes.put("EUR", 978);
+        codes.put("FJD", 242);
+        codes.put("FKP", 238);
+        codes.put("GBP", 826);
+        codes.put("GEL", 981);
+        codes.put("GHS", 936);
+        codes.put("GIP", 292);
+        codes.put("GMD", 270);
+        codes.put("GNF", 324);
+        codes.put("GTQ", 320);
+        codes.put("GYD", 328);
+        codes.put("HKD", 344);
+        codes.put("HNL", 340);
+        codes.put("HRK", 191);
+        codes.put("HTG", 332);
+        codes.put("HUF", 348);
+        codes.put("IDR", 360);
+        codes.put("ILS", 376);
+        codes.put("INR", 356);
+        codes.put("IQD", 368);
+        codes.put("IRR", 364);
+        codes.put("ISK", 352);
+        codes.put("JMD", 388);
+        codes.put("JOD", 400);
+        codes.put("JPY", 392);
+        codes.put("KES", 404);
+        codes.put("KGS", 417);
+        codes.put("KHR", 116);
+        codes.put("KMF", 174);
+        codes.put("KPW", 408);
+        codes.put("KRW", 410);
+        codes.put("KWD", 414);
+        codes.put("KYD", 136);
+        codes.put("KZT", 398);
+        codes.put("LAK", 418);
+        codes.put("LBP", 422);
+        codes.put("LKR", 144);
+        codes.put("LRD", 430);
+        codes.put("LSL", 426);
+        codes.put("LTL", 440);
+        codes.put("LVL", 428);
+        codes.put("LYD", 434);
+        codes.put("MAD", 504);
+        codes.put("MDL", 498);
+        codes.put("MGA", 969);
+        codes.put("MKD", 807);
+        codes.put("MMK", 104);
+        codes.put("MNT", 496);
+        codes.put("MOP", 446);
+        codes.put("MRO", 478);
+        codes.put("MUR", 480);
+        codes.put("MVR", 462);
+        codes.put("MWK", 454);
+        codes.put("MXN", 484);
+        codes.put("MXV", 979);
+        codes.put("MYR", 458);
+        codes.put("MZN", 943);
+        codes.put("NAD", 516);
+        codes.put("NGN", 566);
+        codes.put("NIO", 558);
+        codes.put("NOK", 578);
+        codes.put("NPR", 524);
+        codes.put("NZD", 554);
+        codes.put("OMR", 512);
+        codes.put("PAB", 590);
+        codes.put("PEN", 604);
+        codes.put("PGK", 598);
+        codes.put("PHP", 608);
+        codes.put("PKR", 586);
+        codes.put("PLN", 985);
+        codes.put("PYG", 600);
+        codes.put("QAR", 634);
+        codes.put("RON", 946);
+        codes.put("RSD", 941);
+        codes.put("RUB", 643);
+        codes.put("RWF", 646);
+        codes.put("SAR", 682);
+        codes.put("SBD", 90);
+        codes.put("SCR", 690);
+        codes.put("SDG", 938);
+        codes.put("SEK", 752);
+        codes.put("SGD", 702);
+        codes.put("SHP", 654);
+        codes.put("SLL", 694);
+        codes.put("SOS", 706);
+        codes.put("SRD", 968);
+        codes.put("SSP", 728);
+        codes.put("STD", 678);
+        codes.put("SYP", 760);
+        codes.put("SZL", 748);
+        codes.put("THB", 764);
+        codes.put("TJS", 972);
+        codes.put("TMT", 934);
+        codes.put("TND", 788);
+        codes.put("TOP", 776);
+        codes.put("TRY", 949);
+        codes.put("TTD", 780);
+        codes.put("TWD", 901);
+        codes.put("TZS", 834);
+        codes.put("UAH", 980);
+        codes.put("UGX", 800);
+        codes.put("USD", 840);
+        codes.put("USN", 997);
+        codes.put("USS", 998);
+        codes.put("UYI", 940);
+        codes.put("UYU", 858);
+        codes.put("UZS", 860);
+        codes.put("VEF", 937);
+        codes.put("VND", 704);
+        codes.put("VUV", 548);
+        codes.put("WST", 882);
+        codes.put("XAF", 950);
+        codes.put("XAG", 961);
+        codes.put("XAU", 959);
+        codes.put("XBA", 955);
+        codes.put("XBB", 956);
+        codes.put("XBC", 957);
+        codes.put("XBD", 958);
+        codes.put("XCD", 951);
+        codes.put("XDR", 960);
+        codes.put("XFU", 0);
+        codes.put("XPF", 953);
+        codes.put("XPT", 962);
+        codes.put("XTS", 963);
+        codes.put("XXX", 999);
+        codes.put("YER", 886);
+        Iso4217map = Collections.unmodifiableMap(codes);
     }
 
-    private static Map<Integer, Currency> numericMap = new HashMap<>();
-
     /**
      * Answer with Currency instance having the numeric code supplied
      *
@@ -202,27 +209,96 @@ public final class ISO4712Codes {
      */
     public static Currency
     getCurrency(int currencyCode) {
-        Currency result = numericMap.get(currencyCode);
-        if (result != null) {
-            return result;
+        if (currencyCode < 0 || currencyCode >= NUMERIC_CODES) {
+            return null;
         }
-		/* Java7 code
-	    for(Currency c : Currency.getAvailableCurrencies())
-	    {
-	        if ( c.getNumericCode() == currencyCode)
-	        {
-	        	numericMap.put ( currencyCode, c);
-	            return c;
-	        }
-	    }
-	    */
-        for (Map.Entry<String, Integer> item : Iso4217map.entrySet()) {
-            if (item.getValue() == currencyCode) {
-                result = Currency.getInstance(item.getKey());
-                numericMap.put(currencyCode, result);
-                return result;
+        Currency result = currencies.get(currencyCode);
+        if (result == null && alphaCodes[currencyCode] != null) {
+            try {
+                result = Currency.getInstance(alphaCodes[currencyCode]);
+                currencies.lazySet(currencyCode, result);
+            } catch (IllegalArgumentException e) {
+                // code not supported by this JRE's currency data
             }
         }
-        return null;
+        return result;
+    }
+
+    /**
+     * Answer with the numeric code of the currency having the alpha code supplied
+     *
+     * @param alphaCode ISO4172 alpha (three letter) currency code
+     * @return the matching numeric code, or -1 if not found
+     */
+    public static int
+    getNumericCode(String alphaCode) {
+        int index = alphaIndex(alphaCode);
+        return index < 0 ? -1 : numericCodes[index];
+    }
+
+    /**
+     * Answer with the numeric code of the currency having the alpha code supplied, as its
+     * three letters (e.g., read directly from an input buffer, without creating a String)
+     *
+     * @return the matching numeric code, or -1 if not found
+     */
+    public static int
+    getNumericCode(char first, char second, char third) {
+        int index = alphaIndex(first, second, third);
+        return index < 0 ? -1 : numericCodes[index];
+    }
+
+    /**
+     * Answer with the numeric code of the currency supplied
+     *
+     * @param currency to look-up
+     * @return the matching numeric code, or -1 if not found
+     */
+    public static int
+    getNumericCode(Currency currency) {
+        return getNumericCode(currency.getCurrencyCode());
+    }
+
+    /**
+     * @return the index of the supplied three letter code in the alpha code
+     * table (base-26 value of the letters), or -1 if not an upper-case three letter code
+     */
+    private static int
+    alphaIndex(String alphaCode) {
+        if (alphaCode == null || alphaCode.length() != 3) {
+            return -1;
+        }
+        return alphaIndex(alphaCode.charAt(0), alphaCode.charAt(1), alphaCode.charAt(2));
+    }
+
+    private static int
+    alphaIndex(char first, char second, char third) {
+        if (isUpperCase(first) == false || isUpperCase(second) == false || isUpperCase(third) == false) {
+            return -1;
+        }
+        return ((first - 'A') * 26 + (second - 'A')) * 26 + (third - 'A');
+    }
+
+    private static boolean
+    isUpperCase(char letter) {
+        return letter >= 'A' && letter <= 'Z';
+    }
+
+    /*
+     * Both look-up directions are indexed once, when the class is initialized, and the index
+     * never written afterwards, so may be read from any thread without synchronization; the
+     * Currency instances, which are costly to obtain, are resolved on first look-up of each code
+     */
+    private static final int NUMERIC_CODES = 1000;
+    private static final String[] alphaCodes = new String[NUMERIC_CODES];
+    private static final AtomicReferenceArray<Currency> currencies = new AtomicReferenceArray<>(NUMERIC_CODES);
+    private static final short[] numericCodes = new short[26 * 26 * 26];
+
+    static {
+        Arrays.fill(numericCodes, (short) -1);
+        for (Map.Entry<String, Integer> item : Iso4217map.entrySet()) {
+            numericCodes[alphaIndex(item.getKey())] = item.getValue().shortValue();
+            alphaCodes[item.getValue()] = item.getKey();
+        }
     }
 }
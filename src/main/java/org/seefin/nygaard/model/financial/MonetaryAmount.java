@@ -1,5 +1,11 @@
 package org.seefin.nygaard.model.financial;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Currency;
@@ -116,6 +122,15 @@ public final class MonetaryAmount
         return currency;
     }
 
+    /**
+     * @return the value of this amount in the minor unit of its currency
+     * (e.g., cents for EUR, yen for JPY)
+     */
+    public long
+    longValue() {
+        return value;
+    }
+
     public MonetaryAmount
     add(MonetaryAmount augend) {
         if (augend.getCurrency() != currency) {
@@ -239,4 +254,70 @@ public final class MonetaryAmount
         return Long.compare(this.value, other.value);
     }
 
-}
\ No newline at end of file
+    /**
+     * Serialize amounts by proxy, writing the ISO4217 numeric currency code and the value,
+     * rather than the <code>Currency</code> object graph; the shared <code>Currency</code>
+     * instance is re-bound when read
+     */
+    private Object
+    writeReplace() {
+        return new SerialForm(this);
+    }
+
+    private static final class SerialForm
+            implements Externalizable {
+        private static final long serialVersionUID = 1L;
+        // written in place of a numeric code, for currencies that do not have one
+        private static final short ALPHA_CODE = -1;
+        private Currency currency;
+        private long value;
+
+        public SerialForm() {
+        }
+
+        SerialForm(MonetaryAmount amount) {
+            this.currency = amount.currency;
+            this.value = amount.value;
+        }
+
+        @Override
+        public void
+        writeExternal(ObjectOutput out)
+                throws IOException {
+            int numericCode = ISO4712Codes.getNumericCode(currency);
+            out.writeShort(numericCode < 0 ? ALPHA_CODE : numericCode);
+            if (numericCode < 0) {
+                out.writeUTF(currency.getCurrencyCode());
+            }
+            out.writeLong(value);
+        }
+
+        @Override
+        public void
+        readExternal(ObjectInput in)
+                throws IOException {
+            int numericCode = in.readShort();
+            if (numericCode == ALPHA_CODE) {
+                String alphaCode = in.readUTF();
+                try {
+                    currency = Currency.getInstance(alphaCode);
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidObjectException("Unknown ISO4217 currency code: " + alphaCode);
+                }
+            } else {
+                currency = ISO4712Codes.getCurrency(numericCode);
+            }
+            if (currency == null) {
+                throw new InvalidObjectException("Unknown ISO4217 numeric currency code: " + numericCode);
+            }
+            value = in.readLong();
+        }
+
+        private Object
+        readResolve()
+                throws ObjectStreamException {
+            return new MonetaryAmount(currency, value);
+        }
+    }
+
+}
\ No newline at end of file
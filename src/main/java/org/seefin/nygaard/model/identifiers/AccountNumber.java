@@ -1,15 +1,47 @@
 package org.seefin.nygaard.model.identifiers;
 
+import java.io.IOException;
 import java.util.regex.Pattern;
 
 /**
+ * Base class of account numbers
+ * <p/>
+ * As <code>toString()</code> answers a masked version of the number, equality, hashing and
+ * ordering are defined on the canonical (external) form of the number, or its raw value:
+ * sub-classes that do not hold their external form as a String should override
+ * <code>valueEquals</code>, <code>valueHash</code> and <code>valueCompare</code> to work on
+ * their raw value directly, so that map look-ups need not create Strings. The hash code
+ * is computed once, and cached
+ * <p/>
+ * Similarly, <code>toString()</code> and the <code>appendMasked</code> methods mask the
+ * number according to the {@link MaskPolicy} for its type, reading the characters of the
+ * number through <code>clearLength</code> and <code>clearCharAt</code>, which sub-classes
+ * may override to avoid creating their external form
+ *
  * @author phillipsr
  */
 public abstract class AccountNumber implements Comparable<AccountNumber>, Identity {
-    private static final String STARS = "******************************";
     private static final String PUNCTUATION = " \\.,_/:;-";
     private static final Pattern PUNCTUATIONCleaner = Pattern.compile("[" + PUNCTUATION + "]");
 
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final ThreadLocal<StringBuilder> MASK_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(64);
+        }
+    };
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // zero until computed: racy, but idempotent (as for String)
+    private transient int hash;
+
     @Override
     public boolean equals(Object other) {
         if (this == other) {
@@ -18,17 +50,137 @@ public abstract class AccountNumber implements Comparable<AccountNumber>, Identi
         if (other == null || other.getClass() != this.getClass()) {
             return false;
         }
-        return toString().equals(((AccountNumber) other).toString());
+        return valueEquals((AccountNumber) other);
     }
 
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        int result = hash;
+        if (result == 0) {
+            result = valueHash();
+            hash = result;
+        }
+        return result;
     }
 
+    /**
+     * Account numbers of the same class are ordered by value; those of different classes
+     * are ordered by class name
+     */
     @Override
     public int compareTo(AccountNumber other) {
-        return toString().compareTo(other.toString());
+        if (other.getClass() != this.getClass()) {
+            return this.getClass().getName().compareTo(other.getClass().getName());
+        }
+        return valueCompare(other);
+    }
+
+    /**
+     * @param other account number, of the same class as this
+     * @return true if the value of <code>other</code> is the same as this number's
+     */
+    protected boolean valueEquals(AccountNumber other) {
+        return externalForm().equals(other.externalForm());
+    }
+
+    /**
+     * @return a hash code computed from the value of this number
+     */
+    protected int valueHash() {
+        return externalForm().hashCode();
+    }
+
+    /**
+     * @param other account number, of the same class as this
+     * @return the order of this number's value relative to that of <code>other</code>
+     */
+    protected int valueCompare(AccountNumber other) {
+        return externalForm().compareTo(other.externalForm());
+    }
+
+    /**
+     * @return the masked form of this number, suitable for printing in logs etc.
+     */
+    @Override
+    public String toString() {
+        return appendMasked(new StringBuilder(32)).toString();
+    }
+
+    /**
+     * Append the masked form of this number to the buffer supplied
+     *
+     * @param target buffer receiving the masked form
+     * @return <code>target</code>
+     */
+    public StringBuilder appendMasked(StringBuilder target) {
+        return getMaskPolicy().append(this, target);
+    }
+
+    /**
+     * Append the masked form of this number to the target supplied
+     *
+     * @param target receiving the masked form, e.g., a <code>Writer</code>
+     * @return <code>target</code>
+     * @throws IOException if the target cannot be written
+     */
+    public <A extends Appendable> A appendMasked(A target) throws IOException {
+        return getMaskPolicy().append(this, target);
+    }
+
+    /**
+     * @return the masked form of this number, in a buffer private to the calling thread
+     * that is re-used by the next call to this method on the thread: the result must be
+     * used (e.g., written to a log) before then, and not retained
+     */
+    public CharSequence maskedForm() {
+        StringBuilder buffer = MASK_BUFFER.get();
+        buffer.setLength(0);
+        return appendMasked(buffer);
+    }
+
+    /**
+     * @return the policy by which this number is masked; the default shows the
+     * first and last two characters
+     */
+    protected MaskPolicy getMaskPolicy() {
+        return MaskPolicy.BBAN;
+    }
+
+    /**
+     * @return the number of characters in the external form of this number
+     */
+    protected int clearLength() {
+        return externalForm().length();
+    }
+
+    /**
+     * @param index of the character required
+     * @return the character at <code>index</code> in the external form of this number
+     */
+    protected char clearCharAt(int index) {
+        return externalForm().charAt(index);
+    }
+
+    /**
+     * @param value non-negative number
+     * @return the number of decimal digits in <code>value</code>
+     */
+    protected static int digitCount(long value) {
+        int count = 1;
+        while (count < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[count]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param value  non-negative number
+     * @param digits number of decimal digits in <code>value</code>
+     * @param index  of the digit required, from the most significant
+     * @return the character of the <code>index</code>th digit of <code>value</code>
+     */
+    protected static char digitAt(long value, int digits, int index) {
+        return (char) ('0' + (value / POWERS_OF_TEN[digits - 1 - index]) % 10);
     }
 
     /**
@@ -43,20 +195,4 @@ public abstract class AccountNumber implements Comparable<AccountNumber>, Identi
         return PUNCTUATIONCleaner.matcher(code).replaceAll("");
     }
 
-    /**
-     * @param value   of the account number
-     * @param initial length to be displayed in clear
-     * @param end     length to be displayed in clear
-     * @return a version of the supplied account number, with all but
-     * the specified initial and final portion replaced by stars
-     */
-    protected static String obsusticate(final String value, int initial, int end) {
-        int length = value.length();
-        initial = initial < length ? initial : 1;
-        end = end < length ? end : 1;
-        int oblen = length - initial - end;
-        oblen = oblen < 3 ? 3 : oblen;
-        return value.substring(0, initial) + STARS.substring(0, oblen) + value.substring(length - end);
-    }
-
 }
@@ -38,9 +38,9 @@ public class BBAN
     }
 
     @Override
-    public String
-    toString() {
-        return obsusticate(id, 2, 2);
+    protected MaskPolicy
+    getMaskPolicy() {
+        return MaskPolicy.BBAN;
     }
 
     /**
@@ -18,6 +18,11 @@ package org.seefin.nygaard.model.identifiers;
  */
 public final class DUNS
         implements Identity, Comparable<DUNS> {
+    /**
+     * Number of digits in the canonical form of a DUNS number
+     */
+    public static final int DIGITS = 9;
+    private static final int MAX_VALUE = 999999999;
     private final int value;
 
     /**
@@ -58,7 +63,17 @@ public final class DUNS
     @Override
     public String
     externalForm() {
-        return String.format("%09d", value);
+        if (value < 0 || value > MAX_VALUE) {
+            return String.format("%09d", value);
+        }
+        // zero-pad by hand: this is on the wire path, and String.format is costly
+        char[] digits = new char[DIGITS];
+        int remaining = value;
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return new String(digits);
     }
 
     /**
@@ -21,14 +21,52 @@ public class EWalletAccountNumber
         this.msisdn = msisdn;
     }
 
+    /**
+     * @return the MSISDN of the wallet's owner, from which the account number is derived
+     */
+    public MSISDN getMSISDN() {
+        return msisdn;
+    }
+
     @Override
     public String externalForm() {
         return msisdn.toString();
     }
 
+    /**
+     * Wallet account numbers are equal if their owners' MSISDNs are
+     */
+    @Override
+    protected boolean valueEquals(AccountNumber other) {
+        return msisdn.longValue() == ((EWalletAccountNumber) other).msisdn.longValue();
+    }
+
+    @Override
+    protected int valueHash() {
+        return msisdn.hashCode();
+    }
+
+    /**
+     * @return the numeric order of the owners' MSISDNs
+     */
+    @Override
+    protected int valueCompare(AccountNumber other) {
+        return Long.compare(msisdn.longValue(), ((EWalletAccountNumber) other).msisdn.longValue());
+    }
+
+    @Override
+    protected MaskPolicy getMaskPolicy() {
+        return MaskPolicy.EWALLET;
+    }
+
+    @Override
+    protected int clearLength() {
+        return digitCount(msisdn.longValue());
+    }
+
     @Override
-    public String toString() {
-        StringBuilder builder = new StringBuilder(msisdn.toString());
-        return super.obsusticate(builder.reverse().toString(), 4, 2);
+    protected char clearCharAt(int index) {
+        long value = msisdn.longValue();
+        return digitAt(value, digitCount(value), index);
     }
 }
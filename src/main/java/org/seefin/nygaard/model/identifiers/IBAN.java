@@ -1,6 +1,16 @@
 package org.seefin.nygaard.model.identifiers;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import org.seefin.nygaard.model.locations.ISO3166;
+import org.seefin.nygaard.model.metrics.ParseMetrics;
 
 import com.google.common.base.Preconditions;
 
@@ -23,11 +33,15 @@ import com.google.common.base.Preconditions;
  * and up to thirty alphanumeric characters for the domestic bank account number, the
  * BBAN (Basic Bank Account Number), which itself may be composed of bank code, branch
  * code and account number, as specified by the national scheme (see {@link IBANScheme.java})
+ * <p/>
+ * To keep large caches of IBANs compact, an instance holds only the (ASCII) characters of
+ * its code: the scheme is looked-up by country code when required, from the registry
+ * maintained by {@link IBANScheme}
  */
 public final class IBAN extends AccountNumber {
-    private final String value;
-    private final ISO3166 countryCode;
-    private IBANScheme scheme;
+    private static final ParseMetrics metrics = ParseMetrics.forType("IBAN");
+
+    private final byte[] code;
 
     /**
      * Create an IBAN from the supplied string
@@ -40,20 +54,19 @@ public final class IBAN extends AccountNumber {
         Preconditions.checkNotNull(code, "IBAN string cannot be null");
         String value = sanitize(code);
         Preconditions.checkArgument(sanitize(code).length() >= 5, "IBAN string must be at least 5 characters long");
-        countryCode = ISO3166.valueOf(value.substring(0, 2));
-        scheme = IBANScheme.lookupScheme(countryCode);
+        ISO3166 countryCode = ISO3166.valueOf(value.substring(0, 2));
+        IBANScheme scheme = IBANScheme.lookupScheme(countryCode);
         if (scheme == null) {
             throw new InvalidIBANException(countryCode, "no scheme defined for country", value);
         }
         if (value.length() != scheme.getLength()) {
             throw new InvalidIBANException(countryCode, "IBAN string must be " + scheme.getLength() + " characters in length", value);
         }
-        this.value = value;
+        this.code = value.getBytes(StandardCharsets.US_ASCII);
 
         scheme.validate(this);
     }
 
-
     /**
      * @param value of the IBAN, may contain punctuation
      * @return an IBAN parsed the supplied string,
@@ -61,7 +74,35 @@ public final class IBAN extends AccountNumber {
      *                                  not represent a valid IBAN code
      */
     public static IBAN parse(String value) {
-        return new IBAN(value);
+        long start = metrics.start();
+        try {
+            IBAN result = new IBAN(value);
+            metrics.success(start, result.getCountryCode().toString());
+            return result;
+        } catch (RuntimeException e) {
+            if (ParseMetrics.isRecording(start)) {
+                metrics.failure(start, countryOf(value), e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the country code prefix of the value supplied, if it is that of a country with
+     * an IBAN scheme, else UNKNOWN; failures are labelled only with known countries, so that
+     * invalid input cannot create metrics (and MBeans) without bound
+     */
+    private static String countryOf(String value) {
+        if (value == null || value.length() < 2 || isAsciiLetter(value.charAt(0)) == false
+                || isAsciiLetter(value.charAt(1)) == false) {
+            return ParseMetrics.UNKNOWN;
+        }
+        IBANScheme scheme = IBANScheme.lookupScheme(value.charAt(0), value.charAt(1));
+        return scheme == null ? ParseMetrics.UNKNOWN : scheme.getCountryCode().toString();
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
     }
 
     /**
@@ -82,54 +123,172 @@ public final class IBAN extends AccountNumber {
     }
 
     /**
-     * @return the string representation of this IBAN, obfusticated
+     * @return the BBAN (Basic Bank Account Number) segment of this IBAN
+     */
+    public BBAN getBBAN() {
+        return new BBAN(new String(code, 4, code.length - 4, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * {@inheritDoc}
      */
     @Override
-    public String toString() {
-        return obsusticate(value, 5, 2);
+    public String externalForm() {
+        return new String(code, StandardCharsets.US_ASCII);
     }
 
     /**
-     * @return the BBAN (Basic Bank Account Number) segment of this IBAN
+     * @return the number of characters in this IBAN
      */
-    public BBAN getBBAN() {
-        return new BBAN(value.substring(4));
+    public int length() {
+        return code.length;
     }
 
     /**
-     * {@inheritDoc}
+     * @param index of the character required
+     * @return the ASCII value of the character at <code>index</code> in this IBAN's
+     * external form, allowing the code to be copied without creating a String
+     */
+    public byte byteAt(int index) {
+        return code[index];
+    }
+
+    /**
+     * IBANs are equal if their codes are, compared byte-by-byte, without creating Strings
      */
     @Override
-    public String externalForm() {
-        return value;
+    protected boolean valueEquals(AccountNumber other) {
+        return Arrays.equals(code, ((IBAN) other).code);
+    }
+
+    /**
+     * @return the hash code of this IBAN's external form, computed from its ASCII code
+     */
+    @Override
+    protected int valueHash() {
+        int result = 0;
+        for (byte b : code) {
+            result = 31 * result + b;
+        }
+        return result;
+    }
+
+    /**
+     * @return the order of the external forms of the IBANs, compared byte-by-byte
+     */
+    @Override
+    protected int valueCompare(AccountNumber other) {
+        byte[] otherCode = ((IBAN) other).code;
+        int limit = Math.min(code.length, otherCode.length);
+        for (int i = 0; i < limit; i++) {
+            if (code[i] != otherCode[i]) {
+                return code[i] - otherCode[i];
+            }
+        }
+        return code.length - otherCode.length;
+    }
+
+    @Override
+    protected MaskPolicy getMaskPolicy() {
+        return MaskPolicy.IBAN;
+    }
+
+    @Override
+    protected int clearLength() {
+        return code.length;
+    }
+
+    @Override
+    protected char clearCharAt(int index) {
+        return (char) code[index];
     }
 
     /**
      * @return the BankCode segment of this IBAN
      */
     public String getBankCode() {
-        return scheme.getBankCode(value);
+        return getScheme().getBankCode(externalForm());
     }
 
     /**
      * @return the BranchCode segment of this IBAN
      */
     public String getBranchCode() {
-        return scheme.getBranchCode(value);
+        return getScheme().getBranchCode(externalForm());
     }
 
     /**
      * @return the AccountNumber segment of this IBAN
      */
     public String getAccountNumber() {
-        return scheme.getAccountNumber(value);
+        return getScheme().getAccountNumber(externalForm());
     }
 
     /**
      * @return the CountryCode segment of this IBAN
      */
     public ISO3166 getCountryCode() {
-        return countryCode;
+        IBANScheme scheme = IBANScheme.lookupScheme((char) code[0], (char) code[1]);
+        return scheme != null ? scheme.getCountryCode() : ISO3166.valueOf(new String(code, 0, 2, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the scheme currently registered for this IBAN's country
+     * @throws IllegalStateException if the scheme has since been removed from the registry
+     */
+    private IBANScheme getScheme() {
+        IBANScheme scheme = IBANScheme.lookupScheme((char) code[0], (char) code[1]);
+        if (scheme == null) {
+            throw new IllegalStateException("No IBAN scheme registered for country: " + (char) code[0] + (char) code[1]);
+        }
+        return scheme;
+    }
+
+    /**
+     * Serialize IBANs by proxy, writing only the (ASCII) code, rather than the scheme
+     * and country code objects; the shared registered scheme is re-bound when read
+     */
+    private Object writeReplace() {
+        return new SerialForm(code);
+    }
+
+    private static final class SerialForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+        private byte[] code;
+
+        public SerialForm() {
+        }
+
+        SerialForm(byte[] code) {
+            this.code = code;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeByte(code.length);
+            out.write(code);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            code = new byte[in.readUnsignedByte()];
+            in.readFully(code);
+        }
+
+        /**
+         * The stream may have been crafted, so the value is validated in full, as by
+         * {@link IBAN#parse}, against the pattern and checksum of its scheme
+         */
+        private Object readResolve() throws ObjectStreamException {
+            String value = new String(code, StandardCharsets.US_ASCII);
+            try {
+                return IBAN.parse(value);
+            } catch (RuntimeException e) {
+                InvalidObjectException invalid = new InvalidObjectException("Invalid IBAN: " + value);
+                invalid.initCause(e);
+                throw invalid;
+            }
+        }
     }
 
 }
@@ -9,7 +9,7 @@ import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 import org.seefin.nygaard.model.locations.ISO3166;
@@ -47,8 +47,10 @@ public class IBANScheme implements Serializable {
     // ... loads IBAN specifications from file named by this property
     private static final String IBAN_PROPERTIES_KEY = "iban.scheme.specification";
     private static final String IBAN_PROPERTIES_DEFAULT = "org/seefin/nygaard/model/identifiers/IBANScheme.properties";
-    // get known IBAN schemes from property file
-    private static final Map<ISO3166, IBANScheme> schemes = loadSchemeDefinitions();
+    // known IBAN schemes, loaded from property file, indexed by country code (see indexOf);
+    // the registry is replaced when schemes are re-loaded
+    private static final int REGISTRY_SIZE = 26 * 26;
+    private static volatile Registry registry = loadSchemeDefinitions();
 
     // per-scheme instance values:
     private final Map<PartCode, IBANRule> rules;
@@ -205,7 +207,38 @@ public class IBANScheme implements Serializable {
     }
 
     public static IBANScheme lookupScheme(ISO3166 cc) {
-        return schemes.get(cc);
+        String code = cc.toString();
+        return lookupScheme(code.charAt(0), code.charAt(1));
+    }
+
+    /**
+     * @param first  letter of an ISO3166 alpha-2 country code
+     * @param second letter of the country code
+     * @return the scheme registered for the country, or null if there is none
+     */
+    static IBANScheme lookupScheme(char first, char second) {
+        int index = indexOf(first, second);
+        return index < 0 ? null : registry.get(index);
+    }
+
+    /**
+     * @return the index of the supplied country code in the scheme registry (base-26
+     * value of the letters), or -1 if not a two-letter code
+     */
+    private static int indexOf(char first, char second) {
+        int high = Character.toUpperCase(first) - 'A';
+        int low = Character.toUpperCase(second) - 'A';
+        if (high < 0 || high >= 26 || low < 0 || low >= 26) {
+            return -1;
+        }
+        return high * 26 + low;
+    }
+
+    /**
+     * @return the country to which this scheme applies
+     */
+    ISO3166 getCountryCode() {
+        return countryCode;
     }
 
     @Override
@@ -263,22 +296,42 @@ public class IBANScheme implements Serializable {
     }
 
     /**
-     * Iterate over the schemes in the supplied properties map, parsing each
-     * definition and storing it against the scheme key in the resulting map
-     *
-     * @param schemes defined as property key/value pairs
-     * @return map of scheme keys (hash of country code + length) to definitions
+     * Registry of the schemes defined in a scheme file, indexed by country code: the
+     * definitions are indexed when loaded, but each is parsed (and its rules compiled)
+     * only when the scheme of that country is first looked-up
      */
-    private static Map<ISO3166, IBANScheme>
-    getSchemeMap(final Properties schemes) {
-        assert schemes.size() > 0;
-        final Map<ISO3166, IBANScheme> result = new HashMap<>();
-        for (Map.Entry<Object, Object> entry : schemes.entrySet()) {
-            ISO3166 cc = ISO3166.valueOf((String) entry.getKey());
-            result.put(cc, IBANScheme.parse(cc, (String) entry.getValue()));
+    private static final class Registry {
+        private final ISO3166[] countries = new ISO3166[REGISTRY_SIZE];
+        private final String[] specifications = new String[REGISTRY_SIZE];
+        private final AtomicReferenceArray<IBANScheme> schemes = new AtomicReferenceArray<>(REGISTRY_SIZE);
+
+        /**
+         * @param definitions scheme specifications, keyed by country code
+         */
+        Registry(final Map<String, String> definitions) {
+            assert definitions.size() > 0;
+            for (Map.Entry<String, String> entry : definitions.entrySet()) {
+                ISO3166 cc = ISO3166.valueOf(entry.getKey());
+                String code = cc.toString();
+                int index = indexOf(code.charAt(0), code.charAt(1));
+                countries[index] = cc;
+                specifications[index] = entry.getValue();
+            }
+        }
+
+        /**
+         * @return the scheme at the registry index supplied, parsing its definition if
+         * this is the first look-up, or null if no scheme is defined for that index
+         */
+        IBANScheme get(int index) {
+            IBANScheme result = schemes.get(index);
+            if (result == null && specifications[index] != null) {
+                // if threads race to parse a definition, all use the scheme registered first
+                schemes.compareAndSet(index, null, IBANScheme.parse(countries[index], specifications[index]));
+                result = schemes.get(index);
+            }
+            return result;
         }
-        assert result.size() == schemes.size();
-        return result;
     }
 
     /* inner class for parsing and validating against the IBAN scheme definition rules */
@@ -339,20 +392,19 @@ public class IBANScheme implements Serializable {
      * @return the loaded schema map
      * @throws RuntimeException
      */
-    private static Map<ISO3166, IBANScheme> loadSchemeDefinitions() {
+    private static Registry loadSchemeDefinitions() {
         String ibanFormats = System.getProperty(IBAN_PROPERTIES_KEY, IBAN_PROPERTIES_DEFAULT);
-        return getSchemeMap(PropertyLoader.getProperties(ibanFormats));
+        return new Registry(PropertyLoader.getDefinitions(ibanFormats));
     }
 
     /**
-     * Clear the currently registered IBAN schemes in this singleton, and reload
+     * Replace the currently registered IBAN schemes in this singleton, reloading
      * the scheme definitions from the resource supplied<br/>
      *
      * @param schemeResource location (e.g., filename, URL) of IBAN scheme definitions
      */
     public static void loadScheme(String schemeResource) {
-        schemes.clear();
-        schemes.putAll(getSchemeMap(PropertyLoader.getProperties(schemeResource)));
+        registry = new Registry(PropertyLoader.getDefinitions(schemeResource));
     }
 
     /**
@@ -152,14 +152,22 @@ public final class ISO7812
         return Long.toString(value);
     }
 
-    /**
-     * @return an obfusticated version of this number, suitable for printing in logs etc.
-     */
     @Override
-    public String
-    toString() {
-        return String.format("%7d%" + getAccountNumberLength() + "s%d",
-                value / getFactor(), "***************", value % 10);
+    protected MaskPolicy
+    getMaskPolicy() {
+        return MaskPolicy.ISO7812;
+    }
+
+    @Override
+    protected int
+    clearLength() {
+        return digitCount(value);
+    }
+
+    @Override
+    protected char
+    clearCharAt(int index) {
+        return digitAt(value, digitCount(value), index);
     }
 
     /**
@@ -170,30 +178,21 @@ public final class ISO7812
     }
 
     @Override
-    public boolean
-    equals(Object other) {
-        if (this == other) {
-            return true;
-        }
-        if (other == null || other.getClass() != this.getClass()) {
-            return false;
-        }
+    protected boolean
+    valueEquals(AccountNumber other) {
         return this.value == ((ISO7812) other).value;
     }
 
     @Override
-    public int
-    hashCode() {
-        return this.longValue().hashCode();
+    protected int
+    valueHash() {
+        return (int) (value ^ (value >>> 32));
     }
 
     @Override
-    public int
-    compareTo(AccountNumber other) {
-        if (other.getClass() == this.getClass()) {
-            return Long.compare(this.value, ((ISO7812) other).value);
-        }
-        return super.compareTo(other);
+    protected int
+    valueCompare(AccountNumber other) {
+        return Long.compare(this.value, ((ISO7812) other).value);
     }
 
     /**
@@ -6,10 +6,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
+import org.seefin.nygaard.model.metrics.ParseMetrics;
 import org.seefin.nygaard.model.parties.Organization;
 
 
@@ -47,11 +49,13 @@ public class ISO7812Scheme
                     /* 9 */ "National assignment"
             };
     private static final Pattern NON_NUMERICS = Pattern.compile("[^0-9]");
+    private static final ParseMetrics metrics = ParseMetrics.forType("ISO7812");
 
     // ... loads ISO7812 specifications from file named by this property
     private static final String ISO7812_PROPERTIES_KEY = "ISO7812.scheme.specification";
     private static final String ISO7812_PROPERTIES_DEFAULT = "org/seefin/nygaard/model/identifiers/ISO7812Scheme.properties";
-    private static final Map<Integer, ISO7812Scheme> issuerMap = loadSchemeDefinitions();
+    // known issuer schemes, by (possibly partial) BIN; replaced when schemes are re-loaded
+    private static volatile Registry registry = loadSchemeDefinitions();
 
     public static final int MinCreditCardLengthLength = 13;
     public static final int MaxCreditCardLengthLength = 19;
@@ -88,27 +92,37 @@ public class ISO7812Scheme
      */
     public static ISO7812
     parse(String cardNumber) {
-        if (cardNumber == null) {
-            throw new IllegalArgumentException("CardNumber string cannot be null");
-        }
-        String digits = NON_NUMERICS.matcher(cardNumber).replaceAll("");
-        int length = digits.length();
-        if (length < MinCreditCardLengthLength || length > MaxCreditCardLengthLength) {
-            throw new InvalidISO7812Exception(cardNumber, LENGTH_ERROR);
-        }
+        long start = metrics.start();
+        ISO7812Scheme scheme = null;
+        try {
+            if (cardNumber == null) {
+                throw new IllegalArgumentException("CardNumber string cannot be null");
+            }
+            String digits = NON_NUMERICS.matcher(cardNumber).replaceAll("");
+            int length = digits.length();
+            if (length < MinCreditCardLengthLength || length > MaxCreditCardLengthLength) {
+                throw new InvalidISO7812Exception(cardNumber, LENGTH_ERROR);
+            }
 
-        BIN bin = new BIN(Integer.parseInt(digits.substring(0, 7)));
-        ISO7812Scheme scheme = getScheme(bin);
-        if (scheme.getIssuer().getCommonName().isEmpty()) {
-            throw new InvalidISO7812Exception(cardNumber, "No scheme registered", bin.toString());
-        }
+            BIN bin = new BIN(Integer.parseInt(digits.substring(0, 7)));
+            scheme = getScheme(bin);
+            if (scheme.getIssuer().getCommonName().isEmpty()) {
+                throw new InvalidISO7812Exception(cardNumber, "No scheme registered", bin.toString());
+            }
 
-        if (scheme.validLengths.contains(length) == false) {
-            throw new InvalidISO7812Exception(cardNumber,
-                    "CardNumber length must one of: " + scheme.validLengths);
-        }
+            if (scheme.validLengths.contains(length) == false) {
+                throw new InvalidISO7812Exception(cardNumber,
+                        "CardNumber length must one of: " + scheme.validLengths);
+            }
 
-        return new ISO7812(Long.parseLong(digits)); // checksum will be validated in constructor
+            ISO7812 result = new ISO7812(Long.parseLong(digits)); // checksum will be validated in constructor
+            metrics.success(start, scheme.getIssuer().getCommonName());
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failure(start, scheme == null || scheme.getIssuer().getCommonName().isEmpty()
+                    ? ParseMetrics.UNKNOWN : scheme.getIssuer().getCommonName(), e);
+            throw e;
+        }
     }
 
     /**
@@ -130,16 +144,17 @@ public class ISO7812Scheme
      */
     static ISO7812Scheme
     getScheme(BIN bin) {
+        Registry issuers = registry;
         ISO7812Scheme result = null;
         int issuerIdentifier = bin.intValue();
         while (issuerIdentifier > 0 && result == null) {
-            result = issuerMap.get(issuerIdentifier);
+            result = issuers.get(issuerIdentifier);
             issuerIdentifier /= 10;
         }
         // if no issuer registered, create an entry based on the supplied BIN
         if (result == null) {
-            result = new ISO7812Scheme(new Organization(bin, ""), new Integer[]{});
-            issuerMap.put(bin.intValue(), result);
+            result = issuers.register(bin.intValue(),
+                    new ISO7812Scheme(new Organization(bin, ""), new Integer[]{}));
         }
         return result;
     }
@@ -208,26 +223,52 @@ public class ISO7812Scheme
                 parts[0]);
     }
 
-    /**
-     * Iterate over the schemes in the supplied properties map, parsing each
-     * definition and storing it against the scheme key in the resulting map
-     *
-     * @param schemes defined as property key/value pairs
-     * @return map of scheme keys (BIN code) to issuer scheme definitions
+    /*
+     * Registry of issuer schemes, by (possibly partial) BIN: the definitions are indexed
+     * when loaded, but each is parsed, and its issuing Organization created, only when a
+     * number of that issuer is first looked-up
      */
-    private static Map<Integer, ISO7812Scheme>
-    getSchemeMap(Properties schemes) {
-        assert schemes.size() > 0;
-        Map<Integer, ISO7812Scheme> result = new HashMap<>();
-        for (Map.Entry<Object, Object> entry : schemes.entrySet()) {
-            int issuerId = Integer.parseInt((String) entry.getKey());
-            ISO7812Scheme scheme
-                    = ISO7812Scheme.parseSpecification(new BIN(issuerId), (String) entry.getValue());
-            result.put(issuerId, scheme);
+    private static final class Registry {
+        private final Map<Integer, String> specifications;
+        private final ConcurrentMap<Integer, ISO7812Scheme> schemes = new ConcurrentHashMap<>();
+
+        /**
+         * @param definitions scheme specifications, keyed by BIN code
+         */
+        Registry(Map<String, String> definitions) {
+            assert definitions.size() > 0;
+            specifications = new HashMap<>(definitions.size() * 2);
+            for (Map.Entry<String, String> entry : definitions.entrySet()) {
+                specifications.put(Integer.parseInt(entry.getKey().trim()), entry.getValue());
+            }
+            assert specifications.size() == definitions.size() : "all schemes registered";
         }
-        assert result.size() == schemes.size() : "all schemes registered";
 
-        return result;
+        /**
+         * @return the scheme registered for the issuer identifier supplied, parsing its
+         * definition if this is the first look-up, or null if none is registered
+         */
+        ISO7812Scheme
+        get(int issuerId) {
+            ISO7812Scheme result = schemes.get(issuerId);
+            if (result == null) {
+                String specification = specifications.get(issuerId);
+                if (specification != null) {
+                    result = register(issuerId, parseSpecification(new BIN(issuerId), specification));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return the scheme registered for the issuer identifier, which is <code>scheme</code>,
+         * unless another thread registered a scheme for the identifier first
+         */
+        ISO7812Scheme
+        register(int issuerId, ISO7812Scheme scheme) {
+            ISO7812Scheme existing = schemes.putIfAbsent(issuerId, scheme);
+            return existing == null ? scheme : existing;
+        }
     }
 
     /**
@@ -237,22 +278,21 @@ public class ISO7812Scheme
      * @return map of schemes, indexed by (possibly partial) BIN number
      * @throws RuntimeException
      */
-    private static Map<Integer, ISO7812Scheme>
+    private static Registry
     loadSchemeDefinitions() {
         String ISO7812Formats = System.getProperty(ISO7812_PROPERTIES_KEY, ISO7812_PROPERTIES_DEFAULT);
-        return getSchemeMap(PropertyLoader.getProperties(ISO7812Formats));
+        return new Registry(PropertyLoader.getDefinitions(ISO7812Formats));
     }
 
     /**
-     * Clear the currently registered ISO7812 schemes in this singleton, and reload
+     * Replace the currently registered ISO7812 schemes in this singleton, reloading
      * the scheme definitions from the resource supplied<br/>
      *
      * @param schemeResource location (e.g., filename, URL) of ISO7812 scheme definitions
      */
     public static void
     loadScheme(String schemeResource) {
-        issuerMap.clear();
-        issuerMap.putAll(getSchemeMap(PropertyLoader.getProperties(schemeResource)));
+        registry = new Registry(PropertyLoader.getDefinitions(schemeResource));
     }
 
     /**
@@ -263,4 +303,4 @@ public class ISO7812Scheme
         loadScheme(ISO7812_PROPERTIES_DEFAULT);
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,5 +1,14 @@
 package org.seefin.nygaard.model.identifiers;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+
+import org.seefin.nygaard.model.metrics.ParseMetrics;
+
 /**
  * MSISDN ("Mobile Subscriber Integrated Services Digital Network", (alternate: Mobile Station ISDN)
  * is a number uniquely identifying a subscription in a GSM or a UMTS mobile network, the telephone
@@ -39,6 +48,8 @@ public final class MSISDN
 
     private transient MSISDNScheme scheme;
 
+    private static final ParseMetrics metrics = ParseMetrics.forType("MSISDN");
+
     /**
      * Instantiate a new MSIDN having the value set from the supplied number,
      * inferring the scheme by matching configured country codes against the
@@ -131,7 +142,15 @@ public final class MSISDN
      */
     public static MSISDN
     parse(String msisdnString) {
-        return MSISDNScheme.createMSISDN(msisdnString);
+        long start = metrics.start();
+        try {
+            MSISDN result = MSISDNScheme.createMSISDN(msisdnString);
+            metrics.success(start, result.scheme.getName());
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failure(start, ParseMetrics.UNKNOWN, e);
+            throw e;
+        }
     }
 
     /**
@@ -188,7 +207,7 @@ public final class MSISDN
     private MSISDNScheme
     getScheme() {
         if (scheme == null) {
-            scheme = MSISDNScheme.fromLong(value).scheme;
+            scheme = MSISDNScheme.schemeOf(value);
         }
         return scheme;
     }
@@ -245,4 +264,50 @@ public final class MSISDN
         return Long.compare(value, other.value);
     }
 
+    /**
+     * Serialize MSISDNs by proxy, writing only the number: the scheme is re-bound
+     * to the (shared) registered scheme when read
+     */
+    private Object
+    writeReplace() {
+        return new SerialForm(value);
+    }
+
+    private static final class SerialForm
+            implements Externalizable {
+        private static final long serialVersionUID = 1L;
+        private long value;
+
+        public SerialForm() {
+        }
+
+        SerialForm(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public void
+        writeExternal(ObjectOutput out)
+                throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public void
+        readExternal(ObjectInput in)
+                throws IOException {
+            value = in.readLong();
+        }
+
+        private Object
+        readResolve()
+                throws ObjectStreamException {
+            MSISDNScheme scheme = MSISDNScheme.schemeOf(value);
+            if (scheme == null) {
+                throw new InvalidObjectException(MSISDNScheme.UNRECOGNIZED_SCHEME + " for: " + value);
+            }
+            return new MSISDN(value, scheme);
+        }
+    }
+
 }
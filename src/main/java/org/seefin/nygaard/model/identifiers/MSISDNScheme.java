@@ -7,7 +7,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
 import java.util.Set;
 
 /**
@@ -38,13 +37,23 @@ public class MSISDNScheme {
     // ... loads MSISDN specifications from file named by this property
     public static final String MSISDN_PROPERTIES_KEY = "msisdn.scheme.specification";
     private static final String MSISDN_PROPERTIES_DEFAULT = "org/seefin/nygaard/model/identifiers/MSISDNScheme.properties";
-    // get known MSISDN schemes from property file
-    private static final Map<Integer, MSISDNScheme> schemes = loadSchemeDefinitions();
+    // known MSISDN schemes, from property file, by key (see createKey); the map is
+    // never modified, but replaced when schemes are re-loaded
+    private static volatile Map<Integer, Definition> schemes = loadSchemeDefinitions();
     // exception message prefixes (public for testability)
     public static final String NO_SCHEMAS_LOADED = "No MSISDN schemes were loaded";
     public static final String SCHEMA_LOCATION_INVALID = "Schema location may not be null or empty";
     public static final String INVALID_SCHEMA_PART_LENGTH = "Invalid part length ( <= 0 ) at index ";
     public static final String UNRECOGNIZED_SCHEME = "MSISDN Unrecognized scheme";
+    // for splitting numbers into their parts arithmetically
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
 
     // per-scheme instance values:
     private final Map<PartCode, MSISDNRule> rules;
@@ -123,7 +132,17 @@ public class MSISDNScheme {
 
     public static MSISDNScheme
     getSchemeForCC(int cc, int length) {
-        return schemes.get(createKey(cc, length));
+        return lookupScheme(cc, length);
+    }
+
+    /**
+     * @return the scheme registered for the country code and number length supplied,
+     * or null if there is none
+     */
+    private static MSISDNScheme
+    lookupScheme(int cc, int length) {
+        Definition definition = schemes.get(createKey(cc, length));
+        return definition == null ? null : definition.getScheme();
     }
 
     /**
@@ -141,7 +160,7 @@ public class MSISDNScheme {
             return null;
         }
         int tryCC = Integer.valueOf(candidate.substring(0, ccSize));
-        MSISDNScheme scheme = schemes.get(createKey(tryCC, candidate.length()));
+        MSISDNScheme scheme = lookupScheme(tryCC, candidate.length());
         if (scheme == null) {
             return null;
         }
@@ -177,6 +196,14 @@ public class MSISDNScheme {
         return result;
     }
 
+    /**
+     * @return the unique name (key) of this scheme, e.g., <code>DE.9</code>
+     */
+    String
+    getName() {
+        return name;
+    }
+
     @Override
     public String
     toString() {
@@ -269,33 +296,134 @@ public class MSISDNScheme {
     /**
      * @param value a numeric representation of an MSISDN
      * @return a MSISDN created from the supplied number
+     * @throws IllegalArgumentException if the number is not a valid MSISDN for known schemes
      */
     public static MSISDN
     fromLong(long value) {
-        return createMSISDN(value + "");
+        MSISDNScheme scheme = schemeOf(value);
+        if (scheme == null) {
+            throw new IllegalArgumentException(
+                    UNRECOGNIZED_SCHEME + " for: " + value + " (known schemes=" + schemes.values() + ")");
+        }
+        return MSISDN.create((int) (value / scheme.ccfactor), (int) (value % scheme.ccfactor / scheme.ndcfactor),
+                (int) (value % scheme.ndcfactor), scheme);
+    }
+
+    /**
+     * Find the scheme to which the supplied number belongs, applying the same rules as
+     * {@link #createMSISDN(String)}, but arithmetically, without formatting or parsing
+     * the number as a String (used to re-bind the scheme of a de-serialized MSISDN)
+     *
+     * @param value a numeric representation of an MSISDN
+     * @return the matching scheme, or null if the number matches no known scheme
+     */
+    static MSISDNScheme
+    schemeOf(long value) {
+        if (value <= 0) {
+            return null;
+        }
+        int length = 1;
+        for (long remaining = value; remaining >= 10; remaining /= 10) {
+            length++;
+        }
+        for (int ccSize = 3; ccSize > 0; ccSize--) {
+            if (length <= ccSize) {
+                continue;
+            }
+            int tryCC = (int) (value / POWERS_OF_TEN[length - ccSize]);
+            MSISDNScheme scheme = lookupScheme(tryCC, length);
+            if (scheme == null || scheme.rules.get(PartCode.CC).isValid(tryCC) == false) {
+                continue;
+            }
+            int ndcLength = scheme.rules.get(PartCode.NDC).length;
+            int snLength = length - ccSize - ndcLength;
+            if (snLength != scheme.rules.get(PartCode.SN).length) {
+                continue;
+            }
+            int tryNDC = (int) (value / POWERS_OF_TEN[snLength] % POWERS_OF_TEN[ndcLength]);
+            if (scheme.rules.get(PartCode.NDC).isValid(tryNDC) == true) {
+                return scheme;
+            }
+        }
+        return null;
     }
 
     /**
-     * Iterate over the schemes in the supplied properties map, parsing each
-     * definition and storing it against the scheme key in the resulting
-     * map
+     * Iterate over the schemes in the supplied definitions, indexing each
+     * definition against the scheme key in the resulting map; only the
+     * part lengths and country code of each definition are read, the rest
+     * is parsed when the scheme is first used
      *
-     * @param schemes defined as property key/value pairs
+     * @param schemes defined as key/value pairs
      * @return map of scheme keys (hash of country code + length) to definitions
+     * @throws IllegalArgumentException if a part length in a definition is not valid
      */
-    private static Map<Integer, MSISDNScheme>
-    getSchemeMap(Properties schemes) {
+    private static Map<Integer, Definition>
+    getSchemeMap(Map<String, String> schemes) {
         assert schemes.size() > 0;
-        Map<Integer, MSISDNScheme> result = new HashMap<>();
-        for (Entry<Object, Object> entry : schemes.entrySet()) {
-            MSISDNScheme scheme = MSISDNScheme.parse((String) entry.getValue(), (String) entry.getKey());
-            Integer cc = (Integer) scheme.rules.get(PartCode.CC).values.toArray()[0];
-            result.put(createKey(cc, scheme.length), scheme);
+        Map<Integer, Definition> result = new HashMap<>();
+        for (Entry<String, String> entry : schemes.entrySet()) {
+            String specification = entry.getValue();
+            int end = specification.indexOf(';');
+            int length = getPartLengths(new HashMap<PartCode, MSISDNRule>(),
+                    end < 0 ? specification : specification.substring(0, end));
+            result.put(createKey(getCountryCode(specification), length), new Definition(entry.getKey(), specification));
         }
         assert result.size() == schemes.size();
         return result;
     }
 
+    /**
+     * @param specification string describing a scheme
+     * @return the (first) country code value of the scheme specification supplied
+     * @throws IllegalArgumentException if the specification has no country code part
+     */
+    private static int
+    getCountryCode(String specification) {
+        for (String partSpec : specification.split(";")) {
+            final String[] rule = partSpec.split("=");
+            if (rule.length == 2 && PartCode.CC.name().equals(rule[0].trim()) == true) {
+                return Integer.parseInt(rule[1].split(",")[0].trim());
+            }
+        }
+        throw new IllegalArgumentException("No " + PartCode.CC + " part in scheme: " + specification);
+    }
+
+    /*
+     * A scheme definition, indexed when the scheme file is loaded, and parsed into a scheme
+     * on first use, so that the value sets of the schemes that are never used are never built
+     */
+    private static final class Definition {
+        private final String name;
+        private final String specification;
+        private volatile MSISDNScheme scheme;
+
+        Definition(String name, String specification) {
+            this.name = name;
+            this.specification = specification;
+        }
+
+        MSISDNScheme
+        getScheme() {
+            MSISDNScheme result = scheme;
+            if (result == null) {
+                synchronized (this) {
+                    result = scheme;
+                    if (result == null) {
+                        scheme = result = MSISDNScheme.parse(specification, name);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String
+        toString() {
+            return name;
+        }
+    }
+
     /**
      * Key to the scheme map is CC left-shifted by four bits plus the MSISDN length-1, this
      * allows up to 15 digits lengths to be specified with an arbitrarily long country code
@@ -354,28 +482,25 @@ public class MSISDNScheme {
      * @return the loaded schema map
      * @throws RuntimeException
      */
-    private static Map<Integer, MSISDNScheme>
+    private static Map<Integer, Definition>
     loadSchemeDefinitions() {
         String msisdnFormats = System.getProperty(MSISDN_PROPERTIES_KEY, MSISDN_PROPERTIES_DEFAULT);
-        Properties properties = PropertyLoader.getProperties(msisdnFormats);
-        return getSchemeMap(properties);
+        return getSchemeMap(PropertyLoader.getDefinitions(msisdnFormats));
     }
 
     /**
-     * Clear the currently registered MSISDN schemes in this singleton, and reload
+     * Replace the currently registered MSISDN schemes in this singleton, reloading
      * the scheme definitions from the resource supplied<br/>
      *
      * @param schemeResource location (e.g., filename, URL) of MSISDN scheme definitions
      */
     public static void
     loadScheme(String schemeResource) {
-        schemes.clear();
-        Properties properties = PropertyLoader.getProperties(schemeResource);
-        schemes.putAll(getSchemeMap(properties));
+        schemes = getSchemeMap(PropertyLoader.getDefinitions(schemeResource));
     }
 
     /**
-     * Clear the currently registered MSISDN schemes in this singleton, and reload
+     * Replace the currently registered MSISDN schemes in this singleton, reloading
      * the scheme definitions from the resource supplied<br/>
      *
      * @param schemeResource location (e.g., filename, URL) of MSISDN scheme definitions
@@ -384,9 +509,7 @@ public class MSISDNScheme {
     public static void
     loadSchemeFromFile(File schemeResource)
             throws IOException {
-        schemes.clear();
-        Properties properties = PropertyLoader.getPropertiesFromFile(schemeResource);
-        schemes.putAll(getSchemeMap(properties));
+        schemes = getSchemeMap(PropertyLoader.getDefinitionsFromFile(schemeResource));
     }
 
     /**
@@ -0,0 +1,154 @@
+package org.seefin.nygaard.model.identifiers;
+
+import java.io.IOException;
+
+/**
+ * Policy for masking account numbers, so that they may be written to logs and displays
+ * without revealing the whole number: all but an initial and a final portion of the
+ * number is replaced by stars; at least three stars are written, so that the length of
+ * short numbers is not revealed
+ * <p/>
+ * Masked forms are appended directly into the caller's buffer, character-by-character from
+ * the account number's value, so masking creates no intermediate Strings:
+ * <pre>
+ *     log.append("account=");
+ *     account.appendMasked(log);
+ * </pre>
+ * Policies are immutable, and may be shared between threads
+ *
+ * @author phillipsr
+ */
+public final class MaskPolicy {
+    /**
+     * IBANs: country code, check digits and first character of the bank code, and last two characters
+     */
+    public static final MaskPolicy IBAN = new MaskPolicy(5, 2, false);
+    /**
+     * BBANs: first and last two characters
+     */
+    public static final MaskPolicy BBAN = new MaskPolicy(2, 2, false);
+    /**
+     * Electronic wallets: the digits of the MSISDN are reversed, then all but the first four
+     * and last two (i.e., the last four and first two digits of the MSISDN) masked
+     */
+    public static final MaskPolicy EWALLET = new MaskPolicy(4, 2, true);
+    /**
+     * Card numbers: first six (issuer identification number) and last four digits, the most
+     * that may be displayed under PCI DSS
+     */
+    public static final MaskPolicy ISO7812 = new MaskPolicy(6, 4, false);
+
+    private static final char MASK = '*';
+    private static final int MINIMUM_MASK = 3;
+
+    private final int initial;
+    private final int end;
+    private final boolean reversed;
+
+    /**
+     * @param initial  number of characters to be written in clear at the start of the masked form
+     * @param end      number of characters to be written in clear at the end of the masked form
+     * @param reversed if the characters of the number are to be reversed before masking
+     * @throws IllegalArgumentException if either length is negative
+     */
+    public MaskPolicy(int initial, int end, boolean reversed) {
+        if (initial < 0 || end < 0) {
+            throw new IllegalArgumentException("Clear lengths cannot be negative: " + initial + "/" + end);
+        }
+        this.initial = initial;
+        this.end = end;
+        this.reversed = reversed;
+    }
+
+    /**
+     * @param length of an account number, in characters
+     * @return the length of the masked form of an account number of that length
+     */
+    public int
+    getMaskedLength(int length) {
+        return clearStart(length) + maskLength(length) + clearEnd(length);
+    }
+
+    /**
+     * Append the masked form of the account number supplied to <code>target</code>
+     *
+     * @param account to be masked
+     * @param target  buffer receiving the masked form
+     * @return <code>target</code>
+     */
+    public StringBuilder
+    append(AccountNumber account, StringBuilder target) {
+        int length = account.clearLength();
+        target.ensureCapacity(target.length() + getMaskedLength(length));
+        int start = clearStart(length);
+        for (int i = 0; i < start; i++) {
+            target.append(charAt(account, length, i));
+        }
+        for (int i = maskLength(length); i > 0; i--) {
+            target.append(MASK);
+        }
+        for (int i = length - clearEnd(length); i < length; i++) {
+            target.append(charAt(account, length, i));
+        }
+        return target;
+    }
+
+    /**
+     * Append the masked form of the account number supplied to <code>target</code>
+     *
+     * @param account to be masked
+     * @param target  receiving the masked form, e.g., a <code>Writer</code>
+     * @return <code>target</code>
+     * @throws IOException if the target cannot be written
+     */
+    public <A extends Appendable> A
+    append(AccountNumber account, A target)
+            throws IOException {
+        int length = account.clearLength();
+        int start = clearStart(length);
+        for (int i = 0; i < start; i++) {
+            target.append(charAt(account, length, i));
+        }
+        for (int i = maskLength(length); i > 0; i--) {
+            target.append(MASK);
+        }
+        for (int i = length - clearEnd(length); i < length; i++) {
+            target.append(charAt(account, length, i));
+        }
+        return target;
+    }
+
+    @Override
+    public String
+    toString() {
+        return "MaskPolicy{" + initial + "/" + end + (reversed ? ", reversed}" : "}");
+    }
+
+    private char
+    charAt(AccountNumber account, int length, int index) {
+        return account.clearCharAt(reversed ? length - 1 - index : index);
+    }
+
+    // numbers no longer than the clear portions show at most one character in clear at each
+    // end, and at least one character is always masked (the end is given up before the start)
+    private int
+    clearStart(int length) {
+        if (initial < length - end) {
+            return initial;
+        }
+        return Math.min(Math.min(initial, 1), Math.max(length - 1, 0));
+    }
+
+    private int
+    clearEnd(int length) {
+        if (initial < length - end) {
+            return end;
+        }
+        return Math.min(Math.min(end, 1), Math.max(length - 1 - clearStart(length), 0));
+    }
+
+    private int
+    maskLength(int length) {
+        return Math.max(length - clearStart(length) - clearEnd(length), MINIMUM_MASK);
+    }
+}
@@ -3,6 +3,8 @@ package org.seefin.nygaard.model.identifiers;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.seefin.nygaard.model.metrics.ParseMetrics;
+
 /**
  * Dutch BBAN format
  *
@@ -16,6 +18,8 @@ public final class NL_BBAN
             {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
     private static final int BANK_ACCOUNT_MAX = 10;
     private static final int BANK_ACCOUNT_MIN = 8;
+    private static final ParseMetrics metrics = ParseMetrics.forType("NL_BBAN");
+    private static final String COUNTRY = "NL";
     private static final String NUMBER_TEMPLATE = "%0" + BANK_ACCOUNT_MAX + "d";
 
     private final String value;
@@ -52,13 +56,15 @@ public final class NL_BBAN
      */
     public static NL_BBAN
     create(String code) {
-        return new NL_BBAN(sanitize(code));
-    }
-
-    @Override
-    public String
-    toString() {
-        return obsusticate(value, 2, 2);
+        long start = metrics.start();
+        try {
+            NL_BBAN result = new NL_BBAN(sanitize(code));
+            metrics.success(start, COUNTRY);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failure(start, COUNTRY, e);
+            throw e;
+        }
     }
 
     /**
@@ -4,17 +4,84 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Properties;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Helper to load configuration property files, for identifier types
  * having a configurable scheme (such as MSISDN, IBAN)
+ * <p/>
+ * If the system property <code>nygaard.scheme.snapshot</code> names a binary snapshot of
+ * the scheme files (see {@link SchemeSnapshot}), scheme definitions are read from the
+ * snapshot in place of any property file it contains; if the snapshot cannot be used (e.g.,
+ * it is missing, corrupt, or written by an incompatible version), a warning is logged,
+ * and the definitions are read from the property files
  *
  * @author phillipsr
  */
 class PropertyLoader {
+    private static final Logger log = LoggerFactory.getLogger(PropertyLoader.class);
+
     public static final String NO_SCHEMAS_LOADED = "No schemes were loaded";
     public static final String SCHEMA_LOCATION_INVALID = "Schema location may not be null or empty";
+    // ... loads scheme definitions from the snapshot named by this property, if set
+    public static final String SNAPSHOT_PROPERTIES_KEY = "nygaard.scheme.snapshot";
+
+    // snapshot last opened, and its location, so that it is opened once for all schemes
+    private static SchemeSnapshot snapshot;
+    private static String snapshotLocation;
+
+    /**
+     * Load the scheme definitions from the configured snapshot, if it contains the
+     * file <code>propertyFilePath</code>, otherwise from the properties file itself
+     *
+     * @return the scheme definitions, as key/value pairs
+     * @throws RuntimeException
+     */
+    static Map<String, String>
+    getDefinitions(String propertyFilePath) {
+        if (propertyFilePath == null || propertyFilePath.isEmpty() == true) {
+            throw new IllegalArgumentException(SCHEMA_LOCATION_INVALID);
+        }
+        SchemeSnapshot schemes = getSnapshot();
+        Map<String, String> result = schemes == null ? null : schemes.getSection(propertyFilePath);
+        return result != null ? result : SchemeSnapshot.toSection(getProperties(propertyFilePath));
+    }
+
+    /**
+     * @return the scheme definitions in the supplied file, as key/value pairs
+     * @throws IOException
+     */
+    static Map<String, String>
+    getDefinitionsFromFile(File schemeFile)
+            throws IOException {
+        return SchemeSnapshot.toSection(getPropertiesFromFile(schemeFile));
+    }
+
+    /**
+     * @return the snapshot named by the system property <code>SNAPSHOT_PROPERTIES_KEY</code>,
+     * or null if the property is not set, or the snapshot named cannot be used
+     */
+    private static synchronized SchemeSnapshot
+    getSnapshot() {
+        String location = System.getProperty(SNAPSHOT_PROPERTIES_KEY);
+        if (location == null || location.isEmpty() == true) {
+            return null;
+        }
+        if (location.equals(snapshotLocation) == false) {
+            try {
+                snapshot = SchemeSnapshot.load(location);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Scheme snapshot cannot be used, loading schemes from property files: {}", e.toString());
+                snapshot = null;
+            }
+            snapshotLocation = location;
+        }
+        return snapshot;
+    }
 
     /**
      * Load the scheme definitions from a properties file located on
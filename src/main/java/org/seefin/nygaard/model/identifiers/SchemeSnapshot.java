@@ -0,0 +1,257 @@
+package org.seefin.nygaard.model.identifiers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of scheme definitions, that may be loaded in place of the scheme property
+ * files (e.g., <code>IBANScheme.properties</code>), so that starting a JVM does not read and
+ * un-escape text property files
+ * <p/>
+ * A snapshot holds one section for each property file it replaces, named by the location
+ * of that file; each section holds the key/value pairs of the file, sorted by key.
+ * The snapshot is memory-mapped when it is a file, and its sections are located by
+ * skipping from one section header to the next, reading only the section required.
+ * Snapshots are written at build time by {@link SchemeSnapshotCompiler}
+ * <p/>
+ * Layout (integers are big-endian, strings are UTF-8, preceded by their length):
+ * <pre>
+ *   int    magic number ("NYGS")
+ *   int    format version
+ *   int    CRC-32 checksum of the bytes that follow
+ *   int    number of sections
+ *   for each section:
+ *     short  name length, name
+ *     int    number of bytes in the entries that follow
+ *     int    number of entries
+ *     for each entry:
+ *       short  key length, key
+ *       int    value length, value
+ * </pre>
+ *
+ * @author phillipsr
+ */
+final class SchemeSnapshot {
+    static final int MAGIC = 0x4E594753;
+    static final int VERSION = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int HEADER_SIZE = 16;
+    // offset of the checksummed content, i.e., of the number of sections
+    private static final int CONTENT_OFFSET = 12;
+
+    private final ByteBuffer buffer;
+    private final String location;
+
+    private SchemeSnapshot(ByteBuffer buffer, String location) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a scheme snapshot (location='" + location + "')");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Unsupported scheme snapshot version " + buffer.getInt(4)
+                    + ", expected " + VERSION + " (location='" + location + "')");
+        }
+        if (buffer.getInt(8) != checksum(buffer)) {
+            throw new IllegalStateException("Scheme snapshot is corrupt (location='" + location + "')");
+        }
+        this.buffer = buffer;
+        this.location = location;
+    }
+
+    /**
+     * Open the snapshot at the location supplied: a file, if one exists at that path,
+     * otherwise a resource on the classpath
+     *
+     * @param location of the snapshot
+     * @return the snapshot opened
+     * @throws IllegalArgumentException if there is no snapshot at the location supplied
+     * @throws IllegalStateException    if the file at the location is not a snapshot of this
+     *                                  version, or is corrupt
+     * @throws IOException              if the snapshot cannot be read
+     */
+    static SchemeSnapshot
+    load(String location)
+            throws IOException {
+        File file = new File(location);
+        if (file.isFile() == true) {
+            return open(file);
+        }
+        URL resource = Thread.currentThread().getContextClassLoader().getResource(location);
+        if (resource == null) {
+            throw new IllegalArgumentException("No scheme snapshot available (location='" + location + "')");
+        }
+        if ("file".equals(resource.getProtocol()) == true) {
+            try {
+                return open(new File(resource.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid scheme snapshot location '" + resource + "'", e);
+            }
+        }
+        // e.g., packaged in a jar: cannot be mapped, so is read into memory
+        try (InputStream input = resource.openStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            for (int count = input.read(chunk); count >= 0; count = input.read(chunk)) {
+                bytes.write(chunk, 0, count);
+            }
+            return new SchemeSnapshot(ByteBuffer.wrap(bytes.toByteArray()), location);
+        }
+    }
+
+    /**
+     * @param file containing a snapshot
+     * @return the snapshot, mapped into memory
+     * @throws IOException if the file cannot be read
+     */
+    static SchemeSnapshot
+    open(File file)
+            throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            return new SchemeSnapshot(channel.map(MapMode.READ_ONLY, 0, channel.size()), file.getPath());
+        }
+    }
+
+    /**
+     * @param name of the section required, i.e., the location of the property file it replaces
+     * @return the key/value pairs of the named section, in key order, or null if the snapshot
+     * does not contain that section
+     */
+    Map<String, String>
+    getSection(String name) {
+        // reads are relative to a private view, so that the snapshot may be shared between threads
+        ByteBuffer view = buffer.duplicate();
+        view.position(CONTENT_OFFSET);
+        byte[] required = name.getBytes(UTF8);
+        for (int sections = view.getInt(); sections > 0; sections--) {
+            boolean found = nameEquals(view, required);
+            int size = view.getInt();
+            if (found == true) {
+                int count = view.getInt();
+                Map<String, String> result = new LinkedHashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    String key = readString(view, view.getShort() & 0xFFFF);
+                    result.put(key, readString(view, view.getInt()));
+                }
+                return result;
+            }
+            view.position(view.position() + 4 + size);
+        }
+        return null;
+    }
+
+    @Override
+    public String
+    toString() {
+        return "SchemeSnapshot{location=" + location + ", version=" + VERSION + "}";
+    }
+
+    /**
+     * Write a snapshot of the sections supplied
+     *
+     * @param sections key/value pairs of each section, by section name
+     * @param output   to which the snapshot is written
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void
+    write(Map<String, ? extends Map<String, String>> sections, OutputStream output)
+            throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(content);
+        data.writeInt(sections.size());
+        for (Map.Entry<String, ? extends Map<String, String>> section : sections.entrySet()) {
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            DataOutputStream entryData = new DataOutputStream(entries);
+            Map<String, String> sorted = new TreeMap<>(section.getValue());
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                writeShortString(entryData, entry.getKey());
+                byte[] value = entry.getValue().getBytes(UTF8);
+                entryData.writeInt(value.length);
+                entryData.write(value);
+            }
+            writeShortString(data, section.getKey());
+            data.writeInt(entries.size());
+            data.writeInt(sorted.size());
+            entries.writeTo(data);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content.toByteArray());
+        DataOutputStream header = new DataOutputStream(output);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt((int) crc.getValue());
+        content.writeTo(header);
+        header.flush();
+    }
+
+    /**
+     * @param properties property file contents
+     * @return the key/value pairs of the properties supplied, as Strings
+     */
+    static Map<String, String>
+    toSection(Map<Object, Object> properties) {
+        Map<String, String> result = new HashMap<>(properties.size() * 2);
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            result.put((String) entry.getKey(), (String) entry.getValue());
+        }
+        return result;
+    }
+
+    private static int
+    checksum(ByteBuffer buffer) {
+        ByteBuffer content = buffer.duplicate();
+        content.position(CONTENT_OFFSET);
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        while (content.hasRemaining()) {
+            int count = Math.min(chunk.length, content.remaining());
+            content.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static boolean
+    nameEquals(ByteBuffer view, byte[] required) {
+        int length = view.getShort() & 0xFFFF;
+        boolean result = length == required.length;
+        for (int i = 0; i < length; i++) {
+            byte b = view.get();
+            result = result && b == required[i];
+        }
+        return result;
+    }
+
+    private static String
+    readString(ByteBuffer view, int length) {
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void
+    writeShortString(DataOutputStream data, String value)
+            throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Name too long for snapshot: " + value.substring(0, 32) + "...");
+        }
+        data.writeShort(bytes.length);
+        data.write(bytes);
+    }
+}
@@ -0,0 +1,89 @@
+package org.seefin.nygaard.model.identifiers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build-time compiler of scheme property files (e.g., <code>IBANScheme.properties</code>,
+ * <code>MSISDNScheme.properties</code>, <code>ISO7812Scheme.properties</code>) into a binary
+ * {@link SchemeSnapshot}, that is loaded at runtime in place of the property files, when named
+ * by the system property <code>nygaard.scheme.snapshot</code>
+ * <p/>
+ * Usage:
+ * <pre>
+ *   java org.seefin.nygaard.model.identifiers.SchemeSnapshotCompiler snapshot-file source-directory scheme-file...
+ * </pre>
+ * where each scheme file is a path relative to the source directory, that is also the classpath
+ * location from which the schemes would otherwise be loaded, e.g.:
+ * <pre>
+ *   ... schemes.snapshot src/main/resources org/seefin/nygaard/model/identifiers/IBANScheme.properties
+ * </pre>
+ * (the <code>scheme-snapshot</code> build profile runs the compiler over the scheme files of this project)
+ *
+ * @author phillipsr
+ */
+public final class SchemeSnapshotCompiler {
+
+    private SchemeSnapshotCompiler() {
+    }
+
+    /**
+     * @param args snapshot file to be written, source directory, and scheme files to be compiled
+     * @throws IOException if a scheme file cannot be read, or the snapshot written
+     */
+    public static void
+    main(String[] args)
+            throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: " + SchemeSnapshotCompiler.class.getName()
+                    + " snapshot-file source-directory scheme-file...");
+            System.exit(1);
+        }
+        File snapshot = new File(args[0]);
+        compile(snapshot, new File(args[1]), Arrays.asList(args).subList(2, args.length));
+        System.out.println("Wrote scheme snapshot " + snapshot + " (" + snapshot.length() + " bytes)");
+    }
+
+    /**
+     * Compile the scheme files supplied into a snapshot
+     *
+     * @param snapshot        file to which the snapshot is written
+     * @param sourceDirectory directory containing the scheme files
+     * @param schemeFiles     paths of the scheme files, relative to <code>sourceDirectory</code>
+     * @throws IllegalArgumentException if there are no scheme files, or a scheme file
+     *                                  is named more than once
+     * @throws IOException              if a scheme file cannot be read, or the snapshot written
+     */
+    public static void
+    compile(File snapshot, File sourceDirectory, List<String> schemeFiles)
+            throws IOException {
+        if (schemeFiles.isEmpty() == true) {
+            throw new IllegalArgumentException("No scheme files to compile");
+        }
+        Map<String, File> sources = new LinkedHashMap<>();
+        for (String schemeFile : schemeFiles) {
+            // sections are named by classpath location, which is always '/' separated
+            String name = schemeFile.replace(File.separatorChar, '/');
+            if (sources.put(name, new File(sourceDirectory, schemeFile)) != null) {
+                throw new IllegalArgumentException("Scheme file named more than once: " + name);
+            }
+        }
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+        for (Map.Entry<String, File> source : sources.entrySet()) {
+            sections.put(source.getKey(), PropertyLoader.getDefinitionsFromFile(source.getValue()));
+        }
+        File directory = snapshot.getAbsoluteFile().getParentFile();
+        if (directory.isDirectory() == false && directory.mkdirs() == false) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        try (OutputStream output = new FileOutputStream(snapshot)) {
+            SchemeSnapshot.write(sections, output);
+        }
+    }
+}
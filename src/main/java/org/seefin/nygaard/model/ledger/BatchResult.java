@@ -0,0 +1,70 @@
+package org.seefin.nygaard.model.ledger;
+
+/**
+ * Outcome of posting a batch of transactions to the {@link Ledger}: for each transaction,
+ * by its position in the batch, either the journal entry recording it, or the exception
+ * describing why it was refused
+ *
+ * @author phillipsr
+ */
+public final class BatchResult {
+    private final JournalEntry[] entries;
+    private final PostingException[] failures;
+    private final int posted;
+
+    BatchResult(JournalEntry[] entries, PostingException[] failures) {
+        this.entries = entries;
+        this.failures = failures;
+        int count = 0;
+        for (JournalEntry entry : entries) {
+            if (entry != null) {
+                count++;
+            }
+        }
+        this.posted = count;
+    }
+
+    /**
+     * @return the number of transactions in the batch
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * @return the number of transactions that were posted
+     */
+    public int getPostedCount() {
+        return posted;
+    }
+
+    /**
+     * @param index position of the transaction in the batch
+     * @return true if the transaction was posted
+     */
+    public boolean isPosted(int index) {
+        return entries[index] != null;
+    }
+
+    /**
+     * @param index position of the transaction in the batch
+     * @return the journal entry recording the transaction, or null if it was refused
+     */
+    public JournalEntry getEntry(int index) {
+        return entries[index];
+    }
+
+    /**
+     * @param index position of the transaction in the batch
+     * @return the reason the transaction was refused, or null if it was posted
+     */
+    public PostingException getFailure(int index) {
+        return failures[index];
+    }
+
+    @Override
+    public String
+    toString() {
+        return "BatchResult{size=" + entries.length + ", posted=" + posted + "}";
+    }
+}
@@ -0,0 +1,71 @@
+package org.seefin.nygaard.model.ledger;
+
+import java.io.Serializable;
+
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.identifiers.Identity;
+
+
+/**
+ * Balanced, double-entry record of a posted transaction: a debit posting and
+ * a credit posting of equal and opposite amounts
+ *
+ * @author phillipsr
+ */
+public final class JournalEntry
+        implements Serializable {
+    private final GUID id;
+    private final Identity transactionId;
+    private final Posting debit;
+    private final Posting credit;
+
+    JournalEntry(GUID id, Identity transactionId, Posting debit, Posting credit) {
+        assert debit.getAmount().negate().equals(credit.getAmount()) : "entry is balanced";
+        this.id = id;
+        this.transactionId = transactionId;
+        this.debit = debit;
+        this.credit = credit;
+    }
+
+    /**
+     * @return the unique identity of this journal entry
+     */
+    public GUID getId() {
+        return id;
+    }
+
+    /**
+     * @return the identity of the transaction that was posted
+     */
+    public Identity getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return the posting to the debit account
+     */
+    public Posting getDebit() {
+        return debit;
+    }
+
+    /**
+     * @return the posting to the credit account
+     */
+    public Posting getCredit() {
+        return credit;
+    }
+
+    /**
+     * @return the time of posting, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return debit.getTimestamp();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "JournalEntry{id=" + id + ", transaction=" + transactionId
+                + ", debit=" + debit + ", credit=" + credit + "}";
+    }
+}
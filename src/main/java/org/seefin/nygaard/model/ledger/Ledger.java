@@ -0,0 +1,463 @@
+package org.seefin.nygaard.model.ledger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.Account;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.AccountNumber;
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.time.Clock;
+
+
+/**
+ * In-memory, double-entry ledger: each {@link FinancialTransaction} posted is recorded
+ * as a balanced {@link JournalEntry}, debiting one account and crediting the other by the
+ * same amount, and appended to the posting history of both accounts
+ * <p/>
+ * Posting is serialized per account by a fixed set of lock stripes, keyed by the
+ * account number: transactions between unrelated accounts proceed in parallel, while
+ * those touching a common account are applied one at a time, so an account's postings
+ * are always in the same order as its balance changes. The two stripes of a posting
+ * are always acquired in index order, so concurrent transfers in opposite directions
+ * cannot deadlock
+ * <p/>
+ * A debit that would take the account balance below zero is refused with
+ * {@link ResponseCode#INSUFFICENT_FUNDS}, leaving both accounts unchanged
+ * <p/>
+ * Transactions may also be posted in batches ({@link #postAll}), amortizing the cost of
+ * locking and balance updates over the whole batch: see {@link TransferBatcher}
+ *
+ * @author phillipsr
+ */
+public final class Ledger {
+    private static final int DEFAULT_STRIPES = 256;
+    private static final int MAX_STRIPES = 1 << 16;
+
+    private final ReentrantLock[] stripes;
+    private final int stripeMask;
+    private final ConcurrentMap<AccountNumber, PostingLog> postings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<GUID, JournalEntry> journal = new ConcurrentHashMap<>();
+    private final LedgerMetrics metrics = new LedgerMetrics();
+
+    /**
+     * Create a ledger with the default number of lock stripes
+     */
+    public Ledger() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create a ledger with (at least) the number of lock stripes requested
+     *
+     * @param concurrency number of lock stripes, rounded up to a power of two
+     * @throws IllegalArgumentException if concurrency is less than one, or unreasonably large
+     */
+    public Ledger(int concurrency) {
+        if (concurrency < 1 || concurrency > MAX_STRIPES) {
+            throw new IllegalArgumentException(
+                    "Concurrency must be between 1 and " + MAX_STRIPES + " (" + concurrency + ")");
+        }
+        int size = Integer.highestOneBit(concurrency);
+        if (size < concurrency) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        stripeMask = size - 1;
+    }
+
+    /**
+     * Post the supplied transaction, moving its amount from the debit account to the credit account
+     *
+     * @param transaction to be posted
+     * @return the journal entry recording the transaction
+     * @throws IllegalArgumentException if transaction is null
+     * @throws PostingException         if the amount is not positive, the currencies
+     *                                  of the amount and accounts differ, or the debit account
+     *                                  has insufficient funds
+     */
+    public JournalEntry
+    post(FinancialTransaction transaction) {
+        if (transaction == null) {
+            throw new IllegalArgumentException("Transaction cannot be null");
+        }
+        long start = System.nanoTime();
+        Account debitAccount = transaction.getDebitInstrument();
+        Account creditAccount = transaction.getCreditInstrument();
+        MonetaryAmount amount = transaction.getAmount();
+        try {
+            validate(debitAccount, creditAccount, amount);
+        } catch (PostingException e) {
+            metrics.recordRejected(System.nanoTime() - start);
+            throw e;
+        }
+
+        int first = stripeOf(debitAccount.getIdentifier());
+        int second = stripeOf(creditAccount.getIdentifier());
+        if (first > second) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        stripes[first].lock();
+        if (second != first) {
+            stripes[second].lock();
+        }
+        JournalEntry entry;
+        try {
+            entry = commit(transaction);
+        } catch (PostingException e) {
+            metrics.recordRejected(System.nanoTime() - start);
+            throw e;
+        } finally {
+            if (second != first) {
+                stripes[second].unlock();
+            }
+            stripes[first].unlock();
+        }
+        metrics.recordPosted(System.nanoTime() - start);
+        return entry;
+    }
+
+    /**
+     * Move the amount of a validated transaction between its accounts, and record it;
+     * the caller must hold the lock stripes of both accounts
+     */
+    private JournalEntry
+    commit(FinancialTransaction transaction) {
+        Account debitAccount = transaction.getDebitInstrument();
+        Account creditAccount = transaction.getCreditInstrument();
+        MonetaryAmount amount = transaction.getAmount();
+        if (debitAccount.tryDebit(amount, new MonetaryAmount(amount.getCurrency(), 0L)) == false) {
+            throw new PostingException(ResponseCode.INSUFFICENT_FUNDS,
+                    "Insufficient funds in account " + debitAccount.getIdentifier() + " to debit " + amount);
+        }
+        MonetaryAmount creditBalance;
+        try {
+            creditBalance = creditAccount.credit(amount);
+        } catch (ArithmeticException e) {
+            debitAccount.credit(amount);
+            throw new PostingException(ResponseCode.ACCOUNT_LIMIT_REACHED,
+                    "Balance of account " + creditAccount.getIdentifier() + " cannot hold a credit of " + amount);
+        }
+
+        GUID journalId = GUID.createUniqueId();
+        long timestamp = Clock.getDefault().millis();
+        long value = amount.longValue();
+        Posting debit = logOf(debitAccount).append(
+                journalId, -value, debitAccount.getBalance().longValue(), timestamp);
+        Posting credit = logOf(creditAccount).append(
+                journalId, value, creditBalance.longValue(), timestamp);
+        JournalEntry result = new JournalEntry(journalId, transaction.getIdentity(), debit, credit);
+        journal.put(journalId, result);
+        return result;
+    }
+
+    /**
+     * Post a batch of transactions as a single unit, in the order supplied
+     * <p/>
+     * The lock stripes of every account in the batch are acquired once, the
+     * transactions are checked in order against the running balance of each account,
+     * and the net effect of the accepted transactions is then applied to each account
+     * in a single update; a transaction that would overdraw its debit account is refused
+     * as if it were posted alone, without affecting the rest of the batch
+     *
+     * @param transactions to be posted
+     * @return the outcome of each transaction, by position in <code>transactions</code>
+     * @throws IllegalArgumentException if transactions is null, or contains a null entry
+     */
+    public BatchResult
+    postAll(List<FinancialTransaction> transactions) {
+        if (transactions == null) {
+            throw new IllegalArgumentException("Transactions cannot be null");
+        }
+        long start = System.nanoTime();
+        int size = transactions.size();
+        JournalEntry[] entries = new JournalEntry[size];
+        PostingException[] failures = new PostingException[size];
+        BitSet held = new BitSet(stripes.length);
+        for (int i = 0; i < size; i++) {
+            FinancialTransaction transaction = transactions.get(i);
+            if (transaction == null) {
+                throw new IllegalArgumentException("Transaction cannot be null (index=" + i + ")");
+            }
+            try {
+                validate(transaction.getDebitInstrument(), transaction.getCreditInstrument(), transaction.getAmount());
+                held.set(stripeOf(transaction.getDebitInstrument().getIdentifier()));
+                held.set(stripeOf(transaction.getCreditInstrument().getIdentifier()));
+            } catch (PostingException e) {
+                failures[i] = e;
+            }
+        }
+
+        for (int i = held.nextSetBit(0); i >= 0; i = held.nextSetBit(i + 1)) {
+            stripes[i].lock();
+        }
+        try {
+            Map<Account, long[]> balances = net(transactions, failures);
+            if (apply(balances) == true) {
+                record(transactions, entries, failures, balances);
+            } else {
+                // an account was debited outside the ledger since the batch was netted: post singly
+                for (int i = 0; i < size; i++) {
+                    if (failures[i] == null) {
+                        try {
+                            entries[i] = commit(transactions.get(i));
+                        } catch (PostingException e) {
+                            failures[i] = e;
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (int i = held.nextSetBit(0); i >= 0; i = held.nextSetBit(i + 1)) {
+                stripes[i].unlock();
+            }
+        }
+        BatchResult result = new BatchResult(entries, failures);
+        metrics.recordBatch(result.getPostedCount(), size - result.getPostedCount(), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Check each valid transaction in turn against the running balances of its accounts,
+     * marking those that would overdraw the debit account as failed
+     *
+     * @return map of account to opening [0] and closing [1] balance, for each account in the batch
+     */
+    private static Map<Account, long[]>
+    net(List<FinancialTransaction> transactions, PostingException[] failures) {
+        Map<Account, long[]> result = new IdentityHashMap<>();
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] != null) {
+                continue;
+            }
+            FinancialTransaction transaction = transactions.get(i);
+            long[] debit = balanceOf(result, transaction.getDebitInstrument());
+            long[] credit = balanceOf(result, transaction.getCreditInstrument());
+            long value = transaction.getAmount().longValue();
+            if (debit[1] - value < 0) {
+                failures[i] = new PostingException(ResponseCode.INSUFFICENT_FUNDS,
+                        "Insufficient funds in account " + transaction.getDebitInstrument().getIdentifier()
+                                + " to debit " + transaction.getAmount());
+                continue;
+            }
+            if (credit[1] > Long.MAX_VALUE - value) {
+                failures[i] = new PostingException(ResponseCode.ACCOUNT_LIMIT_REACHED,
+                        "Balance of account " + transaction.getCreditInstrument().getIdentifier()
+                                + " cannot hold a credit of " + transaction.getAmount());
+                continue;
+            }
+            debit[1] -= value;
+            credit[1] += value;
+        }
+        return result;
+    }
+
+    private static long[]
+    balanceOf(Map<Account, long[]> balances, Account account) {
+        long[] result = balances.get(account);
+        if (result == null) {
+            long balance = account.getBalance().longValue();
+            result = new long[]{balance, balance};
+            balances.put(account, result);
+        }
+        return result;
+    }
+
+    /**
+     * Apply the net change of each account's balance: debits first, so that if any
+     * fails, the debits already applied can be reversed and the batch abandoned
+     *
+     * @return true if the balances were updated, false if the batch was abandoned
+     */
+    private static boolean
+    apply(Map<Account, long[]> balances) {
+        List<Account> debited = new ArrayList<>();
+        for (Map.Entry<Account, long[]> entry : balances.entrySet()) {
+            Account account = entry.getKey();
+            long change = entry.getValue()[1] - entry.getValue()[0];
+            if (change < 0) {
+                Currency currency = account.getAccountCurrency();
+                if (account.tryDebit(new MonetaryAmount(currency, -change), new MonetaryAmount(currency, 0L)) == false) {
+                    for (Account reverse : debited) {
+                        long[] balance = balances.get(reverse);
+                        reverse.credit(new MonetaryAmount(reverse.getAccountCurrency(), balance[0] - balance[1]));
+                    }
+                    return false;
+                }
+                debited.add(account);
+            }
+        }
+        for (Map.Entry<Account, long[]> entry : balances.entrySet()) {
+            long change = entry.getValue()[1] - entry.getValue()[0];
+            if (change > 0) {
+                entry.getKey().credit(new MonetaryAmount(entry.getKey().getAccountCurrency(), change));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append the postings and journal entries of the accepted transactions, replaying
+     * the batch from the opening balances to give each posting its running balance
+     */
+    private void
+    record(List<FinancialTransaction> transactions, JournalEntry[] entries,
+           PostingException[] failures, Map<Account, long[]> balances) {
+        for (long[] balance : balances.values()) {
+            balance[1] = balance[0];
+        }
+        long timestamp = Clock.getDefault().millis();
+        for (int i = 0; i < entries.length; i++) {
+            if (failures[i] != null) {
+                continue;
+            }
+            FinancialTransaction transaction = transactions.get(i);
+            Account debitAccount = transaction.getDebitInstrument();
+            Account creditAccount = transaction.getCreditInstrument();
+            long[] debitBalance = balances.get(debitAccount);
+            long[] creditBalance = balances.get(creditAccount);
+            long value = transaction.getAmount().longValue();
+            debitBalance[1] -= value;
+            creditBalance[1] += value;
+
+            GUID journalId = GUID.createUniqueId();
+            Posting debit = logOf(debitAccount).append(journalId, -value, debitBalance[1], timestamp);
+            Posting credit = logOf(creditAccount).append(journalId, value, creditBalance[1], timestamp);
+            entries[i] = new JournalEntry(journalId, transaction.getIdentity(), debit, credit);
+            journal.put(journalId, entries[i]);
+        }
+    }
+
+    private static void
+    validate(Account debitAccount, Account creditAccount, MonetaryAmount amount) {
+        if (amount.longValue() <= 0) {
+            throw new PostingException(ResponseCode.INVALID_AMOUNT,
+                    "Amount to be posted must be positive (" + amount + ")");
+        }
+        Currency currency = amount.getCurrency();
+        if (debitAccount.getAccountCurrency() != currency || creditAccount.getAccountCurrency() != currency) {
+            throw new PostingException(ResponseCode.INVALID_CURRENCY,
+                    "Amount currency (" + currency + ") must match that of both accounts ("
+                            + debitAccount.getAccountCurrency() + " & " + creditAccount.getAccountCurrency() + ")");
+        }
+    }
+
+    private int
+    stripeOf(AccountNumber account) {
+        int hash = account.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & stripeMask;
+    }
+
+    private PostingLog
+    logOf(Account account) {
+        PostingLog result = postings.get(account.getIdentifier());
+        if (result == null) {
+            PostingLog created = new PostingLog(account.getIdentifier(), account.getAccountCurrency());
+            result = postings.putIfAbsent(account.getIdentifier(), created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param journalId identity of the journal entry required
+     * @return the journal entry with the supplied identity, or null if no such entry has been posted
+     */
+    public JournalEntry
+    getJournalEntry(GUID journalId) {
+        return journal.get(journalId);
+    }
+
+    /**
+     * @param account whose posting history is required
+     * @return a snapshot of the postings to the account, oldest first; empty if none have been made
+     */
+    public List<Posting>
+    getPostings(AccountNumber account) {
+        PostingLog log = postings.get(account);
+        if (log == null) {
+            return Collections.emptyList();
+        }
+        ReentrantLock lock = stripes[stripeOf(account)];
+        lock.lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(log.entries));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param account whose posted balance is required
+     * @return the sum of all postings made to the account, or null if none have been made
+     */
+    public MonetaryAmount
+    getPostedBalance(AccountNumber account) {
+        PostingLog log = postings.get(account);
+        return log == null ? null : new MonetaryAmount(log.currency, log.balance);
+    }
+
+    /**
+     * @return the number of journal entries posted
+     */
+    public int size() {
+        return journal.size();
+    }
+
+    /**
+     * @return throughput and latency measurements for this ledger
+     */
+    public LedgerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String
+    toString() {
+        return "Ledger{entries=" + journal.size() + ", accounts=" + postings.size()
+                + ", stripes=" + stripes.length + ", " + metrics + "}";
+    }
+
+    /**
+     * Append-only posting history of a single account; only ever modified while holding
+     * the lock stripe of that account
+     */
+    private static final class PostingLog {
+        private final AccountNumber account;
+        private final Currency currency;
+        private final List<Posting> entries = new ArrayList<>();
+        private volatile long balance;
+
+        private PostingLog(AccountNumber account, Currency currency) {
+            this.account = account;
+            this.currency = currency;
+        }
+
+        private Posting
+        append(GUID journalId, long amount, long accountBalance, long timestamp) {
+            Posting result = new Posting(
+                    journalId, account, currency, amount, accountBalance, entries.size() + 1, timestamp);
+            entries.add(result);
+            balance += amount;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.seefin.nygaard.model.ledger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Throughput and latency counters for a {@link Ledger}
+ *
+ * @author phillipsr
+ */
+public final class LedgerMetrics {
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong postingNanos = new AtomicLong();
+    private final AtomicLong maxPostingNanos = new AtomicLong();
+    private volatile long startedAt = System.nanoTime();
+
+    void
+    recordPosted(long elapsedNanos) {
+        posted.incrementAndGet();
+        record(elapsedNanos);
+    }
+
+    void
+    recordRejected(long elapsedNanos) {
+        rejected.incrementAndGet();
+        record(elapsedNanos);
+    }
+
+    void
+    recordBatch(int postedCount, int rejectedCount, long elapsedNanos) {
+        batches.incrementAndGet();
+        posted.addAndGet(postedCount);
+        rejected.addAndGet(rejectedCount);
+        record(elapsedNanos);
+    }
+
+    private void
+    record(long elapsedNanos) {
+        postingNanos.addAndGet(elapsedNanos);
+        long max = maxPostingNanos.get();
+        while (elapsedNanos > max && maxPostingNanos.compareAndSet(max, elapsedNanos) == false) {
+            max = maxPostingNanos.get();
+        }
+    }
+
+    /**
+     * @return the number of journal entries posted
+     */
+    public long getPosted() {
+        return posted.get();
+    }
+
+    /**
+     * @return the number of transactions refused by the ledger
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of batches posted
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return mean time taken to post (or reject) a transaction, in nanoseconds; the time
+     * taken to post a batch is shared among its transactions
+     */
+    public long
+    getMeanPostingNanos() {
+        long count = posted.get() + rejected.get();
+        return count == 0 ? 0 : postingNanos.get() / count;
+    }
+
+    /**
+     * @return longest time taken to post (or reject) a transaction or batch, in nanoseconds
+     */
+    public long
+    getMaxPostingNanos() {
+        return maxPostingNanos.get();
+    }
+
+    /**
+     * @return the mean number of entries posted per second, since the metrics were created or last reset
+     */
+    public double
+    getPostedPerSecond() {
+        long elapsed = System.nanoTime() - startedAt;
+        return elapsed <= 0 ? 0 : posted.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Zero all counters, and restart the throughput measurement period
+     */
+    public void
+    reset() {
+        posted.set(0);
+        rejected.set(0);
+        batches.set(0);
+        postingNanos.set(0);
+        maxPostingNanos.set(0);
+        startedAt = System.nanoTime();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "LedgerMetrics{posted=" + getPosted() + ", rejected=" + getRejected() + ", batches=" + getBatches()
+                + ", meanNanos=" + getMeanPostingNanos() + ", maxNanos=" + getMaxPostingNanos()
+                + ", postedPerSecond=" + String.format("%.1f", getPostedPerSecond()) + "}";
+    }
+}
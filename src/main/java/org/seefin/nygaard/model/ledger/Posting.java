@@ -0,0 +1,96 @@
+package org.seefin.nygaard.model.ledger;
+
+import java.io.Serializable;
+import java.util.Currency;
+
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.AccountNumber;
+import org.seefin.nygaard.model.identifiers.GUID;
+
+
+/**
+ * A single, immutable line in the posting history of an account: one side of
+ * a {@link JournalEntry}
+ * <p/>
+ * Amounts are signed; debits are negative and credits positive, so the balance of
+ * an account is the sum of its postings
+ *
+ * @author phillipsr
+ */
+public final class Posting
+        implements Serializable {
+    private final GUID journalId;
+    private final AccountNumber account;
+    private final Currency currency;
+    private final long amount;
+    private final long balance;
+    private final long sequence;
+    private final long timestamp;
+
+    Posting(GUID journalId, AccountNumber account, Currency currency,
+            long amount, long balance, long sequence, long timestamp) {
+        this.journalId = journalId;
+        this.account = account;
+        this.currency = currency;
+        this.amount = amount;
+        this.balance = balance;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return the identity of the journal entry this posting belongs to
+     */
+    public GUID getJournalId() {
+        return journalId;
+    }
+
+    /**
+     * @return the account posted to
+     */
+    public AccountNumber getAccount() {
+        return account;
+    }
+
+    /**
+     * @return the signed amount of this posting (negative for a debit)
+     */
+    public MonetaryAmount getAmount() {
+        return new MonetaryAmount(currency, amount);
+    }
+
+    /**
+     * @return the posted balance of the account, after this posting was applied
+     */
+    public MonetaryAmount getBalance() {
+        return new MonetaryAmount(currency, balance);
+    }
+
+    /**
+     * @return the position of this posting in the account's history, starting at one
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the time of posting, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return true if this posting debits the account
+     */
+    public boolean isDebit() {
+        return amount < 0;
+    }
+
+    @Override
+    public String
+    toString() {
+        return "Posting{journal=" + journalId + ", account=" + account + ", #" + sequence
+                + ", amount=" + getAmount() + ", balance=" + getBalance() + "}";
+    }
+}
@@ -0,0 +1,27 @@
+package org.seefin.nygaard.model.ledger;
+
+import org.seefin.nygaard.model.codes.ResponseCode;
+
+/**
+ * Exception thrown when a transaction cannot be posted to the ledger, e.g., because
+ * the debit account has insufficient funds, or the currencies of the transaction
+ * and its accounts differ
+ *
+ * @author phillipsr
+ */
+public class PostingException
+        extends RuntimeException {
+    private final ResponseCode responseCode;
+
+    public PostingException(ResponseCode responseCode, String message) {
+        super(message);
+        this.responseCode = responseCode;
+    }
+
+    /**
+     * @return the response code describing why the posting was refused
+     */
+    public ResponseCode getResponseCode() {
+        return responseCode;
+    }
+}
@@ -0,0 +1,239 @@
+package org.seefin.nygaard.model.ledger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.requests.TransferRequest;
+import org.seefin.nygaard.model.requests.TransferResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+/**
+ * Group-commit stage for transfers: collects submitted {@link TransferRequest}s into
+ * micro-batches, closed when either the maximum batch size is reached or the maximum
+ * delay since the first request of the batch has elapsed, and posts each batch to the
+ * {@link Ledger} as a single unit (see {@link Ledger#postAll})
+ * <p/>
+ * Under light load a request waits no more than the maximum delay before being posted;
+ * under heavy load batches fill before the delay elapses, and the cost of each commit
+ * is shared across the whole batch
+ * <p/>
+ * Batches are committed, in order of submission, by a single daemon thread, started by
+ * {@link #start()} and stopped by {@link #close()}
+ *
+ * @author phillipsr
+ */
+public final class TransferBatcher
+        implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TransferBatcher.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final Ledger ledger;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingTransfer> queue;
+    private final Thread committer;
+    private volatile boolean closed;
+
+    /**
+     * Create a transfer batcher posting to the supplied ledger
+     *
+     * @param ledger       to which batches are posted
+     * @param maxBatchSize maximum number of transfers in a batch
+     * @param maxDelay     maximum time a transfer waits for its batch to fill
+     * @param unit         of <code>maxDelay</code>
+     * @param capacity     maximum number of transfers awaiting posting
+     * @throws IllegalArgumentException if ledger or unit is null, or any of the numeric parameters is out of range
+     */
+    public TransferBatcher(Ledger ledger, int maxBatchSize, long maxDelay, TimeUnit unit, int capacity) {
+        if (ledger == null) {
+            throw new IllegalArgumentException("Ledger cannot be null");
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("Time unit cannot be null");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be positive (" + maxBatchSize + ")");
+        }
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("Maximum delay cannot be negative (" + maxDelay + ")");
+        }
+        if (capacity < maxBatchSize) {
+            throw new IllegalArgumentException(
+                    "Capacity (" + capacity + ") cannot be less than maximum batch size (" + maxBatchSize + ")");
+        }
+        this.ledger = ledger;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "transfer-batcher");
+        this.committer.setDaemon(true);
+    }
+
+    /**
+     * Start the thread committing batches to the ledger
+     *
+     * @throws IllegalStateException if the batcher has already been started
+     */
+    public void
+    start() {
+        committer.start();
+    }
+
+    /**
+     * Queue the supplied request for posting in the next batch
+     *
+     * @param request to be posted
+     * @return future completed with the response to the request, once its batch has been
+     * posted; a refused transfer completes with an unsuccessful response, and the future
+     * completes exceptionally only if the ledger failed unexpectedly
+     * @throws IllegalArgumentException   if request is null
+     * @throws RejectedExecutionException if the batcher has been closed, or is at capacity
+     */
+    public ListenableFuture<TransferResponse>
+    submit(TransferRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Transfer request cannot be null");
+        }
+        if (closed == true) {
+            throw new RejectedExecutionException("Transfer batcher has been closed");
+        }
+        PendingTransfer pending = new PendingTransfer(request);
+        if (queue.offer(pending) == false) {
+            throw new RejectedExecutionException("Transfer batcher is at capacity (" + queue.size() + ")");
+        }
+        // closed while queueing: if close() has already made its final drain, nothing will
+        // commit the request, so withdraw it; if it cannot be withdrawn, it has been drained
+        if (closed == true && queue.remove(pending) == true) {
+            throw new RejectedExecutionException("Transfer batcher has been closed");
+        }
+        return pending.response;
+    }
+
+    /**
+     * Stop accepting requests, post those already queued, and wait for the committing thread to finish;
+     * if interrupted while waiting, the remaining requests are posted by the calling thread, and its
+     * interrupt status is restored
+     */
+    @Override
+    public void
+    close() {
+        closed = true;
+        if (committer.isAlive() == true) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // requests that raced with closing, or submitted to a batcher never started
+        List<PendingTransfer> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void
+    commitLoop() {
+        List<PendingTransfer> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (closed == false || queue.isEmpty() == false) {
+                PendingTransfer first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingTransfer next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            log.warn("Transfer batcher interrupted, {} requests queued", queue.size());
+            closed = true;
+            commit(batch);
+        }
+    }
+
+    private void
+    commit(List<PendingTransfer> batch) {
+        if (batch.isEmpty() == true) {
+            return;
+        }
+        List<FinancialTransaction> transactions = new ArrayList<>(batch.size());
+        for (PendingTransfer pending : batch) {
+            transactions.add(pending.request.getTransaction());
+        }
+        BatchResult result;
+        try {
+            result = ledger.postAll(transactions);
+        } catch (RuntimeException e) {
+            log.error("Failed to post batch of {} transfers", batch.size(), e);
+            for (PendingTransfer pending : batch) {
+                pending.response.setException(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingTransfer pending = batch.get(i);
+            if (result.isPosted(i) == true) {
+                JournalEntry entry = result.getEntry(i);
+                pending.response.set(new TransferResponse(true, entry.getId().externalForm(),
+                        pending.request.getComment(), entry.getDebit().getBalance()));
+            } else {
+                PostingException failure = result.getFailure(i);
+                pending.response.set(new TransferResponse(false, null,
+                        failure.getResponseCode() + ": " + failure.getMessage(),
+                        pending.request.getTransaction().getDebitInstrument().getBalance()));
+            }
+        }
+    }
+
+    /**
+     * @return the number of transfers waiting to be posted
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "TransferBatcher{maxBatchSize=" + maxBatchSize + ", maxDelayNanos=" + maxDelayNanos
+                + ", queued=" + queue.size() + ", closed=" + closed + "}";
+    }
+
+    private static final class PendingTransfer {
+        private final TransferRequest request;
+        private final SettableFuture<TransferResponse> response = SettableFuture.create();
+
+        private PendingTransfer(TransferRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.seefin.nygaard.model.locations;
 
-import java.text.DecimalFormat;
 import java.util.regex.Pattern;
 
 /**
@@ -10,6 +9,10 @@ import java.util.regex.Pattern;
  */
 public class ZipCode
         implements PostalCode {
+    /**
+     * Number of digits in the canonical form of a zip code
+     */
+    public static final int DIGITS = 5;
     private static final Pattern NON_NUMERICS = Pattern.compile("[^0-9]");
     private final int zipCode;
 
@@ -31,9 +34,22 @@ public class ZipCode
         return new ZipCode(Integer.parseInt(digits));
     }
 
+    /**
+     * @return the numeric value of this zip code
+     */
+    public int intValue() {
+        return zipCode;
+    }
+
     @Override
     public String externalForm() {
-        return (new DecimalFormat("00000")).format(zipCode);
+        char[] digits = new char[DIGITS];
+        int remaining = zipCode;
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return new String(digits);
     }
 
     @Override
@@ -0,0 +1,68 @@
+package org.seefin.nygaard.model.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Registry publishing parsing statistics as MXBeans, named
+ * <code>org.seefin.nygaard:type=ParseStatistics,identifier="IBAN",dimension="IE"</code>
+ *
+ * @author phillipsr
+ */
+public final class JmxMetricsRegistry
+        implements MetricsRegistry {
+    private static final Logger log = LoggerFactory.getLogger(JmxMetricsRegistry.class);
+
+    public static final String DOMAIN = "org.seefin.nygaard";
+
+    private final MBeanServer server;
+
+    /**
+     * Create a registry publishing to the platform MBean server
+     */
+    public JmxMetricsRegistry() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * @param server to which statistics are to be published
+     */
+    public JmxMetricsRegistry(MBeanServer server) {
+        if (server == null) {
+            throw new IllegalArgumentException("MBean server cannot be null");
+        }
+        this.server = server;
+    }
+
+    /**
+     * @return the name under which the statistics supplied are published
+     */
+    public static ObjectName
+    nameOf(ParseStatistics statistics)
+            throws JMException {
+        return new ObjectName(DOMAIN + ":type=ParseStatistics,identifier="
+                + ObjectName.quote(statistics.getIdentifierType())
+                + ",dimension=" + ObjectName.quote(statistics.getDimension()));
+    }
+
+    @Override
+    public void
+    register(ParseStatistics statistics) {
+        try {
+            ObjectName name = nameOf(statistics);
+            if (server.isRegistered(name) == true) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(statistics, name);
+        } catch (JMException e) {
+            log.warn("Cannot publish {} to JMX: {}", statistics, e.getMessage());
+        }
+    }
+}
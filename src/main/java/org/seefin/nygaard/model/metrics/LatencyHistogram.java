@@ -0,0 +1,113 @@
+package org.seefin.nygaard.model.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Histogram of elapsed times, in nanoseconds, with a bucket for each power of two:
+ * recording a time is a handful of atomic increments, and percentiles are answered
+ * to within a factor of two, which is enough to tell a microsecond from a millisecond
+ *
+ * @author phillipsr
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    // bucket i counts times in the range [2^(i-1), 2^i)
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter totalNanos = new StripedCounter();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param elapsedNanos time to be recorded; negative times are recorded as zero
+     */
+    public void
+    record(long elapsedNanos) {
+        long nanos = Math.max(0, elapsedNanos);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && maxNanos.compareAndSet(max, nanos) == false) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * @return the number of times recorded
+     */
+    public long
+    getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean of the times recorded, in nanoseconds
+     */
+    public long
+    getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+
+    /**
+     * @return the longest time recorded, in nanoseconds
+     */
+    public long
+    getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile required, e.g., 99.0
+     * @return an upper bound of the times recorded at that percentile, in nanoseconds
+     * (the upper bound of the bucket holding the percentile, limited to the maximum time recorded)
+     * @throws IllegalArgumentException if the percentile is not in the range 0..100
+     */
+    public long
+    getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be 0 .. 100, was: " + percentile);
+        }
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return Math.min((1L << i) - 1, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Discard all times recorded
+     */
+    public void
+    reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String
+    toString() {
+        return "LatencyHistogram{count=" + getCount() + ", meanNanos=" + getMeanNanos()
+                + ", p99Nanos=" + getPercentileNanos(99) + ", maxNanos=" + getMaxNanos() + "}";
+    }
+}
@@ -0,0 +1,17 @@
+package org.seefin.nygaard.model.metrics;
+
+
+/**
+ * Receiver of the statistics created by {@link ParseMetrics}, to publish them to a
+ * monitoring system (e.g., JMX, by {@link JmxMetricsRegistry}); registries are told of each
+ * set of statistics when it is created (or, for those that exist already, when the registry
+ * is added), and read its values when they are required
+ *
+ * @author phillipsr
+ */
+public interface MetricsRegistry {
+    /**
+     * @param statistics created for a new combination of identifier type and dimension
+     */
+    void register(ParseStatistics statistics);
+}
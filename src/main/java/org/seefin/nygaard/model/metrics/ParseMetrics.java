@@ -0,0 +1,226 @@
+package org.seefin.nygaard.model.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * Optional instrumentation of the parsing of identifiers: counts of successes and of
+ * failures by reason, and a histogram of the time taken, for each kind of identifier and
+ * each country, scheme or issuer (the <i>dimension</i>)
+ * <p/>
+ * Instrumentation is disabled unless the system property <code>org.seefin.nygaard.metrics</code>
+ * is <code>true</code>, or it is enabled by <code>setEnabled</code>; when disabled, recording
+ * costs one volatile read per parse, and neither reads the clock nor allocates. A parser
+ * records its outcome as follows:
+ * <pre>
+ *     long start = metrics.start();
+ *     try {
+ *         IBAN result = new IBAN(value);
+ *         metrics.success(start, result.getCountryCode().toString());
+ *         return result;
+ *     } catch (RuntimeException e) {
+ *         metrics.failure(start, ParseMetrics.UNKNOWN, e);
+ *         throw e;
+ *     }
+ * </pre>
+ * Statistics are published to JMX, or another monitoring system, by adding a
+ * {@link MetricsRegistry}
+ *
+ * @author phillipsr
+ */
+public final class ParseMetrics {
+    /**
+     * System property enabling instrumentation when <code>true</code>
+     */
+    public static final String ENABLED_PROPERTY = "org.seefin.nygaard.metrics";
+    /**
+     * Dimension of values whose country, scheme or issuer could not be determined
+     */
+    public static final String UNKNOWN = "unknown";
+    /**
+     * Start time answered while instrumentation is disabled
+     */
+    public static final long NOT_RECORDING = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static final ConcurrentMap<String, ParseMetrics> types = new ConcurrentHashMap<>();
+    private static final List<MetricsRegistry> registries = new CopyOnWriteArrayList<>();
+
+    private final String identifierType;
+    private final ConcurrentMap<String, ParseStatistics> statistics = new ConcurrentHashMap<>();
+
+    private ParseMetrics(String identifierType) {
+        this.identifierType = identifierType;
+    }
+
+    /**
+     * @param identifierType kind of identifier, e.g., <code>IBAN</code>
+     * @return the instrumentation of the kind of identifier supplied
+     */
+    public static ParseMetrics
+    forType(String identifierType) {
+        if (identifierType == null || identifierType.isEmpty()) {
+            throw new IllegalArgumentException("Identifier type cannot be null/blank");
+        }
+        ParseMetrics result = types.get(identifierType);
+        if (result == null) {
+            ParseMetrics created = new ParseMetrics(identifierType);
+            result = types.putIfAbsent(identifierType, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if parsing is being instrumented
+     */
+    public static boolean
+    isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enable true to start instrumenting parsing, false to stop; statistics already
+     *               recorded are retained
+     */
+    public static void
+    setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * @param registry to be told of all statistics, existing and created hereafter
+     */
+    public static void
+    addRegistry(MetricsRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Registry cannot be null");
+        }
+        registries.add(registry);
+        for (ParseStatistics existing : getAllStatistics()) {
+            registry.register(existing);
+        }
+    }
+
+    /**
+     * @param registry to be told of no further statistics
+     */
+    public static void
+    removeRegistry(MetricsRegistry registry) {
+        registries.remove(registry);
+    }
+
+    /**
+     * @return the statistics recorded for every kind of identifier and dimension
+     */
+    public static List<ParseStatistics>
+    getAllStatistics() {
+        List<ParseStatistics> result = new ArrayList<>();
+        for (ParseMetrics type : types.values()) {
+            result.addAll(type.statistics.values());
+        }
+        return result;
+    }
+
+    /**
+     * Zero the statistics recorded for every kind of identifier and dimension
+     */
+    public static void
+    resetAll() {
+        for (ParseStatistics each : getAllStatistics()) {
+            each.reset();
+        }
+    }
+
+    /**
+     * @return the time at which parsing starts, to be passed to <code>success</code> or
+     * <code>failure</code>, or NOT_RECORDING if instrumentation is disabled
+     */
+    public long
+    start() {
+        return enabled ? System.nanoTime() : NOT_RECORDING;
+    }
+
+    /**
+     * @param start time answered by <code>start</code>
+     * @return true if the outcome of the parse started at <code>start</code> is to be recorded,
+     * so that callers need only determine its dimension when it is
+     */
+    public static boolean
+    isRecording(long start) {
+        return start != NOT_RECORDING;
+    }
+
+    /**
+     * Record the successful parse of a value
+     *
+     * @param start     time answered by <code>start</code> when parsing began
+     * @param dimension country, scheme or issuer of the value parsed
+     */
+    public void
+    success(long start, String dimension) {
+        if (start != NOT_RECORDING) {
+            statisticsFor(dimension).recordSuccess(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record the failure to parse a value
+     *
+     * @param start     time answered by <code>start</code> when parsing began
+     * @param dimension country, scheme or issuer of the value, if known, else UNKNOWN
+     * @param cause     of the failure, whose type is recorded as the reason
+     */
+    public void
+    failure(long start, String dimension, Throwable cause) {
+        if (start != NOT_RECORDING) {
+            statisticsFor(dimension).recordFailure(cause.getClass().getSimpleName(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the kind of identifier instrumented
+     */
+    public String
+    getIdentifierType() {
+        return identifierType;
+    }
+
+    /**
+     * @param dimension country, scheme or issuer
+     * @return the statistics recorded for the dimension supplied, or null if there are none
+     */
+    public ParseStatistics
+    getStatistics(String dimension) {
+        return statistics.get(dimension);
+    }
+
+    @Override
+    public String
+    toString() {
+        return "ParseMetrics{" + identifierType + ", " + statistics.values() + "}";
+    }
+
+    private ParseStatistics
+    statisticsFor(String dimension) {
+        String key = dimension != null ? dimension : UNKNOWN;
+        ParseStatistics result = statistics.get(key);
+        if (result == null) {
+            ParseStatistics created = new ParseStatistics(identifierType, key);
+            result = statistics.putIfAbsent(key, created);
+            if (result == null) {
+                result = created;
+                for (MetricsRegistry registry : registries) {
+                    registry.register(created);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,133 @@
+package org.seefin.nygaard.model.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Counts and times of the parsing of one kind of identifier, for one country, scheme
+ * or issuer (the <i>dimension</i>), with failures counted by reason
+ *
+ * @author phillipsr
+ */
+public final class ParseStatistics
+        implements ParseStatisticsMXBean {
+    private final String identifierType;
+    private final String dimension;
+    private final StripedCounter successes = new StripedCounter();
+    private final StripedCounter failures = new StripedCounter();
+    private final ConcurrentMap<String, StripedCounter> failureReasons = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    ParseStatistics(String identifierType, String dimension) {
+        this.identifierType = identifierType;
+        this.dimension = dimension;
+    }
+
+    void
+    recordSuccess(long elapsedNanos) {
+        successes.increment();
+        latency.record(elapsedNanos);
+    }
+
+    void
+    recordFailure(String reason, long elapsedNanos) {
+        failures.increment();
+        StripedCounter counter = failureReasons.get(reason);
+        if (counter == null) {
+            StripedCounter created = new StripedCounter();
+            counter = failureReasons.putIfAbsent(reason, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.increment();
+        latency.record(elapsedNanos);
+    }
+
+    @Override
+    public String
+    getIdentifierType() {
+        return identifierType;
+    }
+
+    @Override
+    public String
+    getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public long
+    getSuccesses() {
+        return successes.sum();
+    }
+
+    @Override
+    public long
+    getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public Map<String, Long>
+    getFailureReasons() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, StripedCounter> entry : failureReasons.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    /**
+     * @return the distribution of the time taken to parse values, successfully or not
+     */
+    public LatencyHistogram
+    getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long
+    getMeanNanos() {
+        return latency.getMeanNanos();
+    }
+
+    @Override
+    public long
+    getMedianNanos() {
+        return latency.getPercentileNanos(50);
+    }
+
+    @Override
+    public long
+    getP99Nanos() {
+        return latency.getPercentileNanos(99);
+    }
+
+    @Override
+    public long
+    getMaxNanos() {
+        return latency.getMaxNanos();
+    }
+
+    @Override
+    public void
+    reset() {
+        successes.reset();
+        failures.reset();
+        for (StripedCounter counter : failureReasons.values()) {
+            counter.reset();
+        }
+        latency.reset();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "ParseStatistics{" + identifierType + "/" + dimension + ", successes=" + getSuccesses()
+                + ", failures=" + getFailures() + " " + getFailureReasons() + ", latency=" + latency + "}";
+    }
+}
@@ -0,0 +1,62 @@
+package org.seefin.nygaard.model.metrics;
+
+import java.util.Map;
+
+
+/**
+ * Management interface of the parsing statistics of one kind of identifier, for one
+ * country, scheme or issuer, as registered by {@link JmxMetricsRegistry}
+ *
+ * @author phillipsr
+ */
+public interface ParseStatisticsMXBean {
+    /**
+     * @return the kind of identifier parsed, e.g., <code>IBAN</code>
+     */
+    String getIdentifierType();
+
+    /**
+     * @return the country, scheme or issuer of the identifiers parsed, e.g., <code>IE</code>
+     */
+    String getDimension();
+
+    /**
+     * @return the number of values parsed successfully
+     */
+    long getSuccesses();
+
+    /**
+     * @return the number of values that could not be parsed
+     */
+    long getFailures();
+
+    /**
+     * @return the number of failures for each reason (the type of exception raised)
+     */
+    Map<String, Long> getFailureReasons();
+
+    /**
+     * @return the mean time taken to parse a value, successfully or not, in nanoseconds
+     */
+    long getMeanNanos();
+
+    /**
+     * @return an upper bound of the median time taken to parse a value, in nanoseconds
+     */
+    long getMedianNanos();
+
+    /**
+     * @return an upper bound of the 99th percentile of the time taken to parse a value, in nanoseconds
+     */
+    long getP99Nanos();
+
+    /**
+     * @return the longest time taken to parse a value, in nanoseconds
+     */
+    long getMaxNanos();
+
+    /**
+     * Zero the counts and times recorded
+     */
+    void reset();
+}
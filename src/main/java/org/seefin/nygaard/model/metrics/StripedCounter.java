@@ -0,0 +1,84 @@
+package org.seefin.nygaard.model.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Counter that may be incremented from many threads at once without contention:
+ * the count is spread over a number of cells, each on its own cache line, chosen by the
+ * updating thread's identity, and summed when read
+ * <p/>
+ * The sum read while updates are in progress is not an atomic snapshot, but includes
+ * every update completed before the read began
+ *
+ * @author phillipsr
+ */
+public final class StripedCounter {
+    private static final int MAX_STRIPES = 16;
+    // longs per stripe, so that each stripe is on its own (64-byte) cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Add one to the counter
+     */
+    public void
+    increment() {
+        cells.incrementAndGet(cell());
+    }
+
+    /**
+     * @param delta to be added to the counter
+     */
+    public void
+    add(long delta) {
+        cells.addAndGet(cell(), delta);
+    }
+
+    /**
+     * @return the current value of the counter
+     */
+    public long
+    sum() {
+        long result = 0;
+        for (int i = 0; i < STRIPES * PADDING; i += PADDING) {
+            result += cells.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Zero the counter
+     */
+    public void
+    reset() {
+        for (int i = 0; i < STRIPES * PADDING; i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+
+    @Override
+    public String
+    toString() {
+        return Long.toString(sum());
+    }
+
+    private static int
+    cell() {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+
+    /**
+     * @return the smallest power of two not less than the number of processors, up to MAX_STRIPES
+     */
+    private static int
+    stripes(int processors) {
+        int result = 1;
+        while (result < processors && result < MAX_STRIPES) {
+            result <<= 1;
+        }
+        return result;
+    }
+}
@@ -38,6 +38,13 @@ public class Individual
         return new PersonalName(new String[]{name});
     }
 
+    /**
+     * @return the full name of this individual
+     */
+    public PersonalName getName() {
+        return name;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,101 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import org.seefin.nygaard.model.bank.AccountDetails;
+import org.seefin.nygaard.model.bank.ListAccountsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Streaming alternative to {@link ListAccountsResponse}: publishes the accounts listed by an
+ * {@link AccountSource} as the subscriber requests them, so that the first accounts are
+ * delivered as soon as they are read, and no more accounts are held in memory than the
+ * subscriber has asked for
+ * <p/>
+ * Each subscriber receives its own listing, started when it first requests accounts, and read
+ * by the executor supplied; the listing is closed (if closeable) when it has been read to its
+ * end, fails, or the subscriber cancels
+ *
+ * @author phillipsr
+ */
+public final class AccountPublisher
+        implements Flow.Publisher<AccountDetails> {
+    private static final Logger log = LoggerFactory.getLogger(AccountPublisher.class);
+
+    private final AccountSource source;
+    private final ListAccountRequest request;
+    private final Executor executor;
+
+    /**
+     * Create a publisher of the accounts specified by the request
+     *
+     * @param source   listing the accounts
+     * @param request  specifying the accounts to be listed
+     * @param executor reading the accounts from the source
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public AccountPublisher(AccountSource source, ListAccountRequest request, Executor executor) {
+        if (source == null || request == null || executor == null) {
+            throw new IllegalArgumentException("Source, request and executor must be provided");
+        }
+        this.source = source;
+        this.request = request;
+        this.executor = executor;
+    }
+
+    @Override
+    public void
+    subscribe(Flow.Subscriber<? super AccountDetails> subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber cannot be null");
+        }
+        new Listing(subscriber).start();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "AccountPublisher{request=" + request + "}";
+    }
+
+    private final class Listing
+            extends DemandSubscription<AccountDetails> {
+        private Iterator<AccountDetails> cursor;
+
+        private Listing(Flow.Subscriber<? super AccountDetails> subscriber) {
+            super(subscriber, executor);
+        }
+
+        @Override
+        void
+        drain() {
+            if (getDemand() == 0) {
+                return;
+            }
+            if (cursor == null) {
+                cursor = source.listAccounts(request);
+            }
+            while (getDemand() > 0 && isCancelled() == false && cursor.hasNext() == true) {
+                emit(cursor.next());
+            }
+            if (isCancelled() == false && cursor.hasNext() == false) {
+                complete();
+            }
+        }
+
+        @Override
+        void
+        close() {
+            if (cursor instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) cursor).close();
+                } catch (Exception e) {
+                    log.warn("Failed to close account listing for {}", request, e);
+                }
+            }
+        }
+    }
+}
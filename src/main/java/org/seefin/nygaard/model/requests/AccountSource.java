@@ -0,0 +1,26 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.Iterator;
+
+import org.seefin.nygaard.model.bank.AccountDetails;
+
+
+/**
+ * A provider of the details of customers' accounts (e.g., a core banking system), read
+ * incrementally, so that a customer's accounts need not all be held in memory at once
+ *
+ * @author phillipsr
+ * @see AccountPublisher
+ */
+public interface AccountSource {
+    /**
+     * Start listing the accounts specified by the request
+     *
+     * @param request specifying the accounts to be listed
+     * @return cursor over the accounts, which may fetch them from the provider page by page,
+     * as they are read; if the cursor is also {@link AutoCloseable}, it is closed when the listing
+     * is finished with, whether or not it has been read to its end
+     * @throws RuntimeException or subclass, detailing any errors encountered
+     */
+    Iterator<AccountDetails> listAccounts(ListAccountRequest request);
+}
@@ -0,0 +1,167 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.seefin.nygaard.model.bank.ListAccountsResponse;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+
+
+/**
+ * Publishes the balances of a number of instruments (e.g., those of the accounts of a
+ * {@link ListAccountsResponse}, or of an {@link AccountPublisher}), querying their providers
+ * concurrently, and delivering each result as soon as it arrives, in order of arrival
+ * <p/>
+ * Calls to providers are started only as the subscriber requests results, so that there
+ * are never more calls in progress, or results waiting for delivery, than the subscriber has
+ * asked for, nor more calls in progress than the concurrency limit. The failure of one request
+ * does not stop the others: it is delivered as a {@link BalanceResult} with the failure.
+ * Cancelling the subscription cancels the calls in progress, interrupting their threads
+ *
+ * @author phillipsr
+ */
+public final class BalanceFanOut
+        implements Flow.Publisher<BalanceResult> {
+    private final List<BalanceRequest> requests;
+    private final Function<? super BalanceRequest, ? extends BalanceSource> providerOf;
+    private final Executor executor;
+    private final int maxConcurrent;
+
+    /**
+     * Create a publisher of the balances requested
+     *
+     * @param requests      for the balances to be published
+     * @param providerOf    the provider to which each request is to be made
+     * @param executor      running the calls to providers, and delivering the results
+     * @param maxConcurrent maximum number of calls to providers in progress at a time, for each subscriber
+     * @throws IllegalArgumentException if any parameter is null, any request is null,
+     *                                  or maxConcurrent is not positive
+     */
+    public BalanceFanOut(List<BalanceRequest> requests,
+                         Function<? super BalanceRequest, ? extends BalanceSource> providerOf,
+                         Executor executor, int maxConcurrent) {
+        if (requests == null || providerOf == null || executor == null) {
+            throw new IllegalArgumentException("Requests, provider function and executor must be provided");
+        }
+        if (requests.contains(null) == true) {
+            throw new IllegalArgumentException("Requests cannot be null");
+        }
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Maximum concurrent calls must be positive (" + maxConcurrent + ")");
+        }
+        this.requests = Collections.unmodifiableList(new ArrayList<>(requests));
+        this.providerOf = providerOf;
+        this.executor = executor;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    @Override
+    public void
+    subscribe(Flow.Subscriber<? super BalanceResult> subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber cannot be null");
+        }
+        new FanOut(subscriber).start();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "BalanceFanOut{requests=" + requests.size() + ", maxConcurrent=" + maxConcurrent + "}";
+    }
+
+    private final class FanOut
+            extends DemandSubscription<BalanceResult> {
+        private final Set<ListenableFutureTask<BalanceResponse>> calls
+                = Collections.newSetFromMap(new ConcurrentHashMap<ListenableFutureTask<BalanceResponse>, Boolean>());
+        private final Queue<BalanceResult> results = new ConcurrentLinkedQueue<>();
+        // calls started whose results have not yet been queued
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private int started;
+
+        private FanOut(Flow.Subscriber<? super BalanceResult> subscriber) {
+            super(subscriber, executor);
+        }
+
+        @Override
+        void
+        drain() {
+            while (getDemand() > 0 && isCancelled() == false && results.isEmpty() == false) {
+                emit(results.poll());
+            }
+            if (isCancelled() == true) {
+                return;
+            }
+            if (started == requests.size() && inProgress.get() == 0 && results.isEmpty() == true) {
+                complete();
+                return;
+            }
+            while (started < requests.size() && inProgress.get() < maxConcurrent
+                    && inProgress.get() + results.size() < getDemand()) {
+                call(requests.get(started++));
+            }
+        }
+
+        private void
+        call(final BalanceRequest request) {
+            final ListenableFutureTask<BalanceResponse> call = ListenableFutureTask.create(
+                    new Callable<BalanceResponse>() {
+                        @Override
+                        public BalanceResponse call() {
+                            return providerOf.apply(request).getBalance(request);
+                        }
+                    });
+            calls.add(call);
+            inProgress.incrementAndGet();
+            Futures.addCallback(call, new FutureCallback<BalanceResponse>() {
+                @Override
+                public void onSuccess(BalanceResponse response) {
+                    arrived(call, response == null
+                            ? new BalanceResult(request, null, new IllegalStateException("No response from provider"))
+                            : new BalanceResult(request, response, null));
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    arrived(call, new BalanceResult(request, null, failure));
+                }
+            }, MoreExecutors.directExecutor());
+            try {
+                executor.execute(call);
+            } catch (RejectedExecutionException e) {
+                call.cancel(false);
+            }
+        }
+
+        private void
+        arrived(ListenableFutureTask<BalanceResponse> call, BalanceResult result) {
+            calls.remove(call);
+            results.add(result);
+            inProgress.decrementAndGet();
+            signal();
+        }
+
+        @Override
+        void
+        close() {
+            for (ListenableFutureTask<BalanceResponse> call : calls) {
+                call.cancel(true);
+            }
+            results.clear();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package org.seefin.nygaard.model.requests;
 
+import org.joda.time.DateTime;
 import org.seefin.nygaard.model.channels.Channel;
 import org.seefin.nygaard.model.financial.Instrument;
+import org.seefin.nygaard.model.time.Clock;
 
 
 /**
@@ -21,7 +23,21 @@ public final class BalanceRequest
      * @param instrument whose balance is being queried
      */
     public BalanceRequest(Channel channel, Instrument instrument) {
-        super(channel);
+        this(channel, instrument, Clock.getDefault().millis());
+    }
+
+    /**
+     * Re-create a balance request, made at the time supplied
+     */
+    public BalanceRequest(Channel channel, Instrument instrument, DateTime timestamp) {
+        this(channel, instrument, millisOf(timestamp));
+    }
+
+    /**
+     * Re-create a balance request, made at the time supplied, in milliseconds since the epoch
+     */
+    public BalanceRequest(Channel channel, Instrument instrument, long timestamp) {
+        super(channel, timestamp);
         if (instrument == null) {
             throw new IllegalArgumentException("Instrument may not be null");
         }
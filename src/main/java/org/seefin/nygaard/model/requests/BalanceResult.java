@@ -0,0 +1,73 @@
+package org.seefin.nygaard.model.requests;
+
+/**
+ * The outcome of one of the balance requests of a {@link BalanceFanOut}: either the
+ * response of the provider, or the failure of the request
+ *
+ * @author phillipsr
+ */
+public final class BalanceResult {
+    private final BalanceRequest request;
+    private final BalanceResponse response;
+    private final Throwable failure;
+
+    /**
+     * Create the result of a balance request
+     *
+     * @param request  the request made
+     * @param response of the provider, null if the request failed
+     * @param failure  of the request, null if it succeeded
+     * @throws IllegalArgumentException if request is null, or if not exactly one of
+     *                                  response and failure is supplied
+     */
+    public BalanceResult(BalanceRequest request, BalanceResponse response, Throwable failure) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        if ((response == null) == (failure == null)) {
+            throw new IllegalArgumentException("Either response or failure must be supplied");
+        }
+        this.request = request;
+        this.response = response;
+        this.failure = failure;
+    }
+
+    /**
+     * @return the request of which this is the outcome
+     */
+    public BalanceRequest
+    getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the response of the provider, or null if the request failed
+     */
+    public BalanceResponse
+    getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the failure of the request, or null if it succeeded
+     */
+    public Throwable
+    getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return true if the provider responded to the request
+     */
+    public boolean
+    isSuccess() {
+        return failure == null;
+    }
+
+    @Override
+    public String
+    toString() {
+        return "BalanceResult{request=" + request + (failure == null ? ", response=" + response
+                : ", failure=" + failure) + "}";
+    }
+}
@@ -0,0 +1,19 @@
+package org.seefin.nygaard.model.requests;
+
+/**
+ * A provider of the balances of instruments (e.g., a bank, or an e-wallet vendor)
+ *
+ * @author phillipsr
+ * @see BalanceFanOut
+ */
+public interface BalanceSource {
+    /**
+     * Query the balance of the request's instrument with this provider; the call
+     * may block while waiting on the provider
+     *
+     * @param request for the balance of an instrument
+     * @return the response of the provider
+     * @throws RuntimeException or subclass, detailing any errors encountered
+     */
+    BalanceResponse getBalance(BalanceRequest request);
+}
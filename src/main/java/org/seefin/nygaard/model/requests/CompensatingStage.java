@@ -0,0 +1,23 @@
+package org.seefin.nygaard.model.requests;
+
+
+/**
+ * A {@link PipelineStage} with effects that must be undone if a later stage fails, e.g.,
+ * checking a transaction against product limits, which counts the transaction against them
+ * <p/>
+ * When a stage of a {@link RequestPipeline} fails, the stages that completed before it are
+ * compensated, in reverse order, before the response is mapped
+ *
+ * @param <R> type of request processed
+ * @author phillipsr
+ */
+public interface CompensatingStage<R extends Request>
+        extends PipelineStage<R> {
+    /**
+     * Undo the effects of this stage on the supplied request, which failed at a later stage
+     *
+     * @param request that failed
+     * @param result  with which this stage's future completed for the request
+     */
+    public void compensate(R request, Object result);
+}
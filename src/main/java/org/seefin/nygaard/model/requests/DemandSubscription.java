@@ -0,0 +1,176 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Base of the subscriptions of this package's publishers: accounts for the items requested
+ * by the subscriber, and runs {@link #drain()} on the executor supplied each time there may
+ * be work to do (items requested, results arrived, or cancellation), never more than one
+ * drain at a time, so that the subscriber is signalled serially, and the state of the
+ * subscription touched only by the draining thread need not be synchronized
+ *
+ * @param <T> type of item published
+ * @author phillipsr
+ */
+abstract class DemandSubscription<T>
+        implements Flow.Subscription, Runnable {
+    private static final Logger log = LoggerFactory.getLogger(DemandSubscription.class);
+
+    private final Flow.Subscriber<? super T> subscriber;
+    private final Executor executor;
+    private final AtomicLong demand = new AtomicLong();
+    // count of signals received since the current drain started; a drain is scheduled when non-zero
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException invalidRequest;
+    private boolean terminated;
+
+    DemandSubscription(Flow.Subscriber<? super T> subscriber, Executor executor) {
+        this.subscriber = subscriber;
+        this.executor = executor;
+    }
+
+    /**
+     * Signal the subscriber with this subscription, and start draining
+     */
+    final void
+    start() {
+        subscriber.onSubscribe(this);
+        signal();
+    }
+
+    @Override
+    public final void
+    request(long count) {
+        if (count <= 0) {
+            invalidRequest = new IllegalArgumentException("Items requested must be positive (" + count + ")");
+        } else {
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next = current + count < 0 ? Long.MAX_VALUE : current + count;
+            } while (demand.compareAndSet(current, next) == false);
+        }
+        signal();
+    }
+
+    @Override
+    public final void
+    cancel() {
+        cancelled = true;
+        signal();
+    }
+
+    /**
+     * Note that there may be work for the drain to do, scheduling it if not running
+     */
+    final void
+    signal() {
+        if (pending.getAndIncrement() == 0) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // no thread to drain: fail the stream from this one, as a drain would
+                log.warn("Executor refused stream to {}", subscriber, e);
+                cancelled = true;
+                if (terminated == false) {
+                    terminated = true;
+                    close();
+                    subscriber.onError(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public final void
+    run() {
+        int missed = 1;
+        do {
+            if (terminated == false) {
+                if (cancelled == true) {
+                    terminated = true;
+                    close();
+                } else if (invalidRequest != null) {
+                    fail(invalidRequest);
+                } else {
+                    try {
+                        drain();
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    }
+                }
+            }
+            missed = pending.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Deliver as many items as have been requested and are available, completing the stream
+     * when all have been delivered; called by one thread at a time
+     */
+    abstract void drain();
+
+    /**
+     * Release the resources held for the stream, when it is completed, fails, or is cancelled;
+     * called by the draining thread, once
+     */
+    abstract void close();
+
+    /**
+     * @return true if the subscriber has cancelled the stream
+     */
+    final boolean
+    isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the number of items requested and not yet delivered
+     */
+    final long
+    getDemand() {
+        return demand.get();
+    }
+
+    /**
+     * Deliver an item to the subscriber, which must have requested it
+     */
+    final void
+    emit(T item) {
+        if (demand.get() != Long.MAX_VALUE) {
+            demand.decrementAndGet();
+        }
+        subscriber.onNext(item);
+    }
+
+    final void
+    complete() {
+        terminated = true;
+        close();
+        subscriber.onComplete();
+    }
+
+    final void
+    fail(Throwable failure) {
+        terminated = true;
+        close();
+        subscriber.onError(failure);
+    }
+
+    /**
+     * @return true if the stream has been completed, failed, or cancelled
+     */
+    final boolean
+    isTerminated() {
+        return terminated;
+    }
+}
@@ -0,0 +1,86 @@
+package org.seefin.nygaard.model.requests;
+
+/**
+ * Interfaces for streams of results delivered incrementally, with back-pressure: a
+ * {@link Subscriber} receives no more items than it has requested of its {@link Subscription}
+ * <p/>
+ * The interfaces and their contract are those of Reactive Streams (and of <code>java.util.concurrent.Flow</code>,
+ * which is not available to this model's Java 7 source level), so adapting to either is
+ * a matter of delegation:
+ * <ul>
+ * <li>a subscriber's methods are called serially, never concurrently</li>
+ * <li>{@link Subscription#request} with a non-positive count terminates the stream with
+ * an IllegalArgumentException</li>
+ * <li>after {@link Subscription#cancel}, a subscriber eventually receives no further signals</li>
+ * <li>a stream ends with exactly one of {@link Subscriber#onComplete()} or
+ * {@link Subscriber#onError}, unless cancelled</li>
+ * </ul>
+ *
+ * @author phillipsr
+ */
+public final class Flow {
+    private Flow() {
+    }
+
+    /**
+     * Source of a stream of items, delivered to each subscriber as it requests them
+     *
+     * @param <T> type of item published
+     */
+    public interface Publisher<T> {
+        /**
+         * Start a stream of items to the subscriber supplied, whose
+         * {@link Subscriber#onSubscribe} is called with the subscription
+         *
+         * @param subscriber to receive the items
+         * @throws IllegalArgumentException if subscriber is null
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of a stream of items
+     *
+     * @param <T> type of item received
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called once, before any other signal; no items are delivered until they
+         * are requested of the subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with each item, no more times than items have been requested
+         */
+        void onNext(T item);
+
+        /**
+         * Called if the stream fails; no further signals follow
+         */
+        void onError(Throwable failure);
+
+        /**
+         * Called when the stream has delivered all of its items; no further signals follow
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and one of its subscribers
+     */
+    public interface Subscription {
+        /**
+         * Request up to <code>count</code> further items; requests accumulate, to
+         * a maximum of Long.MAX_VALUE (i.e., unbounded)
+         *
+         * @param count of further items that the subscriber is prepared to receive
+         */
+        void request(long count);
+
+        /**
+         * Stop the stream, releasing the resources held by the publisher for it
+         */
+        void cancel();
+    }
+}
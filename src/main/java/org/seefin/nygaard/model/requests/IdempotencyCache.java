@@ -0,0 +1,161 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.seefin.nygaard.model.channels.Channel;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+
+/**
+ * Bounded, time-expiring cache of the responses to commands (e.g., a {@link TopupResponse}
+ * or {@link TransferResponse}), keyed by the identity of the channel through which the
+ * command was received, so that a retried request can be answered with the original
+ * response, rather than being executed again
+ * <p/>
+ * The cache is divided into independently locked shards; entries are evicted when the
+ * cache exceeds its maximum size (least recently used first), or once they have been
+ * held for the time-to-live. A request arriving while an earlier request with the same
+ * identity is still executing waits for, and is answered with, the response to the
+ * earlier request; requests that fail are not cached, and may be retried
+ *
+ * @param <R> type of response cached
+ * @author phillipsr
+ */
+public final class IdempotencyCache<R> {
+    private static final int DEFAULT_SHARDS = 16;
+
+    private final Cache<String, R> responses;
+
+    /**
+     * Create a cache with the default number of shards
+     *
+     * @param maximumSize maximum number of responses held
+     * @param timeToLive  period for which a response is held
+     * @param unit        of <code>timeToLive</code>
+     */
+    public IdempotencyCache(long maximumSize, long timeToLive, TimeUnit unit) {
+        this(maximumSize, timeToLive, unit, DEFAULT_SHARDS);
+    }
+
+    /**
+     * Create a cache with the supplied bounds
+     *
+     * @param maximumSize maximum number of responses held
+     * @param timeToLive  period for which a response is held
+     * @param unit        of <code>timeToLive</code>
+     * @param shards      number of independently locked partitions of the cache
+     * @throws IllegalArgumentException if any of the numeric parameters is out of range
+     */
+    public IdempotencyCache(long maximumSize, long timeToLive, TimeUnit unit, int shards) {
+        this(maximumSize, timeToLive, unit, shards, Ticker.systemTicker());
+    }
+
+    IdempotencyCache(long maximumSize, long timeToLive, TimeUnit unit, int shards, Ticker ticker) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive (" + maximumSize + ")");
+        }
+        if (timeToLive < 1 || unit == null) {
+            throw new IllegalArgumentException("A positive time-to-live must be provided (" + timeToLive + ")");
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shards must be positive (" + shards + ")");
+        }
+        responses = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive, unit)
+                .concurrencyLevel(shards)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Answer the request with the response cached for its channel identity, executing the
+     * supplied action to produce (and cache) the response if there is none
+     *
+     * @param request to be answered
+     * @param action  that executes the request, returning its response (which cannot be null)
+     * @return the response to the request, or to an earlier request with the same identity
+     * @throws IllegalArgumentException if either parameter is null
+     * @throws ExecutionException       if the action threw a checked exception
+     * @throws RuntimeException         or Error, as thrown by the action
+     */
+    public R
+    execute(Request request, Callable<R> action)
+            throws ExecutionException {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        if (action == null) {
+            throw new IllegalArgumentException("Action cannot be null");
+        }
+        try {
+            return responses.get(keyOf(request.getChannel()), action);
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * @param channel identifying a request
+     * @return the response cached for the channel identity, or null if there is none
+     */
+    public R
+    get(Channel channel) {
+        return responses.getIfPresent(keyOf(channel));
+    }
+
+    /**
+     * Cache the response to the request identified by the supplied channel
+     *
+     * @param channel  identifying a request
+     * @param response to the request
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public void
+    put(Channel channel, R response) {
+        if (response == null) {
+            throw new IllegalArgumentException("Response cannot be null");
+        }
+        responses.put(keyOf(channel), response);
+    }
+
+    /**
+     * Discard any response cached for the channel identity
+     *
+     * @param channel identifying a request
+     */
+    public void
+    invalidate(Channel channel) {
+        responses.invalidate(keyOf(channel));
+    }
+
+    /**
+     * @return the approximate number of responses cached
+     */
+    public long size() {
+        return responses.size();
+    }
+
+    private static String
+    keyOf(Channel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null");
+        }
+        return channel.getName() + ':' + channel.getIdentity().externalForm();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "IdempotencyCache{size=" + responses.size() + "}";
+    }
+}
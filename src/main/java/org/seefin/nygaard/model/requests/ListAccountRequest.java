@@ -1,20 +1,45 @@
 package org.seefin.nygaard.model.requests;
 
+import org.joda.time.DateTime;
 import org.seefin.nygaard.model.channels.Channel;
 
 
 /**
+ * Request to list the accounts of the customer making the request, answered in full by a
+ * {@link org.seefin.nygaard.model.bank.ListAccountsResponse}, or incrementally by an {@link AccountPublisher}
+ *
  * @author phillipsr
  */
 public class ListAccountRequest
-        extends Request {
+        extends Query {
 
     /**
-     * @param channel
+     * Create a request to list the accounts of the customer making the request
+     *
+     * @param channel thru which the request was received
      */
-    protected ListAccountRequest(Channel channel) {
+    public ListAccountRequest(Channel channel) {
         super(channel);
-        // TODO Auto-generated constructor stub
+    }
+
+    /**
+     * Re-create a request to list accounts, made at the time supplied
+     */
+    public ListAccountRequest(Channel channel, DateTime timestamp) {
+        super(channel, timestamp);
+    }
+
+    /**
+     * Re-create a request to list accounts, made at the time supplied, in milliseconds since the epoch
+     */
+    public ListAccountRequest(Channel channel, long timestamp) {
+        super(channel, timestamp);
     }
     // TODO: may need to be able to specify account types, etc.?
+
+    @Override
+    public String
+    toString() {
+        return this.getClass().getSimpleName() + "{Channel=" + this.getChannel() + "}";
+    }
 }
@@ -0,0 +1,32 @@
+package org.seefin.nygaard.model.requests;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+
+/**
+ * A step in the processing of a request by a {@link RequestPipeline}, e.g., validating
+ * the request, checking it against product limits, or executing it with a service
+ * <p/>
+ * A stage may complete synchronously, returning a future that is already done, or
+ * asynchronously, returning a future completed later, e.g., by the thread performing
+ * an I/O-bound call, so that no pipeline thread is held while the call is in progress
+ *
+ * @param <R> type of request processed
+ * @author phillipsr
+ */
+public interface PipelineStage<R extends Request> {
+    /**
+     * @return the name of this stage, under which its timings are reported
+     */
+    public String getName();
+
+    /**
+     * Process the supplied request
+     *
+     * @param request to be processed
+     * @return future completed when this stage has finished with the request; a future
+     * that completes exceptionally stops the processing of the request, and the failure is
+     * passed to the pipeline's {@link ResponseMapper}
+     */
+    public ListenableFuture<?> process(R request);
+}
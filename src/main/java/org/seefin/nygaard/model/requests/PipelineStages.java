@@ -0,0 +1,256 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.Transaction;
+import org.seefin.nygaard.model.services.LimitExceededException;
+import org.seefin.nygaard.model.services.LimitedProduct;
+import org.seefin.nygaard.model.services.Product;
+import org.seefin.nygaard.model.services.Service;
+import org.seefin.nygaard.model.services.ServiceInvoker;
+import org.seefin.nygaard.model.services.ServiceTimeoutException;
+import org.seefin.nygaard.model.time.Clock;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+
+/**
+ * The standard stages of request processing, to be composed into a {@link RequestPipeline}:
+ * <pre>
+ *   validate -> checkTransaction -> execute -> respond
+ * </pre>
+ * e.g., for transfers:
+ * <pre>
+ *   new RequestPipeline&lt;TransferRequest, TransferResponse&gt;(
+ *           Arrays.asList(PipelineStages.validate(validator),
+ *                   PipelineStages.checkTransaction(product, PipelineStages.TRANSFER_TRANSACTION),
+ *                   PipelineStages.execute(service, PipelineStages.TRANSFER_TRANSACTION, ioExecutor)),
+ *           PipelineStages.TRANSFER_RESPONSES, executor, 1000);
+ * </pre>
+ *
+ * @author phillipsr
+ */
+public final class PipelineStages {
+    /**
+     * The transaction to be transferred by a transfer request
+     */
+    public static final Function<TransferRequest, FinancialTransaction> TRANSFER_TRANSACTION
+            = new Function<TransferRequest, FinancialTransaction>() {
+        @Override
+        public FinancialTransaction apply(TransferRequest request) {
+            return request.getTransaction();
+        }
+    };
+
+    /**
+     * Responses to transfer requests: a successful response carries the transaction identity
+     * as its authorization code, and a failed response describes the failure, with its response
+     * code (see {@link #responseCodeOf(Throwable)})
+     */
+    public static final ResponseMapper<TransferRequest, TransferResponse> TRANSFER_RESPONSES
+            = new ResponseMapper<TransferRequest, TransferResponse>() {
+        @Override
+        public TransferResponse success(TransferRequest request) {
+            FinancialTransaction transaction = request.getTransaction();
+            return new TransferResponse(true, transaction.getIdentity().externalForm(),
+                    request.getComment(), transaction.getDebitInstrument().getBalance());
+        }
+
+        @Override
+        public TransferResponse failure(TransferRequest request, Throwable failure) {
+            return new TransferResponse(false, null, responseCodeOf(failure) + ": " + failure.getMessage(),
+                    request.getTransaction().getDebitInstrument().getBalance());
+        }
+    };
+
+    private PipelineStages() {
+    }
+
+    /**
+     * Stage named "validate", checking the request with the validator supplied (e.g.,
+     * that its identifiers belong to schemes accepted by the service)
+     *
+     * @param validator answering null if the request is valid, otherwise an exception
+     *                  describing the problem (as {@link Product#checkTransaction})
+     * @return the validation stage
+     * @throws IllegalArgumentException if validator is null
+     */
+    public static <R extends Request> PipelineStage<R>
+    validate(final Function<? super R, ? extends RuntimeException> validator) {
+        if (validator == null) {
+            throw new IllegalArgumentException("Validator cannot be null");
+        }
+        return new PipelineStage<R>() {
+            @Override
+            public String getName() {
+                return "validate";
+            }
+
+            @Override
+            public ListenableFuture<?> process(R request) {
+                return outcome(validator.apply(request));
+            }
+        };
+    }
+
+    /**
+     * Stage named "checkTransaction", validating the request's transaction against the product
+     * configuration (e.g., its limits), with {@link Product#checkTransaction}; for a
+     * {@link LimitedProduct}, the stage is a {@link CompensatingStage}, withdrawing the transaction
+     * from the product's velocity limits should a later stage (e.g., execute) fail
+     *
+     * @param product       configuration to be checked
+     * @param transactionOf the transaction of each request
+     * @return the product check stage
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static <R extends Request> PipelineStage<R>
+    checkTransaction(final Product product, final Function<? super R, ? extends Transaction> transactionOf) {
+        if (product == null || transactionOf == null) {
+            throw new IllegalArgumentException("Product and transaction function must be provided");
+        }
+        if (product instanceof LimitedProduct) {
+            return checkLimits((LimitedProduct) product, transactionOf);
+        }
+        return new PipelineStage<R>() {
+            @Override
+            public String getName() {
+                return "checkTransaction";
+            }
+
+            @Override
+            public ListenableFuture<?> process(R request) {
+                return outcome(product.checkTransaction(request.getChannel(), transactionOf.apply(request)));
+            }
+        };
+    }
+
+    // the stage completes with the time the transaction was counted against the limits
+    private static <R extends Request> PipelineStage<R>
+    checkLimits(final LimitedProduct product, final Function<? super R, ? extends Transaction> transactionOf) {
+        return new CompensatingStage<R>() {
+            @Override
+            public String getName() {
+                return "checkTransaction";
+            }
+
+            @Override
+            public ListenableFuture<?> process(R request) {
+                long now = Clock.getDefault().millis();
+                RuntimeException problem = product.checkTransaction(request.getChannel(), transactionOf.apply(request), now);
+                return problem == null ? Futures.immediateFuture(now) : Futures.immediateFailedFuture(problem);
+            }
+
+            @Override
+            public void compensate(R request, Object result) {
+                product.releaseTransaction(request.getChannel(), transactionOf.apply(request), (Long) result);
+            }
+        };
+    }
+
+    /**
+     * Stage named "execute", executing the request's transaction with the service supplied;
+     * as service calls block on I/O with partner systems, each call is run by the executor
+     * supplied, rather than by the pipeline's executor
+     *
+     * @param service       to execute the transaction
+     * @param transactionOf the transaction of each request
+     * @param executor      running the service calls
+     * @return the execution stage
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static <R extends Request> PipelineStage<R>
+    execute(final Service service, final Function<? super R, FinancialTransaction> transactionOf,
+            final Executor executor) {
+        if (service == null || transactionOf == null || executor == null) {
+            throw new IllegalArgumentException("Service, transaction function and executor must be provided");
+        }
+        return new PipelineStage<R>() {
+            @Override
+            public String getName() {
+                return "execute";
+            }
+
+            @Override
+            public ListenableFuture<?> process(final R request) {
+                ListenableFutureTask<Void> call = ListenableFutureTask.create(new Runnable() {
+                    @Override
+                    public void run() {
+                        service.execute(request.getChannel(), transactionOf.apply(request));
+                    }
+                }, null);
+                try {
+                    executor.execute(call);
+                } catch (RejectedExecutionException e) {
+                    return Futures.immediateFailedFuture(e);
+                }
+                return call;
+            }
+        };
+    }
+
+    /**
+     * Stage named "execute", executing the request's transaction with the service invoker
+     * supplied (e.g., on a virtual thread, with a time limit); the pipeline holds no thread
+     * while the call is in progress
+     *
+     * @param invoker       calling the service
+     * @param transactionOf the transaction of each request
+     * @return the execution stage
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static <R extends Request> PipelineStage<R>
+    execute(final ServiceInvoker invoker, final Function<? super R, FinancialTransaction> transactionOf) {
+        if (invoker == null || transactionOf == null) {
+            throw new IllegalArgumentException("Service invoker and transaction function must be provided");
+        }
+        return new PipelineStage<R>() {
+            @Override
+            public String getName() {
+                return "execute";
+            }
+
+            @Override
+            public ListenableFuture<?> process(R request) {
+                try {
+                    return invoker.submit(request.getChannel(), transactionOf.apply(request));
+                } catch (RejectedExecutionException e) {
+                    return Futures.immediateFailedFuture(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param failure reported by a pipeline stage
+     * @return the response code describing the failure supplied
+     */
+    public static ResponseCode
+    responseCodeOf(Throwable failure) {
+        if (failure instanceof LimitExceededException) {
+            return ((LimitExceededException) failure).getResponseCode();
+        }
+        if (failure instanceof ServiceTimeoutException) {
+            return ((ServiceTimeoutException) failure).getResponseCode();
+        }
+        if (failure instanceof TimeoutException) {
+            return ResponseCode.REQUEST_TIMEOUT;
+        }
+        if (failure instanceof IllegalArgumentException) {
+            return ResponseCode.INVALID_REQUEST;
+        }
+        return ResponseCode.SYSTEM_ERROR;
+    }
+
+    private static ListenableFuture<?>
+    outcome(RuntimeException problem) {
+        return problem == null ? Futures.immediateFuture(null) : Futures.immediateFailedFuture(problem);
+    }
+}
@@ -1,5 +1,6 @@
 package org.seefin.nygaard.model.requests;
 
+import org.joda.time.DateTime;
 import org.seefin.nygaard.model.channels.Channel;
 
 /**
@@ -15,4 +16,20 @@ public abstract class Query
         super(channel);
     }
 
+    /**
+     * @param channel
+     * @param timestamp
+     */
+    protected Query(Channel channel, DateTime timestamp) {
+        super(channel, timestamp);
+    }
+
+    /**
+     * @param channel
+     * @param timestamp in milliseconds since the epoch
+     */
+    protected Query(Channel channel, long timestamp) {
+        super(channel, timestamp);
+    }
+
 }
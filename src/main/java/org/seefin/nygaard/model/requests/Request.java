@@ -4,6 +4,7 @@ import java.io.Serializable;
 
 import org.joda.time.DateTime;
 import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.time.Clock;
 
 
 /**
@@ -13,6 +14,9 @@ import org.seefin.nygaard.model.channels.Channel;
  * Requests are effectively the Command objects of CQRS (just more polite),
  * and will always be associate with a {@link Channel}, detailing the source
  * of the request
+ * <p/>
+ * The time at which a request is created is read from the model's {@link Clock}, and held
+ * as milliseconds since the epoch, converted to a <code>DateTime</code> only if asked for
  *
  * @author phillipsr
  */
@@ -24,7 +28,8 @@ public abstract class Request
      * agent, on the customer's behalf
      */
     private final Channel channel;
-    private final DateTime timestamp;
+    private final long timestamp;
+    private transient volatile DateTime dateTime;
 
     /**
      * Instantiate a request coming from the specified <code>channel</code>
@@ -32,11 +37,47 @@ public abstract class Request
      * @param channel thru which the request was received
      */
     protected Request(Channel channel) {
+        this(channel, Clock.getDefault().millis());
+    }
+
+    /**
+     * Instantiate a request coming from the specified <code>channel</code>,
+     * created at the time supplied (e.g., when re-creating a request received
+     * from another system)
+     *
+     * @param channel   thru which the request was received
+     * @param timestamp at which the request was first created
+     */
+    protected Request(Channel channel, DateTime timestamp) {
+        this(channel, millisOf(timestamp));
+    }
+
+    /**
+     * Instantiate a request coming from the specified <code>channel</code>,
+     * created at the time supplied
+     *
+     * @param channel   thru which the request was received
+     * @param timestamp at which the request was first created, in milliseconds since the epoch
+     */
+    protected Request(Channel channel, long timestamp) {
         if (channel == null) {
             throw new IllegalArgumentException("Channel may not be null");
         }
         this.channel = channel;
-        this.timestamp = new DateTime();
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @param timestamp supplied to a constructor
+     * @return the timestamp in milliseconds since the epoch
+     * @throws IllegalArgumentException if timestamp is null
+     */
+    protected static long
+    millisOf(DateTime timestamp) {
+        if (timestamp == null) {
+            throw new IllegalArgumentException("Timestamp may not be null");
+        }
+        return timestamp.getMillis();
     }
 
     /**
@@ -50,6 +91,18 @@ public abstract class Request
      * @return the time at which the request was first created
      */
     public DateTime getTimestamp() {
+        DateTime result = dateTime;
+        if (result == null) {
+            result = new DateTime(timestamp);
+            dateTime = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the time at which the request was first created, in milliseconds since the epoch
+     */
+    public long getTimestampMillis() {
         return timestamp;
     }
 }
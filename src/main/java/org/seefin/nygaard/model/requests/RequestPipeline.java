@@ -0,0 +1,319 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.seefin.nygaard.model.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+/**
+ * Processes requests through a sequence of {@link PipelineStage}s (e.g., those of
+ * {@link PipelineStages}: validate, check against product limits, execute), mapping
+ * the outcome to a response with a {@link ResponseMapper}
+ * <p/>
+ * Requests are processed asynchronously: {@link #submit} returns at once, and stages are
+ * run by the executor supplied; a stage that completes asynchronously (e.g., waiting on
+ * a partner system) holds no pipeline thread until it completes, when processing continues
+ * with the next stage. Stages that complete synchronously are run one after the other
+ * by the same pipeline thread
+ * <p/>
+ * The number of requests in progress is limited: a request submitted when the limit has been
+ * reached is refused, so that a slow stage pushes back on the requestor, rather than
+ * accumulating work without bound
+ * <p/>
+ * When a stage fails, the {@link CompensatingStage}s that completed before it are compensated
+ * (e.g., releasing the product limits the request was counted against), latest first, before
+ * the failure is mapped to a response
+ * <p/>
+ * The elapsed time of each stage, and of the whole of each request, is recorded in a
+ * {@link LatencyHistogram}, reported under the stage's name, and under "respond" for the
+ * response mapping
+ *
+ * @param <R> type of request processed
+ * @param <S> type of response
+ * @author phillipsr
+ */
+public final class RequestPipeline<R extends Request, S> {
+    private static final Logger log = LoggerFactory.getLogger(RequestPipeline.class);
+    private static final String RESPOND = "respond";
+
+    private final List<PipelineStage<? super R>> stages;
+    private final ResponseMapper<? super R, ? extends S> responder;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final List<String> stageNames;
+    // one per stage, then one for the response mapping
+    private final LatencyHistogram[] stageLatency;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Create a pipeline of the stages supplied
+     *
+     * @param stages      to be applied to each request, in order
+     * @param responder   mapping the outcome of each request to its response
+     * @param executor    running the stages
+     * @param maxInFlight maximum number of requests in progress at any time
+     * @throws IllegalArgumentException if any parameter is null, if two stages have the same name,
+     *                                  or if maxInFlight is not positive
+     */
+    public RequestPipeline(List<? extends PipelineStage<? super R>> stages,
+                           ResponseMapper<? super R, ? extends S> responder, Executor executor, int maxInFlight) {
+        if (stages == null || responder == null || executor == null) {
+            throw new IllegalArgumentException("Stages, responder and executor must be provided");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum requests in flight must be positive (" + maxInFlight + ")");
+        }
+        List<String> names = new ArrayList<>(stages.size() + 1);
+        for (PipelineStage<? super R> stage : stages) {
+            if (stage == null) {
+                throw new IllegalArgumentException("Stages cannot be null");
+            }
+            if (names.contains(stage.getName()) == true || RESPOND.equals(stage.getName()) == true) {
+                throw new IllegalArgumentException("Stage name '" + stage.getName() + "' is not unique");
+            }
+            names.add(stage.getName());
+        }
+        names.add(RESPOND);
+        this.stages = new ArrayList<>(stages);
+        this.stageNames = Collections.unmodifiableList(names);
+        this.responder = responder;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.stageLatency = new LatencyHistogram[names.size()];
+        for (int i = 0; i < stageLatency.length; i++) {
+            stageLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Submit the supplied request for processing
+     *
+     * @param request to be processed
+     * @return future completed with the response to the request; a request failing a stage
+     * completes with the response mapped from the failure, and the future completes exceptionally
+     * only if the response mapping fails
+     * @throws IllegalArgumentException   if request is null
+     * @throws RejectedExecutionException if the maximum number of requests are in progress,
+     *                                    or the executor refuses the request
+     */
+    public ListenableFuture<S>
+    submit(R request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        if (permits.tryAcquire() == false) {
+            throw new RejectedExecutionException("Request pipeline is at capacity (" + maxInFlight + ")");
+        }
+        Execution execution = new Execution(request);
+        try {
+            executor.execute(execution);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+        return execution.response;
+    }
+
+    /**
+     * @return the names of the stages of this pipeline, in order, followed by "respond"
+     */
+    public List<String>
+    getStageNames() {
+        return stageNames;
+    }
+
+    /**
+     * @param name of a stage of this pipeline, or "respond", for the response mapping
+     * @return elapsed times of the named stage, or null if there is no such stage
+     */
+    public LatencyHistogram
+    getStageLatency(String name) {
+        int index = stageNames.indexOf(name);
+        return index < 0 ? null : stageLatency[index];
+    }
+
+    /**
+     * @return elapsed times of requests, from submission to response
+     */
+    public LatencyHistogram
+    getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of requests in progress
+     */
+    public int
+    getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "RequestPipeline{stages=" + stageNames + ", maxInFlight=" + maxInFlight
+                + ", inFlight=" + getInFlight() + "}";
+    }
+
+    /*
+     * The processing of one request: run by the pipeline executor for each stage, or run of
+     * synchronous stages, and registered as the callback of each stage completing asynchronously;
+     * as only one of these is active at a time, for any request, its state is not synchronized
+     */
+    private final class Execution
+            implements Runnable, FutureCallback<Object> {
+        private final R request;
+        private final SettableFuture<S> response = SettableFuture.create();
+        private final long submitted = System.nanoTime();
+        // result of each stage completed successfully, for compensation
+        private final Object[] results = new Object[stages.size()];
+        private int stage;
+        private int completed;
+        private long stageStart;
+        private Throwable failure;
+
+        private Execution(R request) {
+            this.request = request;
+        }
+
+        @Override
+        public void
+        run() {
+            while (failure == null && stage < stages.size()) {
+                stageStart = System.nanoTime();
+                ListenableFuture<?> outcome = process(stages.get(stage));
+                if (outcome.isDone() == false) {
+                    Futures.addCallback(outcome, this, MoreExecutors.directExecutor());
+                    return;
+                }
+                Throwable cause = failureOf(outcome);
+                completeStage(cause == null ? Futures.getUnchecked(outcome) : null, cause);
+            }
+            respond();
+        }
+
+        @Override
+        public void
+        onSuccess(Object result) {
+            completeStage(result, null);
+            resume();
+        }
+
+        @Override
+        public void
+        onFailure(Throwable cause) {
+            completeStage(null, cause);
+            resume();
+        }
+
+        private ListenableFuture<?>
+        process(PipelineStage<? super R> current) {
+            try {
+                ListenableFuture<?> result = current.process(request);
+                if (result == null) {
+                    throw new IllegalStateException("Stage '" + current.getName() + "' returned no future");
+                }
+                return result;
+            } catch (RuntimeException e) {
+                return Futures.immediateFailedFuture(e);
+            }
+        }
+
+        private void
+        completeStage(Object result, Throwable cause) {
+            stageLatency[stage].record(System.nanoTime() - stageStart);
+            failure = cause;
+            if (cause == null) {
+                results[completed++] = result;
+            }
+            stage++;
+        }
+
+        // undo the effects of the stages completed before the failure, latest first
+        private void
+        compensate() {
+            for (int i = completed - 1; i >= 0; i--) {
+                PipelineStage<? super R> completedStage = stages.get(i);
+                if (completedStage instanceof CompensatingStage) {
+                    try {
+                        ((CompensatingStage<? super R>) completedStage).compensate(request, results[i]);
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to compensate stage '{}' for {}", completedStage.getName(), request, e);
+                    }
+                }
+            }
+        }
+
+        // continue on a pipeline thread, rather than the thread that completed the stage
+        private void
+        resume() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                failure = e;
+                respond();
+            }
+        }
+
+        // the request is accounted for before its response is set, so that a requestor
+        // receiving the response may submit another request without being refused
+        private void
+        respond() {
+            if (failure != null) {
+                compensate();
+            }
+            long start = System.nanoTime();
+            S result = null;
+            RuntimeException error = null;
+            try {
+                result = failure == null ? responder.success(request) : responder.failure(request, failure);
+            } catch (RuntimeException e) {
+                log.warn("Failed to map response to {}", request, e);
+                error = e;
+            }
+            long end = System.nanoTime();
+            stageLatency[stageLatency.length - 1].record(end - start);
+            latency.record(end - submitted);
+            permits.release();
+            if (error == null) {
+                response.set(result);
+            } else {
+                response.setException(error);
+            }
+        }
+    }
+
+    private static Throwable
+    failureOf(Future<?> outcome) {
+        try {
+            outcome.get();
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        } catch (InterruptedException e) {
+            // cannot happen: the outcome is done
+            Thread.currentThread().interrupt();
+            return e;
+        }
+    }
+}
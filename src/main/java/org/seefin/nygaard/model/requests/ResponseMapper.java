@@ -0,0 +1,24 @@
+package org.seefin.nygaard.model.requests;
+
+/**
+ * Maps the outcome of processing a request by a {@link RequestPipeline} to the response
+ * returned to the requestor
+ *
+ * @param <R> type of request processed
+ * @param <S> type of response
+ * @author phillipsr
+ */
+public interface ResponseMapper<R extends Request, S> {
+    /**
+     * @param request that passed all stages of the pipeline
+     * @return the response to the request
+     */
+    public S success(R request);
+
+    /**
+     * @param request that failed a stage of the pipeline
+     * @param failure reported by the stage that failed
+     * @return the response to the request
+     */
+    public S failure(R request, Throwable failure);
+}
@@ -1,9 +1,11 @@
 package org.seefin.nygaard.model.requests;
 
+import org.joda.time.DateTime;
 import org.seefin.nygaard.model.channels.Channel;
 import org.seefin.nygaard.model.collections.WormMap;
 import org.seefin.nygaard.model.financial.MonetaryAmount;
 import org.seefin.nygaard.model.parties.Subscriber;
+import org.seefin.nygaard.model.time.Clock;
 
 
 /**
@@ -27,7 +29,21 @@ public final class TopupRequest
     private WormMap<String, Object> supplementaryData;
 
     public TopupRequest(Channel channel, Subscriber subscriber, MonetaryAmount amount) {
-        super(channel);
+        this(channel, subscriber, amount, Clock.getDefault().millis());
+    }
+
+    /**
+     * Re-create a topup request, made at the time supplied
+     */
+    public TopupRequest(Channel channel, Subscriber subscriber, MonetaryAmount amount, DateTime timestamp) {
+        this(channel, subscriber, amount, millisOf(timestamp));
+    }
+
+    /**
+     * Re-create a topup request, made at the time supplied, in milliseconds since the epoch
+     */
+    public TopupRequest(Channel channel, Subscriber subscriber, MonetaryAmount amount, long timestamp) {
+        super(channel, timestamp);
         if (subscriber == null) {
             throw new IllegalArgumentException("Subscriber cannot be null");
         }
@@ -1,7 +1,9 @@
 package org.seefin.nygaard.model.requests;
 
+import org.joda.time.DateTime;
 import org.seefin.nygaard.model.channels.Channel;
 import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.time.Clock;
 
 
 /**
@@ -23,7 +25,23 @@ public final class TransferRequest
      */
     public TransferRequest(
             Channel channel, FinancialTransaction transaction, String comment) {
-        super(channel);
+        this(channel, transaction, comment, Clock.getDefault().millis());
+    }
+
+    /**
+     * Re-create a credit transfer request, made at the time supplied
+     */
+    public TransferRequest(
+            Channel channel, FinancialTransaction transaction, String comment, DateTime timestamp) {
+        this(channel, transaction, comment, millisOf(timestamp));
+    }
+
+    /**
+     * Re-create a credit transfer request, made at the time supplied, in milliseconds since the epoch
+     */
+    public TransferRequest(
+            Channel channel, FinancialTransaction transaction, String comment, long timestamp) {
+        super(channel, timestamp);
         if (transaction == null) {
             throw new IllegalArgumentException("Transaction may not be null");
         }
@@ -0,0 +1,36 @@
+package org.seefin.nygaard.model.services;
+
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+
+/**
+ * Exception returned by {@link Product#checkTransaction} when a transaction would exceed
+ * one of the service limits configured for the product
+ *
+ * @author phillipsr
+ */
+public class LimitExceededException
+        extends RuntimeException {
+    private final ServiceLimit limit;
+    private final MonetaryAmount maximum;
+    private final ResponseCode responseCode;
+
+    public LimitExceededException(ServiceLimit limit, MonetaryAmount maximum, ResponseCode responseCode) {
+        super(limit + " limit of " + maximum + " exceeded");
+        this.limit = limit;
+        this.maximum = maximum;
+        this.responseCode = responseCode;
+    }
+
+    public ServiceLimit getLimit() {
+        return limit;
+    }
+
+    public MonetaryAmount getMaximum() {
+        return maximum;
+    }
+
+    public ResponseCode getResponseCode() {
+        return responseCode;
+    }
+}
@@ -0,0 +1,216 @@
+package org.seefin.nygaard.model.services;
+
+import java.util.Currency;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.financial.Transaction;
+import org.seefin.nygaard.model.parties.Party;
+import org.seefin.nygaard.model.time.Clock;
+
+
+/**
+ * Reference product implementation, enforcing its configured {@link ServiceLimit}s
+ * using a {@link VelocityLimiter}
+ * <p/>
+ * Limits are applied to the amount of each financial transaction, as follows:
+ * <ul>
+ * <li>ONE_TIME: the amount of the transaction itself</li>
+ * <li>HOURLY, DAILY, WEEKLY, MONTHLY, YEARLY: total transacted by the customer (holder
+ * of the debit account) in the period, through any channel</li>
+ * <li>PER_CUSTOMER: total transacted by the customer through the same channel, per day</li>
+ * <li>PER_AGENT: total transacted by the agent submitting through the channel, per day</li>
+ * <li>CHANNEL: total transacted through the channel by all parties, per day</li>
+ * </ul>
+ * A transaction passing all limits is counted against each of them; one failing any
+ * limit is counted against none. A transaction that passes, but then fails (e.g., when
+ * executed by the service), should be withdrawn from the limits with {@link #releaseTransaction}
+ *
+ * @author phillipsr
+ */
+public class LimitedProduct
+        implements Product {
+    private static final ServiceLimit[] LIMITS = ServiceLimit.values();
+
+    private final Currency currency;
+    private final MonetaryAmount[] limits = new MonetaryAmount[LIMITS.length];
+    private final VelocityLimiter limiter;
+
+    /**
+     * Create a product enforcing the supplied limits
+     *
+     * @param limits  configured for the product, all in the same currency
+     * @param limiter in which the velocity of transactions is recorded
+     * @throws IllegalArgumentException if either parameter is null, or the limits are
+     *                                  empty or in more than one currency
+     */
+    public LimitedProduct(Map<ServiceLimit, MonetaryAmount> limits, VelocityLimiter limiter) {
+        if (limits == null || limits.isEmpty() == true) {
+            throw new IllegalArgumentException("Limits must be provided");
+        }
+        if (limiter == null) {
+            throw new IllegalArgumentException("Velocity limiter cannot be null");
+        }
+        Currency limitCurrency = null;
+        for (Map.Entry<ServiceLimit, MonetaryAmount> entry : limits.entrySet()) {
+            MonetaryAmount value = entry.getValue();
+            if (limitCurrency != null && value.getCurrency() != limitCurrency) {
+                throw new IllegalArgumentException(
+                        "Limits must all be in one currency (" + limitCurrency + " & " + value.getCurrency() + ")");
+            }
+            limitCurrency = value.getCurrency();
+            this.limits[entry.getKey().ordinal()] = value;
+        }
+        this.currency = limitCurrency;
+        this.limiter = limiter;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the configured limit, or null if there is none
+     */
+    @Override
+    public MonetaryAmount getLimit(ServiceLimit limit) {
+        return limits[limit.ordinal()];
+    }
+
+    /**
+     * @return a map of the limits configured for this product
+     */
+    public Map<ServiceLimit, MonetaryAmount>
+    getLimits() {
+        Map<ServiceLimit, MonetaryAmount> result = new EnumMap<>(ServiceLimit.class);
+        for (ServiceLimit limit : LIMITS) {
+            if (limits[limit.ordinal()] != null) {
+                result.put(limit, limits[limit.ordinal()]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return null if the transaction is within all limits, an <code>IllegalArgumentException</code> if
+     * it is not a financial transaction in the currency of the limits, otherwise the
+     * <code>LimitExceededException</code> for the first limit it would exceed
+     */
+    @Override
+    public RuntimeException
+    checkTransaction(Channel channel, Transaction transaction) {
+        return checkTransaction(channel, transaction, Clock.getDefault().millis());
+    }
+
+    /**
+     * Validate the supplied transaction as if made at the time given
+     *
+     * @param channel     from which the transaction originated
+     * @param transaction to be validated
+     * @param now         time of the transaction, in milliseconds since the epoch
+     * @return null if the transaction is valid, otherwise the exception describing the problem
+     * @see #checkTransaction(Channel, Transaction)
+     */
+    public RuntimeException
+    checkTransaction(Channel channel, Transaction transaction, long now) {
+        if (channel == null || transaction instanceof FinancialTransaction == false) {
+            return new IllegalArgumentException("A channel and financial transaction are required");
+        }
+        FinancialTransaction financial = (FinancialTransaction) transaction;
+        MonetaryAmount amount = financial.getAmount();
+        if (amount.getCurrency() != currency) {
+            return new IllegalArgumentException(
+                    "Transaction currency (" + amount.getCurrency() + ") does not match limits (" + currency + ")");
+        }
+        MonetaryAmount oneTime = limits[ServiceLimit.ONE_TIME.ordinal()];
+        if (oneTime != null && amount.compareTo(oneTime) > 0) {
+            return new LimitExceededException(ServiceLimit.ONE_TIME, oneTime, ResponseCode.TRANSACTION_LIMIT_REACHED);
+        }
+
+        String customer = partyKey(financial.getDebitInstrument().getHolder());
+        String agent = partyKey(channel.getAgent().getActor());
+        String channelName = channel.getName();
+        long value = amount.longValue();
+        for (int i = 0; i < LIMITS.length; i++) {
+            ServiceLimit limit = LIMITS[i];
+            if (limits[i] == null || VelocityLimiter.isWindowed(limit) == false) {
+                continue;
+            }
+            if (limiter.tryAcquire(limit, partyOf(limit, customer, agent), channelOf(limit, channelName),
+                    value, limits[i].longValue(), now) == false) {
+                release(i, customer, agent, channelName, value, now);
+                return new LimitExceededException(limit, limits[i], ResponseCode.ACCOUNT_LIMIT_REACHED);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Withdraw a transaction that passed {@link #checkTransaction(Channel, Transaction, long)}
+     * from the limits it was counted against, e.g., because it then failed to execute
+     *
+     * @param channel     as supplied to <code>checkTransaction</code>
+     * @param transaction as supplied to <code>checkTransaction</code>
+     * @param acquired    time supplied to <code>checkTransaction</code>, in milliseconds since the epoch
+     * @throws IllegalArgumentException if channel is null, or transaction is not a financial transaction
+     */
+    public void
+    releaseTransaction(Channel channel, Transaction transaction, long acquired) {
+        if (channel == null || transaction instanceof FinancialTransaction == false) {
+            throw new IllegalArgumentException("A channel and financial transaction are required");
+        }
+        FinancialTransaction financial = (FinancialTransaction) transaction;
+        release(LIMITS.length, partyKey(financial.getDebitInstrument().getHolder()),
+                partyKey(channel.getAgent().getActor()), channel.getName(), financial.getAmount().longValue(), acquired);
+    }
+
+    // withdraw the amount from the first count windowed limits configured
+    private void
+    release(int count, String customer, String agent, String channelName, long value, long acquired) {
+        for (int i = 0; i < count; i++) {
+            if (limits[i] != null && VelocityLimiter.isWindowed(LIMITS[i]) == true) {
+                limiter.release(LIMITS[i], partyOf(LIMITS[i], customer, agent),
+                        channelOf(LIMITS[i], channelName), value, acquired);
+            }
+        }
+    }
+
+    private static String
+    partyKey(Party party) {
+        return party == null || party.getId() == null ? null : party.getId().externalForm();
+    }
+
+    private static String
+    partyOf(ServiceLimit limit, String customer, String agent) {
+        switch (limit) {
+            case CHANNEL:
+                return null;
+            case PER_AGENT:
+                return agent;
+            default:
+                return customer;
+        }
+    }
+
+    private static String
+    channelOf(ServiceLimit limit, String channel) {
+        switch (limit) {
+            case CHANNEL:
+            case PER_CUSTOMER:
+            case PER_AGENT:
+                return channel;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String
+    toString() {
+        return this.getClass().getSimpleName() + "{limits=" + getLimits() + "}";
+    }
+}
@@ -0,0 +1,259 @@
+package org.seefin.nygaard.model.services;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.parties.Organization;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+
+/**
+ * Adapter running calls to a {@link Service} each on its own thread, with a time limit:
+ * by default, on virtual threads (see {@link VirtualThreads}), so that many slow calls to
+ * partner systems may be in progress at once, without a large pool of platform threads
+ * <p/>
+ * Calls are cancelled with the scope that started them:
+ * <ul>
+ * <li>a call that exceeds its time limit is cancelled, interrupting its thread, and fails
+ * with a {@link ServiceTimeoutException} (response code <code>REQUEST_TIMEOUT</code>)</li>
+ * <li>cancelling the future returned by {@link #submit} cancels the call</li>
+ * <li>a caller of {@link #execute} that is interrupted while waiting cancels the call</li>
+ * <li>closing the invoker cancels all calls in progress</li>
+ * </ul>
+ * The invoker is itself a Service, so may replace the service it wraps
+ *
+ * @author phillipsr
+ */
+public final class ServiceInvoker
+        implements Service, AutoCloseable {
+    // single thread that expires calls exceeding their time limit, shared by all invokers
+    private static final ScheduledExecutorService timer
+            = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread result = new Thread(task, "service-invoker-timer");
+            result.setDaemon(true);
+            return result;
+        }
+    });
+
+    private final Service service;
+    private final long timeout;
+    private final TimeUnit unit;
+    private final ExecutorService executor;
+    private final Set<Call> calls = Collections.newSetFromMap(new ConcurrentHashMap<Call, Boolean>());
+    private volatile boolean closed;
+
+    /**
+     * Create an invoker running calls to the supplied service on virtual threads, where
+     * the JVM supports them, otherwise on a pool of platform threads
+     *
+     * @param service to be called
+     * @param timeout maximum duration of each call
+     * @param unit    of <code>timeout</code>
+     * @throws IllegalArgumentException if service or unit is null, or timeout is not positive
+     */
+    public ServiceInvoker(Service service, long timeout, TimeUnit unit) {
+        this(service, timeout, unit, VirtualThreads.newExecutor("service-call"));
+    }
+
+    /**
+     * Create an invoker running calls to the supplied service with the supplied executor
+     *
+     * @param service  to be called
+     * @param timeout  maximum duration of each call
+     * @param unit     of <code>timeout</code>
+     * @param executor running the calls; shut down when this invoker is closed
+     * @throws IllegalArgumentException if any parameter is null, or timeout is not positive
+     */
+    public ServiceInvoker(Service service, long timeout, TimeUnit unit, ExecutorService executor) {
+        if (service == null || unit == null || executor == null) {
+            throw new IllegalArgumentException("Service, time unit and executor must be provided");
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive (" + timeout + ")");
+        }
+        this.service = service;
+        this.timeout = timeout;
+        this.unit = unit;
+        this.executor = executor;
+    }
+
+    /**
+     * Start a call executing the transaction with the service
+     *
+     * @param channel     through which the request was received
+     * @param transaction to be executed
+     * @return future completed when the call completes; completed exceptionally with the
+     * exception thrown by the service, or a {@link ServiceTimeoutException} if the call
+     * exceeded its time limit
+     * @throws RejectedExecutionException if this invoker has been closed
+     */
+    public ListenableFuture<Void>
+    submit(Channel channel, FinancialTransaction transaction) {
+        if (closed == true) {
+            throw new RejectedExecutionException("Service invoker has been closed");
+        }
+        Call call = new Call(channel, transaction);
+        calls.add(call);
+        try {
+            call.start();
+        } catch (RejectedExecutionException e) {
+            calls.remove(call);
+            throw e;
+        }
+        return call;
+    }
+
+    /**
+     * Execute the transaction with the service, waiting for the call to complete
+     *
+     * @throws ServiceTimeoutException if the call exceeded its time limit
+     * @throws IllegalStateException   if the calling thread was interrupted while waiting
+     *                                 (the call is cancelled, and the thread's interrupt status set)
+     * @throws RuntimeException        or subclass, thrown by the service
+     */
+    @Override
+    public void
+    execute(Channel channel, FinancialTransaction transaction) {
+        ListenableFuture<Void> call = submit(channel, transaction);
+        try {
+            call.get();
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + service.getProvider(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public Organization
+    getProvider() {
+        return service.getProvider();
+    }
+
+    @Override
+    public Product
+    getProduct() {
+        return service.getProduct();
+    }
+
+    /**
+     * @return the number of calls in progress
+     */
+    public int
+    getActiveCalls() {
+        return calls.size();
+    }
+
+    /**
+     * Cancel all calls in progress, and shut down the executor running them
+     */
+    @Override
+    public void
+    close() {
+        closed = true;
+        for (Call call : calls) {
+            call.cancel(true);
+        }
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "ServiceInvoker{provider=" + service.getProvider() + ", timeoutMillis=" + unit.toMillis(timeout)
+                + ", activeCalls=" + calls.size() + ", closed=" + closed + "}";
+    }
+
+    /*
+     * A call in progress: completed by the thread running the call, by the timer if the
+     * call exceeds its time limit, or by cancellation, whichever is first; the others are
+     * then ignored, and the running call interrupted
+     */
+    private final class Call
+            extends AbstractFuture<Void>
+            implements Runnable {
+        private final Channel channel;
+        private final FinancialTransaction transaction;
+        private volatile Future<?> task;
+        private volatile ScheduledFuture<?> expiry;
+
+        private Call(Channel channel, FinancialTransaction transaction) {
+            this.channel = channel;
+            this.transaction = transaction;
+        }
+
+        private void
+        start() {
+            task = executor.submit(this);
+            expiry = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (setException(new ServiceTimeoutException(
+                            String.valueOf(service.getProvider()), timeout, unit)) == true) {
+                        stop();
+                    }
+                }
+            }, timeout, unit);
+            addListener(new Runnable() {
+                @Override
+                public void run() {
+                    calls.remove(Call.this);
+                    expiry.cancel(false);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        @Override
+        public void
+        run() {
+            if (isDone() == true) {
+                return;
+            }
+            try {
+                service.execute(channel, transaction);
+                set(null);
+            } catch (Throwable e) {
+                setException(e);
+            }
+        }
+
+        @Override
+        protected void
+        interruptTask() {
+            stop();
+        }
+
+        private void
+        stop() {
+            Future<?> running = task;
+            if (running != null) {
+                running.cancel(true);
+            }
+        }
+    }
+}
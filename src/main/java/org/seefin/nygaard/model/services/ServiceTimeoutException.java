@@ -0,0 +1,29 @@
+package org.seefin.nygaard.model.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.seefin.nygaard.model.codes.ResponseCode;
+
+/**
+ * Exception thrown by a {@link ServiceInvoker} when a service call does not complete
+ * within the time allowed; the call is cancelled (its thread interrupted) when this is thrown
+ *
+ * @author phillipsr
+ */
+public class ServiceTimeoutException
+        extends RuntimeException {
+    private final long timeoutMillis;
+
+    public ServiceTimeoutException(String service, long timeout, TimeUnit unit) {
+        super("Call to " + service + " timed out after " + unit.toMillis(timeout) + "ms");
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public ResponseCode getResponseCode() {
+        return ResponseCode.REQUEST_TIMEOUT;
+    }
+}
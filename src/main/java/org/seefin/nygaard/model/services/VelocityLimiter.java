@@ -0,0 +1,405 @@
+package org.seefin.nygaard.model.services;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * In-memory velocity counters for the time-windowed {@link ServiceLimit}s: keeps a running
+ * total of the amounts transacted in a sliding window, per (limit, party, channel) key, and
+ * admits a new amount only if it would not take the total over the limit
+ * <p/>
+ * Each window is a ring of time buckets, created lazily as the window advances, so a key
+ * used once holds a single bucket; a bucket that has aged out of the window is replaced
+ * by the first amount recorded in its slot on the next pass of the ring. The window slides
+ * in steps of one bucket, so its effective length is between <code>n-1</code> and
+ * <code>n</code> buckets:
+ * <ul>
+ * <li>HOURLY: 12 buckets of 5 minutes</li>
+ * <li>DAILY, CHANNEL, PER_CUSTOMER, PER_AGENT: 24 buckets of 1 hour</li>
+ * <li>WEEKLY: 28 buckets of 6 hours</li>
+ * <li>MONTHLY: 30 buckets of 1 day</li>
+ * <li>YEARLY: 52 buckets of 7 days</li>
+ * </ul>
+ * ONE_TIME limits apply to a single transaction, and need no counters
+ * <p/>
+ * Counters are updated without locking: an amount is added to the current bucket and the
+ * window then totalled, the amount being withdrawn again if the limit was exceeded, so the
+ * limit is never exceeded, even by concurrent requests (which may, rarely, both be refused
+ * when only one would have pushed the total over). Buckets of CHANNEL limits, shared by every
+ * party using the channel, are striped across padded cells to avoid contention
+ * <p/>
+ * The number of keys tracked is bounded: when the bound is reached, keys whose windows
+ * hold no amount (e.g., because they have expired) are discarded. A window still holding
+ * amounts is never discarded, as that would reset its total and let the limit be exceeded;
+ * should there be no room for a new key, amounts for it are refused (the limiter fails
+ * closed) until windows expire
+ *
+ * @author phillipsr
+ */
+public final class VelocityLimiter {
+    private static final Logger log = LoggerFactory.getLogger(VelocityLimiter.class);
+    private static final int DEFAULT_MAX_KEYS = 1 << 20;
+    private static final int DEFAULT_STRIPES = 8;
+    private static final int CELL_SPACING = 8; // longs per cache line
+    private static final long RESCAN_MILLIS = 1000; // minimum interval between fruitless eviction scans
+
+    private static final Period[] PERIODS = new Period[ServiceLimit.values().length];
+
+    static {
+        Period daily = new Period(TimeUnit.HOURS.toMillis(1), 24);
+        PERIODS[ServiceLimit.HOURLY.ordinal()] = new Period(TimeUnit.MINUTES.toMillis(5), 12);
+        PERIODS[ServiceLimit.DAILY.ordinal()] = daily;
+        PERIODS[ServiceLimit.WEEKLY.ordinal()] = new Period(TimeUnit.HOURS.toMillis(6), 28);
+        PERIODS[ServiceLimit.MONTHLY.ordinal()] = new Period(TimeUnit.DAYS.toMillis(1), 30);
+        PERIODS[ServiceLimit.YEARLY.ordinal()] = new Period(TimeUnit.DAYS.toMillis(7), 52);
+        PERIODS[ServiceLimit.CHANNEL.ordinal()] = daily;
+        PERIODS[ServiceLimit.PER_CUSTOMER.ordinal()] = daily;
+        PERIODS[ServiceLimit.PER_AGENT.ordinal()] = daily;
+    }
+
+    private final int maxKeys;
+    private final int stripes;
+    private final ConcurrentMap<Key, Window> windows = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    private long nextScan = Long.MIN_VALUE;
+
+    /**
+     * Create a limiter with default bounds
+     */
+    public VelocityLimiter() {
+        this(DEFAULT_MAX_KEYS, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create a limiter with the supplied bounds
+     *
+     * @param maxKeys maximum number of (limit, party, channel) keys tracked
+     * @param stripes number of cells each CHANNEL bucket is striped over, rounded up to a power of two
+     * @throws IllegalArgumentException if either parameter is less than one
+     */
+    public VelocityLimiter(int maxKeys, int stripes) {
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("Maximum number of keys must be positive (" + maxKeys + ")");
+        }
+        if (stripes < 1 || stripes > 1 << 10) {
+            throw new IllegalArgumentException("Stripes must be between 1 and 1024 (" + stripes + ")");
+        }
+        this.maxKeys = maxKeys;
+        int size = Integer.highestOneBit(stripes);
+        this.stripes = size < stripes ? size << 1 : size;
+    }
+
+    /**
+     * @param limit to be checked
+     * @return true if the limit is enforced over a time window (i.e., it is not ONE_TIME)
+     */
+    public static boolean
+    isWindowed(ServiceLimit limit) {
+        return PERIODS[limit.ordinal()] != null;
+    }
+
+    /**
+     * Record <code>amount</code> against the window of the key, if doing so would not take
+     * the total for the window over <code>maximum</code>
+     *
+     * @param limit   windowed limit being applied
+     * @param party   external form of the identity of the party the limit applies to, or null if none
+     * @param channel name of the channel the limit applies to, or null if none
+     * @param amount  to be recorded, in minor currency units
+     * @param maximum total permitted in the window, in minor currency units
+     * @param now     current time, in milliseconds since the epoch
+     * @return true if the amount was recorded, false if it would have exceeded the limit, or
+     * the key is new and the limiter is full of windows holding amounts
+     * @throws IllegalArgumentException if the limit is not windowed, or amount is negative
+     */
+    public boolean
+    tryAcquire(ServiceLimit limit, String party, String channel, long amount, long maximum, long now) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative (" + amount + ")");
+        }
+        Period period = periodOf(limit);
+        Key key = new Key(limit, party, channel);
+        while (true) {
+            Window window = windowOf(key, period, now);
+            if (window == null) {
+                return false;
+            }
+            long epoch = period.epochOf(now);
+            int stripe = window.stripeOf(Thread.currentThread());
+            Bucket bucket = window.bucket(epoch);
+            bucket.add(stripe, amount);
+            if (window.retired == true) {
+                // being discarded: withdraw, and record against the key's next window
+                bucket.add(stripe, -amount);
+                Thread.yield();
+                continue;
+            }
+            if (window.sum(epoch) > maximum) {
+                bucket.add(stripe, -amount);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Withdraw an amount previously recorded by {@link #tryAcquire}, e.g., because the
+     * transaction it was recorded for has failed; the amount is withdrawn from the bucket
+     * it was recorded in, so nothing is withdrawn if that bucket has since aged out of the
+     * window (taking the amount with it)
+     *
+     * @param limit    windowed limit the amount was recorded against
+     * @param party    as supplied to <code>tryAcquire</code>
+     * @param channel  as supplied to <code>tryAcquire</code>
+     * @param amount   as supplied to <code>tryAcquire</code>
+     * @param acquired time supplied to <code>tryAcquire</code> when the amount was recorded
+     * @throws IllegalArgumentException if the limit is not windowed
+     */
+    public void
+    release(ServiceLimit limit, String party, String channel, long amount, long acquired) {
+        periodOf(limit);
+        Window window = windows.get(new Key(limit, party, channel));
+        if (window != null) {
+            Bucket bucket = window.existingBucket(window.period.epochOf(acquired));
+            if (bucket != null) {
+                bucket.add(window.stripeOf(Thread.currentThread()), -amount);
+            }
+        }
+    }
+
+    /**
+     * @param limit   windowed limit
+     * @param party   the limit applies to, or null if none
+     * @param channel the limit applies to, or null if none
+     * @param now     current time, in milliseconds since the epoch
+     * @return the total recorded for the key in the window ending at <code>now</code>
+     */
+    public long
+    getTotal(ServiceLimit limit, String party, String channel, long now) {
+        Window window = windows.get(new Key(limit, party, channel));
+        return window == null ? 0 : window.sum(window.period.epochOf(now));
+    }
+
+    /**
+     * @return the number of keys currently tracked
+     */
+    public int size() {
+        return windows.size();
+    }
+
+    private static Period
+    periodOf(ServiceLimit limit) {
+        Period period = PERIODS[limit.ordinal()];
+        if (period == null) {
+            throw new IllegalArgumentException(limit + " is not a windowed limit");
+        }
+        return period;
+    }
+
+    /**
+     * @return the window of the key, created if need be, or null if the key is new and
+     * there is no room for it
+     */
+    private Window
+    windowOf(Key key, Period period, long now) {
+        Window result = windows.get(key);
+        if (result == null) {
+            if (windows.size() >= maxKeys && evict(now) == false) {
+                return null;
+            }
+            Window created = new Window(period, key.limit == ServiceLimit.CHANNEL ? stripes : 1);
+            result = windows.putIfAbsent(key, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discard the windows that hold no amount in the window ending at <code>now</code>
+     * (including those that have expired); a window is retired before it is checked, so that
+     * an amount recorded against it concurrently is either seen by the check, keeping the window,
+     * or is withdrawn by its recorder, and recorded again against a new window
+     *
+     * @return true if there is room for a new key
+     */
+    private boolean
+    evict(long now) {
+        synchronized (evictionLock) {
+            if (windows.size() < maxKeys) {
+                return true;
+            }
+            if (now < nextScan) {
+                return false;
+            }
+            for (Iterator<Map.Entry<Key, Window>> i = windows.entrySet().iterator(); i.hasNext(); ) {
+                Window window = i.next().getValue();
+                window.retired = true;
+                if (window.sum(window.period.epochOf(now)) == 0) {
+                    i.remove();
+                } else {
+                    window.retired = false;
+                }
+            }
+            if (windows.size() < maxKeys) {
+                return true;
+            }
+            log.warn("Velocity limiter at capacity ({} keys holding amounts), refusing new keys", windows.size());
+            nextScan = now + RESCAN_MILLIS;
+            return false;
+        }
+    }
+
+    @Override
+    public String
+    toString() {
+        return "VelocityLimiter{keys=" + windows.size() + ", maxKeys=" + maxKeys + ", stripes=" + stripes + "}";
+    }
+
+    /**
+     * Length and granularity of a sliding window
+     */
+    private static final class Period {
+        private final long bucketMillis;
+        private final int buckets;
+
+        private Period(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+
+        private long epochOf(long millis) {
+            return millis / bucketMillis;
+        }
+    }
+
+    private static final class Key {
+        private final ServiceLimit limit;
+        private final String party;
+        private final String channel;
+        private final int hash;
+
+        private Key(ServiceLimit limit, String party, String channel) {
+            this.limit = limit;
+            this.party = party;
+            this.channel = channel;
+            int result = limit.ordinal();
+            result = 31 * result + (party == null ? 0 : party.hashCode());
+            result = 31 * result + (channel == null ? 0 : channel.hashCode());
+            this.hash = result;
+        }
+
+        @Override
+        public boolean
+        equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other instanceof Key == false) {
+                return false;
+            }
+            Key test = (Key) other;
+            return hash == test.hash && limit == test.limit
+                    && (party == null ? test.party == null : party.equals(test.party))
+                    && (channel == null ? test.channel == null : channel.equals(test.channel));
+        }
+
+        @Override
+        public int
+        hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Ring of time buckets, indexed by bucket epoch modulo the number of buckets
+     */
+    private static final class Window {
+        private final Period period;
+        private final int stripeMask;
+        private final AtomicReferenceArray<Bucket> buckets;
+        // set while the window is checked for discarding, and thereafter if discarded
+        private volatile boolean retired;
+
+        private Window(Period period, int stripes) {
+            this.period = period;
+            this.stripeMask = stripes - 1;
+            this.buckets = new AtomicReferenceArray<>(period.buckets);
+        }
+
+        private int stripeOf(Thread thread) {
+            return (int) thread.getId() & stripeMask;
+        }
+
+        /**
+         * @return the bucket for the epoch, replacing the bucket in its slot if that has aged out
+         */
+        private Bucket bucket(long epoch) {
+            int slot = (int) (epoch % period.buckets);
+            while (true) {
+                Bucket current = buckets.get(slot);
+                if (current != null && current.epoch >= epoch) {
+                    return current;
+                }
+                Bucket fresh = new Bucket(epoch, stripeMask + 1);
+                if (buckets.compareAndSet(slot, current, fresh) == true) {
+                    return fresh;
+                }
+            }
+        }
+
+        /**
+         * @return the bucket for the epoch, or null if there is none (e.g., it has aged out)
+         */
+        private Bucket existingBucket(long epoch) {
+            Bucket current = buckets.get((int) (epoch % period.buckets));
+            return current != null && current.epoch == epoch ? current : null;
+        }
+
+        private long sum(long epoch) {
+            long result = 0;
+            for (int i = 0; i < period.buckets; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && bucket.epoch > epoch - period.buckets && bucket.epoch <= epoch) {
+                    result += bucket.sum();
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Running total for one time bucket, striped over padded cells when shared by many threads
+     */
+    private static final class Bucket {
+        private final long epoch;
+        private final AtomicLongArray cells;
+
+        private Bucket(long epoch, int stripes) {
+            this.epoch = epoch;
+            this.cells = new AtomicLongArray(stripes == 1 ? 1 : stripes * CELL_SPACING);
+        }
+
+        private void add(int stripe, long amount) {
+            cells.addAndGet(stripe * CELL_SPACING, amount);
+        }
+
+        private long sum() {
+            long result = 0;
+            for (int i = 0; i < cells.length(); i += CELL_SPACING) {
+                result += cells.get(i);
+            }
+            return result;
+        }
+    }
+}
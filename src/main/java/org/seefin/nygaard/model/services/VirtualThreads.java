@@ -0,0 +1,96 @@
+package org.seefin.nygaard.model.services;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Access to the virtual threads of Java 21 and later, from code compiled for earlier
+ * versions: the JDK's virtual thread executor is located reflectively, and where the
+ * running JVM has none, executors fall back to a pool of (daemon) platform threads
+ * <p/>
+ * Virtual threads are cheap to block, so that a thread per call to a slow partner system
+ * may be used at high concurrency, without sizing a large platform thread pool
+ *
+ * @author phillipsr
+ */
+public final class VirtualThreads {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR
+            = findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+    private static final Method IS_VIRTUAL = findMethod(Thread.class, "isVirtual");
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean
+    isAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @param thread to be tested
+     * @return true if the thread supplied is a virtual thread
+     */
+    public static boolean
+    isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param name prefix of the names of the threads created, if virtual threads are not available
+     * @return an executor starting a new virtual thread for each task, if the running JVM
+     * supports them, otherwise an executor of a cached pool of daemon threads
+     */
+    public static ExecutorService
+    newExecutor(String name) {
+        if (isAvailable() == true) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                log.warn("Cannot create virtual thread executor, using platform threads", e);
+            }
+        }
+        return Executors.newCachedThreadPool(daemonThreads(name));
+    }
+
+    private static ThreadFactory
+    daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread result = new Thread(task, name + "-" + count.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        };
+    }
+
+    private static Method
+    findMethod(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
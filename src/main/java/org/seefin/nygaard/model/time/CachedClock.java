@@ -0,0 +1,86 @@
+package org.seefin.nygaard.model.time;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Coarse-grained clock, reading the system time once per interval, on a daemon thread,
+ * and answering {@link #millis()} from the time last read, so that reading the clock costs
+ * no more than a volatile read; the time answered lags the system time by up to the
+ * interval, so the interval should be no longer than the precision required of timestamps
+ * <p/>
+ * When closed, the clock stops its thread, and reads the system time on each call
+ *
+ * @author phillipsr
+ */
+public final class CachedClock
+        extends Clock
+        implements AutoCloseable {
+    private final long intervalMillis;
+    private final Thread ticker;
+    private volatile long time = System.currentTimeMillis();
+    private volatile boolean closed;
+
+    /**
+     * Create and start a clock reading the system time once per interval
+     *
+     * @param interval between readings of the system time
+     * @param unit     of <code>interval</code>
+     * @throws IllegalArgumentException if unit is null, or the interval is less than a millisecond
+     */
+    public CachedClock(long interval, TimeUnit unit) {
+        if (unit == null) {
+            throw new IllegalArgumentException("Time unit cannot be null");
+        }
+        if (unit.toMillis(interval) < 1) {
+            throw new IllegalArgumentException("Interval must be at least one millisecond");
+        }
+        this.intervalMillis = unit.toMillis(interval);
+        this.ticker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (closed == false) {
+                    try {
+                        Thread.sleep(intervalMillis);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    time = System.currentTimeMillis();
+                }
+            }
+        }, "cached-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @Override
+    public long
+    millis() {
+        return closed == true ? System.currentTimeMillis() : time;
+    }
+
+    /**
+     * @return the interval, in milliseconds, between readings of the system time
+     */
+    public long
+    getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Stop reading the system time in the background; the clock continues to answer
+     * the current time, reading the system time on each call
+     */
+    @Override
+    public void
+    close() {
+        closed = true;
+        ticker.interrupt();
+    }
+
+    @Override
+    public String
+    toString() {
+        return "CachedClock{intervalMillis=" + intervalMillis + ", closed=" + closed + "}";
+    }
+}
@@ -0,0 +1,60 @@
+package org.seefin.nygaard.model.time;
+
+/**
+ * Source of the current time for the model (e.g., the timestamps of requests, and of
+ * ledger postings), as milliseconds since the epoch; read on every request, so should
+ * be cheap, and need not be more precise than the timestamps it supplies
+ * <p/>
+ * The clock used by the model is {@link #getDefault()}, the {@link #SYSTEM} clock unless
+ * another is installed with {@link #setDefault(Clock)}: a {@link CachedClock}, where the
+ * cost of reading the system clock is significant, or a {@link ManualClock}, in tests
+ *
+ * @author phillipsr
+ */
+public abstract class Clock {
+    /**
+     * Clock reading the system time (<code>System.currentTimeMillis()</code>) on each call
+     */
+    public static final Clock SYSTEM = new Clock() {
+        @Override
+        public long
+        millis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public String
+        toString() {
+            return "SystemClock";
+        }
+    };
+
+    private static volatile Clock current = SYSTEM;
+
+    /**
+     * @return the current time, in milliseconds since the epoch
+     */
+    public abstract long millis();
+
+    /**
+     * @return the clock used by the model
+     */
+    public static Clock
+    getDefault() {
+        return current;
+    }
+
+    /**
+     * Install the clock to be used by the model
+     *
+     * @param clock to be used, e.g., {@link #SYSTEM}, to restore the system clock
+     * @throws IllegalArgumentException if clock is null
+     */
+    public static void
+    setDefault(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        current = clock;
+    }
+}
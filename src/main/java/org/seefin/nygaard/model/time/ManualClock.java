@@ -0,0 +1,61 @@
+package org.seefin.nygaard.model.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Clock whose time changes only when set or advanced, for tests of time-dependent
+ * behaviour (e.g., limits and expiry), free of the real passage of time
+ *
+ * @author phillipsr
+ */
+public final class ManualClock
+        extends Clock {
+    private final AtomicLong time;
+
+    /**
+     * Create a clock reading the time supplied
+     *
+     * @param millis since the epoch
+     */
+    public ManualClock(long millis) {
+        this.time = new AtomicLong(millis);
+    }
+
+    @Override
+    public long
+    millis() {
+        return time.get();
+    }
+
+    /**
+     * @param millis since the epoch, to which the clock is set
+     */
+    public void
+    set(long millis) {
+        time.set(millis);
+    }
+
+    /**
+     * Move the clock forward (or back, if <code>amount</code> is negative)
+     *
+     * @param amount of time by which the clock is moved
+     * @param unit   of <code>amount</code>
+     * @return the time after the clock is moved
+     * @throws IllegalArgumentException if unit is null
+     */
+    public long
+    advance(long amount, TimeUnit unit) {
+        if (unit == null) {
+            throw new IllegalArgumentException("Time unit cannot be null");
+        }
+        return time.addAndGet(unit.toMillis(amount));
+    }
+
+    @Override
+    public String
+    toString() {
+        return "ManualClock{millis=" + time.get() + "}";
+    }
+}
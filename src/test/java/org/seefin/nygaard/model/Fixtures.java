@@ -0,0 +1,32 @@
+package org.seefin.nygaard.model;
+
+import java.util.Currency;
+
+import org.seefin.nygaard.model.channels.SMSChannel;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.identifiers.PersonalName;
+import org.seefin.nygaard.model.parties.Individual;
+import org.seefin.nygaard.model.parties.Organization;
+import org.seefin.nygaard.model.parties.Subscriber;
+
+
+/**
+ * Parties, and the channel they use, shared by the tests of requests and services;
+ * all are immutable, so may be shared between tests
+ *
+ * @author phillipsr
+ */
+public final class Fixtures {
+    public static final Organization VENDOR = new Organization(new DUNS(39189524), "Cyprus MFS");
+    public static final Currency EUR = Currency.getInstance("EUR");
+    public static final MSISDN PAYER_MSISDN = MSISDN.parse("+353863567201");
+    public static final MSISDN PAYEE_MSISDN = MSISDN.parse("+353863567202");
+    public static final Individual PAYER = new Individual(new PersonalName(new String[]{"Joe", "Blochs"}), PAYER_MSISDN);
+    public static final Individual PAYEE = new Individual(new PersonalName(new String[]{"Ann", "Other"}), PAYEE_MSISDN);
+    public static final Subscriber SUBSCRIBER = new Subscriber(PAYER);
+    public static final SMSChannel CHANNEL = new SMSChannel(SUBSCRIBER, SMSChannel.createId(PAYER_MSISDN));
+
+    private Fixtures() {
+    }
+}
@@ -15,6 +15,11 @@ import org.seefin.nygaard.model.parties.Organization;
 
 import java.math.BigDecimal;
 import java.util.Currency;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -52,4 +57,106 @@ public class TestAccount {
 
         Assert.assertEquals(BALANCE_AFTER, account.getBalance());
     }
+
+    @Test
+    public void
+    testCreditAndDebit() {
+        Account account = new ElectronicWallet(TEST_CUSTOMER, VENDOR, EURO_CURRENCY);
+
+        Assert.assertEquals(MonetaryAmount.parse("EUR10"), account.credit(MonetaryAmount.parse("EUR10")));
+        Assert.assertTrue(account.tryDebit(MonetaryAmount.parse("EUR4"), MonetaryAmount.parse("EUR0")));
+        Assert.assertFalse(account.tryDebit(MonetaryAmount.parse("EUR7"), MonetaryAmount.parse("EUR0")));
+        Assert.assertTrue(account.tryDebit(MonetaryAmount.parse("EUR7"), MonetaryAmount.parse("EUR-5")));
+
+        Assert.assertEquals(MonetaryAmount.parse("EUR-1"), account.getBalance());
+    }
+
+    @Test
+    public void
+    testCompareAndSetBalance() {
+        Account account = new ElectronicWallet(TEST_CUSTOMER, VENDOR, EURO_CURRENCY);
+
+        Assert.assertTrue(account.compareAndSetBalance(MonetaryAmount.parse("EUR0"), BALANCE_AFTER));
+        Assert.assertFalse(account.compareAndSetBalance(MonetaryAmount.parse("EUR0"), MonetaryAmount.parse("EUR5")));
+
+        Assert.assertEquals(BALANCE_AFTER, account.getBalance());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testCreditCurrencyMismatch() {
+        Account account = new ElectronicWallet(TEST_CUSTOMER, VENDOR, EURO_CURRENCY);
+        account.credit(MonetaryAmount.parse("USD10"));
+    }
+
+    @Test
+    public void
+    testCreditOverflow() {
+        Account account = new ElectronicWallet(TEST_CUSTOMER, VENDOR, EURO_CURRENCY);
+        MonetaryAmount maximum = new MonetaryAmount(EURO_CURRENCY, Long.MAX_VALUE);
+        account.setBalance(maximum);
+
+        try {
+            account.credit(MonetaryAmount.parse("EUR0.01"));
+            Assert.fail("Credit beyond the range of the balance should be refused");
+        } catch (ArithmeticException e) {
+            Assert.assertEquals(maximum, account.getBalance());
+        }
+    }
+
+    @Test
+    public void
+    testDebitCannotWrap() {
+        Account account = new ElectronicWallet(TEST_CUSTOMER, VENDOR, EURO_CURRENCY);
+        MonetaryAmount minimum = new MonetaryAmount(EURO_CURRENCY, Long.MIN_VALUE);
+        account.setBalance(minimum);
+
+        Assert.assertFalse(account.tryDebit(MonetaryAmount.parse("EUR0.01"), minimum));
+        Assert.assertEquals(minimum, account.getBalance());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testNegativeDebit() {
+        Account account = new ElectronicWallet(TEST_CUSTOMER, VENDOR, EURO_CURRENCY);
+        account.tryDebit(MonetaryAmount.parse("EUR-10"), MonetaryAmount.parse("EUR0"));
+    }
+
+    @Test
+    public void
+    testConcurrentUpdates()
+            throws InterruptedException {
+        final Account account = new ElectronicWallet(TEST_CUSTOMER, VENDOR, EURO_CURRENCY);
+        final MonetaryAmount cent = MonetaryAmount.parse("EUR0.01");
+        final MonetaryAmount floor = MonetaryAmount.parse("EUR0");
+        final AtomicInteger debits = new AtomicInteger();
+        final int threads = 8;
+        final int iterations = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < iterations; i++) {
+                        account.credit(cent);
+                        if (account.tryDebit(cent, floor) == true) {
+                            debits.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assert.assertEquals(threads * iterations - debits.get(), account.getBalance().longValue());
+        Assert.assertTrue(account.getBalance().longValue() >= 0);
+    }
 }
@@ -0,0 +1,242 @@
+package org.seefin.nygaard.model.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Currency;
+
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.channels.MPChannel;
+import org.seefin.nygaard.model.channels.SMSChannel;
+import org.seefin.nygaard.model.channels.WebChannel;
+import org.seefin.nygaard.model.financial.Account;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.identifiers.PersonalName;
+import org.seefin.nygaard.model.identifiers.ReferenceCode;
+import org.seefin.nygaard.model.instruments.AccountInstrument;
+import org.seefin.nygaard.model.instruments.BankAccount;
+import org.seefin.nygaard.model.instruments.CreditCard;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.parties.Agent;
+import org.seefin.nygaard.model.parties.FinancialInstitution;
+import org.seefin.nygaard.model.parties.Individual;
+import org.seefin.nygaard.model.parties.Organization;
+import org.seefin.nygaard.model.parties.Subscriber;
+import org.seefin.nygaard.model.requests.BalanceRequest;
+import org.seefin.nygaard.model.requests.BalanceResponse;
+import org.seefin.nygaard.model.requests.TopupRequest;
+import org.seefin.nygaard.model.requests.TopupResponse;
+import org.seefin.nygaard.model.requests.TransferRequest;
+import org.seefin.nygaard.model.requests.TransferResponse;
+
+
+/**
+ * Round-trip tests for the BinaryCodec
+ *
+ * @author phillipsr
+ */
+public class TestBinaryCodec {
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Organization VENDOR = new Organization(new DUNS(39189524), "Cyprus MFS");
+    private static final MSISDN MSISDN_ID = MSISDN.parse("+353863567279");
+    private static final Individual CUSTOMER
+            = new Individual(new PersonalName(new String[]{"Joe", "Blochs"}), MSISDN_ID);
+    private static final Subscriber SUBSCRIBER = new Subscriber(CUSTOMER);
+    private static final SMSChannel SMS = new SMSChannel(SUBSCRIBER, new ReferenceCode("3538635672791420070400000"));
+
+    private static <T> T
+    roundTrip(T value, Class<T> type) {
+        return BinaryCodec.decode(BinaryCodec.encode(value), type);
+    }
+
+    @Test
+    public void
+    testMonetaryAmount() {
+        MonetaryAmount amount = new MonetaryAmount(EUR, -123456789L);
+        Assert.assertEquals(amount, roundTrip(amount, MonetaryAmount.class));
+        MonetaryAmount yen = new MonetaryAmount(Currency.getInstance("JPY"), Long.MAX_VALUE);
+        Assert.assertEquals(yen, roundTrip(yen, MonetaryAmount.class));
+        // version + tag + currency (2 bytes) + small value
+        Assert.assertEquals(5, BinaryCodec.encode(new MonetaryAmount(EUR, 10L)).length);
+    }
+
+    @Test
+    public void
+    testIdentifiers() {
+        Assert.assertEquals(MSISDN_ID, roundTrip(MSISDN_ID, MSISDN.class));
+        GUID guid = GUID.createUniqueId();
+        Assert.assertEquals(guid, roundTrip(guid, GUID.class));
+        Assert.assertEquals(18, BinaryCodec.encode(guid).length);
+        IBAN iban = IBAN.parse("IE64IRCE92050112345678");
+        Assert.assertEquals(iban.externalForm(), roundTrip(iban, IBAN.class).externalForm());
+        ISO7812 card = new ISO7812(5105105105105100L);
+        Assert.assertEquals(card, roundTrip(card, ISO7812.class));
+        Assert.assertEquals(new DUNS(39189524), roundTrip(new DUNS(39189524), DUNS.class));
+        Assert.assertEquals(new ReferenceCode("ABC-123"), roundTrip(new ReferenceCode("ABC-123"), ReferenceCode.class));
+        PersonalName name = roundTrip(new PersonalName(new String[]{"Joe", "Blochs"}), PersonalName.class);
+        Assert.assertTrue(Arrays.equals(new String[]{"Joe", "Blochs"}, name.getNameElements()));
+    }
+
+    @Test
+    public void
+    testTopupRequest() {
+        TopupRequest request = new TopupRequest(SMS, SUBSCRIBER, new MonetaryAmount(EUR, 1000L),
+                new DateTime(1420070400000L));
+
+        TopupRequest result = roundTrip(request, TopupRequest.class);
+
+        Assert.assertEquals(request.getTimestamp().getMillis(), result.getTimestamp().getMillis());
+        Assert.assertEquals(request.getAmount(), result.getAmount());
+        Assert.assertEquals(SMSChannel.class, result.getChannel().getClass());
+        Assert.assertEquals(SMS.getIdentity(), result.getChannel().getIdentity());
+        Assert.assertEquals(MSISDN_ID, result.getSubscriber().getActor().getId());
+        Assert.assertEquals("Joe", result.getSubscriber().getActor().getCommonName());
+    }
+
+    @Test
+    public void
+    testTransferRequest() {
+        Account payer = new ElectronicWallet(CUSTOMER, VENDOR, EUR);
+        payer.setBalance(new MonetaryAmount(EUR, 5000L));
+        Account payee = new CreditCard(CUSTOMER, EUR, new ISO7812(5105105105105100L));
+        FinancialTransaction transaction = new FinancialTransaction(payer, new MonetaryAmount(EUR, 2500L), payee);
+        TransferRequest request = new TransferRequest(new MPChannel(new ReferenceCode("MP-1")), transaction, "rent");
+
+        TransferRequest result = roundTrip(request, TransferRequest.class);
+
+        Assert.assertEquals("rent", result.getComment());
+        FinancialTransaction decoded = result.getTransaction();
+        Assert.assertEquals(transaction.getIdentity(), decoded.getIdentity());
+        Assert.assertEquals(transaction.getAmount(), decoded.getAmount());
+        Assert.assertEquals(payer.getIdentifier(), decoded.getDebitInstrument().getIdentifier());
+        Assert.assertEquals(payer.getBalance(), decoded.getDebitInstrument().getBalance());
+        Assert.assertEquals(CreditCard.class, decoded.getCreditInstrument().getClass());
+        Assert.assertEquals(payee.getIdentifier(), decoded.getCreditInstrument().getIdentifier());
+        Assert.assertEquals(VENDOR.getId(), decoded.getDebitInstrument().getProvider().getId());
+    }
+
+    @Test
+    public void
+    testBalanceRequest()
+            throws IOException {
+        FinancialInstitution bank = new FinancialInstitution(new DUNS(12345678), "Bank of Nygaard");
+        Agent teller = new Agent(CUSTOMER, bank);
+        AccountInstrument instrument = new AccountInstrument(CUSTOMER, IBAN.parse("IE64IRCE92050112345678"));
+        BalanceRequest request = new BalanceRequest(
+                new WebChannel(teller, InetAddress.getByAddress(new byte[]{10, 0, 0, 1})), instrument);
+
+        BalanceRequest result = roundTrip(request, BalanceRequest.class);
+
+        Assert.assertEquals(instrument.getIdentifier().externalForm(), result.getInstrument().getIdentifier().externalForm());
+        Assert.assertEquals("10.0.0.1", ((WebChannel) result.getChannel()).getAddress().getHostAddress());
+        Assert.assertEquals("Bank of Nygaard", ((Agent) result.getChannel().getAgent()).getPrincipal().getCommonName());
+    }
+
+    @Test
+    public void
+    testBankAccount() {
+        FinancialInstitution bank = new FinancialInstitution(new DUNS(12345678), "Bank of Nygaard");
+        Account account = new BankAccount(CUSTOMER, bank, IBAN.parse("IE64IRCE92050112345678"), EUR);
+        Account wallet = new ElectronicWallet(CUSTOMER, VENDOR, EUR);
+        wallet.setBalance(new MonetaryAmount(EUR, 100L));
+        TransferRequest request = new TransferRequest(SMS,
+                new FinancialTransaction(wallet, new MonetaryAmount(EUR, 100L), account), "savings");
+
+        Account result = roundTrip(request, TransferRequest.class).getTransaction().getCreditInstrument();
+
+        Assert.assertEquals(BankAccount.class, result.getClass());
+        Assert.assertEquals(account.getIdentifier().externalForm(), result.getIdentifier().externalForm());
+    }
+
+    @Test
+    public void
+    testResponses() {
+        TopupResponse topup = roundTrip(new TopupResponse(true, new MonetaryAmount(EUR, 2000L), "ok"), TopupResponse.class);
+        Assert.assertTrue(topup.getSuccess());
+        Assert.assertEquals(new MonetaryAmount(EUR, 2000L), topup.getBalance());
+        Assert.assertEquals("ok", topup.getText());
+
+        TopupResponse empty = roundTrip(new TopupResponse(), TopupResponse.class);
+        Assert.assertFalse(empty.getSuccess());
+        Assert.assertNull(empty.getBalance());
+        Assert.assertNull(empty.getText());
+
+        TransferResponse transfer = roundTrip(
+                new TransferResponse(false, null, "INSUFFICENT_FUNDS", new MonetaryAmount(EUR, 5L)), TransferResponse.class);
+        Assert.assertFalse(transfer.getSuccess());
+        Assert.assertNull(transfer.getAuthorizationCode());
+        Assert.assertEquals("INSUFFICENT_FUNDS", transfer.getText());
+
+        BalanceResponse balance = roundTrip(new BalanceResponse(new MonetaryAmount(EUR, 42L)), BalanceResponse.class);
+        Assert.assertEquals(new MonetaryAmount(EUR, 42L), balance.getBalance());
+    }
+
+    @Test
+    public void
+    testSmallerThanJavaSerialization()
+            throws IOException {
+        TopupRequest request = new TopupRequest(SMS, SUBSCRIBER, new MonetaryAmount(EUR, 1000L));
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(serialized);
+        output.writeObject(request);
+        output.close();
+
+        Assert.assertTrue(BinaryCodec.encode(request).length * 10 < serialized.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testUnsupportedType() {
+        BinaryCodec.encode("not a model type");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testTruncatedMessage() {
+        byte[] message = BinaryCodec.encode(GUID.createUniqueId());
+        BinaryCodec.decode(Arrays.copyOf(message, message.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testOversizedCount() {
+        // a personal name claiming 2^31 - 1 elements, in a 7-byte message
+        BinaryCodec.decode(new byte[]{1, 9, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testNegativeCount() {
+        BinaryCodec.decode(new byte[]{1, 9, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testMisplacedValue() {
+        // a balance response holding a DUNS number where its balance should be
+        BinaryCodec.decode(new byte[]{1, 32, 6, 5});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testMisplacedParty() {
+        // a top-up over an SMS channel, whose subscriber is an organization rather than an individual
+        BinaryCodec.decode(new byte[]{1, 20, 0, 61, 50, 41, 6, 5, 1, 1, 'X'});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testWrongType() {
+        BinaryCodec.decode(BinaryCodec.encode(MSISDN_ID), GUID.class);
+    }
+}
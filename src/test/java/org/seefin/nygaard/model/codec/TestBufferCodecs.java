@@ -0,0 +1,160 @@
+package org.seefin.nygaard.model.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Currency;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.GUID;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.locations.ZipCode;
+
+/**
+ * Tests of the ASCII and packed ByteBuffer encodings of identifiers and amounts
+ *
+ * @author phillipsr
+ */
+public class TestBufferCodecs {
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    private static <T> String
+    ascii(BufferCodec<T> codec, T value) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codec.writeAscii(value, buffer);
+        Assert.assertEquals(codec.asciiLength(value), buffer.position());
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
+
+    private static <T> T
+    fromAscii(BufferCodec<T> codec, String text) {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        T result = codec.readAscii(buffer, buffer.remaining());
+        Assert.assertFalse(buffer.hasRemaining());
+        return result;
+    }
+
+    private static <T> void
+    assertRoundTrip(BufferCodec<T> codec, T value) {
+        Assert.assertEquals(value, fromAscii(codec, ascii(codec, value)));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        codec.writePacked(value, buffer);
+        buffer.flip();
+        Assert.assertEquals(value, codec.readPacked(buffer));
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void
+    testIdentifiersMatchExternalForm() {
+        MSISDN msisdn = MSISDN.parse("+353863567279");
+        Assert.assertEquals(msisdn.externalForm(), ascii(BufferCodecs.MSISDN_CODEC, msisdn));
+        ISO7812 card = new ISO7812(5105105105105100L);
+        Assert.assertEquals(card.externalForm(), ascii(BufferCodecs.ISO7812_CODEC, card));
+        GUID guid = GUID.createUniqueId();
+        Assert.assertEquals(guid.externalForm(), ascii(BufferCodecs.GUID_CODEC, guid));
+        IBAN iban = IBAN.parse("IE64IRCE92050112345678");
+        Assert.assertEquals(iban.externalForm(), ascii(BufferCodecs.IBAN_CODEC, iban));
+        Assert.assertEquals("039189524", ascii(BufferCodecs.DUNS_CODEC, new DUNS(39189524)));
+        Assert.assertEquals("00501", ascii(BufferCodecs.ZIP_CODE_CODEC, new ZipCode(501)));
+    }
+
+    @Test
+    public void
+    testIdentifierRoundTrips() {
+        assertRoundTrip(BufferCodecs.MSISDN_CODEC, MSISDN.parse("+353863567279"));
+        assertRoundTrip(BufferCodecs.ISO7812_CODEC, new ISO7812(5105105105105100L));
+        assertRoundTrip(BufferCodecs.GUID_CODEC, GUID.createUniqueId());
+        assertRoundTrip(BufferCodecs.IBAN_CODEC, IBAN.parse("IE64IRCE92050112345678"));
+        assertRoundTrip(BufferCodecs.DUNS_CODEC, new DUNS(39189524));
+        // ZipCode does not define equality
+        Assert.assertEquals("02134", fromAscii(BufferCodecs.ZIP_CODE_CODEC, "02134").externalForm());
+        Assert.assertEquals(MSISDN.parse("+353863567279"), fromAscii(BufferCodecs.MSISDN_CODEC, "353863567279"));
+    }
+
+    @Test
+    public void
+    testAmountMatchesToString() {
+        long[] values = {0, 5, -5, 1050, -123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            MonetaryAmount amount = new MonetaryAmount(EUR, value);
+            Assert.assertEquals(amount.toString(), ascii(BufferCodecs.MONETARY_AMOUNT_CODEC, amount));
+            MonetaryAmount yen = new MonetaryAmount(JPY, value);
+            Assert.assertEquals(yen.toString(), ascii(BufferCodecs.MONETARY_AMOUNT_CODEC, yen));
+        }
+        Assert.assertEquals("EUR-92233720368547758.08",
+                ascii(BufferCodecs.MONETARY_AMOUNT_CODEC, new MonetaryAmount(EUR, Long.MIN_VALUE)));
+    }
+
+    @Test
+    public void
+    testAmountRoundTrips() {
+        assertRoundTrip(BufferCodecs.MONETARY_AMOUNT_CODEC, new MonetaryAmount(EUR, -123456789L));
+        assertRoundTrip(BufferCodecs.MONETARY_AMOUNT_CODEC, new MonetaryAmount(JPY, Long.MAX_VALUE));
+        assertRoundTrip(BufferCodecs.MONETARY_AMOUNT_CODEC, new MonetaryAmount(EUR, 0));
+    }
+
+    @Test
+    public void
+    testAmountParsingMatchesParse() {
+        String[] texts = {"EUR10", "EUR 230.50", "EUR-0.5", "EUR1.005", "EUR1.015", "EUR1.0051", "JPY100.5", "JPY101.5",
+                "EUR+7.25"};
+        for (String text : texts) {
+            Assert.assertEquals(text, MonetaryAmount.parse(text), fromAscii(BufferCodecs.MONETARY_AMOUNT_CODEC, text));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testUnknownCurrency() {
+        fromAscii(BufferCodecs.MONETARY_AMOUNT_CODEC, "ABC10.00");
+    }
+
+    @Test
+    public void
+    testInvalidAsciiIsSkipped() {
+        ByteBuffer buffer = ByteBuffer.wrap("3538X3567279EUR1".getBytes(StandardCharsets.US_ASCII));
+        try {
+            BufferCodecs.MSISDN_CODEC.readAscii(buffer, 12);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(12, buffer.position());
+        }
+        Assert.assertEquals(MonetaryAmount.parse("EUR1"), BufferCodecs.MONETARY_AMOUNT_CODEC.readAscii(buffer, 4));
+    }
+
+    @Test
+    public void
+    testOverflowWritesNothing() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        try {
+            BufferCodecs.IBAN_CODEC.writeAscii(IBAN.parse("IE64IRCE92050112345678"), buffer);
+            Assert.fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException e) {
+            Assert.assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void
+    testRegistry() {
+        Assert.assertSame(BufferCodecs.IBAN_CODEC, BufferCodecs.forType(IBAN.class));
+        Assert.assertSame(BufferCodecs.MONETARY_AMOUNT_CODEC, BufferCodecs.forType(MonetaryAmount.class));
+        Assert.assertFalse(BufferCodecs.isSupported(String.class));
+    }
+
+    @Test
+    public void
+    testPaddedExternalForms() {
+        Assert.assertEquals("000000042", new DUNS(42).externalForm());
+        Assert.assertEquals("835130485", new DUNS(835130485).externalForm());
+        Assert.assertEquals("02134", new ZipCode(2134).externalForm());
+        Assert.assertEquals("99950", new ZipCode(99950).externalForm());
+    }
+}
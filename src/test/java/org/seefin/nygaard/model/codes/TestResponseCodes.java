@@ -1,5 +1,12 @@
 package org.seefin.nygaard.model.codes;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -34,4 +41,90 @@ public class TestResponseCodes {
         Assert.assertEquals(999, code.getResponse());
     }
 
+    @Test
+    public void
+    testCodesAreShared() {
+        StatusCode code = StatusCode.createCode(2, 10, 24, 31);
+        Assert.assertSame(code, StatusCode.createCode(21024031));
+        Assert.assertSame(code, StatusCode.createCode(StatusCode.createLocation(2, 10, 24), ResponseCode.INVALID_REQUEST));
+        Assert.assertSame(code.toString(), StatusCode.createCode(21024031).toString());
+    }
+
+    @Test
+    public void
+    testParse() {
+        StatusCode code = StatusCode.parse("210-24-126");
+        Assert.assertEquals(21024126, code.intValue());
+        Assert.assertSame(code, StatusCode.parse(new StringBuilder("210-24-126")));
+        Assert.assertEquals("210-24-126", code.appendTo(new StringBuilder()).toString());
+        Assert.assertEquals(StatusCode.createCode(9, 99, 99, 0), StatusCode.parse("999-99-000"));
+    }
+
+    @Test
+    public void
+    testParseInvalid() {
+        String[] invalid = {"", "21024126", "210-24-12", "210+24-126", "2A0-24-126", "010-24-126", "200-24-126", "210-00-126"};
+        for (String text : invalid) {
+            try {
+                StatusCode.parse(text);
+                Assert.fail("Expected IllegalArgumentException for " + text);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void
+    testSerialForm()
+            throws IOException, ClassNotFoundException {
+        StatusCode code = StatusCode.createCode(3, 2, 1, 44);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(code);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Assert.assertSame(code, in.readObject());
+        }
+    }
+
+    @Test
+    public void
+    testResponseCodeLookup() {
+        for (ResponseCode code : ResponseCode.values()) {
+            Assert.assertSame(code, ResponseCode.valueOf(code.getCode()));
+            Assert.assertSame(code, ResponseCode.parse(Integer.toString(code.getCode())));
+        }
+        Assert.assertNull(ResponseCode.parse("998"));
+        Assert.assertNull(ResponseCode.parse("-5"));
+        Assert.assertNull(ResponseCode.parse("12345678901234"));
+        Assert.assertSame(ResponseCode.REQUEST_TIMEOUT, ResponseCode.parse(" 005 "));
+        Assert.assertSame(ResponseCode.INVALID_PIN, ResponseCode.parse(new StringBuilder("+21")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testUnknownResponseCode() {
+        ResponseCode.valueOf(1000);
+    }
+
+    @Test
+    public void
+    testParseResponseCodeBytes() {
+        byte[] reply = "RC=029;OK".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertSame(ResponseCode.INVALID_CHANNEL, ResponseCode.parse(reply, 3, 3));
+        Assert.assertSame(ResponseCode.SUCCESS, ResponseCode.parse(reply, 3, 1));
+        try {
+            ResponseCode.parse(reply, 3, 4);
+            Assert.fail("Expected NumberFormatException");
+        } catch (NumberFormatException e) {
+            Assert.assertTrue(e.getMessage().contains("[029;]"));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void
+    testParseNotNumeric() {
+        ResponseCode.parse(" ");
+    }
 }
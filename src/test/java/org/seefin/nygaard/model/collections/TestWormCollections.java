@@ -0,0 +1,177 @@
+package org.seefin.nygaard.model.collections;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for the write-once, read-many collections
+ *
+ * @author phillipsr
+ */
+public class TestWormCollections {
+
+    @Test
+    public void
+    testList() {
+        List<String> data = Arrays.asList("a", "b", null, "b");
+        WormList<String> list = new WormList<>(data);
+        Assert.assertEquals(4, list.size());
+        Assert.assertEquals("b", list.get(1));
+        Assert.assertTrue(list.contains(null));
+        Assert.assertEquals(1, list.indexOf("b"));
+        Assert.assertEquals(3, list.lastIndexOf("b"));
+        Assert.assertEquals(-1, list.indexOf("z"));
+        Assert.assertEquals(data.toString(), list.toString());
+        Assert.assertEquals(data.hashCode(), list.hashCode());
+        Assert.assertEquals(data, list.toList());
+        Assert.assertArrayEquals(data.toArray(), list.toArray());
+        Assert.assertArrayEquals(data.toArray(new String[0]), list.toArray(new String[0]));
+        Assert.assertEquals(new WormList<>(data), list);
+        Assert.assertFalse(list.equals(new WormList<>(Arrays.asList("a", "b"))));
+    }
+
+    @Test
+    public void
+    testSubListIsView() {
+        WormList<Integer> list = new WormList<>(Arrays.asList(1, 2, 3, 4, 5));
+        WormList<Integer> middle = list.subList(1, 4);
+        Assert.assertEquals(new WormList<>(Arrays.asList(2, 3, 4)), middle);
+        Assert.assertEquals(Arrays.asList(2, 3, 4).hashCode(), middle.hashCode());
+        Assert.assertEquals(Integer.valueOf(3), middle.subList(1, 2).get(0));
+        Assert.assertTrue(list.subList(2, 2).isEmpty());
+        Assert.assertArrayEquals(new Object[]{2, 3, 4}, middle.toArray());
+        try {
+            middle.get(3);
+            Assert.fail("Index beyond view should be refused");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void
+    testListIterators() {
+        WormList<String> list = new WormList<>(Arrays.asList("a", "b", "c"));
+        ListIterator<String> cursor = list.listIterator(3);
+        Assert.assertEquals("c", cursor.previous());
+        Assert.assertEquals(1, cursor.previousIndex());
+        Iterator<String> iterator = list.iterator();
+        Assert.assertEquals("a", iterator.next());
+        try {
+            iterator.remove();
+            Assert.fail("Iterator should not modify list");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testEmptyListRefused() {
+        new WormList<>(Collections.<String>emptyList());
+    }
+
+    @Test
+    public void
+    testSet() {
+        WormSet<String> set = new WormSet<>(Arrays.asList("c", "a", "b", "a", null));
+        Assert.assertEquals(4, set.size());
+        Assert.assertTrue(set.contains("a"));
+        Assert.assertTrue(set.contains(null));
+        Assert.assertFalse(set.contains("z"));
+        Assert.assertTrue(set.containsAll(Arrays.asList("a", "b")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", null)), set.toSet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", null)).hashCode(), set.hashCode());
+        Assert.assertEquals("[c, a, b, null]", set.toString());
+        Assert.assertEquals(new WormSet<>(Arrays.asList(null, "b", "c", "a")), set);
+    }
+
+    @Test
+    public void
+    testLargeSet() {
+        Integer[] values = new Integer[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 1024;
+        }
+        WormSet<Integer> set = new WormSet<>(Arrays.asList(values));
+        Assert.assertEquals(values.length, set.size());
+        for (Integer value : values) {
+            Assert.assertTrue(set.contains(value));
+            Assert.assertFalse(set.contains(value + 1));
+        }
+    }
+
+    @Test
+    public void
+    testMap() {
+        Map<String, Integer> data = new LinkedHashMap<>();
+        data.put("one", 1);
+        data.put("two", 2);
+        data.put(null, 0);
+        WormMap<String, Integer> map = new WormMap<>(data);
+        data.put("three", 3);
+
+        Assert.assertEquals(3, map.size());
+        Assert.assertEquals(Integer.valueOf(2), map.get("two"));
+        Assert.assertEquals(Integer.valueOf(0), map.get(null));
+        Assert.assertNull(map.get("three"));
+        Assert.assertTrue(map.containsValue(1));
+        Assert.assertFalse(map.containsValue(3));
+        Assert.assertSame(map.keySet(), map.keySet());
+        Assert.assertTrue(map.keySet().contains("one"));
+        Assert.assertEquals(new WormList<>(Arrays.asList(1, 2, 0)), map.values());
+        Assert.assertTrue(map.entrySet().contains(new AbstractMap.SimpleImmutableEntry<>("one", 1)));
+        Assert.assertFalse(map.entrySet().contains(new AbstractMap.SimpleImmutableEntry<>("one", 2)));
+        data.remove("three");
+        Assert.assertEquals(data, map.toMap());
+        Assert.assertEquals(data.hashCode(), map.hashCode());
+        Assert.assertEquals(data.toString(), map.toString());
+        Assert.assertEquals(new WormMap<>(data), map);
+    }
+
+    @Test
+    public void
+    testEmptyMapViews() {
+        WormMap<String, String> map = new WormMap<>(Collections.<String, String>emptyMap());
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertTrue(map.keySet().isEmpty());
+        Assert.assertTrue(map.values().isEmpty());
+        Assert.assertTrue(map.entrySet().isEmpty());
+        Assert.assertNull(map.get("key"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void
+    testSerializable()
+            throws Exception {
+        Map<String, Integer> data = new LinkedHashMap<>();
+        data.put("one", 1);
+        WormMap<String, Integer> map = new WormMap<>(data);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(map);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            WormMap<String, Integer> copy = (WormMap<String, Integer>) input.readObject();
+            Assert.assertEquals(map, copy);
+            Assert.assertEquals(Integer.valueOf(1), copy.get("one"));
+            Assert.assertTrue(copy.keySet().contains("one"));
+        }
+    }
+}
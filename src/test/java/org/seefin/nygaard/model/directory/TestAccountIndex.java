@@ -0,0 +1,202 @@
+package org.seefin.nygaard.model.directory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.seefin.nygaard.model.identifiers.AccountNumber;
+import org.seefin.nygaard.model.identifiers.BBAN;
+import org.seefin.nygaard.model.identifiers.EWalletAccountNumber;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.IBANScheme;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.locations.ISO3166;
+
+/**
+ * Tests of the off-heap account number index, in memory and memory-mapped
+ *
+ * @author phillipsr
+ */
+public class TestAccountIndex {
+    private static final ISO3166 IRELAND = ISO3166.valueOf("IE");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ISO7812
+    card(int account) {
+        // Visa test range, with a Luhn check digit appended
+        long number = 411111100000000L + account;
+        int sum = 0;
+        boolean doubled = true;
+        for (long remaining = number; remaining > 0; remaining /= 10) {
+            int digit = (int) (remaining % 10);
+            if (doubled == true) {
+                digit = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return new ISO7812(number * 10 + (10 - sum % 10) % 10);
+    }
+
+    private static EWalletAccountNumber
+    wallet(int subscriber) {
+        return new EWalletAccountNumber(MSISDN.valueOf(353863000000L + subscriber));
+    }
+
+    private static IBAN
+    iban(int account) {
+        return IBANScheme.create(IRELAND, "AIBK", "931152", String.format("%08d", account));
+    }
+
+    @Test
+    public void
+    testPutGetRemove() {
+        AccountIndex index = AccountIndex.allocate(100, 100, 100);
+        AccountNumber[] accounts = {card(1), wallet(1), iban(1)};
+        for (int i = 0; i < accounts.length; i++) {
+            Assert.assertEquals(AccountIndex.NOT_FOUND, index.get(accounts[i]));
+            Assert.assertEquals(AccountIndex.NOT_FOUND, index.put(accounts[i], i));
+        }
+        Assert.assertEquals(3, index.size());
+        for (int i = 0; i < accounts.length; i++) {
+            Assert.assertEquals(i, index.get(accounts[i]));
+        }
+        // equal values of different objects are found
+        Assert.assertEquals(0, index.get(card(1)));
+        Assert.assertEquals(2, index.get(IBAN.parse(iban(1).externalForm().toLowerCase())));
+        Assert.assertFalse(index.contains(card(2)));
+
+        Assert.assertEquals(1, index.put(wallet(1), 42));
+        Assert.assertEquals(42, index.get(wallet(1)));
+        Assert.assertEquals(42, index.remove(wallet(1)));
+        Assert.assertFalse(index.contains(wallet(1)));
+        Assert.assertEquals(AccountIndex.NOT_FOUND, index.remove(wallet(1)));
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(AccountIndex.NOT_FOUND, index.put(wallet(1), 7));
+        Assert.assertEquals(7, index.get(wallet(1)));
+    }
+
+    @Test
+    public void
+    testManyKeys() {
+        final int count = 20000;
+        AccountIndex index = AccountIndex.allocate(count, count, count);
+        for (int i = 0; i < count; i++) {
+            index.put(card(i), i);
+            index.put(wallet(i), i);
+            index.put(iban(i), i);
+        }
+        Assert.assertEquals(3 * count, index.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(i, index.get(card(i)));
+            Assert.assertEquals(i, index.get(wallet(i)));
+            Assert.assertEquals(i, index.get(iban(i)));
+        }
+    }
+
+    @Test
+    public void
+    testPersistence()
+            throws IOException {
+        File directory = folder.newFolder("index");
+        AccountIndex index = AccountIndex.open(directory, 1000, 1000, 1000);
+        for (int i = 0; i < 500; i++) {
+            index.put(card(i), i);
+            index.put(iban(i), i + 1000);
+        }
+        index.remove(card(0));
+        index.close();
+
+        AccountIndex reopened = AccountIndex.open(directory, 0, 0, 0);
+        try {
+            Assert.assertEquals(999, reopened.size());
+            Assert.assertFalse(reopened.contains(card(0)));
+            Assert.assertEquals(499, reopened.get(card(499)));
+            Assert.assertEquals(1499, reopened.get(iban(499)));
+            // capacity is that of the original index, not the (smaller) size requested
+            for (int i = 500; i < 700; i++) {
+                reopened.put(card(i), i);
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testNotAnIndexFile()
+            throws IOException {
+        File directory = folder.newFolder("corrupt");
+        java.nio.file.Files.write(new File(directory, AccountIndex.WALLETS_FILE).toPath(), new byte[8192]);
+        AccountIndex.open(directory, 10, 10, 10);
+    }
+
+    @Test
+    public void
+    testFull() {
+        AccountIndex index = AccountIndex.allocate(0, 0, 0);
+        try {
+            for (int i = 0; i < 100; i++) {
+                index.put(card(i), i);
+            }
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(index.size() >= 12);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testUnsupportedType() {
+        AccountIndex.allocate(10, 10, 10).put(new BBAN("AIBK93115212345678"), 1);
+    }
+
+    @Test
+    public void
+    testConcurrentReaders()
+            throws InterruptedException {
+        final int count = 50000;
+        final AccountIndex index = AccountIndex.allocate(count, 0, 0);
+        final ISO7812[] cards = new ISO7812[count];
+        for (int i = 0; i < count; i++) {
+            cards[i] = card(i);
+        }
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (written.get() < count) {
+                            int limit = written.get();
+                            for (int i = 0; i < limit; i++) {
+                                // everything published before the look-up began is visible
+                                if (index.get(cards[i]) != i) {
+                                    errors.incrementAndGet();
+                                }
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        for (int i = 0; i < count; i++) {
+            index.put(cards[i], i);
+            written.set(i + 1);
+        }
+        done.await();
+        Assert.assertEquals(0, errors.get());
+    }
+}
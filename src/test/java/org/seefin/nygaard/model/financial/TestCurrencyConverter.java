@@ -0,0 +1,160 @@
+package org.seefin.nygaard.model.financial;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Currency;
+
+public class TestCurrencyConverter {
+    private static final String RATES_RESOURCE = "org/seefin/nygaard/model/financial/ExchangeRates.properties";
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency JPY = Currency.getInstance("JPY");
+    private static final Currency KWD = Currency.getInstance("KWD");
+
+    private static CurrencyConverter
+    createConverter(RoundingMode rounding)
+            throws IOException {
+        return new CurrencyConverter(ExchangeRates.loadResource(RATES_RESOURCE), rounding);
+    }
+
+    @Test
+    public void
+    testLoadSnapshot()
+            throws IOException {
+        ExchangeRates rates = ExchangeRates.loadResource(RATES_RESOURCE);
+        Assert.assertEquals(EUR, rates.getBase());
+        Assert.assertEquals(5, rates.size());
+        Assert.assertTrue(rates.contains(840));
+        Assert.assertFalse(rates.contains(756));
+        Assert.assertEquals(new BigDecimal("1.25"), rates.getRate(978, 840));
+        Assert.assertEquals(new BigDecimal("0.8"), rates.getRate(840, 978));
+        Assert.assertEquals(new BigDecimal("128"), rates.getRate(840, 392));
+    }
+
+    @Test
+    public void
+    testConvertAmount()
+            throws IOException {
+        CurrencyConverter converter = createConverter(RoundingMode.HALF_EVEN);
+        Assert.assertEquals(MonetaryAmount.parse("USD12.50"), converter.convert(MonetaryAmount.parse("EUR10"), USD));
+        Assert.assertEquals(MonetaryAmount.parse("JPY1600"), converter.convert(MonetaryAmount.parse("EUR10"), JPY));
+        Assert.assertEquals(MonetaryAmount.parse("EUR10.00"), converter.convert(MonetaryAmount.parse("JPY1600"), EUR));
+        Assert.assertEquals(MonetaryAmount.parse("KWD3.350"), converter.convert(MonetaryAmount.parse("EUR10"), KWD));
+        Assert.assertEquals(MonetaryAmount.parse("EUR-10.00"), converter.convert(MonetaryAmount.parse("USD-12.50"), EUR));
+    }
+
+    @Test
+    public void
+    testRoundingModes()
+            throws IOException {
+        // EUR0.01 = JPY1.6
+        MonetaryAmount cent = MonetaryAmount.parse("EUR0.01");
+        Assert.assertEquals(MonetaryAmount.parse("JPY2"), createConverter(RoundingMode.HALF_EVEN).convert(cent, JPY));
+        Assert.assertEquals(MonetaryAmount.parse("JPY1"), createConverter(RoundingMode.DOWN).convert(cent, JPY));
+        Assert.assertEquals(MonetaryAmount.parse("JPY-1"), createConverter(RoundingMode.CEILING).convert(cent.negate(), JPY));
+        Assert.assertEquals(MonetaryAmount.parse("JPY-2"), createConverter(RoundingMode.FLOOR).convert(cent.negate(), JPY));
+    }
+
+    @Test
+    public void
+    testDivideRounding() {
+        Assert.assertEquals(2, ExchangeRates.divide(5, 2, RoundingMode.HALF_EVEN));
+        Assert.assertEquals(4, ExchangeRates.divide(7, 2, RoundingMode.HALF_EVEN));
+        Assert.assertEquals(3, ExchangeRates.divide(5, 2, RoundingMode.HALF_UP));
+        Assert.assertEquals(2, ExchangeRates.divide(5, 2, RoundingMode.HALF_DOWN));
+        Assert.assertEquals(-3, ExchangeRates.divide(-5, 2, RoundingMode.HALF_UP));
+        Assert.assertEquals(-2, ExchangeRates.divide(-5, 2, RoundingMode.HALF_EVEN));
+        Assert.assertEquals(3, ExchangeRates.divide(5, 2, RoundingMode.UP));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void
+    testRoundingUnnecessary() {
+        ExchangeRates.divide(5, 2, RoundingMode.UNNECESSARY);
+    }
+
+    @Test
+    public void
+    testLargeAmountConversion()
+            throws IOException {
+        CurrencyConverter converter = createConverter(RoundingMode.HALF_EVEN);
+        // beyond the range of the fixed point (long) multiplication
+        Assert.assertEquals(14400000000000000L, converter.convert(9000000000000000L, 978, 392));
+    }
+
+    @Test
+    public void
+    testBatchConversion()
+            throws IOException {
+        CurrencyConverter converter = createConverter(RoundingMode.HALF_EVEN);
+        long[] amounts = {1000, 2000, -50, 0};
+        long[] results = new long[amounts.length];
+        converter.convert(amounts, 978, 840, results);
+        Assert.assertEquals("[1250, 2500, -62, 0]", Arrays.toString(results));
+
+        int[] currencies = {978, 840, 392, 414};
+        converter.convert(new long[]{1000, 1250, 1600, 3350}, currencies, 978, results);
+        Assert.assertEquals("[1000, 1000, 1000, 1000]", Arrays.toString(results));
+        Assert.assertEquals(4000, converter.sum(new long[]{1000, 1250, 1600, 3350}, currencies, 978));
+    }
+
+    @Test
+    public void
+    testSumAmounts()
+            throws IOException {
+        CurrencyConverter converter = createConverter(RoundingMode.HALF_EVEN);
+        MonetaryAmount total = converter.sum(Arrays.asList(
+                MonetaryAmount.parse("EUR10"), MonetaryAmount.parse("USD12.50"), MonetaryAmount.parse("JPY1600")), EUR);
+        Assert.assertEquals(MonetaryAmount.parse("EUR30"), total);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void
+    testSumOverflow()
+            throws IOException {
+        createConverter(RoundingMode.HALF_EVEN).sum(new long[]{Long.MAX_VALUE, 1}, new int[]{978, 978}, 978);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void
+    testSumAmountsOverflow()
+            throws IOException {
+        createConverter(RoundingMode.HALF_EVEN).sum(Arrays.asList(
+                new MonetaryAmount(EUR, Long.MAX_VALUE), MonetaryAmount.parse("EUR0.01")), EUR);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testRateTooLarge() {
+        // unscaled rate of EUR to JPY will not fit in a long
+        ExchangeRates.create(EUR, java.util.Collections.singletonMap(JPY, new BigDecimal("1E12")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testRateTooLargeForMinorUnits() {
+        // JPY to KWD rate fits, but not once scaled by the three extra minor digits of KWD
+        ExchangeRates.create(JPY, java.util.Collections.singletonMap(KWD, new BigDecimal("1E7")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testUnknownCurrency()
+            throws IOException {
+        createConverter(RoundingMode.HALF_EVEN).convert(MonetaryAmount.parse("CHF10"), EUR);
+    }
+
+    @Test
+    public void
+    testReplaceSnapshot()
+            throws IOException {
+        CurrencyConverter converter = createConverter(RoundingMode.HALF_EVEN);
+        converter.setRates(ExchangeRates.create(EUR, java.util.Collections.singletonMap(USD, new BigDecimal("2"))));
+        Assert.assertEquals(MonetaryAmount.parse("USD20"), converter.convert(MonetaryAmount.parse("EUR10"), USD));
+    }
+}
@@ -0,0 +1,49 @@
+package org.seefin.nygaard.model.financial;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.Map;
+
+public class TestISO4712Codes {
+    @Test
+    public void
+    testNumericLookup() {
+        Assert.assertEquals(Currency.getInstance("EUR"), ISO4712Codes.getCurrency(978));
+        Assert.assertEquals(Currency.getInstance("USD"), ISO4712Codes.getCurrency(840));
+        Assert.assertEquals(Currency.getInstance("ALL"), ISO4712Codes.getCurrency(8));
+        Assert.assertNull(ISO4712Codes.getCurrency(1));
+        Assert.assertNull(ISO4712Codes.getCurrency(-1));
+        Assert.assertNull(ISO4712Codes.getCurrency(1000));
+    }
+
+    @Test
+    public void
+    testAlphaLookup() {
+        Assert.assertEquals(978, ISO4712Codes.getNumericCode("EUR"));
+        Assert.assertEquals(392, ISO4712Codes.getNumericCode(Currency.getInstance("JPY")));
+        Assert.assertEquals(-1, ISO4712Codes.getNumericCode("ABC"));
+        Assert.assertEquals(-1, ISO4712Codes.getNumericCode("eur"));
+        Assert.assertEquals(-1, ISO4712Codes.getNumericCode("EURO"));
+        Assert.assertEquals(-1, ISO4712Codes.getNumericCode((String) null));
+    }
+
+    @Test
+    public void
+    testLookupsAgreeWithTable() {
+        for (Map.Entry<String, Integer> entry : ISO4712Codes.Iso4217map.entrySet()) {
+            Assert.assertEquals(entry.getKey(), entry.getValue().intValue(), ISO4712Codes.getNumericCode(entry.getKey()));
+            Currency currency = ISO4712Codes.getCurrency(entry.getValue());
+            if (currency != null) {
+                Assert.assertEquals(entry.getKey(), currency.getCurrencyCode());
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void
+    testTableImmutable() {
+        ISO4712Codes.Iso4217map.put("XYZ", 1);
+    }
+}
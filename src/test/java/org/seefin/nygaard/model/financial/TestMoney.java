@@ -3,7 +3,13 @@ package org.seefin.nygaard.model.financial;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.math.BigDecimal;
+import java.util.Currency;
 
 public class TestMoney {
     @Test
@@ -100,4 +106,35 @@ public class TestMoney {
         System.out.println(value);
         Assert.assertEquals(MonetaryAmount.parse("EUR3"), value);
     }
+
+    private static Object
+    serialize(Object value, int[] size)
+            throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(value);
+        output.close();
+        size[0] = bytes.size();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void
+    testSerialForm()
+            throws IOException, ClassNotFoundException {
+        int[] size = new int[1];
+        MonetaryAmount amount = MonetaryAmount.parse("EUR-1234.56");
+        MonetaryAmount copy = (MonetaryAmount) serialize(amount, size);
+        Assert.assertEquals(amount, copy);
+        Assert.assertSame(amount.getCurrency(), copy.getCurrency());
+        // the Currency object graph is not written
+        Assert.assertTrue("serialized size=" + size[0], size[0] < 100);
+
+        // currencies without a numeric code are written by their alpha code
+        Currency unknown = Currency.getInstance("XSU");
+        if (ISO4712Codes.getNumericCode(unknown) < 0) {
+            MonetaryAmount other = new MonetaryAmount(unknown, 100L);
+            Assert.assertEquals(other, serialize(other, size));
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package org.seefin.nygaard.model.identifiers;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.locations.ISO3166;
+
+/**
+ * Tests of the equality, hashing and ordering of account numbers, which are
+ *
+ * @author phillipsr
+ */
+public class TestAccountNumbers {
+    private static final ISO3166 IRELAND = ISO3166.valueOf("IE");
+
+    @Test
+    public void
+    testSameMaskDifferentValue() {
+        BBAN first = new BBAN("AIBK93115212345678");
+        BBAN second = new BBAN("AIBK93115299999978");
+        Assert.assertEquals(first.toString(), second.toString());
+        Assert.assertNotEquals(first, second);
+
+        EWalletAccountNumber wallet1 = new EWalletAccountNumber(MSISDN.parse("+353863000012"));
+        EWalletAccountNumber wallet2 = new EWalletAccountNumber(MSISDN.parse("+353863100012"));
+        Assert.assertEquals(wallet1.toString(), wallet2.toString());
+        Assert.assertNotEquals(wallet1, wallet2);
+        Assert.assertTrue(wallet1.compareTo(wallet2) < 0);
+    }
+
+    @Test
+    public void
+    testEqualValues() {
+        Assert.assertEquals(new BBAN("AIBK 9311 5212 3456 78"), new BBAN("AIBK93115212345678"));
+        Assert.assertEquals(new BBAN("AIBK93115212345678").hashCode(), new BBAN("AIBK 931152 12345678").hashCode());
+        Assert.assertEquals(new EWalletAccountNumber(MSISDN.parse("+353863000012")),
+                new EWalletAccountNumber(MSISDN.valueOf(353863000012L)));
+        IBAN iban = IBAN.parse("IE29 AIBK 9311 5212 3456 78");
+        Assert.assertEquals(iban, IBAN.parse("IE29AIBK93115212345678"));
+        Assert.assertEquals(iban.externalForm().hashCode(), iban.hashCode());
+        Assert.assertEquals(NL_BBAN.create("0300065264"), NL_BBAN.create("0300 0652 64"));
+        // same value, different kinds of account number
+        Assert.assertNotEquals(new BBAN("0300065264"), NL_BBAN.create("0300065264"));
+    }
+
+    @Test
+    public void
+    testDistinctInCollections() {
+        final int count = 1000;
+        Set<AccountNumber> accounts = new HashSet<>();
+        List<IBAN> ibans = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            IBAN iban = IBANScheme.create(IRELAND, "AIBK", "931152", String.format("%08d", i));
+            ibans.add(iban);
+            accounts.add(iban);
+            accounts.add(new EWalletAccountNumber(MSISDN.valueOf(353863000000L + i)));
+        }
+        Assert.assertEquals(2 * count, accounts.size());
+
+        Collections.shuffle(ibans);
+        Collections.sort(ibans);
+        for (int i = 1; i < count; i++) {
+            Assert.assertTrue(ibans.get(i - 1).externalForm().compareTo(ibans.get(i).externalForm()) < 0);
+        }
+    }
+
+    @Test
+    public void
+    testOrderingAcrossKinds() {
+        AccountNumber card = new ISO7812(5105105105105100L);
+        AccountNumber bban = new BBAN("AIBK93115212345678");
+        Assert.assertEquals(-bban.compareTo(card), card.compareTo(bban));
+        Assert.assertTrue(card.compareTo(bban) != 0);
+        Assert.assertEquals(0, card.compareTo(new ISO7812(5105105105105100L)));
+    }
+
+    @Test
+    public void
+    testMaskedForms() {
+        Assert.assertEquals("IE29A***************78", IBAN.parse("IE29 AIBK 9311 5212 3456 78").toString());
+        Assert.assertEquals("AI**************78", new BBAN("AIBK93115212345678").toString());
+        Assert.assertEquals("03******64", NL_BBAN.create("0300065264").toString());
+        Assert.assertEquals("A***1", new BBAN("AB1").toString());
+        Assert.assertEquals("A***", new BBAN("AB").toString());
+        Assert.assertEquals("A***4", new BBAN("AB34").toString());
+        // digits of the MSISDN are reversed before masking
+        Assert.assertEquals("2100******53", new EWalletAccountNumber(MSISDN.parse("+353863000012")).toString());
+        Assert.assertEquals("510510******5100", new ISO7812(5105105105105100L).toString());
+    }
+
+    @Test
+    public void
+    testAppendMasked()
+            throws IOException {
+        IBAN iban = IBAN.parse("IE29 AIBK 9311 5212 3456 78");
+        StringBuilder log = new StringBuilder("account=");
+        Assert.assertSame(log, iban.appendMasked(log));
+        Assert.assertEquals("account=" + iban, log.toString());
+
+        StringWriter writer = new StringWriter();
+        new ISO7812(5105105105105100L).appendMasked(writer);
+        Assert.assertEquals("510510******5100", writer.toString());
+
+        CharSequence masked = iban.maskedForm();
+        Assert.assertEquals(iban.toString(), masked.toString());
+        Assert.assertSame(masked, new BBAN("AIBK93115212345678").maskedForm());
+        Assert.assertEquals("AI**************78", masked.toString());
+        Assert.assertEquals(iban.toString().length(), MaskPolicy.IBAN.getMaskedLength(iban.length()));
+    }
+}
@@ -3,6 +3,13 @@ package org.seefin.nygaard.model.identifiers;
 import org.junit.Test;
 import org.seefin.nygaard.model.locations.ISO3166;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -185,4 +192,47 @@ public class TestIBANSchemes {
         }
     }
 
+    @Test
+    public void testSerialForm() throws IOException, ClassNotFoundException {
+        IBAN iban = IBAN.parse("IE86 BOFI 9014 9012 3456 78");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(iban);
+        output.close();
+        IBAN copy = (IBAN) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertThat(copy.externalForm(), is(iban.externalForm()));
+        assertThat(copy.getBankCode(), is("BOFI"));
+        assertThat(copy.getCountryCode(), is(COUNTRY_IE));
+        // neither the scheme nor its rules are written
+        assertThat("serialized size=" + bytes.size(), bytes.size() < 100, is(true));
+    }
+
+    @Test(expected = InvalidObjectException.class)
+    public void testCraftedSerialForm() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(IBAN.parse("IE86 BOFI 9014 9012 3456 78"));
+        output.close();
+        // change the last digit of the account number, so that the checksum fails
+        byte[] stream = bytes.toByteArray();
+        String text = new String(stream, StandardCharsets.ISO_8859_1);
+        stream[text.indexOf("IE86BOFI90149012345678") + 21] = '9';
+        new ObjectInputStream(new ByteArrayInputStream(stream)).readObject();
+    }
+
+    @Test
+    public void testCompactForm() {
+        IBAN first = IBAN.parse("IE86 BOFI 9014 9012 3456 78");
+        IBAN second = IBAN.parse("IE29 AIBK 9311 5212 3456 78");
+        assertThat(first.length(), is(22));
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < first.length(); i++) {
+            code.append((char) first.byteAt(i));
+        }
+        assertThat(code.toString(), is(first.externalForm()));
+        // the country code is shared through the scheme registry, not held per instance
+        assertThat(first.getCountryCode() == second.getCountryCode(), is(true));
+        assertThat(second.getBankCode(), is("AIBK"));
+    }
+
 }
@@ -8,8 +8,12 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -245,4 +249,37 @@ public class TestMSISDNSchemes {
         Assert.assertNull(number1);
     }
 
+    private static Object
+    serialize(Object value, int[] size)
+            throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(value);
+        output.close();
+        size[0] = bytes.size();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void
+    testSerialForm()
+            throws IOException, ClassNotFoundException {
+        int[] size = new int[1];
+        MSISDN number = MSISDN.parse("+353863578380");
+        MSISDN copy = (MSISDN) serialize(number, size);
+        Assert.assertEquals(number, copy);
+        Assert.assertEquals(number.getNDC(), copy.getNDC());
+        Assert.assertEquals(number.getSN(), copy.getSN());
+        Assert.assertTrue("serialized size=" + size[0], size[0] < 100);
+    }
+
+    @Test
+    public void
+    testValueOfMatchesParse() {
+        for (String number : testNumbersEG) {
+            MSISDN parsed = MSISDN.parse(number);
+            Assert.assertEquals(parsed, MSISDN.valueOf(parsed.longValue()));
+            Assert.assertEquals(parsed.getNDC(), MSISDN.valueOf(parsed.longValue()).getNDC());
+        }
+    }
 }
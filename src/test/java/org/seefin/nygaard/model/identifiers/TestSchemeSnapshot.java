@@ -0,0 +1,186 @@
+package org.seefin.nygaard.model.identifiers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of loading scheme definitions from a binary snapshot, in place of the scheme property files
+ *
+ * @author phillipsr
+ */
+public class TestSchemeSnapshot {
+    private static final String IBAN_SCHEMES = "org/seefin/nygaard/model/identifiers/IBANScheme.properties";
+    private static final String MSISDN_SCHEMES = "org/seefin/nygaard/model/identifiers/MSISDNScheme.properties";
+    private static final String ISO7812_SCHEMES = "org/seefin/nygaard/model/identifiers/ISO7812Scheme.properties";
+
+    @After
+    public void
+    reset() {
+        System.clearProperty(PropertyLoader.SNAPSHOT_PROPERTIES_KEY);
+        IBANScheme.resetScheme();
+        MSISDNScheme.resetScheme();
+        ISO7812Scheme.resetScheme();
+    }
+
+    private static File
+    writeSnapshot(Map<String, Map<String, String>> sections)
+            throws IOException {
+        File result = File.createTempFile("schemes", ".snapshot");
+        result.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(result)) {
+            SchemeSnapshot.write(sections, output);
+        }
+        return result;
+    }
+
+    @Test
+    public void
+    testSectionsRoundTrip()
+            throws IOException {
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+        sections.put(IBAN_SCHEMES, SchemeSnapshot.toSection(PropertyLoader.getProperties(IBAN_SCHEMES)));
+        sections.put(MSISDN_SCHEMES, SchemeSnapshot.toSection(PropertyLoader.getProperties(MSISDN_SCHEMES)));
+        SchemeSnapshot snapshot = SchemeSnapshot.open(writeSnapshot(sections));
+
+        Assert.assertEquals(sections.get(IBAN_SCHEMES), snapshot.getSection(IBAN_SCHEMES));
+        Assert.assertEquals(sections.get(MSISDN_SCHEMES), snapshot.getSection(MSISDN_SCHEMES));
+        Assert.assertNull(snapshot.getSection(ISO7812_SCHEMES));
+    }
+
+    @Test
+    public void
+    testSchemesLoadedFromSnapshot()
+            throws IOException {
+        // a snapshot in which Ireland's IBAN has a different format, and that has no card schemes
+        Map<String, String> ibanSchemes = SchemeSnapshot.toSection(PropertyLoader.getProperties(IBAN_SCHEMES));
+        ibanSchemes.put("IE", "BANK=c4;BRANCH=n6;ACC=n7");
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+        sections.put(IBAN_SCHEMES, ibanSchemes);
+        sections.put(MSISDN_SCHEMES, SchemeSnapshot.toSection(PropertyLoader.getProperties(MSISDN_SCHEMES)));
+        System.setProperty(PropertyLoader.SNAPSHOT_PROPERTIES_KEY, writeSnapshot(sections).getPath());
+
+        IBANScheme.loadScheme(IBAN_SCHEMES);
+        MSISDNScheme.loadScheme(MSISDN_SCHEMES);
+        ISO7812Scheme.loadScheme(ISO7812_SCHEMES);
+
+        Assert.assertEquals(21, IBANScheme.lookupScheme('I', 'E').getLength());
+        Assert.assertEquals("+353863567279", MSISDN.parse("+353863567279").externalForm());
+        // not in the snapshot, so loaded from the properties file
+        Assert.assertEquals(Long.valueOf(5105105105105100L), ISO7812.parse("5105105105105100").longValue());
+    }
+
+    @Test
+    public void
+    testSchemesMaterializedOnce() {
+        IBANScheme scheme = IBANScheme.lookupScheme('D', 'E');
+        Assert.assertSame(scheme, IBANScheme.lookupScheme('d', 'e'));
+        Assert.assertSame(MSISDNScheme.getSchemeForCC(353, 12), MSISDNScheme.getSchemeForCC(353, 12));
+        Assert.assertSame(ISO7812Scheme.getScheme(new BIN(5105105)), ISO7812Scheme.getScheme(new BIN(5105100)));
+    }
+
+    @Test
+    public void
+    testCompiledSnapshot()
+            throws Exception {
+        // the directory from which the scheme files are loaded
+        File sources = new File(Thread.currentThread().getContextClassLoader().getResource(IBAN_SCHEMES).toURI());
+        for (int depth = IBAN_SCHEMES.split("/").length; depth > 0; depth--) {
+            sources = sources.getParentFile();
+        }
+        File file = File.createTempFile("schemes", ".snapshot");
+        file.deleteOnExit();
+        SchemeSnapshotCompiler.compile(file, sources, Arrays.asList(IBAN_SCHEMES, MSISDN_SCHEMES, ISO7812_SCHEMES));
+
+        SchemeSnapshot snapshot = SchemeSnapshot.open(file);
+        for (String schemes : Arrays.asList(IBAN_SCHEMES, MSISDN_SCHEMES, ISO7812_SCHEMES)) {
+            Assert.assertEquals(SchemeSnapshot.toSection(PropertyLoader.getProperties(schemes)), snapshot.getSection(schemes));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testCompilerRejectsDuplicates()
+            throws IOException {
+        SchemeSnapshotCompiler.compile(new File("unused.snapshot"), new File("."), Arrays.asList("a", "a"));
+    }
+
+    @Test
+    public void
+    testUnusableSnapshotFallsBackToPropertyFiles()
+            throws IOException {
+        Map<String, String> ibanSchemes = SchemeSnapshot.toSection(PropertyLoader.getProperties(IBAN_SCHEMES));
+        ibanSchemes.put("IE", "BANK=c4;BRANCH=n6;ACC=n7");
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+        sections.put(IBAN_SCHEMES, ibanSchemes);
+        File file = writeSnapshot(sections);
+        try (RandomAccessFile corrupt = new RandomAccessFile(file, "rw")) {
+            corrupt.seek(file.length() - 1);
+            corrupt.write('X');
+        }
+        System.setProperty(PropertyLoader.SNAPSHOT_PROPERTIES_KEY, file.getPath());
+        IBANScheme.loadScheme(IBAN_SCHEMES);
+        Assert.assertEquals(22, IBANScheme.lookupScheme('I', 'E').getLength());
+
+        System.setProperty(PropertyLoader.SNAPSHOT_PROPERTIES_KEY, file.getPath() + ".missing");
+        IBANScheme.loadScheme(IBAN_SCHEMES);
+        Assert.assertEquals(22, IBANScheme.lookupScheme('I', 'E').getLength());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void
+    testCorruptSnapshot()
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+        sections.put(IBAN_SCHEMES, SchemeSnapshot.toSection(PropertyLoader.getProperties(IBAN_SCHEMES)));
+        SchemeSnapshot.write(sections, bytes);
+        byte[] content = bytes.toByteArray();
+        content[content.length / 2] ^= 1;
+        File file = File.createTempFile("schemes", ".snapshot");
+        file.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+        SchemeSnapshot.open(file);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void
+    testNotASnapshot()
+            throws IOException {
+        File file = File.createTempFile("schemes", ".properties");
+        file.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write("IE=BANK=c4;BRANCH=n6;ACC=n8\n".getBytes("UTF-8"));
+        }
+        SchemeSnapshot.open(file);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void
+    testUnsupportedVersion()
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SchemeSnapshot.write(new LinkedHashMap<String, Map<String, String>>(), bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.putInt(4, SchemeSnapshot.VERSION + 1);
+        File file = File.createTempFile("schemes", ".snapshot");
+        file.deleteOnExit();
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write(buffer.array());
+        }
+        SchemeSnapshot.open(file);
+    }
+}
@@ -0,0 +1,243 @@
+package org.seefin.nygaard.model.ledger;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.Account;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.DUNS;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.identifiers.PersonalName;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.parties.Individual;
+import org.seefin.nygaard.model.parties.Organization;
+
+
+/**
+ * Tests for the double-entry Ledger
+ *
+ * @author phillipsr
+ */
+public class TestLedger {
+    private static final Organization VENDOR = new Organization(new DUNS(39189524), "Cyprus MFS");
+    private static final PersonalName CUSTOMER_NAME = new PersonalName(new String[]{"Joe", "Blochs"});
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private static int customers = 10;
+
+    private static Account
+    wallet(Currency currency, long balance) {
+        Individual customer = new Individual(CUSTOMER_NAME, MSISDN.parse("+3538635672" + customers++));
+        Account result = new ElectronicWallet(customer, VENDOR, currency);
+        result.setBalance(new MonetaryAmount(currency, balance));
+        return result;
+    }
+
+    @Test
+    public void
+    testPostingIsBalanced() {
+        Ledger ledger = new Ledger();
+        Account payer = wallet(EUR, 10000);
+        Account payee = wallet(EUR, 0);
+        FinancialTransaction transaction = new FinancialTransaction(payer, new MonetaryAmount(EUR, 2500L), payee);
+
+        JournalEntry entry = ledger.post(transaction);
+
+        Assert.assertEquals(transaction.getIdentity(), entry.getTransactionId());
+        Assert.assertEquals(new MonetaryAmount(EUR, -2500L), entry.getDebit().getAmount());
+        Assert.assertEquals(new MonetaryAmount(EUR, 2500L), entry.getCredit().getAmount());
+        Assert.assertTrue(entry.getDebit().isDebit());
+        Assert.assertEquals(entry.getId(), entry.getCredit().getJournalId());
+        Assert.assertSame(entry, ledger.getJournalEntry(entry.getId()));
+        Assert.assertEquals(new MonetaryAmount(EUR, 7500L), payer.getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, 2500L), payee.getBalance());
+        Assert.assertEquals(1, ledger.getMetrics().getPosted());
+    }
+
+    @Test
+    public void
+    testPostingHistory() {
+        Ledger ledger = new Ledger(4);
+        Account payer = wallet(EUR, 10000);
+        Account payee = wallet(EUR, 0);
+
+        ledger.post(new FinancialTransaction(payer, new MonetaryAmount(EUR, 1000L), payee));
+        ledger.post(new FinancialTransaction(payer, new MonetaryAmount(EUR, 2000L), payee));
+        ledger.post(new FinancialTransaction(payee, new MonetaryAmount(EUR, 500L), payer));
+
+        List<Posting> postings = ledger.getPostings(payer.getIdentifier());
+        Assert.assertEquals(3, postings.size());
+        Assert.assertEquals(1, postings.get(0).getSequence());
+        Assert.assertEquals(3, postings.get(2).getSequence());
+        Assert.assertEquals(new MonetaryAmount(EUR, 7500L), postings.get(2).getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, -2500L), ledger.getPostedBalance(payer.getIdentifier()));
+        Assert.assertEquals(new MonetaryAmount(EUR, 2500L), ledger.getPostedBalance(payee.getIdentifier()));
+        Assert.assertEquals(3, ledger.size());
+    }
+
+    @Test
+    public void
+    testInsufficientFunds() {
+        Ledger ledger = new Ledger();
+        Account payer = wallet(EUR, 100);
+        Account payee = wallet(EUR, 0);
+        try {
+            ledger.post(new FinancialTransaction(payer, new MonetaryAmount(EUR, 101L), payee));
+            Assert.fail("Expected PostingException");
+        } catch (PostingException e) {
+            Assert.assertEquals(ResponseCode.INSUFFICENT_FUNDS, e.getResponseCode());
+        }
+        Assert.assertEquals(new MonetaryAmount(EUR, 100L), payer.getBalance());
+        Assert.assertTrue(payee.getBalance().isZero());
+        Assert.assertTrue(ledger.getPostings(payer.getIdentifier()).isEmpty());
+        Assert.assertEquals(1, ledger.getMetrics().getRejected());
+    }
+
+    @Test
+    public void
+    testCreditBeyondBalanceRange() {
+        Ledger ledger = new Ledger();
+        Account payer = wallet(EUR, 100);
+        Account payee = wallet(EUR, Long.MAX_VALUE - 5);
+        try {
+            ledger.post(new FinancialTransaction(payer, new MonetaryAmount(EUR, 10L), payee));
+            Assert.fail("Expected PostingException");
+        } catch (PostingException e) {
+            Assert.assertEquals(ResponseCode.ACCOUNT_LIMIT_REACHED, e.getResponseCode());
+        }
+        Assert.assertEquals(new MonetaryAmount(EUR, 100L), payer.getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, Long.MAX_VALUE - 5), payee.getBalance());
+
+        BatchResult result = ledger.postAll(Arrays.asList(
+                new FinancialTransaction(payer, new MonetaryAmount(EUR, 5L), payee),
+                new FinancialTransaction(payer, new MonetaryAmount(EUR, 1L), payee)));
+        Assert.assertEquals(1, result.getPostedCount());
+        Assert.assertEquals(ResponseCode.ACCOUNT_LIMIT_REACHED, result.getFailure(1).getResponseCode());
+        Assert.assertEquals(new MonetaryAmount(EUR, 95L), payer.getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, Long.MAX_VALUE), payee.getBalance());
+    }
+
+    @Test
+    public void
+    testCurrencyMismatch() {
+        Ledger ledger = new Ledger();
+        try {
+            ledger.post(new FinancialTransaction(wallet(EUR, 100), new MonetaryAmount(EUR, 10L), wallet(USD, 0)));
+            Assert.fail("Expected PostingException");
+        } catch (PostingException e) {
+            Assert.assertEquals(ResponseCode.INVALID_CURRENCY, e.getResponseCode());
+        }
+    }
+
+    @Test
+    public void
+    testNonPositiveAmount() {
+        Ledger ledger = new Ledger();
+        try {
+            ledger.post(new FinancialTransaction(wallet(EUR, 100), new MonetaryAmount(EUR, 0L), wallet(EUR, 0)));
+            Assert.fail("Expected PostingException");
+        } catch (PostingException e) {
+            Assert.assertEquals(ResponseCode.INVALID_AMOUNT, e.getResponseCode());
+        }
+    }
+
+    @Test
+    public void
+    testPostBatch() {
+        Ledger ledger = new Ledger();
+        Account first = wallet(EUR, 1000);
+        Account second = wallet(EUR, 0);
+        Account third = wallet(EUR, 0);
+
+        BatchResult result = ledger.postAll(Arrays.asList(
+                new FinancialTransaction(first, new MonetaryAmount(EUR, 600L), second),
+                new FinancialTransaction(first, new MonetaryAmount(EUR, 600L), third),
+                new FinancialTransaction(second, new MonetaryAmount(EUR, 100L), third),
+                new FinancialTransaction(second, new MonetaryAmount(EUR, 10L), wallet(USD, 0)),
+                new FinancialTransaction(third, new MonetaryAmount(EUR, 50L), first)));
+
+        Assert.assertEquals(5, result.size());
+        Assert.assertEquals(3, result.getPostedCount());
+        Assert.assertEquals(ResponseCode.INSUFFICENT_FUNDS, result.getFailure(1).getResponseCode());
+        Assert.assertEquals(ResponseCode.INVALID_CURRENCY, result.getFailure(3).getResponseCode());
+        Assert.assertEquals(new MonetaryAmount(EUR, 450L), first.getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, 500L), second.getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, 50L), third.getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, 400L), result.getEntry(0).getDebit().getBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, 450L), result.getEntry(4).getCredit().getBalance());
+        Assert.assertEquals(2, ledger.getPostings(first.getIdentifier()).size());
+        Assert.assertEquals(3, ledger.size());
+        Assert.assertEquals(1, ledger.getMetrics().getBatches());
+        Assert.assertEquals(2, ledger.getMetrics().getRejected());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testInvalidConcurrency() {
+        new Ledger(0);
+    }
+
+    @Test
+    public void
+    testConcurrentTransfersConserveFunds()
+            throws InterruptedException {
+        final Ledger ledger = new Ledger(8);
+        final Account[] accounts = new Account[16];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = wallet(EUR, 1000);
+        }
+        final int threads = 8;
+        final int transfers = 2000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < transfers; i++) {
+                            int from = (seed + i) % accounts.length;
+                            int to = (seed * 7 + i * 3 + 1) % accounts.length;
+                            if (from == to) {
+                                continue;
+                            }
+                            try {
+                                ledger.post(new FinancialTransaction(
+                                        accounts[from], new MonetaryAmount(EUR, (long) (i % 50 + 1)), accounts[to]));
+                            } catch (PostingException e) {
+                                // insufficient funds is expected under contention
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        long total = 0;
+        for (Account account : accounts) {
+            long balance = account.getBalance().longValue();
+            Assert.assertTrue(balance >= 0);
+            total += balance;
+            MonetaryAmount posted = ledger.getPostedBalance(account.getIdentifier());
+            long expected = 1000 + (posted == null ? 0 : posted.longValue());
+            Assert.assertEquals(expected, balance);
+        }
+        Assert.assertEquals(1000L * accounts.length, total);
+        Assert.assertEquals(ledger.getMetrics().getPosted(), ledger.size());
+    }
+}
@@ -0,0 +1,146 @@
+package org.seefin.nygaard.model.ledger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.financial.Account;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.requests.TransferRequest;
+import org.seefin.nygaard.model.requests.TransferResponse;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import static org.seefin.nygaard.model.Fixtures.CHANNEL;
+import static org.seefin.nygaard.model.Fixtures.EUR;
+import static org.seefin.nygaard.model.Fixtures.PAYEE;
+import static org.seefin.nygaard.model.Fixtures.PAYER;
+import static org.seefin.nygaard.model.Fixtures.VENDOR;
+
+
+/**
+ * Tests for the group-commit TransferBatcher
+ *
+ * @author phillipsr
+ */
+public class TestTransferBatcher {
+    @Test
+    public void
+    testBatchedTransfers()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Account payer = new ElectronicWallet(PAYER, VENDOR, EUR);
+        Account payee = new ElectronicWallet(PAYEE, VENDOR, EUR);
+        payer.setBalance(new MonetaryAmount(EUR, 1000L));
+        Ledger ledger = new Ledger();
+        TransferBatcher batcher = new TransferBatcher(ledger, 8, 50, TimeUnit.MILLISECONDS, 64);
+        batcher.start();
+
+        List<ListenableFuture<TransferResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            FinancialTransaction transaction = new FinancialTransaction(payer, new MonetaryAmount(EUR, 100L), payee);
+            responses.add(batcher.submit(new TransferRequest(CHANNEL, transaction, "transfer " + i)));
+        }
+        int succeeded = 0;
+        for (ListenableFuture<TransferResponse> response : responses) {
+            TransferResponse result = response.get(5, TimeUnit.SECONDS);
+            if (result.getSuccess() == true) {
+                succeeded++;
+                Assert.assertNotNull(result.getAuthorizationCode());
+            } else {
+                Assert.assertTrue(result.getText().startsWith("INSUFFICENT_FUNDS"));
+            }
+        }
+        batcher.close();
+
+        Assert.assertEquals(10, succeeded);
+        Assert.assertEquals("transfer 0", responses.get(0).get().getText());
+        Assert.assertEquals(new MonetaryAmount(EUR, 900L), responses.get(0).get().getBalance());
+        Assert.assertTrue(payer.getBalance().isZero());
+        Assert.assertEquals(new MonetaryAmount(EUR, 1000L), payee.getBalance());
+        Assert.assertTrue(ledger.getMetrics().getBatches() < 12);
+    }
+
+    @Test
+    public void
+    testCloseDrainsQueue()
+            throws ExecutionException, InterruptedException {
+        Account payer = new ElectronicWallet(PAYER, VENDOR, EUR);
+        Account payee = new ElectronicWallet(PAYEE, VENDOR, EUR);
+        payer.setBalance(new MonetaryAmount(EUR, 1000L));
+        TransferBatcher batcher = new TransferBatcher(new Ledger(), 4, 1, TimeUnit.SECONDS, 16);
+        ListenableFuture<TransferResponse> response = batcher.submit(new TransferRequest(CHANNEL,
+                new FinancialTransaction(payer, new MonetaryAmount(EUR, 100L), payee), "never started"));
+
+        batcher.close();
+
+        Assert.assertTrue(response.isDone());
+        Assert.assertTrue(response.get().getSuccess());
+    }
+
+    @Test
+    public void
+    testSubmitRacingClose()
+            throws Exception {
+        final Account payer = new ElectronicWallet(PAYER, VENDOR, EUR);
+        final Account payee = new ElectronicWallet(PAYEE, VENDOR, EUR);
+        payer.setBalance(new MonetaryAmount(EUR, 1000000L));
+        for (int round = 0; round < 20; round++) {
+            final TransferBatcher batcher = new TransferBatcher(new Ledger(), 4, 1, TimeUnit.MILLISECONDS, 1024);
+            batcher.start();
+            final List<ListenableFuture<TransferResponse>> accepted = new CopyOnWriteArrayList<>();
+            final CountDownLatch submitting = new CountDownLatch(4);
+            List<Thread> submitters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread submitter = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        submitting.countDown();
+                        try {
+                            while (true) {
+                                accepted.add(batcher.submit(new TransferRequest(CHANNEL,
+                                        new FinancialTransaction(payer, new MonetaryAmount(EUR, 1L), payee), "race")));
+                            }
+                        } catch (RejectedExecutionException e) {
+                            // closed, or at capacity
+                        }
+                    }
+                });
+                submitter.start();
+                submitters.add(submitter);
+            }
+            submitting.await();
+            batcher.close();
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+            for (ListenableFuture<TransferResponse> response : accepted) {
+                Assert.assertTrue("accepted transfer completed", response.isDone());
+            }
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void
+    testSubmitAfterClose() {
+        TransferBatcher batcher = new TransferBatcher(new Ledger(), 4, 1, TimeUnit.MILLISECONDS, 16);
+        batcher.close();
+        batcher.submit(new TransferRequest(CHANNEL, new FinancialTransaction(
+                new ElectronicWallet(PAYER, VENDOR, EUR), new MonetaryAmount(EUR, 1L),
+                new ElectronicWallet(PAYEE, VENDOR, EUR)), "closed"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testInvalidCapacity() {
+        new TransferBatcher(new Ledger(), 16, 1, TimeUnit.MILLISECONDS, 8);
+    }
+}
@@ -0,0 +1,197 @@
+package org.seefin.nygaard.model.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.identifiers.ISO7812;
+import org.seefin.nygaard.model.identifiers.MSISDN;
+import org.seefin.nygaard.model.identifiers.NL_BBAN;
+
+/**
+ * Tests of the optional parsing instrumentation, and of the counters and histograms on
+ * which it is built
+ *
+ * @author phillipsr
+ */
+public class TestParseMetrics {
+    @Before
+    public void
+    enable() {
+        ParseMetrics.resetAll();
+        ParseMetrics.setEnabled(true);
+    }
+
+    @After
+    public void
+    disable() {
+        ParseMetrics.setEnabled(false);
+        ParseMetrics.resetAll();
+    }
+
+    private static void
+    parseIBAN(String value) {
+        try {
+            IBAN.parse(value);
+        } catch (RuntimeException e) {
+            // counted
+        }
+    }
+
+    @Test
+    public void
+    testUnknownCountriesShareOneLabel() {
+        parseIBAN("ZZ29 AIBK 9311 5212 3456 78");
+        parseIBAN("QX29 AIBK 9311 5212 3456 78");
+        parseIBAN("\u00c9\u00c929 AIBK 9311 5212 3456 78");
+        parseIBAN("\u0131e29 AIBK 9311 5212 3456 78");
+
+        ParseMetrics ibans = ParseMetrics.forType("IBAN");
+        Assert.assertEquals(4, ibans.getStatistics(ParseMetrics.UNKNOWN).getFailures());
+        Assert.assertNull(ibans.getStatistics("ZZ"));
+        Assert.assertNull(ibans.getStatistics("QX"));
+        Assert.assertNull(ibans.getStatistics("IE"));
+    }
+
+    @Test
+    public void
+    testIdentifierParsingIsCounted() {
+        parseIBAN("IE29 AIBK 9311 5212 3456 78");
+        parseIBAN("IE29 AIBK 9311 5212 3456 79");
+        parseIBAN("ie00");
+        parseIBAN("1234567");
+        MSISDN.parse("+353863567279");
+        ISO7812.parse("5105105105105100");
+        NL_BBAN.create("0300065264");
+
+        ParseMetrics ibans = ParseMetrics.forType("IBAN");
+        ParseStatistics ireland = ibans.getStatistics("IE");
+        Assert.assertEquals(1, ireland.getSuccesses());
+        Assert.assertEquals(2, ireland.getFailures());
+        long reasons = 0;
+        for (long count : ireland.getFailureReasons().values()) {
+            reasons += count;
+        }
+        Assert.assertEquals(2, reasons);
+        Assert.assertEquals(1, ibans.getStatistics(ParseMetrics.UNKNOWN).getFailures());
+        Assert.assertTrue(ireland.getMaxNanos() > 0);
+        Assert.assertTrue(ireland.getP99Nanos() <= ireland.getMaxNanos());
+
+        Assert.assertEquals(1, ParseMetrics.forType("MSISDN").getStatistics("IE").getSuccesses());
+        Assert.assertEquals(1, ParseMetrics.forType("ISO7812").getStatistics("MasterCard").getSuccesses());
+        Assert.assertEquals(1, ParseMetrics.forType("NL_BBAN").getStatistics("NL").getSuccesses());
+    }
+
+    @Test
+    public void
+    testDisabledRecordsNothing() {
+        ParseMetrics.setEnabled(false);
+        ParseMetrics metrics = ParseMetrics.forType("test-disabled");
+        long start = metrics.start();
+        Assert.assertEquals(ParseMetrics.NOT_RECORDING, start);
+        Assert.assertFalse(ParseMetrics.isRecording(start));
+        metrics.success(start, "XX");
+        metrics.failure(start, "XX", new IllegalArgumentException());
+        Assert.assertNull(metrics.getStatistics("XX"));
+    }
+
+    @Test
+    public void
+    testFailureReasons() {
+        ParseMetrics metrics = ParseMetrics.forType("test-reasons");
+        metrics.failure(metrics.start(), "XX", new IllegalArgumentException());
+        metrics.failure(metrics.start(), "XX", new IllegalArgumentException());
+        metrics.failure(metrics.start(), "XX", new NumberFormatException());
+        metrics.success(metrics.start(), "XX");
+        ParseStatistics statistics = metrics.getStatistics("XX");
+        Assert.assertEquals(3, statistics.getFailures());
+        Assert.assertEquals(Long.valueOf(2), statistics.getFailureReasons().get("IllegalArgumentException"));
+        Assert.assertEquals(Long.valueOf(1), statistics.getFailureReasons().get("NumberFormatException"));
+        Assert.assertEquals(4, statistics.getLatency().getCount());
+    }
+
+    @Test
+    public void
+    testRegistries()
+            throws Exception {
+        final List<ParseStatistics> registered = new ArrayList<>();
+        MetricsRegistry registry = new MetricsRegistry() {
+            @Override
+            public void register(ParseStatistics statistics) {
+                registered.add(statistics);
+            }
+        };
+        ParseMetrics metrics = ParseMetrics.forType("test-registry");
+        metrics.success(metrics.start(), "AA");
+        ParseMetrics.addRegistry(registry);
+        ParseMetrics.addRegistry(new JmxMetricsRegistry());
+        try {
+            Assert.assertTrue(registered.contains(metrics.getStatistics("AA")));
+            metrics.success(metrics.start(), "BB");
+            Assert.assertTrue(registered.contains(metrics.getStatistics("BB")));
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = JmxMetricsRegistry.nameOf(metrics.getStatistics("BB"));
+            Assert.assertEquals(1L, server.getAttribute(name, "Successes"));
+            Assert.assertEquals("BB", server.getAttribute(name, "Dimension"));
+        } finally {
+            ParseMetrics.removeRegistry(registry);
+        }
+    }
+
+    @Test
+    public void
+    testStripedCounter()
+            throws InterruptedException {
+        final StripedCounter counter = new StripedCounter();
+        final int threads = 8;
+        final int increments = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < increments; i++) {
+                        counter.increment();
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        Assert.assertEquals(threads * increments, counter.sum());
+        counter.add(-5);
+        Assert.assertEquals(threads * increments - 5, counter.sum());
+        counter.reset();
+        Assert.assertEquals(0, counter.sum());
+    }
+
+    @Test
+    public void
+    testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentileNanos(99));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(1000000);
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals((99 * 100 + 1000000) / 100, histogram.getMeanNanos());
+        // 100ns falls in the bucket [64, 128)
+        Assert.assertEquals(127, histogram.getPercentileNanos(50));
+        Assert.assertEquals(127, histogram.getPercentileNanos(99));
+        Assert.assertEquals(1000000, histogram.getPercentileNanos(100));
+        Assert.assertEquals(1000000, histogram.getMaxNanos());
+        histogram.record(-1);
+        Assert.assertEquals(0, histogram.getPercentileNanos(0));
+    }
+}
@@ -0,0 +1,307 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.bank.AccountDetails;
+import org.seefin.nygaard.model.bank.AccountStatus;
+import org.seefin.nygaard.model.bank.AccountType;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.IBAN;
+import org.seefin.nygaard.model.instruments.AccountInstrument;
+import org.seefin.nygaard.model.parties.Subscriber;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+
+import static org.seefin.nygaard.model.Fixtures.CHANNEL;
+import static org.seefin.nygaard.model.Fixtures.EUR;
+import static org.seefin.nygaard.model.Fixtures.PAYER;
+
+
+/**
+ * Tests for the streaming account listing and balance fan-out publishers
+ *
+ * @author phillipsr
+ */
+public class TestAccountStreams {
+    private static final IBAN ACCOUNT = IBAN.parse("IE64IRCE92050112345678");
+    private static final Object COMPLETE = "complete";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void
+    shutdown() {
+        executor.shutdownNow();
+    }
+
+    /* subscriber recording the signals it receives */
+    private static final class Recorder<T>
+            implements Flow.Subscriber<T> {
+        private final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            signals.add(item);
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            signals.add(failure);
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add(COMPLETE);
+        }
+
+        private Object
+        next()
+                throws InterruptedException {
+            Object result = signals.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull("signal expected", result);
+            return result;
+        }
+
+        private void
+        assertQuiet()
+                throws InterruptedException {
+            Assert.assertNull(signals.poll(50, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /* source of a number of accounts, counting those read, and noting when closed */
+    private static final class CountingSource
+            implements AccountSource {
+        private final int accounts;
+        private final AtomicInteger read = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private CountingSource(int accounts) {
+            this.accounts = accounts;
+        }
+
+        private final class Cursor
+                implements Iterator<AccountDetails>, AutoCloseable {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < accounts;
+            }
+
+            @Override
+            public AccountDetails next() {
+                position++;
+                read.incrementAndGet();
+                return new AccountDetails(ACCOUNT, AccountType.Checking, AccountStatus.Active,
+                        new MonetaryAmount(EUR, (long) position), null, null);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        }
+
+        @Override
+        public Iterator<AccountDetails> listAccounts(ListAccountRequest request) {
+            return new Cursor();
+        }
+    }
+
+    @Test
+    public void
+    testAccountsDeliveredOnDemand()
+            throws Exception {
+        CountingSource source = new CountingSource(3);
+        Recorder<AccountDetails> subscriber = new Recorder<>();
+        new AccountPublisher(source, new ListAccountRequest(CHANNEL), executor).subscribe(subscriber);
+        subscriber.assertQuiet();
+        Assert.assertEquals(0, source.read.get());
+
+        subscriber.subscription.request(2);
+        Assert.assertEquals(new MonetaryAmount(EUR, 1L), ((AccountDetails) subscriber.next()).getLedgerBalance());
+        Assert.assertEquals(new MonetaryAmount(EUR, 2L), ((AccountDetails) subscriber.next()).getLedgerBalance());
+        subscriber.assertQuiet();
+        Assert.assertEquals(2, source.read.get());
+        Assert.assertFalse(source.closed.get());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(new MonetaryAmount(EUR, 3L), ((AccountDetails) subscriber.next()).getLedgerBalance());
+        Assert.assertSame(COMPLETE, subscriber.next());
+        Assert.assertTrue(source.closed.get());
+    }
+
+    @Test
+    public void
+    testCancelClosesListing()
+            throws Exception {
+        CountingSource source = new CountingSource(100);
+        Recorder<AccountDetails> subscriber = new Recorder<>();
+        new AccountPublisher(source, new ListAccountRequest(CHANNEL), executor).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.next();
+        subscriber.subscription.cancel();
+        for (int i = 0; i < 100 && source.closed.get() == false; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(source.closed.get());
+        subscriber.subscription.request(10);
+        subscriber.assertQuiet();
+        Assert.assertEquals(1, source.read.get());
+    }
+
+    @Test
+    public void
+    testInvalidRequestFailsStream()
+            throws Exception {
+        Recorder<AccountDetails> subscriber = new Recorder<>();
+        new AccountPublisher(new CountingSource(1), new ListAccountRequest(CHANNEL), executor).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        Assert.assertTrue(subscriber.next() instanceof IllegalArgumentException);
+        subscriber.subscription.request(1);
+        subscriber.assertQuiet();
+    }
+
+    @Test
+    public void
+    testBalancesFannedOut()
+            throws Exception {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final BalanceSource bank = new BalanceSource() {
+            @Override
+            public BalanceResponse getBalance(BalanceRequest request) {
+                maxActive.set(Math.max(maxActive.get(), active.incrementAndGet()));
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    active.decrementAndGet();
+                }
+                return new BalanceResponse(new MonetaryAmount(EUR, 42L));
+            }
+        };
+        final BalanceSource failing = new BalanceSource() {
+            @Override
+            public BalanceResponse getBalance(BalanceRequest request) {
+                throw new IllegalStateException("provider unavailable");
+            }
+        };
+        final BalanceRequest failed = balanceRequest();
+        List<BalanceRequest> requests = new ArrayList<>(Arrays.asList(balanceRequest(), balanceRequest(),
+                balanceRequest(), failed));
+        Function<BalanceRequest, BalanceSource> providerOf = new Function<BalanceRequest, BalanceSource>() {
+            @Override
+            public BalanceSource apply(BalanceRequest request) {
+                return request == failed ? failing : bank;
+            }
+        };
+
+        Recorder<BalanceResult> subscriber = new Recorder<>();
+        new BalanceFanOut(requests, providerOf, executor, 2).subscribe(subscriber);
+        subscriber.subscription.request(10);
+        for (int i = 0; i < 100 && active.get() < 2; i++) {
+            Thread.sleep(10);
+        }
+        subscriber.assertQuiet();
+        Assert.assertEquals(2, active.get());
+        release.countDown();
+
+        List<BalanceResult> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            results.add((BalanceResult) subscriber.next());
+        }
+        Assert.assertSame(COMPLETE, subscriber.next());
+        Assert.assertEquals(2, maxActive.get());
+        int failures = 0;
+        for (BalanceResult result : results) {
+            if (result.isSuccess() == false) {
+                failures++;
+                Assert.assertSame(failed, result.getRequest());
+                Assert.assertEquals("provider unavailable", result.getFailure().getMessage());
+            } else {
+                Assert.assertEquals(new MonetaryAmount(EUR, 42L), result.getResponse().getBalance());
+            }
+        }
+        Assert.assertEquals(1, failures);
+    }
+
+    @Test
+    public void
+    testBalanceCallsLimitedByDemand()
+            throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        BalanceSource bank = new BalanceSource() {
+            @Override
+            public BalanceResponse getBalance(BalanceRequest request) {
+                calls.incrementAndGet();
+                return new BalanceResponse(new MonetaryAmount(EUR, 42L));
+            }
+        };
+        List<BalanceRequest> requests = Arrays.asList(balanceRequest(), balanceRequest(), balanceRequest());
+        Recorder<BalanceResult> subscriber = new Recorder<>();
+        new BalanceFanOut(requests, provider(bank), executor, 10).subscribe(subscriber);
+        subscriber.assertQuiet();
+        Assert.assertEquals(0, calls.get());
+
+        subscriber.subscription.request(1);
+        Assert.assertTrue(((BalanceResult) subscriber.next()).isSuccess());
+        subscriber.assertQuiet();
+        Assert.assertEquals(1, calls.get());
+
+        subscriber.subscription.request(2);
+        subscriber.next();
+        subscriber.next();
+        Assert.assertSame(COMPLETE, subscriber.next());
+        Assert.assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void
+    testNoBalancesCompletes()
+            throws Exception {
+        Recorder<BalanceResult> subscriber = new Recorder<>();
+        new BalanceFanOut(Collections.<BalanceRequest>emptyList(), provider(null), executor, 1).subscribe(subscriber);
+        Assert.assertSame(COMPLETE, subscriber.next());
+    }
+
+    private static BalanceRequest
+    balanceRequest() {
+        return new BalanceRequest(CHANNEL, new AccountInstrument(PAYER, ACCOUNT));
+    }
+
+    private static Function<Object, BalanceSource>
+    provider(BalanceSource source) {
+        return Functions.constant(source);
+    }
+}
@@ -0,0 +1,138 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.channels.SMSChannel;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.ReferenceCode;
+
+import com.google.common.base.Ticker;
+
+import static org.seefin.nygaard.model.Fixtures.EUR;
+import static org.seefin.nygaard.model.Fixtures.SUBSCRIBER;
+
+
+/**
+ * Tests for the IdempotencyCache
+ *
+ * @author phillipsr
+ */
+public class TestIdempotencyCache {
+    private static final MonetaryAmount TEN_EURO = new MonetaryAmount(EUR, 1000L);
+
+    private static TopupRequest
+    topup(String reference) {
+        return new TopupRequest(new SMSChannel(SUBSCRIBER, new ReferenceCode(reference)), SUBSCRIBER, TEN_EURO);
+    }
+
+    private static final class CountingTopup
+            implements Callable<TopupResponse> {
+        private final AtomicInteger executions = new AtomicInteger();
+
+        @Override
+        public TopupResponse call() {
+            return new TopupResponse(true, TEN_EURO, "execution " + executions.incrementAndGet());
+        }
+    }
+
+    private static final class ManualTicker
+            extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+
+    @Test
+    public void
+    testRetryAnsweredFromCache()
+            throws ExecutionException {
+        IdempotencyCache<TopupResponse> cache = new IdempotencyCache<>(100, 1, TimeUnit.MINUTES);
+        CountingTopup action = new CountingTopup();
+
+        TopupResponse first = cache.execute(topup("3538635672791420070400000"), action);
+        TopupResponse retry = cache.execute(topup("3538635672791420070400000"), action);
+        TopupResponse other = cache.execute(topup("3538635672791420070400001"), action);
+
+        Assert.assertSame(first, retry);
+        Assert.assertEquals("execution 2", other.getText());
+        Assert.assertEquals(2, action.executions.get());
+        Assert.assertSame(first, cache.get(new SMSChannel(SUBSCRIBER, new ReferenceCode("3538635672791420070400000"))));
+    }
+
+    @Test
+    public void
+    testChannelTypeIsPartOfKey() {
+        IdempotencyCache<TopupResponse> cache = new IdempotencyCache<>(100, 1, TimeUnit.MINUTES);
+        ReferenceCode reference = new ReferenceCode("42");
+        cache.put(new SMSChannel(SUBSCRIBER, reference), new TopupResponse(true, TEN_EURO, "sms"));
+
+        Assert.assertNull(cache.get(new Channel(SUBSCRIBER, reference)));
+        Assert.assertEquals("sms", cache.get(new SMSChannel(SUBSCRIBER, reference)).getText());
+    }
+
+    @Test
+    public void
+    testExpiry()
+            throws ExecutionException {
+        ManualTicker ticker = new ManualTicker();
+        IdempotencyCache<TopupResponse> cache = new IdempotencyCache<>(100, 30, TimeUnit.SECONDS, 4, ticker);
+        CountingTopup action = new CountingTopup();
+
+        cache.execute(topup("A1"), action);
+        ticker.nanos += TimeUnit.SECONDS.toNanos(29);
+        cache.execute(topup("A1"), action);
+        Assert.assertEquals(1, action.executions.get());
+
+        ticker.nanos += TimeUnit.SECONDS.toNanos(2);
+        cache.execute(topup("A1"), action);
+        Assert.assertEquals(2, action.executions.get());
+    }
+
+    @Test
+    public void
+    testBoundedSize()
+            throws ExecutionException {
+        IdempotencyCache<TopupResponse> cache = new IdempotencyCache<>(10, 1, TimeUnit.MINUTES, 1);
+        CountingTopup action = new CountingTopup();
+        for (int i = 0; i < 100; i++) {
+            cache.execute(topup("R" + i), action);
+        }
+        Assert.assertTrue(cache.size() <= 10);
+        Assert.assertNotNull(cache.get(new SMSChannel(SUBSCRIBER, new ReferenceCode("R99"))));
+    }
+
+    @Test
+    public void
+    testFailureNotCached()
+            throws ExecutionException {
+        IdempotencyCache<TransferResponse> cache = new IdempotencyCache<>(10, 1, TimeUnit.MINUTES);
+        try {
+            cache.execute(topup("F1"), new Callable<TransferResponse>() {
+                @Override
+                public TransferResponse call() {
+                    throw new IllegalStateException("network flap");
+                }
+            });
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("network flap", e.getMessage());
+        }
+        Assert.assertNull(cache.get(topup("F1").getChannel()));
+        TransferResponse response = cache.execute(topup("F1"), new Callable<TransferResponse>() {
+            @Override
+            public TransferResponse call() {
+                return new TransferResponse(true, "AUTH1", "ok", TEN_EURO);
+            }
+        });
+        Assert.assertEquals("AUTH1", response.getAuthorizationCode());
+    }
+}
@@ -0,0 +1,241 @@
+package org.seefin.nygaard.model.requests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.financial.Transaction;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.parties.Organization;
+import org.seefin.nygaard.model.services.LimitExceededException;
+import org.seefin.nygaard.model.services.LimitedProduct;
+import org.seefin.nygaard.model.services.Product;
+import org.seefin.nygaard.model.services.Service;
+import org.seefin.nygaard.model.services.ServiceLimit;
+import org.seefin.nygaard.model.services.VelocityLimiter;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import static org.seefin.nygaard.model.Fixtures.CHANNEL;
+import static org.seefin.nygaard.model.Fixtures.EUR;
+import static org.seefin.nygaard.model.Fixtures.PAYEE;
+import static org.seefin.nygaard.model.Fixtures.PAYER;
+import static org.seefin.nygaard.model.Fixtures.VENDOR;
+
+
+/**
+ * Tests for the asynchronous RequestPipeline and its standard stages
+ *
+ * @author phillipsr
+ */
+public class TestRequestPipeline {
+    private static final MonetaryAmount LIMIT = new MonetaryAmount(EUR, 500L);
+
+    private static final Function<TransferRequest, RuntimeException> VALID
+            = new Function<TransferRequest, RuntimeException>() {
+        @Override
+        public RuntimeException apply(TransferRequest request) {
+            return request.getComment().isEmpty() ? new IllegalArgumentException("Comment required") : null;
+        }
+    };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final ExecutorService ioExecutor = Executors.newCachedThreadPool();
+
+    @After
+    public void
+    shutdown() {
+        executor.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+
+    private static TransferRequest
+    transfer(long amount, String comment) {
+        return new TransferRequest(CHANNEL, new FinancialTransaction(new ElectronicWallet(PAYER, VENDOR, EUR),
+                new MonetaryAmount(EUR, amount), new ElectronicWallet(PAYEE, VENDOR, EUR)), comment);
+    }
+
+    /* product with a one-time limit of five euro */
+    private static final class CappedProduct
+            implements Product {
+        @Override
+        public MonetaryAmount getLimit(ServiceLimit limit) {
+            return limit == ServiceLimit.ONE_TIME ? LIMIT : null;
+        }
+
+        @Override
+        public RuntimeException checkTransaction(Channel channel, Transaction transaction) {
+            return ((FinancialTransaction) transaction).getAmount().compareTo(LIMIT) > 0
+                    ? new LimitExceededException(ServiceLimit.ONE_TIME, LIMIT, ResponseCode.TRANSACTION_LIMIT_REACHED)
+                    : null;
+        }
+    }
+
+    private static class CountingService
+            implements Service {
+        private final AtomicInteger executed = new AtomicInteger();
+
+        @Override
+        public void execute(Channel channel, FinancialTransaction transaction) {
+            executed.incrementAndGet();
+        }
+
+        @Override
+        public Organization getProvider() {
+            return VENDOR;
+        }
+
+        @Override
+        public Product getProduct() {
+            return new CappedProduct();
+        }
+    }
+
+    private RequestPipeline<TransferRequest, TransferResponse>
+    pipeline(Service service, int maxInFlight) {
+        List<PipelineStage<TransferRequest>> stages = Arrays.asList(
+                PipelineStages.validate(VALID),
+                PipelineStages.checkTransaction(service.getProduct(), PipelineStages.TRANSFER_TRANSACTION),
+                PipelineStages.execute(service, PipelineStages.TRANSFER_TRANSACTION, ioExecutor));
+        return new RequestPipeline<>(stages, PipelineStages.TRANSFER_RESPONSES, executor, maxInFlight);
+    }
+
+    @Test
+    public void
+    testStagesApplied()
+            throws Exception {
+        CountingService service = new CountingService();
+        RequestPipeline<TransferRequest, TransferResponse> pipeline = pipeline(service, 10);
+
+        TransferRequest request = transfer(100L, "lunch");
+        TransferResponse accepted = pipeline.submit(request).get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(accepted.getSuccess());
+        Assert.assertEquals(request.getTransaction().getIdentity().externalForm(), accepted.getAuthorizationCode());
+
+        TransferResponse overLimit = pipeline.submit(transfer(1000L, "rent")).get(5, TimeUnit.SECONDS);
+        Assert.assertFalse(overLimit.getSuccess());
+        Assert.assertTrue(overLimit.getText().startsWith(ResponseCode.TRANSACTION_LIMIT_REACHED.name()));
+
+        TransferResponse invalid = pipeline.submit(transfer(100L, "")).get(5, TimeUnit.SECONDS);
+        Assert.assertFalse(invalid.getSuccess());
+        Assert.assertTrue(invalid.getText().startsWith(ResponseCode.INVALID_REQUEST.name()));
+
+        Assert.assertEquals(1, service.executed.get());
+        Assert.assertEquals(Arrays.asList("validate", "checkTransaction", "execute", "respond"), pipeline.getStageNames());
+        Assert.assertEquals(3, pipeline.getStageLatency("validate").getCount());
+        Assert.assertEquals(2, pipeline.getStageLatency("checkTransaction").getCount());
+        Assert.assertEquals(1, pipeline.getStageLatency("execute").getCount());
+        Assert.assertEquals(3, pipeline.getStageLatency("respond").getCount());
+        Assert.assertEquals(3, pipeline.getLatency().getCount());
+        Assert.assertNull(pipeline.getStageLatency("unknown"));
+        Assert.assertEquals(0, pipeline.getInFlight());
+    }
+
+    @Test
+    public void
+    testAsynchronousStageAppliesBackPressure()
+            throws Exception {
+        final SettableFuture<Void> partner = SettableFuture.create();
+        PipelineStage<TransferRequest> slow = new PipelineStage<TransferRequest>() {
+            @Override
+            public String getName() {
+                return "partner";
+            }
+
+            @Override
+            public ListenableFuture<?> process(TransferRequest request) {
+                return partner;
+            }
+        };
+        RequestPipeline<TransferRequest, TransferResponse> pipeline = new RequestPipeline<>(
+                Collections.singletonList(slow), PipelineStages.TRANSFER_RESPONSES, executor, 1);
+
+        ListenableFuture<TransferResponse> response = pipeline.submit(transfer(100L, "first"));
+        try {
+            pipeline.submit(transfer(100L, "second"));
+            Assert.fail("Pipeline at capacity should refuse request");
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(1, pipeline.getInFlight());
+        }
+        Assert.assertFalse(response.isDone());
+
+        partner.set(null);
+        Assert.assertTrue(response.get(5, TimeUnit.SECONDS).getSuccess());
+        Assert.assertEquals(1, pipeline.getStageLatency("partner").getCount());
+        Assert.assertEquals(0, pipeline.getInFlight());
+        Assert.assertTrue(pipeline.submit(transfer(100L, "third")).get(5, TimeUnit.SECONDS).getSuccess());
+    }
+
+    @Test
+    public void
+    testFailedServiceCall()
+            throws Exception {
+        Service failing = new CountingService() {
+            @Override
+            public void execute(Channel channel, FinancialTransaction transaction) {
+                throw new IllegalStateException("partner unavailable");
+            }
+        };
+        TransferResponse response = pipeline(failing, 10).submit(transfer(100L, "lunch")).get(5, TimeUnit.SECONDS);
+        Assert.assertFalse(response.getSuccess());
+        Assert.assertEquals(ResponseCode.SYSTEM_ERROR + ": partner unavailable", response.getText());
+    }
+
+    @Test
+    public void
+    testFailedExecuteReleasesLimits()
+            throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter();
+        final LimitedProduct product = new LimitedProduct(
+                Collections.singletonMap(ServiceLimit.DAILY, new MonetaryAmount(EUR, 1000L)), limiter);
+        Service failing = new CountingService() {
+            @Override
+            public void execute(Channel channel, FinancialTransaction transaction) {
+                throw new IllegalStateException("partner unavailable");
+            }
+
+            @Override
+            public Product getProduct() {
+                return product;
+            }
+        };
+        Service working = new CountingService() {
+            @Override
+            public Product getProduct() {
+                return product;
+            }
+        };
+        String payer = PAYER.getId().externalForm();
+
+        Assert.assertFalse(pipeline(failing, 10).submit(transfer(600L, "rent")).get(5, TimeUnit.SECONDS).getSuccess());
+        Assert.assertEquals(0, limiter.getTotal(ServiceLimit.DAILY, payer, null, System.currentTimeMillis()));
+
+        RequestPipeline<TransferRequest, TransferResponse> pipeline = pipeline(working, 10);
+        Assert.assertTrue(pipeline.submit(transfer(600L, "rent")).get(5, TimeUnit.SECONDS).getSuccess());
+        Assert.assertEquals(600, limiter.getTotal(ServiceLimit.DAILY, payer, null, System.currentTimeMillis()));
+        TransferResponse overLimit = pipeline.submit(transfer(600L, "rent")).get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(overLimit.getText().startsWith(ResponseCode.ACCOUNT_LIMIT_REACHED.name()));
+        Assert.assertEquals(600, limiter.getTotal(ServiceLimit.DAILY, payer, null, System.currentTimeMillis()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testStageNamesUnique() {
+        PipelineStage<TransferRequest> validate = PipelineStages.validate(VALID);
+        new RequestPipeline<>(Arrays.asList(validate, validate), PipelineStages.TRANSFER_RESPONSES, executor, 1);
+    }
+}
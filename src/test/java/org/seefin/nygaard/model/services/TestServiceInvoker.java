@@ -0,0 +1,201 @@
+package org.seefin.nygaard.model.services;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+import org.seefin.nygaard.model.parties.Organization;
+import org.seefin.nygaard.model.requests.PipelineStages;
+import org.seefin.nygaard.model.requests.RequestPipeline;
+import org.seefin.nygaard.model.requests.TransferRequest;
+import org.seefin.nygaard.model.requests.TransferResponse;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import static org.seefin.nygaard.model.Fixtures.CHANNEL;
+import static org.seefin.nygaard.model.Fixtures.EUR;
+import static org.seefin.nygaard.model.Fixtures.PAYEE;
+import static org.seefin.nygaard.model.Fixtures.PAYER;
+import static org.seefin.nygaard.model.Fixtures.VENDOR;
+
+
+/**
+ * Tests for the ServiceInvoker, running service calls on (virtual) threads with a time limit
+ *
+ * @author phillipsr
+ */
+public class TestServiceInvoker {
+    private static final FinancialTransaction TRANSFER = new FinancialTransaction(new ElectronicWallet(PAYER, VENDOR, EUR),
+            new MonetaryAmount(EUR, 100L), new ElectronicWallet(PAYEE, VENDOR, EUR));
+
+    /* service whose calls block until released, or interrupted */
+    private static final class PartnerService
+            implements Service {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final AtomicBoolean interrupted = new AtomicBoolean();
+        private final AtomicReference<Thread> caller = new AtomicReference<>();
+
+        @Override
+        public void execute(Channel channel, FinancialTransaction transaction) {
+            caller.set(Thread.currentThread());
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw new IllegalStateException("call interrupted");
+            }
+        }
+
+        @Override
+        public Organization getProvider() {
+            return VENDOR;
+        }
+
+        @Override
+        public Product getProduct() {
+            return null;
+        }
+    }
+
+    @Test
+    public void
+    testCallCompletes()
+            throws Exception {
+        PartnerService partner = new PartnerService();
+        try (ServiceInvoker invoker = new ServiceInvoker(partner, 5, TimeUnit.SECONDS)) {
+            ListenableFuture<Void> call = invoker.submit(CHANNEL, TRANSFER);
+            Assert.assertTrue(partner.started.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, invoker.getActiveCalls());
+            partner.release.countDown();
+            call.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(0, invoker.getActiveCalls());
+            Assert.assertNotSame(Thread.currentThread(), partner.caller.get());
+            if (Boolean.getBoolean("nygaard.virtual.threads.required") == true) {
+                Assert.assertTrue(VirtualThreads.isVirtual(partner.caller.get()));
+            }
+        }
+    }
+
+    @Test
+    public void
+    testTimeoutCancelsCall()
+            throws Exception {
+        PartnerService partner = new PartnerService();
+        try (ServiceInvoker invoker = new ServiceInvoker(partner, 50, TimeUnit.MILLISECONDS)) {
+            try {
+                invoker.execute(CHANNEL, TRANSFER);
+                Assert.fail("Call should time out");
+            } catch (ServiceTimeoutException e) {
+                Assert.assertEquals(ResponseCode.REQUEST_TIMEOUT, e.getResponseCode());
+                Assert.assertEquals(50, e.getTimeoutMillis());
+            }
+            for (int i = 0; i < 100 && partner.interrupted.get() == false; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue("call interrupted", partner.interrupted.get());
+            Assert.assertEquals(0, invoker.getActiveCalls());
+        }
+    }
+
+    @Test
+    public void
+    testCloseCancelsCalls()
+            throws Exception {
+        PartnerService partner = new PartnerService();
+        ServiceInvoker invoker = new ServiceInvoker(partner, 5, TimeUnit.SECONDS, Executors.newCachedThreadPool());
+        ListenableFuture<Void> call = invoker.submit(CHANNEL, TRANSFER);
+        Assert.assertTrue(partner.started.await(5, TimeUnit.SECONDS));
+        invoker.close();
+        Assert.assertTrue(call.isCancelled());
+        for (int i = 0; i < 100 && partner.interrupted.get() == false; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue("call interrupted", partner.interrupted.get());
+    }
+
+    @Test
+    public void
+    testServiceFailurePropagated()
+            throws InterruptedException {
+        try (ServiceInvoker invoker = new ServiceInvoker(new Service() {
+            @Override
+            public void execute(Channel channel, FinancialTransaction transaction) {
+                throw new LimitExceededException(ServiceLimit.DAILY, null, ResponseCode.ACCOUNT_LIMIT_REACHED);
+            }
+
+            @Override
+            public Organization getProvider() {
+                return VENDOR;
+            }
+
+            @Override
+            public Product getProduct() {
+                return null;
+            }
+        }, 5, TimeUnit.SECONDS)) {
+            try {
+                invoker.submit(CHANNEL, TRANSFER).get();
+                Assert.fail("Call should fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof LimitExceededException);
+            }
+        }
+    }
+
+    @Test
+    public void
+    testTimeoutMappedToResponse()
+            throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ServiceInvoker invoker = new ServiceInvoker(new PartnerService(), 50, TimeUnit.MILLISECONDS)) {
+            RequestPipeline<TransferRequest, TransferResponse> pipeline = new RequestPipeline<>(
+                    Collections.singletonList(PipelineStages.execute(invoker, PipelineStages.TRANSFER_TRANSACTION)),
+                    PipelineStages.TRANSFER_RESPONSES, executor, 10);
+            TransferResponse response
+                    = pipeline.submit(new TransferRequest(CHANNEL, TRANSFER, "lunch")).get(5, TimeUnit.SECONDS);
+            Assert.assertFalse(response.getSuccess());
+            Assert.assertTrue(response.getText().startsWith(ResponseCode.REQUEST_TIMEOUT.name()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void
+    testVirtualThreadExecutor()
+            throws Exception {
+        Assume.assumeTrue(VirtualThreads.isAvailable()
+                || Boolean.getBoolean("nygaard.virtual.threads.required") == true);
+        Assert.assertTrue(VirtualThreads.isAvailable());
+        ExecutorService executor = VirtualThreads.newExecutor("test");
+        try {
+            Future<Boolean> virtual = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return VirtualThreads.isVirtual(Thread.currentThread());
+                }
+            });
+            Assert.assertTrue(virtual.get(5, TimeUnit.SECONDS));
+            Assert.assertFalse(VirtualThreads.isVirtual(Thread.currentThread()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.seefin.nygaard.model.services;
+
+import java.util.Currency;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.codes.ResponseCode;
+import org.seefin.nygaard.model.financial.FinancialTransaction;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.instruments.ElectronicWallet;
+
+import static org.seefin.nygaard.model.Fixtures.CHANNEL;
+import static org.seefin.nygaard.model.Fixtures.EUR;
+import static org.seefin.nygaard.model.Fixtures.PAYEE;
+import static org.seefin.nygaard.model.Fixtures.PAYER;
+import static org.seefin.nygaard.model.Fixtures.VENDOR;
+
+
+/**
+ * Tests for the VelocityLimiter and the LimitedProduct reference implementation
+ *
+ * @author phillipsr
+ */
+public class TestVelocityLimits {
+    private static final long NOW = 1420070400000L; // 2015-01-01T00:00Z
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static FinancialTransaction
+    transfer(long amount) {
+        return new FinancialTransaction(new ElectronicWallet(PAYER, VENDOR, EUR),
+                new MonetaryAmount(EUR, amount), new ElectronicWallet(PAYEE, VENDOR, EUR));
+    }
+
+    @Test
+    public void
+    testSlidingWindow() {
+        VelocityLimiter limiter = new VelocityLimiter();
+
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "joe", null, 600, 1000, NOW));
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "joe", null, 400, 1000, NOW + HOUR));
+        Assert.assertFalse(limiter.tryAcquire(ServiceLimit.DAILY, "joe", null, 1, 1000, NOW + 2 * HOUR));
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "ann", null, 1, 1000, NOW + 2 * HOUR));
+        Assert.assertEquals(1000, limiter.getTotal(ServiceLimit.DAILY, "joe", null, NOW + 2 * HOUR));
+
+        // the first bucket ages out after a day
+        Assert.assertEquals(400, limiter.getTotal(ServiceLimit.DAILY, "joe", null, NOW + 24 * HOUR));
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "joe", null, 600, 1000, NOW + 24 * HOUR));
+        Assert.assertEquals(0, limiter.getTotal(ServiceLimit.DAILY, "joe", null, NOW + 49 * HOUR));
+    }
+
+    @Test
+    public void
+    testRelease() {
+        VelocityLimiter limiter = new VelocityLimiter();
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.HOURLY, "joe", "SMS", 1000, 1000, NOW));
+        limiter.release(ServiceLimit.HOURLY, "joe", "SMS", 1000, NOW);
+        Assert.assertEquals(0, limiter.getTotal(ServiceLimit.HOURLY, "joe", "SMS", NOW));
+        Assert.assertEquals(0, limiter.getTotal(ServiceLimit.HOURLY, "joe", null, NOW));
+    }
+
+    @Test
+    public void
+    testReleaseAcrossBuckets() {
+        VelocityLimiter limiter = new VelocityLimiter();
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "joe", null, 600, 1000, NOW));
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "joe", null, 300, 1000, NOW + HOUR));
+        // released in a later bucket, the amount is withdrawn from the bucket it was recorded in
+        limiter.release(ServiceLimit.DAILY, "joe", null, 600, NOW);
+        Assert.assertEquals(300, limiter.getTotal(ServiceLimit.DAILY, "joe", null, NOW + 2 * HOUR));
+        // ... so the window is not under-counted once that bucket ages out
+        Assert.assertEquals(300, limiter.getTotal(ServiceLimit.DAILY, "joe", null, NOW + 24 * HOUR));
+        Assert.assertFalse(limiter.tryAcquire(ServiceLimit.DAILY, "joe", null, 701, 1000, NOW + 24 * HOUR));
+
+        // an amount whose bucket has aged out has nothing left to withdraw
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "ann", null, 500, 1000, NOW));
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "ann", null, 200, 1000, NOW + 24 * HOUR));
+        limiter.release(ServiceLimit.DAILY, "ann", null, 500, NOW);
+        Assert.assertEquals(200, limiter.getTotal(ServiceLimit.DAILY, "ann", null, NOW + 24 * HOUR));
+    }
+
+    @Test
+    public void
+    testBoundedKeys() {
+        VelocityLimiter limiter = new VelocityLimiter(100, 1);
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire(ServiceLimit.DAILY, "party" + i, null, 1, 10, NOW + i * HOUR);
+        }
+        Assert.assertTrue(limiter.size() <= 100);
+        Assert.assertEquals(1, limiter.getTotal(ServiceLimit.DAILY, "party999", null, NOW + 999 * HOUR));
+    }
+
+    @Test
+    public void
+    testLiveWindowsNotEvicted() {
+        VelocityLimiter limiter = new VelocityLimiter(2, 1);
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "victim", null, 900, 1000, NOW));
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "attacker", null, 1, 1000, NOW));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(limiter.tryAcquire(ServiceLimit.DAILY, "key" + i, null, 1, 1000, NOW + HOUR));
+        }
+        Assert.assertEquals(900, limiter.getTotal(ServiceLimit.DAILY, "victim", null, NOW + HOUR));
+        Assert.assertFalse(limiter.tryAcquire(ServiceLimit.DAILY, "victim", null, 200, 1000, NOW + HOUR));
+
+        // a released window holds nothing, so may be discarded
+        limiter.release(ServiceLimit.DAILY, "attacker", null, 1, NOW);
+        Assert.assertTrue(limiter.tryAcquire(ServiceLimit.DAILY, "newcomer", null, 1, 1000, NOW + 2 * HOUR));
+        Assert.assertEquals(900, limiter.getTotal(ServiceLimit.DAILY, "victim", null, NOW + 2 * HOUR));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testOneTimeNotWindowed() {
+        new VelocityLimiter().tryAcquire(ServiceLimit.ONE_TIME, "joe", null, 1, 10, NOW);
+    }
+
+    @Test
+    public void
+    testConcurrentAcquireNeverExceedsLimit()
+            throws InterruptedException {
+        final VelocityLimiter limiter = new VelocityLimiter(1000, 8);
+        final AtomicLong admitted = new AtomicLong();
+        final int threads = 8;
+        final CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++) {
+                            if (limiter.tryAcquire(ServiceLimit.CHANNEL, null, "SMS", 3, 50000, NOW) == true) {
+                                admitted.addAndGet(3);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertTrue(admitted.get() <= 50000);
+        Assert.assertTrue(admitted.get() > 49000);
+        Assert.assertEquals(admitted.get(), limiter.getTotal(ServiceLimit.CHANNEL, null, "SMS", NOW));
+    }
+
+    @Test
+    public void
+    testProductLimits() {
+        Map<ServiceLimit, MonetaryAmount> limits = new EnumMap<>(ServiceLimit.class);
+        limits.put(ServiceLimit.ONE_TIME, new MonetaryAmount(EUR, 5000L));
+        limits.put(ServiceLimit.DAILY, new MonetaryAmount(EUR, 10000L));
+        limits.put(ServiceLimit.CHANNEL, new MonetaryAmount(EUR, 12000L));
+        VelocityLimiter limiter = new VelocityLimiter();
+        LimitedProduct product = new LimitedProduct(limits, limiter);
+
+        Assert.assertEquals(new MonetaryAmount(EUR, 10000L), product.getLimit(ServiceLimit.DAILY));
+        Assert.assertNull(product.getLimit(ServiceLimit.WEEKLY));
+
+        LimitExceededException oneTime = (LimitExceededException) product.checkTransaction(CHANNEL, transfer(5001), NOW);
+        Assert.assertEquals(ServiceLimit.ONE_TIME, oneTime.getLimit());
+        Assert.assertEquals(ResponseCode.TRANSACTION_LIMIT_REACHED, oneTime.getResponseCode());
+
+        Assert.assertNull(product.checkTransaction(CHANNEL, transfer(5000), NOW));
+        Assert.assertNull(product.checkTransaction(CHANNEL, transfer(5000), NOW));
+        LimitExceededException daily = (LimitExceededException) product.checkTransaction(CHANNEL, transfer(1), NOW);
+        Assert.assertEquals(ServiceLimit.DAILY, daily.getLimit());
+        Assert.assertEquals(ResponseCode.ACCOUNT_LIMIT_REACHED, daily.getResponseCode());
+        // a refused transaction is not counted against any limit
+        Assert.assertEquals(10000, limiter.getTotal(ServiceLimit.CHANNEL, null, CHANNEL.getName(), NOW));
+    }
+
+    @Test
+    public void
+    testProductCurrencyMismatch() {
+        Map<ServiceLimit, MonetaryAmount> limits = new EnumMap<>(ServiceLimit.class);
+        limits.put(ServiceLimit.DAILY, new MonetaryAmount(Currency.getInstance("USD"), 10000L));
+        LimitedProduct product = new LimitedProduct(limits, new VelocityLimiter());
+        Assert.assertTrue(product.checkTransaction(CHANNEL, transfer(1), NOW) instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,108 @@
+package org.seefin.nygaard.model.time;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.seefin.nygaard.model.channels.Channel;
+import org.seefin.nygaard.model.channels.SMSChannel;
+import org.seefin.nygaard.model.financial.MonetaryAmount;
+import org.seefin.nygaard.model.identifiers.Identity;
+import org.seefin.nygaard.model.requests.TopupRequest;
+
+import static org.seefin.nygaard.model.Fixtures.EUR;
+import static org.seefin.nygaard.model.Fixtures.PAYER_MSISDN;
+import static org.seefin.nygaard.model.Fixtures.SUBSCRIBER;
+
+
+/**
+ * Tests for the model's clocks, and their use in timestamping requests
+ *
+ * @author phillipsr
+ */
+public class TestClocks {
+    private static final long NEW_YEAR = 1420070400000L;
+    private static final MonetaryAmount AMOUNT = new MonetaryAmount(EUR, 1000L);
+
+    @After
+    public void
+    restoreClock() {
+        Clock.setDefault(Clock.SYSTEM);
+    }
+
+    @Test
+    public void
+    testManualClock() {
+        ManualClock clock = new ManualClock(NEW_YEAR);
+        Assert.assertEquals(NEW_YEAR, clock.millis());
+        Assert.assertEquals(NEW_YEAR + 90000L, clock.advance(90, TimeUnit.SECONDS));
+        Assert.assertEquals(NEW_YEAR + 90000L, clock.millis());
+        clock.set(NEW_YEAR);
+        Assert.assertEquals(NEW_YEAR, clock.millis());
+    }
+
+    @Test
+    public void
+    testCachedClock()
+            throws InterruptedException {
+        try (CachedClock clock = new CachedClock(5, TimeUnit.MILLISECONDS)) {
+            long start = clock.millis();
+            Assert.assertTrue(Math.abs(System.currentTimeMillis() - start) < 1000);
+            long now = start;
+            for (int i = 0; i < 100 && now == start; i++) {
+                Thread.sleep(10);
+                now = clock.millis();
+            }
+            Assert.assertTrue("clock advances", now > start);
+            clock.close();
+            long before = System.currentTimeMillis();
+            long after = clock.millis();
+            Assert.assertTrue(after >= before);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testCachedClockInterval() {
+        new CachedClock(100, TimeUnit.MICROSECONDS);
+    }
+
+    @Test
+    public void
+    testRequestTimestampFromClock() {
+        Clock.setDefault(new ManualClock(NEW_YEAR));
+        Channel channel = new SMSChannel(SUBSCRIBER, SMSChannel.createId(PAYER_MSISDN));
+
+        TopupRequest request = new TopupRequest(channel, SUBSCRIBER, AMOUNT);
+        Assert.assertEquals(NEW_YEAR, request.getTimestampMillis());
+        DateTime timestamp = request.getTimestamp();
+        Assert.assertEquals(NEW_YEAR, timestamp.getMillis());
+        Assert.assertSame(timestamp, request.getTimestamp());
+
+        TopupRequest recreated = new TopupRequest(channel, SUBSCRIBER, AMOUNT, new DateTime(NEW_YEAR - 1000L));
+        Assert.assertEquals(NEW_YEAR - 1000L, recreated.getTimestampMillis());
+    }
+
+    @Test
+    public void
+    testSMSIdsUniqueWithinClockTick() {
+        // channel Ids are not taken from the model's clock, which may not advance between requests
+        Clock.setDefault(new ManualClock(NEW_YEAR));
+        Set<Identity> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            Identity id = SMSChannel.createId(PAYER_MSISDN);
+            Assert.assertTrue(id.externalForm().startsWith(String.valueOf(PAYER_MSISDN.longValue())));
+            Assert.assertTrue("unique: " + id, ids.add(id));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void
+    testNullTimestamp() {
+        new TopupRequest(new SMSChannel(SUBSCRIBER, SMSChannel.createId(PAYER_MSISDN)), SUBSCRIBER, AMOUNT, (DateTime) null);
+    }
+}